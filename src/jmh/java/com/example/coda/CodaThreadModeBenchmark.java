@@ -0,0 +1,223 @@
+package com.example.coda;
+
+import com.example.coda.model.CodaBankTransaction;
+import com.example.coda.model.CodaRequest;
+import com.example.coda.model.TransactionType;
+import com.example.coda.service.CodaGenerator;
+import com.example.coda.service.CodaWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+
+/**
+ * Request latency of the running application on platform threads and on virtual threads
+ * <p>
+ * The application is started on a random port with {@code spring.threads.virtual.enabled} set
+ * from {@code virtualThreads}, then {@code parse} clients post a CODA file to
+ * {@code /api/coda/parser/parse} while {@code generate} clients post a statement request to
+ * {@code /api/coda/json}, each waiting for its whole response before sending the next. Sample
+ * time mode reports p50, p90 and p99 per operation; the peak number of requests in progress in
+ * the server and the peak number of platform threads are printed after each iteration.
+ * The statement and parse caches are turned off, as every client posts the same body.
+ * Clients per operation default to 100 and are set with {@code -tg}:
+ * <pre>
+ * mvn -Pjmh compile exec:exec -Djmh.args="CodaThreadModeBenchmark -tg 400,400"
+ * </pre>
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(value = 1, jvmArgs = "-Dspring.devtools.restart.enabled=false")
+@State(Scope.Benchmark)
+public class CodaThreadModeBenchmark
+{
+   @Param({"false", "true"})
+   private boolean virtualThreads;
+
+   @Param({"200"})
+   private int transactions;
+
+   private final InFlightFilter inFlight = new InFlightFilter();
+   private ConfigurableApplicationContext context;
+   private HttpClient client;
+   private HttpRequest parse;
+   private HttpRequest generate;
+
+   @Setup
+   public void setUp() throws IOException
+   {
+      context = new SpringApplicationBuilder(CodaDemoApplication.class)
+            .properties("server.port=0", "spring.threads.virtual.enabled=" + virtualThreads,
+                  "logging.level.root=WARN", "coda.cache.statements.max-size=0", "coda.cache.parse.max-size=0")
+            .initializers(ctx -> ((GenericApplicationContext) ctx).registerBean(InFlightFilter.class, () -> inFlight))
+            .run();
+      String base = "http://localhost:" + ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+      client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+      LocalDate date = LocalDate.of(2025, 3, 3);
+      List<CodaBankTransaction> txs = new ArrayList<>();
+      List<CodaRequest.Transaction> requestTxs = new ArrayList<>();
+      for (int i = 0; i < transactions; i++)
+      {
+         TransactionType type = i % 3 == 0 ? TransactionType.DEBIT : TransactionType.CREDIT;
+         BigDecimal amount = BigDecimal.valueOf(1000 + i * 37L, 2);
+         txs.add(new CodaBankTransaction(date, type, amount, "COUNTERPARTY " + i, "BE68539007547034",
+               "Invoice " + i, "REF" + i));
+         requestTxs.add(CodaRequest.Transaction.builder().bookingDate(date).type(type).amount(amount)
+               .counterpartyName("COUNTERPARTY " + i).counterpartyAccount("BE68539007547034")
+               .description("Invoice " + i).reference("REF" + i).build());
+      }
+      String coda = new CodaGenerator(new CodaWriter()).generate("Benchmark Bank", "BE68539007547034", "EUR", date,
+            new BigDecimal("1000.00"), txs);
+      byte[] request = context.getBean(ObjectMapper.class).writeValueAsBytes(CodaRequest.builder()
+            .bankName("Benchmark Bank").account("BE68539007547034").currency("EUR").date(date)
+            .opening(new BigDecimal("1000.00")).transactions(requestTxs).build());
+
+      parse = HttpRequest.newBuilder(URI.create(base + "/api/coda/parser/parse"))
+            .header("Content-Type", "text/plain;charset=ISO-8859-1")
+            .POST(HttpRequest.BodyPublishers.ofByteArray(coda.getBytes(StandardCharsets.ISO_8859_1)))
+            .build();
+      generate = HttpRequest.newBuilder(URI.create(base + "/api/coda/json"))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofByteArray(request))
+            .build();
+   }
+
+   @TearDown
+   public void tearDown()
+   {
+      client.close();
+      context.close();
+   }
+
+   @Setup(Level.Iteration)
+   public void resetPeaks()
+   {
+      inFlight.peak.set(inFlight.current.get());
+      ManagementFactory.getThreadMXBean().resetPeakThreadCount();
+   }
+
+   @TearDown(Level.Iteration)
+   public void printPeaks()
+   {
+      System.out.printf("%nvirtualThreads=%s: peak requests in progress %d, peak platform threads %d%n",
+            virtualThreads, inFlight.peak.get(), ManagementFactory.getThreadMXBean().getPeakThreadCount());
+   }
+
+   @Benchmark
+   @Group("mixed")
+   @GroupThreads(100)
+   public int parse() throws IOException, InterruptedException
+   {
+      return send(parse);
+   }
+
+   @Benchmark
+   @Group("mixed")
+   @GroupThreads(100)
+   public int generate() throws IOException, InterruptedException
+   {
+      return send(generate);
+   }
+
+   private int send(HttpRequest request) throws IOException, InterruptedException
+   {
+      HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+      if (response.statusCode() != 200)
+      {
+         throw new IllegalStateException(request.uri() + " answered " + response.statusCode());
+      }
+      return response.statusCode();
+   }
+
+   /**
+    * Counts requests from their arrival until their response is complete, streamed ones included
+    */
+   static final class InFlightFilter implements Filter
+   {
+      private final AtomicInteger current = new AtomicInteger();
+      private final AtomicInteger peak = new AtomicInteger();
+
+      @Override
+      public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException
+      {
+         peak.accumulateAndGet(current.incrementAndGet(), Math::max);
+         try
+         {
+            chain.doFilter(request, response);
+         }
+         finally
+         {
+            if (request.isAsyncStarted())
+            {
+               request.getAsyncContext().addListener(new AsyncListener()
+               {
+                  @Override
+                  public void onComplete(AsyncEvent event)
+                  {
+                     current.decrementAndGet();
+                  }
+
+                  @Override
+                  public void onTimeout(AsyncEvent event)
+                  {
+                  }
+
+                  @Override
+                  public void onError(AsyncEvent event)
+                  {
+                  }
+
+                  @Override
+                  public void onStartAsync(AsyncEvent event)
+                  {
+                  }
+               });
+            }
+            else
+            {
+               current.decrementAndGet();
+            }
+         }
+      }
+   }
+}
@@ -0,0 +1,140 @@
+package com.example.coda.service;
+
+import com.example.coda.model.CodaBankTransaction;
+import com.example.coda.model.CodaRecord21;
+import com.example.coda.model.CodaStatement;
+import com.example.coda.model.TransactionType;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Line encoding cost of the CODA writer
+ * <p>
+ * {@code record21StringFormat} is the field formatting used before the template encoder
+ * ({@code String.format} padding, {@code BigDecimal} multiply, {@code DateTimeFormatter}) and is
+ * kept here as the baseline. Run with {@code -prof gc} to compare allocations per operation:
+ * <pre>
+ * mvn -Pjmh compile exec:exec -Djmh.args="CodaWriterBenchmark -prof gc"
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CodaWriterBenchmark
+{
+   private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("ddMMyy");
+
+   @Param({"1000", "100000"})
+   private int transactions;
+
+   private final CodaWriter writer = new CodaWriter();
+   private final CodaLineEncoder line = new CodaLineEncoder();
+   private CodaStatement statement;
+   private CodaRecord21 record21;
+
+   @Setup
+   public void setUp() throws IOException
+   {
+      List<CodaBankTransaction> txs = new ArrayList<>();
+      LocalDate date = LocalDate.of(2025, 3, 3);
+      for (int i = 0; i < transactions; i++)
+      {
+         txs.add(new CodaBankTransaction(date, i % 3 == 0 ? TransactionType.DEBIT : TransactionType.CREDIT,
+               BigDecimal.valueOf(1000 + i * 37L, 2), "COUNTERPARTY " + i, "BE68539007547034", "Invoice " + i,
+               "REF" + i));
+      }
+      String coda = new CodaGenerator(writer).generate("Benchmark Bank", "BE68539007547034", "EUR", date,
+            new BigDecimal("1000.00"), txs);
+      statement = new CodaParser().parse(coda);
+      record21 = statement.getIndividualTransactions().get(0).getRecord21();
+   }
+
+   @Benchmark
+   public void record21Template(Blackhole blackhole)
+   {
+      CodaLayout.V2.record21().encode(record21, line);
+      blackhole.consume(line);
+   }
+
+   @Benchmark
+   public String record21StringFormat()
+   {
+      CodaRecord21 r = record21;
+      String text = padRight(r.getRecordIdentification(), 1) + padRight(r.getArticleCode(), 1)
+            + padRight(r.getContinuousSequenceNumber(), 4) + padRight(r.getDetailNumber(), 4)
+            + padRight(r.getReferenceNumber(), 21) + padRight(r.getMovementSign(), 1)
+            + formatAmount(r.getAmount(), 15) + formatDate(r.getValueDate())
+            + padRight(r.getTransactionCode(), 8) + padRight(r.getCommunicationType(), 1)
+            + padRight(r.getCommunicationZone(), 53) + formatDate(r.getEntryDate())
+            + padRight(r.getStatementNumber(), 3) + padRight(r.getGlobalisationCode(), 1)
+            + padRight(r.getNextCode(), 1) + padRight(r.getFiller(), 1) + padRight(r.getLinkCode(), 1);
+      return padRight(text, CodaRecordLayout.LINE_LENGTH);
+   }
+
+   @Benchmark
+   public void statementToWriter() throws IOException
+   {
+      writer.write(statement, Writer.nullWriter());
+   }
+
+   @Benchmark
+   public void statementParallelToWriter() throws IOException
+   {
+      writer.writeParallel(statement, Writer.nullWriter());
+   }
+
+   @Benchmark
+   public String statementToString()
+   {
+      return writer.write(statement);
+   }
+
+   private static String padRight(String str, int length)
+   {
+      str = str == null ? "" : str;
+      if (str.length() >= length)
+      {
+         return str.substring(0, length);
+      }
+      return String.format("%-" + length + "s", str);
+   }
+
+   private static String formatAmount(BigDecimal amount, int length)
+   {
+      long thousandths = amount.multiply(new BigDecimal("1000")).setScale(0, RoundingMode.HALF_UP).longValue();
+      String str = String.valueOf(thousandths);
+      StringBuilder sb = new StringBuilder();
+      for (int i = str.length(); i < length; i++)
+      {
+         sb.append('0');
+      }
+      return sb.append(str).toString();
+   }
+
+   private static String formatDate(LocalDate date)
+   {
+      return date == null ? "000000" : date.format(DATE_FORMAT);
+   }
+}
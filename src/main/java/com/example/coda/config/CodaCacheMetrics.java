@@ -0,0 +1,58 @@
+package com.example.coda.config;
+
+import com.example.coda.service.CodaCacheStats;
+import com.example.coda.service.CodaParseCache;
+import com.example.coda.service.CodaStatementCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+import java.util.function.Supplier;
+
+/**
+ * Publishes hits, misses, evictions and size of the CODA caches, tagged {@code cache=statements}
+ * or {@code cache=parse}, e.g. {@code /actuator/metrics/coda.cache.gets?tag=cache:parse&tag=result:hit}
+ */
+@Component
+public class CodaCacheMetrics implements MeterBinder
+{
+   private final CodaStatementCache statementCache;
+   private final CodaParseCache parseCache;
+
+   public CodaCacheMetrics(CodaStatementCache statementCache, CodaParseCache parseCache)
+   {
+      this.statementCache = statementCache;
+      this.parseCache = parseCache;
+   }
+
+   @Override
+   public void bindTo(MeterRegistry registry)
+   {
+      bind(registry, "statements", statementCache::stats);
+      bind(registry, "parse", parseCache::stats);
+   }
+
+   private static void bind(MeterRegistry registry, String cache, Supplier<CodaCacheStats> stats)
+   {
+      FunctionCounter.builder("coda.cache.gets", stats, s -> s.get().hits())
+            .tags("cache", cache, "result", "hit")
+            .description("Cache lookups that found a value")
+            .register(registry);
+      FunctionCounter.builder("coda.cache.gets", stats, s -> s.get().misses())
+            .tags("cache", cache, "result", "miss")
+            .description("Cache lookups that found none")
+            .register(registry);
+      FunctionCounter.builder("coda.cache.evictions", stats, s -> s.get().evictions())
+            .tag("cache", cache)
+            .description("Entries evicted to stay under the size limit")
+            .register(registry);
+      Gauge.builder("coda.cache.entries", stats, s -> s.get().entries())
+            .tag("cache", cache)
+            .register(registry);
+      Gauge.builder("coda.cache.size", stats, s -> s.get().size())
+            .tag("cache", cache)
+            .baseUnit("bytes")
+            .register(registry);
+   }
+}
@@ -0,0 +1,289 @@
+package com.example.coda.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.server.PayloadTooLargeException;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Inflates request bodies sent with {@code Content-Encoding: gzip} while they are read, so that
+ * controllers see the CODA or JSON content and parse it as a stream without inflating it first.
+ * The request then has no {@code Content-Encoding} and no {@code Content-Length}. Inflating past
+ * {@code coda.requests.max-inflated-size} is answered with 413.
+ * <p>
+ * Multipart requests are left alone: the container reads their parts itself. Gzipped files are
+ * uploaded as gzipped parts instead, recognized by their content.
+ */
+@Component
+public class GzipRequestFilter extends OncePerRequestFilter
+{
+   private static final int BUFFER_SIZE = 64 * 1024;
+
+   private final long maxInflatedBytes;
+
+   public GzipRequestFilter(@Value("${coda.requests.max-inflated-size:1GB}") DataSize maxInflatedSize)
+   {
+      this.maxInflatedBytes = maxInflatedSize.toBytes();
+   }
+
+   @Override
+   protected boolean shouldNotFilter(HttpServletRequest request)
+   {
+      String encoding = request.getHeader(HttpHeaders.CONTENT_ENCODING);
+      if (encoding == null)
+      {
+         return true;
+      }
+      encoding = encoding.trim();
+      if (!encoding.equalsIgnoreCase("gzip") && !encoding.equalsIgnoreCase("x-gzip"))
+      {
+         return true;
+      }
+      String contentType = request.getContentType();
+      return contentType != null && contentType.toLowerCase().startsWith(MediaType.MULTIPART_FORM_DATA_VALUE);
+   }
+
+   @Override
+   protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+         throws ServletException, IOException
+   {
+      chain.doFilter(new InflatingRequest(request, maxInflatedBytes), response);
+   }
+
+   private static final class InflatingRequest extends HttpServletRequestWrapper
+   {
+      private final long maxBytes;
+      private ServletInputStream body;
+
+      private InflatingRequest(HttpServletRequest request, long maxBytes)
+      {
+         super(request);
+         this.maxBytes = maxBytes;
+      }
+
+      @Override
+      public ServletInputStream getInputStream() throws IOException
+      {
+         if (body == null)
+         {
+            body = new InflatingInputStream(super.getInputStream(), maxBytes);
+         }
+         return body;
+      }
+
+      @Override
+      public BufferedReader getReader() throws IOException
+      {
+         String encoding = getCharacterEncoding();
+         Charset charset = encoding == null ? StandardCharsets.ISO_8859_1 : Charset.forName(encoding);
+         return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+      }
+
+      @Override
+      public int getContentLength()
+      {
+         return -1;
+      }
+
+      @Override
+      public long getContentLengthLong()
+      {
+         return -1;
+      }
+
+      @Override
+      public String getHeader(String name)
+      {
+         return hidden(name) ? null : super.getHeader(name);
+      }
+
+      @Override
+      public Enumeration<String> getHeaders(String name)
+      {
+         return hidden(name) ? Collections.emptyEnumeration() : super.getHeaders(name);
+      }
+
+      @Override
+      public Enumeration<String> getHeaderNames()
+      {
+         return Collections.enumeration(Collections.list(super.getHeaderNames()).stream()
+               .filter(name -> !hidden(name))
+               .toList());
+      }
+
+      @Override
+      public int getIntHeader(String name)
+      {
+         return hidden(name) ? -1 : super.getIntHeader(name);
+      }
+
+      private static boolean hidden(String name)
+      {
+         return HttpHeaders.CONTENT_ENCODING.equalsIgnoreCase(name)
+               || HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name);
+      }
+   }
+
+   /**
+    * Inflated as it is read when read blocking, as by the controllers. A reader that sets a
+    * {@link ReadListener} instead is told about data once the whole compressed body has arrived,
+    * since the inflater cannot tell beforehand whether a read would block.
+    */
+   private static final class InflatingInputStream extends ServletInputStream
+   {
+      private final ServletInputStream compressed;
+      private final long maxBytes;
+      private volatile InputStream in;
+      private volatile boolean listening;
+      private volatile boolean finished;
+      private long inflated;
+
+      private InflatingInputStream(ServletInputStream compressed, long maxBytes)
+      {
+         this.compressed = compressed;
+         this.maxBytes = maxBytes;
+      }
+
+      @Override
+      public int read() throws IOException
+      {
+         int b = inflating().read();
+         count(b < 0 ? -1 : 1);
+         return b;
+      }
+
+      @Override
+      public int read(byte[] bytes, int offset, int length) throws IOException
+      {
+         int read = inflating().read(bytes, offset, length);
+         count(read);
+         return read;
+      }
+
+      @Override
+      public boolean isFinished()
+      {
+         return finished;
+      }
+
+      @Override
+      public boolean isReady()
+      {
+         return !listening || in != null;
+      }
+
+      @Override
+      public void setReadListener(ReadListener listener)
+      {
+         if (in != null)
+         {
+            throw new IllegalStateException("The request body is already being read");
+         }
+         listening = true;
+         compressed.setReadListener(new SpoolingListener(listener));
+      }
+
+      @Override
+      public void close() throws IOException
+      {
+         if (in != null)
+         {
+            in.close();
+         }
+         compressed.close();
+      }
+
+      private InputStream inflating() throws IOException
+      {
+         if (in == null)
+         {
+            in = new GZIPInputStream(compressed, BUFFER_SIZE);
+         }
+         return in;
+      }
+
+      private void count(int read)
+      {
+         if (read < 0)
+         {
+            finished = true;
+            return;
+         }
+         inflated += read;
+         if (inflated > maxBytes)
+         {
+            throw new PayloadTooLargeException(
+                  new IOException("Inflated request body is larger than " + maxBytes + " bytes"));
+         }
+      }
+
+      /**
+       * Gathers the compressed body as the container makes it available, then hands it to the
+       * reader's listener to be inflated from memory
+       */
+      private final class SpoolingListener implements ReadListener
+      {
+         private final ReadListener listener;
+         private final ByteArrayOutputStream spool = new ByteArrayOutputStream();
+         private final byte[] buffer = new byte[BUFFER_SIZE];
+
+         private SpoolingListener(ReadListener listener)
+         {
+            this.listener = listener;
+         }
+
+         @Override
+         public void onDataAvailable() throws IOException
+         {
+            int read;
+            while (compressed.isReady() && (read = compressed.read(buffer)) >= 0)
+            {
+               spool.write(buffer, 0, read);
+               if (spool.size() > maxBytes)
+               {
+                  throw new PayloadTooLargeException(
+                        new IOException("Request body is larger than " + maxBytes + " bytes"));
+               }
+            }
+         }
+
+         @Override
+         public void onAllDataRead() throws IOException
+         {
+            in = new GZIPInputStream(new ByteArrayInputStream(spool.toByteArray()), BUFFER_SIZE);
+            listener.onDataAvailable();
+            if (finished)
+            {
+               listener.onAllDataRead();
+            }
+         }
+
+         @Override
+         public void onError(Throwable t)
+         {
+            listener.onError(t);
+         }
+      }
+   }
+}
@@ -3,114 +3,356 @@ package com.example.coda.controller;
 import com.example.coda.model.CodaBankTransaction;
 import com.example.coda.model.CodaRequest;
 import com.example.coda.model.TransactionType;
+import com.example.coda.service.CodaBatchGenerator;
 import com.example.coda.service.CodaGenerator;
+import com.example.coda.service.CodaStatementCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
+import jakarta.validation.Validator;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.stream.Collectors;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/api/coda")
 public class CodaController
 {
+   // CODA files are Latin-1; the body is sent as the bytes encoded by the writer
+   static final MediaType CODA_TEXT = new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.ISO_8859_1);
+
+   static final MediaType ZIP = MediaType.parseMediaType("application/zip");
+
    private final CodaGenerator generator;
+   private final CodaBatchGenerator batchGenerator;
+   private final CodaStatementCache statementCache;
+   private final ObjectMapper objectMapper;
+   private final Validator validator;
+   private final long maxRequestBytes;
 
-   public CodaController(CodaGenerator generator)
+   public CodaController(CodaGenerator generator, CodaBatchGenerator batchGenerator, CodaStatementCache statementCache,
+         ObjectMapper objectMapper, Validator validator,
+         @Value("${coda.requests.max-size:256MB}") DataSize maxRequestSize)
    {
       this.generator = generator;
+      this.batchGenerator = batchGenerator;
+      this.statementCache = statementCache;
+      this.objectMapper = objectMapper;
+      this.validator = validator;
+      this.maxRequestBytes = maxRequestSize.toBytes();
    }
 
    @GetMapping(value = "/generate", produces = MediaType.TEXT_PLAIN_VALUE)
-   public ResponseEntity<String> getCoda(
+   public ResponseEntity<StreamingResponseBody> getCoda(
          @RequestParam(defaultValue = "BELFIUS") String bankName,
          @RequestParam(defaultValue = "BE68 5390 0754 7034") String account,
          @RequestParam(defaultValue = "EUR") String currency,
          @RequestParam(required = false) String date,
          @RequestParam(defaultValue = "1200.00") String opening,
-         @RequestParam(name = "tx", required = false) List<String> tx)
+         @RequestParam(name = "tx", required = false) List<String> tx,
+         @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+         @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding)
    {
-      return buildResponse(bankName, account, currency, date, opening, tx, false, null);
+      return buildResponse(bankName, account, currency, date, opening, tx, false, null, ifNoneMatch,
+            GzipEncoding.accepted(acceptEncoding));
    }
 
    @GetMapping(value = "/download", produces = MediaType.TEXT_PLAIN_VALUE)
-   public ResponseEntity<String> downloadCoda(
+   public ResponseEntity<StreamingResponseBody> downloadCoda(
          @RequestParam(defaultValue = "BELFIUS") String bankName,
          @RequestParam(defaultValue = "BE68 5390 0754 7034") String account,
          @RequestParam(defaultValue = "EUR") String currency,
          @RequestParam(required = false) String date,
          @RequestParam(defaultValue = "1200.00") String opening,
          @RequestParam(required = false) String filename,
-         @RequestParam(name = "tx", required = false) List<String> tx)
+         @RequestParam(name = "tx", required = false) List<String> tx,
+         @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+         @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding)
    {
-      return buildResponse(bankName, account, currency, date, opening, tx, true, filename);
+      return buildResponse(bankName, account, currency, date, opening, tx, true, filename, ifNoneMatch,
+            GzipEncoding.accepted(acceptEncoding));
    }
 
-   @PostMapping(value = "/json", consumes = MediaType.APPLICATION_JSON_VALUE,
+   /**
+    * Generate from a {@link CodaRequest} in JSON, or as NDJSON: the request without transactions on
+    * the first line and one transaction per line after it. Transactions are read one at a time, see
+    * {@link CodaRequestStream}; bodies above {@code coda.requests.max-size} are answered with 413.
+    */
+   @PostMapping(value = "/json", consumes = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE },
          produces = MediaType.TEXT_PLAIN_VALUE)
-   public ResponseEntity<String> postCoda(@Valid @RequestBody CodaRequest req)
+   public ResponseEntity<StreamingResponseBody> postCoda(InputStream body,
+         @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+         @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+         @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding)
+         throws IOException
    {
-      return buildResponse(req, false, null);
+      return buildResponse(CodaRequestStream.read(body, isNdjson(contentType), maxRequestBytes, objectMapper, validator), false, null,
+            ifNoneMatch, GzipEncoding.accepted(acceptEncoding));
    }
 
-   @PostMapping(value = "/json/download", consumes = MediaType.APPLICATION_JSON_VALUE,
+   @PostMapping(value = "/json/download",
+         consumes = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE },
          produces = MediaType.TEXT_PLAIN_VALUE)
-   public ResponseEntity<String> postCodaDownload(@Valid @RequestBody CodaRequest req,
-         @RequestParam(required = false) String filename)
+   public ResponseEntity<StreamingResponseBody> postCodaDownload(InputStream body,
+         @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+         @RequestParam(required = false) String filename,
+         @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+         @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding)
+         throws IOException
+   {
+      return buildResponse(CodaRequestStream.read(body, isNdjson(contentType), maxRequestBytes, objectMapper, validator), true,
+            filename, ifNoneMatch, GzipEncoding.accepted(acceptEncoding));
+   }
+
+   /**
+    * Statements of many accounts in one call, generated concurrently and streamed as a zip with one
+    * {@code .coda} entry per request, or with {@code format=coda} as one multi-statement CODA file,
+    * gzipped for clients that accept it
+    */
+   @PostMapping(value = "/json/batch", consumes = MediaType.APPLICATION_JSON_VALUE,
+         produces = { "application/zip", MediaType.TEXT_PLAIN_VALUE })
+   public ResponseEntity<StreamingResponseBody> postCodaBatch(@RequestBody List<@Valid CodaRequest> reqs,
+         @RequestParam(defaultValue = "zip") String format,
+         @RequestParam(required = false) String filename,
+         @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding)
    {
-      return buildResponse(req, true, filename);
+      if (reqs == null || reqs.isEmpty())
+      {
+         throw new IllegalArgumentException("At least one statement request is required.");
+      }
+      CodaBatchGenerator.Format batchFormat = parseBatchFormat(format);
+      List<CodaBatchGenerator.Statement> statements = reqs.stream()
+            .map(req -> new CodaBatchGenerator.Statement(req.bankName(), req.account(), req.currency(), req.date(),
+                  req.opening(), toTransactions(req)))
+            .toList();
+      // Totalled before answering like a single statement; the transactions are in memory already
+      statements.forEach(statement -> generator.plan(statement.bankName(), statement.accountNumber(),
+            statement.currency(), statement.statementDate(), statement.openingBalance(),
+            statement.transactions()::stream));
+
+      HttpHeaders headers = new HttpHeaders();
+      if (batchFormat == CodaBatchGenerator.Format.ZIP)
+      {
+         headers.setContentType(ZIP);
+         headers.setContentDisposition(ContentDisposition.attachment()
+               .filename(resolveFilename(filename, "statements.zip", ".zip")).build());
+      }
+      else
+      {
+         headers.setContentType(CODA_TEXT);
+         headers.setContentDisposition(ContentDisposition.attachment()
+               .filename(resolveFilename(filename)).build());
+      }
+      StreamingResponseBody body = out -> batchGenerator.write(statements, batchFormat, out);
+      if (batchFormat == CodaBatchGenerator.Format.CODA)
+      {
+         // A zip is compressed already
+         headers.setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+         if (GzipEncoding.accepted(acceptEncoding))
+         {
+            headers.set(HttpHeaders.CONTENT_ENCODING, GzipEncoding.GZIP);
+            body = GzipEncoding.compress(body);
+         }
+      }
+      return ResponseEntity.ok().headers(headers).body(body);
    }
 
-   private ResponseEntity<String> buildResponse(CodaRequest req, boolean attachment, String filename)
+   private ResponseEntity<StreamingResponseBody> buildResponse(CodaRequestStream request, boolean attachment,
+         String filename, String ifNoneMatch, boolean gzip) throws IOException
    {
-      List<CodaBankTransaction> txs = req.transactions().stream()
-            .map(tx -> CodaBankTransaction.builder()
-                  .bookingDate(tx.bookingDate())
-                  .type(tx.type())
-                  .amount(tx.amount())
-                  .counterpartyAccount(tx.counterpartyAccount())
-                  .counterpartyName(tx.counterpartyName())
-                  .description(tx.description())
-                  .reference(tx.reference())
-                  .build())
+      CodaRequest req = request.header();
+      // Transactions were hashed while the body was read, the spooled copy is only read to generate
+      CodaStatementCache.Key key = statementCache.key(req.bankName(), req.account(), req.currency(), req.date(),
+            req.opening(), request.transactionDigest());
+      ResponseEntity<StreamingResponseBody> cached = fromCache(key, ifNoneMatch, false, gzip, attachment, filename);
+      if (cached != null)
+      {
+         request.close();
+         return cached;
+      }
+      // Totalled before answering, so that an amount too wide for CODA is a 400 and not a cut response
+      CodaGenerator.Plan plan;
+      try
+      {
+         plan = generator.plan(req.bankName(), req.account(), req.currency(), req.date(), req.opening(),
+               request::transactions);
+      }
+      catch (RuntimeException e)
+      {
+         request.close();
+         throw e;
+      }
+      // The spooled request is deleted once the statement is written, or when the request ends
+      // without the body being written at all
+      closeOnCompletion(request);
+      return respond(key, -1, out -> {
+         try (request)
+         {
+            statementCache.write(key, out, target -> generator.generate(plan, request::transactions, target));
+         }
+      }, gzip, attachment, filename);
+   }
+
+   /**
+    * Close {@code resource} when the asynchronous response of the current request completes for any
+    * reason, e.g. a client gone before the streamed body ran or a rejected task; no-op outside a request
+    */
+   private static void closeOnCompletion(Closeable resource)
+   {
+      if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)
+      {
+         WebAsyncUtils.getAsyncManager(attributes.getRequest()).registerCallableInterceptor(resource,
+               new CallableProcessingInterceptor()
+               {
+                  @Override
+                  public <T> void afterCompletion(NativeWebRequest request, Callable<T> task) throws IOException
+                  {
+                     resource.close();
+                  }
+               });
+      }
+   }
+
+   private List<CodaBankTransaction> toTransactions(CodaRequest req)
+   {
+      return req.transactions().stream()
+            .map(CodaController::toBankTransaction)
             .collect(Collectors.toList());
+   }
 
-      return respond(req.bankName(), req.account(), req.currency(), req.date(), req.opening(), txs,
-            attachment, filename);
+   static CodaBankTransaction toBankTransaction(CodaRequest.Transaction tx)
+   {
+      return CodaBankTransaction.builder()
+            .bookingDate(tx.bookingDate())
+            .type(tx.type())
+            .amount(tx.amount())
+            .counterpartyAccount(tx.counterpartyAccount())
+            .counterpartyName(tx.counterpartyName())
+            .description(tx.description())
+            .reference(tx.reference())
+            .build();
    }
 
-   private ResponseEntity<String> buildResponse(String bankName, String account, String currency, String date,
-         String opening, List<String> rawTx, boolean attachment, String filename)
+   private ResponseEntity<StreamingResponseBody> buildResponse(String bankName, String account, String currency, String date,
+         String opening, List<String> rawTx, boolean attachment, String filename, String ifNoneMatch, boolean gzip)
    {
+      // The resolved date is part of the key: without one, today's statement is not yesterday's
       LocalDate statementDate = parseDate(date);
       BigDecimal openingBalance = parseAmount(opening);
       List<CodaBankTransaction> txs = parseInlineTransactions(rawTx);
-      return respond(bankName, account, currency, statementDate, openingBalance, txs, attachment, filename);
+      CodaStatementCache.Key key = statementCache.key(bankName, account, currency, statementDate, openingBalance,
+            txs.stream());
+      ResponseEntity<StreamingResponseBody> cached = fromCache(key, ifNoneMatch, true, gzip, attachment, filename);
+      if (cached != null)
+      {
+         return cached;
+      }
+      CodaGenerator.Plan plan = generator.plan(bankName, account, currency, statementDate, openingBalance, txs::stream);
+      return respond(key, -1, out -> statementCache.write(key, out, target -> generator.generate(plan, txs, target)),
+            gzip, attachment, filename);
+   }
+
+   /**
+    * When the client already has the statement in the coding it asks for: 304 for a GET, 412 for a
+    * POST (RFC 9110, 13.1.2). Otherwise its cached bytes when there are some, {@code null} when it
+    * has to be generated.
+    */
+   private ResponseEntity<StreamingResponseBody> fromCache(CodaStatementCache.Key key, String ifNoneMatch,
+         boolean get, boolean gzip, boolean attachment, String filename)
+   {
+      String etag = gzip ? key.gzipEtag() : key.etag();
+      if (matchesEtag(ifNoneMatch, etag))
+      {
+         return ResponseEntity.status(get ? HttpStatus.NOT_MODIFIED : HttpStatus.PRECONDITION_FAILED).eTag(etag)
+               .varyBy(HttpHeaders.ACCEPT_ENCODING).build();
+      }
+      byte[] cached = statementCache.get(key);
+      if (cached == null)
+      {
+         return null;
+      }
+      return respond(key, cached.length, out -> out.write(cached), gzip, attachment, filename);
    }
 
-   private ResponseEntity<String> respond(String bankName, String account, String currency, LocalDate statementDate,
-         BigDecimal openingBalance, List<CodaBankTransaction> txs, boolean attachment, String filename)
+   /**
+    * Generated lines go out through one pooled buffer as they are generated: no content length,
+    * chunked transfer, and each full buffer is written through to the client. With {@code gzip} the
+    * lines are compressed on their way out and the response has its own entity tag.
+    */
+   private ResponseEntity<StreamingResponseBody> respond(CodaStatementCache.Key key, long contentLength,
+         StreamingResponseBody body, boolean gzip, boolean attachment, String filename)
    {
-      String body = generator.generate(bankName, account, currency, statementDate, openingBalance, txs);
       HttpHeaders headers = new HttpHeaders();
-      headers.setContentType(MediaType.TEXT_PLAIN);
+      headers.setContentType(CODA_TEXT);
       ContentDisposition.Builder disposition = attachment ? ContentDisposition.attachment() : ContentDisposition.inline();
       headers.setContentDisposition(disposition.filename(resolveFilename(filename)).build());
+      headers.setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+      if (gzip)
+      {
+         headers.setETag(key.gzipEtag());
+         headers.set(HttpHeaders.CONTENT_ENCODING, GzipEncoding.GZIP);
+         return ResponseEntity.ok().headers(headers).body(GzipEncoding.compress(body));
+      }
+      headers.setETag(key.etag());
+      if (contentLength >= 0)
+      {
+         headers.setContentLength(contentLength);
+      }
       return ResponseEntity.ok().headers(headers).body(body);
    }
 
+   /**
+    * Weak comparison of {@code If-None-Match}: {@code W/} prefixes are ignored, and {@code *} matches
+    * since every request has a statement
+    */
+   private static boolean matchesEtag(String ifNoneMatch, String etag)
+   {
+      if (ifNoneMatch == null)
+      {
+         return false;
+      }
+      for (String tag : ifNoneMatch.split(","))
+      {
+         String candidate = tag.trim();
+         if (candidate.startsWith("W/"))
+         {
+            candidate = candidate.substring(2);
+         }
+         if (candidate.equals("*") || candidate.equals(etag))
+         {
+            return true;
+         }
+      }
+      return false;
+   }
+
    private LocalDate parseDate(String date)
    {
       if (date == null || date.isBlank())
@@ -224,13 +466,35 @@ public class CodaController
       return txs;
    }
 
+   private boolean isNdjson(String contentType)
+   {
+      return MediaType.APPLICATION_NDJSON.isCompatibleWith(MediaType.parseMediaType(contentType));
+   }
+
+   private CodaBatchGenerator.Format parseBatchFormat(String format)
+   {
+      try
+      {
+         return CodaBatchGenerator.Format.valueOf(format.trim().toUpperCase());
+      }
+      catch (IllegalArgumentException ex)
+      {
+         throw new IllegalArgumentException("Invalid format '" + format + "'. Use zip or coda.");
+      }
+   }
+
    private String resolveFilename(String requested)
    {
-      String base = (requested == null || requested.isBlank()) ? "statement.coda" : requested.trim();
+      return resolveFilename(requested, "statement.coda", ".coda");
+   }
+
+   private String resolveFilename(String requested, String defaultName, String extension)
+   {
+      String base = (requested == null || requested.isBlank()) ? defaultName : requested.trim();
       base = base.replace('\\', '-').replace('/', '-');
       if (!base.contains("."))
       {
-         base += ".coda";
+         base += extension;
       }
       return base;
    }
@@ -0,0 +1,106 @@
+package com.example.coda.controller;
+
+import com.example.coda.service.CodaParseJob;
+import com.example.coda.service.CodaParseJobService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * REST API for parsing CODA files in the background
+ * <p>
+ * A client uploads its files, gets a job id back at once and polls the job, optionally waiting
+ * up to {@value #MAX_WAIT_SECONDS} seconds for it to finish, then downloads the JSON of each file.
+ */
+@RestController
+@RequestMapping("/api/coda/parser/jobs")
+@Tag(name = "CODA Parser", description = "Parse and convert CODA bank statements")
+public class CodaParseJobController
+{
+   static final long MAX_WAIT_SECONDS = 60;
+
+   private final CodaParseJobService jobs;
+
+   public CodaParseJobController(CodaParseJobService jobs)
+   {
+      this.jobs = jobs;
+   }
+
+   @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+   @Operation(summary = "Submit CODA files for parsing", description = "Queues the uploaded files and returns "
+         + "the job at once; 503 when the queue is full")
+   public ResponseEntity<CodaParseJob.Status> submit(@RequestParam("files") List<MultipartFile> files) throws IOException
+   {
+      List<CodaParseJobService.Upload> uploads = files.stream()
+            .map(file -> new CodaParseJobService.Upload(file.getOriginalFilename(), file.getSize(), file::transferTo))
+            .toList();
+      CodaParseJob job = jobs.submit(uploads);
+      return ResponseEntity.accepted()
+            .location(ServletUriComponentsBuilder.fromCurrentRequest().path("/{id}").buildAndExpand(job.id()).toUri())
+            .body(job.status());
+   }
+
+   @GetMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+   @Operation(summary = "Get a parse job", description = "Returns the state and progress of the job; with wait, "
+         + "answers as soon as the job finishes or after that many seconds")
+   public CompletableFuture<ResponseEntity<CodaParseJob.Status>> status(@PathVariable String id,
+         @RequestParam(defaultValue = "0") long wait)
+   {
+      CodaParseJob job = jobs.get(id);
+      if (job == null)
+      {
+         return CompletableFuture.completedFuture(ResponseEntity.notFound().build());
+      }
+      if (wait <= 0)
+      {
+         return CompletableFuture.completedFuture(ResponseEntity.ok(job.status()));
+      }
+      // The request thread is released while waiting
+      return job.completion()
+            .completeOnTimeout(null, Math.min(wait, MAX_WAIT_SECONDS), TimeUnit.SECONDS)
+            .thenApply(finished -> ResponseEntity.ok(job.status()));
+   }
+
+   @GetMapping(value = "/{id}/files/{index}", produces = MediaType.APPLICATION_JSON_VALUE)
+   @Operation(summary = "Get a parsed file", description = "Returns the JSON of the file at index (from 0) "
+         + "of a completed job; 409 while the job is not completed")
+   public ResponseEntity<Resource> result(@PathVariable String id, @PathVariable int index)
+   {
+      CodaParseJob job = jobs.get(id);
+      if (job == null || index < 0 || index >= job.status().files().size())
+      {
+         return ResponseEntity.notFound().build();
+      }
+      Path result = job.result(index);
+      if (result == null)
+      {
+         return ResponseEntity.status(HttpStatus.CONFLICT).build();
+      }
+      return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(new FileSystemResource(result));
+   }
+
+   @DeleteMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+   @Operation(summary = "Cancel a parse job", description = "A queued job never starts, a running one stops; "
+         + "the job stays visible as CANCELLED until it expires")
+   public ResponseEntity<CodaParseJob.Status> cancel(@PathVariable String id)
+   {
+      CodaParseJob job = jobs.cancel(id);
+      if (job == null)
+      {
+         return ResponseEntity.notFound().build();
+      }
+      return ResponseEntity.ok(job.status());
+   }
+}
@@ -1,15 +1,33 @@
 package com.example.coda.controller;
 
 import com.example.coda.model.CodaStatement;
+import com.example.coda.service.CodaCharsetDetector;
+import com.example.coda.service.CodaCompression;
+import com.example.coda.service.CodaJsonTranscoder;
+import com.example.coda.service.CodaParseCache;
 import com.example.coda.service.CodaParser;
+import com.example.coda.service.CodaRecordReader;
 import com.example.coda.service.CodaWriter;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.SequenceInputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 
 /**
  * REST API for parsing and writing CODA files
@@ -21,65 +39,184 @@ public class CodaParserController
 {
    private final CodaParser parser;
    private final CodaWriter writer;
+   private final CodaJsonTranscoder transcoder;
+   private final CodaParseCache parseCache;
+   private final long maxInflatedBytes;
 
-   public CodaParserController(CodaParser parser, CodaWriter writer)
+   public CodaParserController(CodaParser parser, CodaWriter writer, CodaJsonTranscoder transcoder,
+         CodaParseCache parseCache, @Value("${coda.requests.max-inflated-size:1GB}") DataSize maxInflatedSize)
    {
       this.parser = parser;
       this.writer = writer;
+      this.transcoder = transcoder;
+      this.parseCache = parseCache;
+      this.maxInflatedBytes = maxInflatedSize.toBytes();
    }
 
-   @PostMapping(value = "/parse", consumes = MediaType.TEXT_PLAIN_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
-   @Operation(summary = "Parse CODA text to JSON", description = "Converts CODA format text to structured JSON")
-   public ResponseEntity<CodaStatement> parseCoda(@RequestBody String codaContent)
+   @PostMapping(value = "/parse", consumes = MediaType.TEXT_PLAIN_VALUE,
+         produces = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE })
+   @Operation(summary = "Parse CODA text to JSON", description = "Converts CODA format text to structured JSON, "
+         + "or to one transaction per line with Accept: application/x-ndjson")
+   public ResponseEntity<StreamingResponseBody> parseCoda(InputStream codaContent,
+         @RequestHeader(value = HttpHeaders.CONTENT_TYPE, required = false) String contentType,
+         @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) throws IOException
    {
-      try
+      Charset charset = charset(contentType);
+      byte[] content = codaContent.readNBytes(parseCache.maxInputBytes() + 1);
+      if (content.length > parseCache.maxInputBytes())
       {
-         CodaStatement statement = parser.parse(codaContent);
-         return ResponseEntity.ok(statement);
-      }
-      catch (IOException e)
-      {
-         throw new RuntimeException("Failed to parse CODA content: " + e.getMessage(), e);
+         // Too large to be hashed before answering: streamed without the cache
+         InputStream whole = new SequenceInputStream(new ByteArrayInputStream(content), codaContent);
+         return transcode(() -> new CodaRecordReader(whole, charset), accept);
       }
+      return transcode(content, charset.name(),
+            () -> new CodaRecordReader(new ByteArrayInputStream(content), charset), accept);
    }
 
-   @PostMapping(value = "/parse/file", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+   @PostMapping(value = "/parse/file", consumes = MediaType.MULTIPART_FORM_DATA_VALUE,
+         produces = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE })
    @Operation(summary = "Parse CODA file to JSON", description = "Upload a CODA file and get structured JSON")
-   public ResponseEntity<CodaStatement> parseCodaFile(@RequestParam("file") MultipartFile file)
+   public ResponseEntity<StreamingResponseBody> parseCodaFile(@RequestParam("file") MultipartFile file,
+         @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) throws IOException
    {
-      try
+      // Uploads above spring.servlet.multipart.file-size-threshold are on disk; either way the part is
+      // read as a stream, inflated if it is gzipped, in the charset it declares or the one detected
+      // from its first bytes, up to coda.requests.max-inflated-size once inflated
+      Charset declared = file.getContentType() == null ? null
+            : MediaType.parseMediaType(file.getContentType()).getCharset();
+      if (file.getSize() > parseCache.maxInputBytes())
       {
-         String content = new String(file.getBytes());
-         CodaStatement statement = parser.parse(content);
-         return ResponseEntity.ok(statement);
-      }
-      catch (IOException e)
-      {
-         throw new RuntimeException("Failed to parse CODA file: " + e.getMessage(), e);
+         return transcode(() -> new CodaRecordReader(CodaCharsetDetector.open(
+               CodaCompression.decode(file.getInputStream(), maxInflatedBytes), declared)), accept);
       }
+      byte[] content = file.getBytes();
+      return transcode(content, "detected/" + (declared == null ? "" : declared.name()),
+            () -> new CodaRecordReader(CodaCharsetDetector.open(
+                  CodaCompression.decode(new ByteArrayInputStream(content), maxInflatedBytes), declared)), accept);
    }
 
    @PostMapping(value = "/write", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.TEXT_PLAIN_VALUE)
    @Operation(summary = "Write JSON to CODA format", description = "Converts structured JSON to CODA format text")
-   public ResponseEntity<String> writeCoda(@RequestBody CodaStatement statement)
+   public ResponseEntity<StreamingResponseBody> writeCoda(@RequestBody CodaStatement statement)
    {
-      String codaContent = writer.write(statement);
-      return ResponseEntity.ok(codaContent);
+      // Lines go to the response as they are encoded, through one pooled buffer
+      return ResponseEntity.ok().contentType(CodaController.CODA_TEXT).body(out -> writer.write(statement, out));
    }
 
    @PostMapping(value = "/convert", consumes = MediaType.TEXT_PLAIN_VALUE, produces = MediaType.TEXT_PLAIN_VALUE)
    @Operation(summary = "Parse and rewrite CODA", description = "Parse CODA text and write it back (validation/normalization)")
-   public ResponseEntity<String> convertCoda(@RequestBody String codaContent)
+   public ResponseEntity<StreamingResponseBody> convertCoda(InputStream codaContent,
+         @RequestHeader(value = HttpHeaders.CONTENT_TYPE, required = false) String contentType) throws IOException
+   {
+      Charset charset = charset(contentType);
+      ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(CodaController.CODA_TEXT);
+      byte[] content = codaContent.readNBytes(parseCache.maxInputBytes() + 1);
+      if (content.length > parseCache.maxInputBytes())
+      {
+         // Too large to be hashed before answering: parsed from the stream and written without the cache
+         InputStream whole = new SequenceInputStream(new ByteArrayInputStream(content), codaContent);
+         CodaStatement statement = convert(new InputStreamReader(whole, charset));
+         return response.body(out -> writer.write(statement, out));
+      }
+      CodaParseCache.Key key = parseCache.key(content, charset.name(), CodaParseCache.Format.CODA);
+      byte[] cached = parseCache.get(key);
+      if (cached != null)
+      {
+         return response.contentLength(cached.length).body(out -> out.write(cached));
+      }
+      CodaStatement statement = convert(new InputStreamReader(new ByteArrayInputStream(content), charset));
+      return response.body(out -> parseCache.write(key, out, target -> writer.write(statement, target)));
+   }
+
+   /**
+    * Parsed before answering, so that invalid content is an error status and not a cut response
+    */
+   private CodaStatement convert(Reader codaContent)
    {
       try
       {
-         CodaStatement statement = parser.parse(codaContent);
-         String regenerated = writer.write(statement);
-         return ResponseEntity.ok(regenerated);
+         return parser.parse(codaContent);
       }
       catch (IOException e)
       {
          throw new RuntimeException("Failed to convert CODA content: " + e.getMessage(), e);
       }
    }
+
+   /**
+    * Records are read from the request and written to the response one at a time; content that
+    * fails to parse ends the response where it failed, with the JSON left open
+    */
+   private ResponseEntity<StreamingResponseBody> transcode(RecordSource source, String accept)
+   {
+      boolean ndjson = accepts(accept, MediaType.APPLICATION_NDJSON);
+      return ResponseEntity.ok()
+            .contentType(ndjson ? MediaType.APPLICATION_NDJSON : MediaType.APPLICATION_JSON)
+            .body(out -> transcode(source, ndjson, out));
+   }
+
+   /**
+    * A file seen before is answered from {@link CodaParseCache} without parsing it; otherwise it
+    * is transcoded before answering and its output kept. A file this small has an output small
+    * enough to be held, so invalid content is an error status and not a cut response.
+    *
+    * @param decoding how {@code source} decodes {@code content}, part of the cache key
+    */
+   private ResponseEntity<StreamingResponseBody> transcode(byte[] content, String decoding, RecordSource source,
+         String accept) throws IOException
+   {
+      boolean ndjson = accepts(accept, MediaType.APPLICATION_NDJSON);
+      CodaParseCache.Key key = parseCache.key(content, decoding,
+            ndjson ? CodaParseCache.Format.NDJSON : CodaParseCache.Format.JSON);
+      ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+            .contentType(ndjson ? MediaType.APPLICATION_NDJSON : MediaType.APPLICATION_JSON);
+      byte[] cached = parseCache.get(key);
+      if (cached != null)
+      {
+         return response.contentLength(cached.length).body(out -> out.write(cached));
+      }
+      ByteArrayOutputStream transcoded = new ByteArrayOutputStream();
+      parseCache.write(key, transcoded, target -> transcode(source, ndjson, target));
+      byte[] result = transcoded.toByteArray();
+      return response.contentLength(result.length).body(out -> out.write(result));
+   }
+
+   private void transcode(RecordSource source, boolean ndjson, OutputStream out) throws IOException
+   {
+      try (CodaRecordReader records = source.open())
+      {
+         if (ndjson)
+         {
+            transcoder.writeNdjson(records, out);
+         }
+         else
+         {
+            transcoder.writeJson(records, out);
+         }
+      }
+   }
+
+   /**
+    * Charset of a text body, ISO-8859-1 like the String converter when none is given
+    */
+   private static Charset charset(String contentType)
+   {
+      if (contentType == null || contentType.isBlank())
+      {
+         return StandardCharsets.ISO_8859_1;
+      }
+      Charset charset = MediaType.parseMediaType(contentType).getCharset();
+      return charset != null ? charset : StandardCharsets.ISO_8859_1;
+   }
+
+   private static boolean accepts(String accept, MediaType mediaType)
+   {
+      return accept != null && MediaType.parseMediaTypes(accept).stream().anyMatch(mediaType::equalsTypeAndSubtype);
+   }
+
+   @FunctionalInterface
+   private interface RecordSource
+   {
+      CodaRecordReader open() throws IOException;
+   }
 }
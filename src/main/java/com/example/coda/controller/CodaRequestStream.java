@@ -0,0 +1,360 @@
+package com.example.coda.controller;
+
+import com.example.coda.model.CodaBankTransaction;
+import com.example.coda.model.CodaRequest;
+import com.example.coda.service.CodaStatementCache;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.ConstraintViolationException;
+import jakarta.validation.Validator;
+import org.springframework.web.server.PayloadTooLargeException;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * {@link CodaRequest} body read incrementally, without binding its transactions into a list
+ * <p>
+ * The body is copied to a temporary file while it is parsed with a {@link JsonParser}: the header
+ * fields are bound as a {@code CodaRequest} and every transaction is bound, validated and added to
+ * the {@link #transactionDigest()} on its own, then dropped. {@link #transactions()} parses the
+ * file again each time it is called, so the generator's two passes read the transactions one by
+ * one from disk; memory does not depend on their number. Bodies larger than {@code maxBytes} are
+ * rejected while they are copied. {@link #close()} deletes the file.
+ * <p>
+ * Two layouts are read: a JSON {@code CodaRequest} object, and NDJSON where the first line is the
+ * request without {@code transactions} and each following line is one transaction.
+ */
+final class CodaRequestStream implements Closeable
+{
+   private static final String TRANSACTIONS = "transactions";
+
+   private final ObjectMapper mapper;
+   private final Path file;
+   private final boolean ndjson;
+   private final CodaRequest header;
+   private final CodaStatementCache.TransactionDigest transactionDigest;
+
+   private CodaRequestStream(ObjectMapper mapper, Path file, boolean ndjson, CodaRequest header,
+         CodaStatementCache.TransactionDigest transactionDigest)
+   {
+      this.mapper = mapper;
+      this.file = file;
+      this.ndjson = ndjson;
+      this.header = header;
+      this.transactionDigest = transactionDigest;
+   }
+
+   /**
+    * Read and validate a request body, keeping a copy to read the transactions from
+    *
+    * @throws IllegalArgumentException     if the body is not a request in the expected layout
+    * @throws ConstraintViolationException if the header or a transaction breaks a constraint of {@link CodaRequest}
+    * @throws PayloadTooLargeException     if the body is larger than {@code maxBytes}
+    */
+   static CodaRequestStream read(InputStream body, boolean ndjson, long maxBytes, ObjectMapper mapper,
+         Validator validator) throws IOException
+   {
+      Path file = Files.createTempFile("coda-request-", ndjson ? ".ndjson" : ".json");
+      try
+      {
+         CodaRequest header;
+         Reading reading = new Reading(mapper, validator, new CodaStatementCache.TransactionDigest());
+         try (OutputStream copy = Files.newOutputStream(file);
+              InputStream in = new CopyingInputStream(body, copy, maxBytes))
+         {
+            try (JsonParser parser = mapper.getFactory().createParser(in))
+            {
+               parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+               header = ndjson ? readNdjson(parser, reading) : readJson(parser, reading);
+            }
+            // Copy what the parser did not need, so that later reads see the same document
+            in.transferTo(OutputStream.nullOutputStream());
+         }
+         validate(validator, header, "Request");
+         return new CodaRequestStream(mapper, file, ndjson, header, reading.digest());
+      }
+      catch (JsonProcessingException e)
+      {
+         Files.deleteIfExists(file);
+         throw new IllegalArgumentException("Invalid JSON request: " + e.getOriginalMessage());
+      }
+      catch (IOException | RuntimeException e)
+      {
+         Files.deleteIfExists(file);
+         throw e;
+      }
+   }
+
+   /**
+    * The request fields, with an empty transaction list
+    */
+   CodaRequest header()
+   {
+      return header;
+   }
+
+   /**
+    * The transactions as hashed while the body was read, for the statement's cache key; used up by
+    * {@link CodaStatementCache#key}
+    */
+   CodaStatementCache.TransactionDigest transactionDigest()
+   {
+      return transactionDigest;
+   }
+
+   /**
+    * Open a new stream over the transactions of the body; it must be closed
+    */
+   Stream<CodaBankTransaction> transactions()
+   {
+      JsonParser parser;
+      try
+      {
+         parser = mapper.getFactory().createParser(file.toFile());
+         skipToTransactions(parser);
+      }
+      catch (IOException e)
+      {
+         throw new UncheckedIOException(e);
+      }
+      Iterator<CodaBankTransaction> iterator = new Iterator<>()
+      {
+         private JsonToken next;
+
+         @Override
+         public boolean hasNext()
+         {
+            try
+            {
+               if (next == null)
+               {
+                  next = parser.nextToken();
+               }
+               return next == JsonToken.START_OBJECT;
+            }
+            catch (IOException e)
+            {
+               throw new UncheckedIOException(e);
+            }
+         }
+
+         @Override
+         public CodaBankTransaction next()
+         {
+            if (!hasNext())
+            {
+               throw new NoSuchElementException();
+            }
+            next = null;
+            try
+            {
+               return CodaController.toBankTransaction(mapper.readValue(parser, CodaRequest.Transaction.class));
+            }
+            catch (IOException e)
+            {
+               throw new UncheckedIOException(e);
+            }
+         }
+      };
+      return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+            .onClose(() -> {
+               try
+               {
+                  parser.close();
+               }
+               catch (IOException e)
+               {
+                  throw new UncheckedIOException(e);
+               }
+            });
+   }
+
+   @Override
+   public void close() throws IOException
+   {
+      Files.deleteIfExists(file);
+   }
+
+   private static CodaRequest readJson(JsonParser parser, Reading reading) throws IOException
+   {
+      ObjectMapper mapper = reading.mapper();
+      if (parser.nextToken() != JsonToken.START_OBJECT)
+      {
+         throw new IllegalArgumentException("Request body must be a JSON object.");
+      }
+      ObjectNode header = mapper.createObjectNode();
+      header.putNull(TRANSACTIONS);
+      while (parser.nextToken() == JsonToken.FIELD_NAME)
+      {
+         String name = parser.currentName();
+         JsonToken value = parser.nextToken();
+         if (!TRANSACTIONS.equals(name))
+         {
+            header.set(name, treeReader(mapper).readTree(parser));
+         }
+         else if (value == JsonToken.START_ARRAY)
+         {
+            header.putArray(TRANSACTIONS);
+            int index = 1;
+            while (parser.nextToken() != JsonToken.END_ARRAY)
+            {
+               readTransaction(parser, reading, index++);
+            }
+         }
+         else if (value != JsonToken.VALUE_NULL)
+         {
+            throw new IllegalArgumentException("'transactions' must be an array.");
+         }
+      }
+      return mapper.treeToValue(header, CodaRequest.class);
+   }
+
+   private static CodaRequest readNdjson(JsonParser parser, Reading reading) throws IOException
+   {
+      ObjectMapper mapper = reading.mapper();
+      if (parser.nextToken() != JsonToken.START_OBJECT)
+      {
+         throw new IllegalArgumentException("First NDJSON line must be the request without transactions.");
+      }
+      JsonNode header = treeReader(mapper).readTree(parser);
+      if (header.has(TRANSACTIONS))
+      {
+         throw new IllegalArgumentException("First NDJSON line must not contain transactions, "
+               + "send one transaction per following line.");
+      }
+      ((ObjectNode) header).putArray(TRANSACTIONS);
+      int index = 1;
+      while (parser.nextToken() != null)
+      {
+         readTransaction(parser, reading, index++);
+      }
+      return mapper.treeToValue(header, CodaRequest.class);
+   }
+
+   /**
+    * Reads header values as trees without going through {@code double}, e.g. the opening balance
+    */
+   private static ObjectReader treeReader(ObjectMapper mapper)
+   {
+      return mapper.reader().with(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+   }
+
+   private static void readTransaction(JsonParser parser, Reading reading, int index) throws IOException
+   {
+      if (parser.currentToken() != JsonToken.START_OBJECT)
+      {
+         throw new IllegalArgumentException("Transaction #" + index + " must be a JSON object.");
+      }
+      CodaRequest.Transaction tx = reading.mapper().readValue(parser, CodaRequest.Transaction.class);
+      validate(reading.validator(), tx, "Transaction #" + index);
+      reading.digest().add(CodaController.toBankTransaction(tx));
+   }
+
+   private static <T> void validate(Validator validator, T value, String what)
+   {
+      Set<ConstraintViolation<T>> violations = validator.validate(value);
+      if (!violations.isEmpty())
+      {
+         throw new ConstraintViolationException(what + " is invalid", violations);
+      }
+   }
+
+   private void skipToTransactions(JsonParser parser) throws IOException
+   {
+      parser.nextToken();
+      if (ndjson)
+      {
+         parser.skipChildren();
+         return;
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME)
+      {
+         String name = parser.currentName();
+         parser.nextToken();
+         if (TRANSACTIONS.equals(name))
+         {
+            return;
+         }
+         parser.skipChildren();
+      }
+      throw new IllegalStateException("Request copy has no transactions");
+   }
+
+   /**
+    * What reading one body needs, passed down to the header and transaction readers
+    */
+   private record Reading(ObjectMapper mapper, Validator validator, CodaStatementCache.TransactionDigest digest)
+   {
+   }
+
+   /**
+    * Copies every byte read from the body to the spool file, up to {@code maxBytes}
+    */
+   private static final class CopyingInputStream extends FilterInputStream
+   {
+      private final OutputStream copy;
+      private final long maxBytes;
+      private long copied;
+
+      private CopyingInputStream(InputStream in, OutputStream copy, long maxBytes)
+      {
+         super(in);
+         this.copy = copy;
+         this.maxBytes = maxBytes;
+      }
+
+      @Override
+      public int read() throws IOException
+      {
+         int b = super.read();
+         if (b >= 0)
+         {
+            count(1);
+            copy.write(b);
+         }
+         return b;
+      }
+
+      @Override
+      public int read(byte[] bytes, int offset, int length) throws IOException
+      {
+         int n = super.read(bytes, offset, length);
+         if (n > 0)
+         {
+            count(n);
+            copy.write(bytes, offset, n);
+         }
+         return n;
+      }
+
+      private void count(int n)
+      {
+         copied += n;
+         if (copied > maxBytes)
+         {
+            throw new PayloadTooLargeException(
+                  new IOException("Request body is larger than " + maxBytes + " bytes"));
+         }
+      }
+   }
+}
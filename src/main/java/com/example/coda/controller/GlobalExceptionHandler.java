@@ -1,11 +1,17 @@
 package com.example.coda.controller;
 
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.ConstraintViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.method.annotation.HandlerMethodValidationException;
+import org.springframework.web.server.PayloadTooLargeException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.ZipException;
 
 @ControllerAdvice
 public class GlobalExceptionHandler
@@ -17,6 +23,14 @@ public class GlobalExceptionHandler
             new ApiError(HttpStatus.BAD_REQUEST.value(), "Bad Request", ex.getMessage(), req.getRequestURI()));
    }
 
+   @ExceptionHandler(ArithmeticException.class)
+   public ResponseEntity<ApiError> arithmetic(ArithmeticException ex, HttpServletRequest req)
+   {
+      // Raised for amounts or totals that do not fit in a long of thousandths, see Money
+      return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(
+            new ApiError(HttpStatus.BAD_REQUEST.value(), "Bad Request", ex.getMessage(), req.getRequestURI()));
+   }
+
    @ExceptionHandler(MethodArgumentNotValidException.class)
    public ResponseEntity<ApiError> validation(MethodArgumentNotValidException ex, HttpServletRequest req)
    {
@@ -24,4 +38,49 @@ public class GlobalExceptionHandler
       return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(
             new ApiError(HttpStatus.BAD_REQUEST.value(), "Bad Request", msg, req.getRequestURI()));
    }
+
+   @ExceptionHandler(HandlerMethodValidationException.class)
+   public ResponseEntity<ApiError> methodValidation(HandlerMethodValidationException ex, HttpServletRequest req)
+   {
+      // Raised for constraints on list elements, e.g. each request of a batch
+      String msg = "Validation failed";
+      return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(
+            new ApiError(HttpStatus.BAD_REQUEST.value(), "Bad Request", msg, req.getRequestURI()));
+   }
+
+   @ExceptionHandler(ConstraintViolationException.class)
+   public ResponseEntity<ApiError> constraintViolation(ConstraintViolationException ex, HttpServletRequest req)
+   {
+      // Raised for requests validated while they are read, e.g. a streamed transaction
+      String msg = "Validation failed";
+      return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(
+            new ApiError(HttpStatus.BAD_REQUEST.value(), "Bad Request", msg, req.getRequestURI()));
+   }
+
+   @ExceptionHandler(PayloadTooLargeException.class)
+   public ResponseEntity<ApiError> tooLarge(PayloadTooLargeException ex, HttpServletRequest req)
+   {
+      // Raised while a body is read past its limit, e.g. coda.requests.max-size
+      String msg = ex.getCause() != null ? ex.getCause().getMessage() : "Request body is too large";
+      return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(
+            new ApiError(HttpStatus.PAYLOAD_TOO_LARGE.value(), "Payload Too Large", msg, req.getRequestURI()));
+   }
+
+   @ExceptionHandler(RejectedExecutionException.class)
+   public ResponseEntity<ApiError> rejected(RejectedExecutionException ex, HttpServletRequest req)
+   {
+      // Raised when the background workers have no room left, e.g. for parse jobs
+      String msg = "Too many jobs queued, retry later";
+      return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "30").body(
+            new ApiError(HttpStatus.SERVICE_UNAVAILABLE.value(), "Service Unavailable", msg, req.getRequestURI()));
+   }
+
+   @ExceptionHandler(ZipException.class)
+   public ResponseEntity<ApiError> badEncoding(ZipException ex, HttpServletRequest req)
+   {
+      // Raised when a body sent as gzip is not, or is cut short
+      String msg = "Invalid gzip content: " + ex.getMessage();
+      return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(
+            new ApiError(HttpStatus.BAD_REQUEST.value(), "Bad Request", msg, req.getRequestURI()));
+   }
 }
@@ -0,0 +1,105 @@
+package com.example.coda.controller;
+
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip content coding of streamed responses, for clients that ask for it
+ */
+final class GzipEncoding
+{
+   static final String GZIP = "gzip";
+
+   private static final int BUFFER_SIZE = 16 * 1024;
+
+   private GzipEncoding()
+   {
+   }
+
+   /**
+    * Whether an {@code Accept-Encoding} header allows gzip: listed, as {@code x-gzip} or through
+    * {@code *}, without {@code q=0}
+    */
+   static boolean accepted(String acceptEncoding)
+   {
+      if (acceptEncoding == null)
+      {
+         return false;
+      }
+      Boolean wildcard = null;
+      for (String entry : acceptEncoding.split(","))
+      {
+         String[] parts = entry.split(";");
+         String coding = parts[0].trim();
+         boolean allowed = quality(parts) > 0;
+         if (coding.equalsIgnoreCase(GZIP) || coding.equalsIgnoreCase("x-gzip"))
+         {
+            return allowed;
+         }
+         if (coding.equals("*"))
+         {
+            wildcard = allowed;
+         }
+      }
+      return wildcard != null && wildcard;
+   }
+
+   /**
+    * {@code body} compressed as it is written; the response stream itself is left open
+    */
+   static StreamingResponseBody compress(StreamingResponseBody body)
+   {
+      return out -> {
+         try (GZIPOutputStream gzip = new GZIPOutputStream(new UnclosedOutputStream(out), BUFFER_SIZE))
+         {
+            body.writeTo(gzip);
+         }
+      };
+   }
+
+   private static double quality(String[] parameters)
+   {
+      for (int i = 1; i < parameters.length; i++)
+      {
+         String parameter = parameters[i].trim();
+         if (parameter.startsWith("q="))
+         {
+            try
+            {
+               return Double.parseDouble(parameter.substring(2));
+            }
+            catch (NumberFormatException e)
+            {
+               return 0;
+            }
+         }
+      }
+      return 1;
+   }
+
+   /**
+    * Closing flushes only: the response stream belongs to the container
+    */
+   private static final class UnclosedOutputStream extends FilterOutputStream
+   {
+      private UnclosedOutputStream(OutputStream out)
+      {
+         super(out);
+      }
+
+      @Override
+      public void write(byte[] bytes, int offset, int length) throws IOException
+      {
+         out.write(bytes, offset, length);
+      }
+
+      @Override
+      public void close() throws IOException
+      {
+         flush();
+      }
+   }
+}
@@ -70,7 +70,7 @@ import lombok.Data;
  */
 @Data
 @Builder
-public class CodaGlobalRecord
+public class CodaGlobalRecord implements CodaRecord
 {
    private String recordIdentification;      // Pos 1: "2"
    private String articleCode;               // Pos 2: "1"
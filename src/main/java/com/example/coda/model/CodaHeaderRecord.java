@@ -36,7 +36,7 @@ import java.time.LocalDate;
  */
 @Data
 @Builder
-public class CodaHeaderRecord
+public class CodaHeaderRecord implements CodaRecord
 {
    private String recordIdentification;      // Pos 1: "0"
    private String zeros;                     // Pos 2-5: "0000"
@@ -33,7 +33,7 @@ import java.time.LocalDate;
  */
 @Data
 @Builder
-public class CodaNewBalanceRecord
+public class CodaNewBalanceRecord implements CodaRecord
 {
    private String recordIdentification;      // Pos 1: "8"
    private String accountStructure;          // Pos 2: "0"
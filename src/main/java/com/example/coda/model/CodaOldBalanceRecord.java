@@ -37,7 +37,7 @@ import java.time.LocalDate;
  */
 @Data
 @Builder
-public class CodaOldBalanceRecord
+public class CodaOldBalanceRecord implements CodaRecord
 {
    private String recordIdentification;      // Pos 1: "1"
    private String accountStructure;          // Pos 2: "0"
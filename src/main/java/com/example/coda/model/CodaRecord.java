@@ -0,0 +1,15 @@
+package com.example.coda.model;
+
+/**
+ * Common type of every fixed-width CODA record line (0, 1, 2.x, 3.x, 8, 9)
+ * <p>
+ * Allows record-at-a-time consumers to receive the typed records produced by the parser
+ * without knowing in advance which record type comes next.
+ */
+public interface CodaRecord
+{
+   /**
+    * Pos 1 of every CODA line: the record type ("0", "1", "2", "3", "8" or "9")
+    */
+   String getRecordIdentification();
+}
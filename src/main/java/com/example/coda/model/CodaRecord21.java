@@ -63,7 +63,7 @@ import lombok.Data;
  */
 @Data
 @Builder
-public class CodaRecord21
+public class CodaRecord21 implements CodaRecord
 {
    private String recordIdentification;      // Pos 1: "2"
    private String articleCode;               // Pos 2: "1"
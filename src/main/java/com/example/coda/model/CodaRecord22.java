@@ -34,7 +34,7 @@ import lombok.Data;
  */
 @Data
 @Builder
-public class CodaRecord22
+public class CodaRecord22 implements CodaRecord
 {
    private String recordIdentification;      // Pos 1: "2"
    private String articleCode;               // Pos 2: "2"
@@ -33,7 +33,7 @@ import lombok.Data;
  */
 @Data
 @Builder
-public class CodaRecord23
+public class CodaRecord23 implements CodaRecord
 {
    private String recordIdentification;      // Pos 1: "2"
    private String articleCode;               // Pos 2: "3"
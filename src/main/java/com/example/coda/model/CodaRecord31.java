@@ -37,7 +37,7 @@ import lombok.Data;
  */
 @Data
 @Builder
-public class CodaRecord31
+public class CodaRecord31 implements CodaRecord
 {
    private String recordIdentification;      // Pos 1: "3"
    private String articleCode;               // Pos 2: "1"
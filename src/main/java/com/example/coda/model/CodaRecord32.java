@@ -35,16 +35,16 @@ import lombok.Data;
  */
 @Data
 @Builder
-public class CodaRecord32
+public class CodaRecord32 implements CodaRecord
 {
    private String recordIdentification;      // Pos 1: "3"
    private String articleCode;               // Pos 2: "2"
    private String continuousSequenceNumber;  // Pos 3-6: e.g., "0002"
    private String detailNumber;              // Pos 7-10: "0000"
-   private String counterpartyAddress;       // Pos 11-46: 36 chars
-   private String counterpartyPostalCode;    // Pos 47-58: 12 chars
-   private String counterpartyCity;          // Pos 59-93: 35 chars
-   private String filler1;                   // Pos 94-125: 32 chars
+   private String counterpartyAddress;       // Pos 11-45: 35 chars
+   private String counterpartyPostalCode;    // Pos 46-57: 12 chars
+   private String counterpartyCity;          // Pos 58-92: 35 chars
+   private String filler1;                   // Pos 93-125: 33 chars
    private String nextCode1;                 // Pos 126: "0" no more records
    private String filler2;                   // Pos 127: space
    private String nextCode2;                 // Pos 128: "0"
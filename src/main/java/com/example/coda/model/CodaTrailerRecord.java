@@ -28,7 +28,7 @@ import java.math.BigDecimal;
  */
 @Data
 @Builder
-public class CodaTrailerRecord
+public class CodaTrailerRecord implements CodaRecord
 {
    private String recordIdentification;      // Pos 1: "9"
    private String filler1;                   // Pos 2-16: 15 spaces
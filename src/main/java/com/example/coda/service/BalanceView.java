@@ -0,0 +1,115 @@
+package com.example.coda.service;
+
+import com.example.coda.model.CodaNewBalanceRecord;
+import com.example.coda.model.CodaOldBalanceRecord;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Flyweight view of an old balance (record 1) or new balance (record 8) line
+ * <p>
+ * Both records share the positions of pos 1-64. Like {@link Record21View}, fields are decoded on
+ * demand from the current line of the {@link CodaRecordCursor}, and the instance is reused for
+ * every line.
+ */
+public final class BalanceView
+{
+   private static final CodaRecordLayout<CodaOldBalanceRecord, ?> OLD_BALANCE = CodaLayout.V2.oldBalance();
+   private static final CodaRecordLayout<CodaNewBalanceRecord, ?> NEW_BALANCE = CodaLayout.V2.newBalance();
+   private static final CodaFieldLayout<CodaOldBalanceRecord, ?, String> STATEMENT_NUMBER = OLD_BALANCE.getField(
+         "statementNumber", CodaFieldCodec.TEXT);
+   private static final CodaFieldLayout<CodaOldBalanceRecord, ?, String> ACCOUNT_NUMBER = OLD_BALANCE.getField(
+         "accountNumber", CodaFieldCodec.ACCOUNT);
+   private static final CodaFieldLayout<CodaOldBalanceRecord, ?, String> BALANCE_SIGN = OLD_BALANCE.getField(
+         "oldBalanceSign", CodaFieldCodec.TEXT);
+   private static final CodaFieldLayout<CodaOldBalanceRecord, ?, BigDecimal> BALANCE = OLD_BALANCE.getField(
+         "oldBalance", CodaFieldCodec.AMOUNT);
+   private static final CodaFieldLayout<CodaOldBalanceRecord, ?, LocalDate> BALANCE_DATE = OLD_BALANCE.getField(
+         "balanceDate", CodaFieldCodec.DATE);
+
+   static
+   {
+      // The view reads record 8 through the record 1 positions
+      check(STATEMENT_NUMBER, NEW_BALANCE.getField("statementNumber", CodaFieldCodec.TEXT));
+      check(ACCOUNT_NUMBER, NEW_BALANCE.getField("accountNumber", CodaFieldCodec.ACCOUNT));
+      check(BALANCE_SIGN, NEW_BALANCE.getField("newBalanceSign", CodaFieldCodec.TEXT));
+      check(BALANCE, NEW_BALANCE.getField("newBalance", CodaFieldCodec.AMOUNT));
+      check(BALANCE_DATE, NEW_BALANCE.getField("balanceDate", CodaFieldCodec.DATE));
+   }
+
+   private CharSequence line;
+
+   BalanceView()
+   {
+   }
+
+   void bind(CharSequence line)
+   {
+      this.line = line;
+   }
+
+   /**
+    * Record 8 rather than record 1
+    */
+   public boolean isNewBalance()
+   {
+      return line.charAt(0) == '8';
+   }
+
+   /**
+    * Pos 3-5
+    */
+   public String getStatementNumber()
+   {
+      return STATEMENT_NUMBER.read(line);
+   }
+
+   /**
+    * Pos 6-42, Belgian IBANs completed as in the model
+    */
+   public String getAccountNumber()
+   {
+      return ACCOUNT_NUMBER.read(line);
+   }
+
+   /**
+    * Balance sign at pos 43 is "1"
+    */
+   public boolean isNegative()
+   {
+      int index = BALANCE_SIGN.getStart();
+      return index < line.length() && line.charAt(index) == '1';
+   }
+
+   /**
+    * Pos 44-58 as a count of thousandths, without sign
+    */
+   public long getBalanceThousandths()
+   {
+      return CodaFieldDecoder.thousandths(line, BALANCE.getStart(), BALANCE.getEnd());
+   }
+
+   /**
+    * Pos 44-58, without sign
+    */
+   public BigDecimal getBalance()
+   {
+      return CodaFieldDecoder.amount(getBalanceThousandths());
+   }
+
+   /**
+    * Pos 59-64
+    */
+   public LocalDate getBalanceDate()
+   {
+      return BALANCE_DATE.read(line);
+   }
+
+   private static void check(CodaFieldLayout<?, ?, ?> oldBalance, CodaFieldLayout<?, ?, ?> newBalance)
+   {
+      if (oldBalance.getStart() != newBalance.getStart() || oldBalance.getLength() != newBalance.getLength())
+      {
+         throw new IllegalStateException("Records 1 and 8 disagree on the position of " + newBalance.getName());
+      }
+   }
+}
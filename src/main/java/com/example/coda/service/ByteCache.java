@@ -0,0 +1,205 @@
+package com.example.coda.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * In-process cache of byte arrays, bounded by their total size and by age
+ * <p>
+ * Entries are evicted least recently used first once the cached bytes exceed {@code maxBytes},
+ * and are dropped when read after {@code ttl}. Values larger than {@code maxEntryBytes} are not
+ * cached. Cached arrays are shared: callers must not modify them. {@link #write} caches content
+ * while it is streamed to its first reader.
+ */
+final class ByteCache<K>
+{
+   private record Entry(byte[] value, long expiresAt)
+   {
+   }
+
+   private final long maxBytes;
+   private final long maxEntryBytes;
+   private final long ttlNanos;
+   private final LongSupplier nanoTime;
+   private final LinkedHashMap<K, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+   private long size;
+
+   private final AtomicLong hits = new AtomicLong();
+   private final AtomicLong misses = new AtomicLong();
+   private final AtomicLong evictions = new AtomicLong();
+
+   ByteCache(long maxBytes, long maxEntryBytes, Duration ttl)
+   {
+      this(maxBytes, maxEntryBytes, ttl, System::nanoTime);
+   }
+
+   ByteCache(long maxBytes, long maxEntryBytes, Duration ttl, LongSupplier nanoTime)
+   {
+      this.maxBytes = maxBytes;
+      this.maxEntryBytes = Math.min(maxEntryBytes, maxBytes);
+      this.ttlNanos = ttl.toNanos();
+      this.nanoTime = nanoTime;
+   }
+
+   /**
+    * The value cached for {@code key}, or {@code null} if there is none or it has expired
+    */
+   synchronized byte[] get(K key)
+   {
+      Entry entry = entries.get(key);
+      if (entry != null && entry.expiresAt - nanoTime.getAsLong() <= 0)
+      {
+         remove(key);
+         entry = null;
+      }
+      (entry == null ? misses : hits).incrementAndGet();
+      return entry == null ? null : entry.value;
+   }
+
+   /**
+    * Cache {@code value}, evicting least recently used entries to make room
+    *
+    * @return false if the value is too large to be cached
+    */
+   synchronized boolean put(K key, byte[] value)
+   {
+      if (value.length > maxEntryBytes)
+      {
+         return false;
+      }
+      remove(key);
+      entries.put(key, new Entry(value, nanoTime.getAsLong() + ttlNanos));
+      size += value.length;
+      Iterator<Map.Entry<K, Entry>> eldest = entries.entrySet().iterator();
+      while (size > maxBytes)
+      {
+         size -= eldest.next().getValue().value.length;
+         eldest.remove();
+         evictions.incrementAndGet();
+      }
+      return true;
+   }
+
+   /**
+    * Write content to {@code out} with {@code writer}, caching a copy under {@code key} if it
+    * completes and is not larger than an entry
+    */
+   void write(K key, OutputStream out, CodaOutputWriter writer) throws IOException
+   {
+      CapturingOutputStream capture = new CapturingOutputStream(out, maxEntryBytes);
+      writer.writeTo(capture);
+      byte[] bytes = capture.captured();
+      if (bytes != null)
+      {
+         put(key, bytes);
+      }
+   }
+
+   synchronized void clear()
+   {
+      entries.clear();
+      size = 0;
+   }
+
+   synchronized int entryCount()
+   {
+      return entries.size();
+   }
+
+   synchronized long size()
+   {
+      return size;
+   }
+
+   long hits()
+   {
+      return hits.get();
+   }
+
+   long misses()
+   {
+      return misses.get();
+   }
+
+   long evictions()
+   {
+      return evictions.get();
+   }
+
+   synchronized CodaCacheStats stats()
+   {
+      return new CodaCacheStats(hits.get(), misses.get(), evictions.get(), entries.size(), size);
+   }
+
+   private void remove(K key)
+   {
+      Entry removed = entries.remove(key);
+      if (removed != null)
+      {
+         size -= removed.value.length;
+      }
+   }
+
+   /**
+    * Passes bytes through and keeps a copy until it grows past {@code limit}
+    */
+   private static final class CapturingOutputStream extends FilterOutputStream
+   {
+      private final long limit;
+      private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+      private CapturingOutputStream(OutputStream out, long limit)
+      {
+         super(out);
+         this.limit = limit;
+      }
+
+      @Override
+      public void write(int b) throws IOException
+      {
+         out.write(b);
+         keep(new byte[] { (byte) b }, 0, 1);
+      }
+
+      @Override
+      public void write(byte[] bytes, int offset, int length) throws IOException
+      {
+         out.write(bytes, offset, length);
+         keep(bytes, offset, length);
+      }
+
+      @Override
+      public void close() throws IOException
+      {
+         // The target stream belongs to the caller
+         flush();
+      }
+
+      private void keep(byte[] bytes, int offset, int length)
+      {
+         if (copy == null)
+         {
+            return;
+         }
+         if (copy.size() + (long) length > limit)
+         {
+            copy = null;
+            return;
+         }
+         copy.write(bytes, offset, length);
+      }
+
+      private byte[] captured()
+      {
+         return copy == null ? null : copy.toByteArray();
+      }
+   }
+}
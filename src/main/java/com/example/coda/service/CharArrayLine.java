@@ -0,0 +1,65 @@
+package com.example.coda.service;
+
+/**
+ * Reusable line backed by a char array
+ * <p>
+ * Counterpart of {@link Latin1Line} for character streams: the line is assembled in place from the
+ * reader's buffer, and {@link #subSequence(int, int)} creates the field String straight from the chars.
+ */
+final class CharArrayLine implements CharSequence
+{
+   private char[] chars = new char[256];
+   private int length;
+
+   void clear()
+   {
+      length = 0;
+   }
+
+   /**
+    * Append {@code count} chars of {@code source} starting at {@code offset}
+    */
+   void append(char[] source, int offset, int count)
+   {
+      if (chars.length < length + count)
+      {
+         char[] grown = new char[Math.max(length + count, chars.length * 2)];
+         System.arraycopy(chars, 0, grown, 0, length);
+         chars = grown;
+      }
+      System.arraycopy(source, offset, chars, length, count);
+      length += count;
+   }
+
+   @Override
+   public int length()
+   {
+      return length;
+   }
+
+   @Override
+   public char charAt(int index)
+   {
+      if (index >= length)
+      {
+         throw new IndexOutOfBoundsException(index);
+      }
+      return chars[index];
+   }
+
+   @Override
+   public String subSequence(int start, int end)
+   {
+      if (start < 0 || end > length || start > end)
+      {
+         throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+      }
+      return new String(chars, start, end - start);
+   }
+
+   @Override
+   public String toString()
+   {
+      return new String(chars, 0, length);
+   }
+}
@@ -0,0 +1,176 @@
+package com.example.coda.service;
+
+import com.example.coda.model.CodaBankTransaction;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Generates the statements of many accounts concurrently and streams them as they are ready
+ * <p>
+ * Each statement is generated on its own virtual thread into a {@link CodaDocument}. At most
+ * {@code maxInFlight} statements are generated or waiting to be written at a time: the next one is
+ * only started when the oldest has been written, so memory is bounded by the window and not by
+ * the number of accounts. Statements are written in request order, either as entries of a zip
+ * or one after the other as a single multi-statement CODA file.
+ */
+@Service
+public class CodaBatchGenerator
+{
+   private static final DateTimeFormatter ENTRY_DATE = DateTimeFormatter.BASIC_ISO_DATE;
+
+   /**
+    * Output of a batch
+    */
+   public enum Format
+   {
+      /**
+       * One {@code .coda} entry per statement
+       */
+      ZIP,
+      /**
+       * All statements concatenated in one CODA file
+       */
+      CODA
+   }
+
+   /**
+    * One account's statement to generate
+    */
+   public record Statement(String bankName, String accountNumber, String currency, LocalDate statementDate,
+                           BigDecimal openingBalance, List<CodaBankTransaction> transactions)
+   {
+   }
+
+   private final CodaGenerator generator;
+   private final int maxInFlight;
+
+   public CodaBatchGenerator(CodaGenerator generator, @Value("${coda.batch.max-in-flight:16}") int maxInFlight)
+   {
+      if (maxInFlight < 1)
+      {
+         throw new IllegalArgumentException("coda.batch.max-in-flight must be at least 1, was " + maxInFlight);
+      }
+      this.generator = generator;
+      this.maxInFlight = maxInFlight;
+   }
+
+   /**
+    * Generate all statements and write them to {@code out}, which is finished but not closed
+    */
+   public void write(List<Statement> statements, Format format, OutputStream out) throws IOException
+   {
+      if (format == Format.ZIP)
+      {
+         ZipOutputStream zip = new ZipOutputStream(out);
+         generate(statements, (index, statement, document) -> {
+            zip.putNextEntry(new ZipEntry(entryName(index, statement)));
+            document.writeTo(zip);
+            zip.closeEntry();
+            zip.flush();
+         });
+         zip.finish();
+      }
+      else
+      {
+         generate(statements, (index, statement, document) -> {
+            document.writeTo(out);
+            out.flush();
+         });
+      }
+   }
+
+   /**
+    * Name of the zip entry of a statement, numbered so that entries stay unique and ordered
+    */
+   static String entryName(int index, Statement statement)
+   {
+      String account = statement.accountNumber() == null ? ""
+            : statement.accountNumber().replaceAll("[^A-Za-z0-9]", "");
+      String date = statement.statementDate() == null ? "" : "-" + ENTRY_DATE.format(statement.statementDate());
+      return String.format("%05d-%s%s.coda", index + 1, account, date);
+   }
+
+   private void generate(List<Statement> statements, Sink sink) throws IOException
+   {
+      try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor())
+      {
+         Deque<Future<CodaDocument>> window = new ArrayDeque<>(maxInFlight);
+         int submitted = 0;
+         try
+         {
+            for (int index = 0; index < statements.size(); index++)
+            {
+               while (submitted < statements.size() && window.size() < maxInFlight)
+               {
+                  Statement statement = statements.get(submitted++);
+                  window.addLast(executor.submit(() -> generator.generateDocument(statement.bankName(),
+                        statement.accountNumber(), statement.currency(), statement.statementDate(),
+                        statement.openingBalance(), statement.transactions())));
+               }
+               try (CodaDocument document = await(window.removeFirst()))
+               {
+                  sink.accept(index, statements.get(index), document);
+               }
+            }
+         }
+         finally
+         {
+            // On failure, give back the buffers of the statements that were still in the window
+            for (Future<CodaDocument> pending : window)
+            {
+               pending.cancel(true);
+               if (pending.state() == Future.State.SUCCESS)
+               {
+                  pending.resultNow().close();
+               }
+            }
+         }
+      }
+   }
+
+   private static CodaDocument await(Future<CodaDocument> future) throws IOException
+   {
+      try
+      {
+         return future.get();
+      }
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+         throw new InterruptedIOException("Interrupted while generating statements");
+      }
+      catch (ExecutionException e)
+      {
+         if (e.getCause() instanceof RuntimeException runtime)
+         {
+            throw runtime;
+         }
+         if (e.getCause() instanceof Error error)
+         {
+            throw error;
+         }
+         throw new IOException(e.getCause());
+      }
+   }
+
+   @FunctionalInterface
+   private interface Sink
+   {
+      void accept(int index, Statement statement, CodaDocument document) throws IOException;
+   }
+}
@@ -0,0 +1,56 @@
+package com.example.coda.service;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Bounded pool of fixed-size byte buffers for encoded CODA lines
+ * <p>
+ * Buffers are taken with {@link #acquire()} and given back with {@link #release(ByteBuffer)}.
+ * When the pool is empty a new buffer is allocated, and when it is full a released buffer is
+ * left to the garbage collector, so at most {@code maxPooled} buffers are retained. A buffer
+ * that is never released is simply not reused.
+ */
+final class CodaBufferPool
+{
+   static final int BUFFER_SIZE = CodaLineBuffer.CAPACITY;
+
+   /**
+    * Direct buffers, written to channels without the JDK's temporary direct copy
+    */
+   static final CodaBufferPool DIRECT = new CodaBufferPool(true, 64);
+   /**
+    * Heap buffers, for streams that only take a {@code byte[]}
+    */
+   static final CodaBufferPool HEAP = new CodaBufferPool(false, 64);
+
+   private final boolean direct;
+   private final ArrayBlockingQueue<ByteBuffer> buffers;
+
+   private CodaBufferPool(boolean direct, int maxPooled)
+   {
+      this.direct = direct;
+      this.buffers = new ArrayBlockingQueue<>(maxPooled);
+   }
+
+   /**
+    * Take a cleared buffer of {@link #BUFFER_SIZE} bytes
+    */
+   ByteBuffer acquire()
+   {
+      ByteBuffer buffer = buffers.poll();
+      if (buffer != null)
+      {
+         return buffer;
+      }
+      return direct ? ByteBuffer.allocateDirect(BUFFER_SIZE) : ByteBuffer.allocate(BUFFER_SIZE);
+   }
+
+   void release(ByteBuffer buffer)
+   {
+      if (buffer.capacity() == BUFFER_SIZE && buffer.isDirect() == direct)
+      {
+         buffers.offer(buffer.clear());
+      }
+   }
+}
@@ -0,0 +1,14 @@
+package com.example.coda.service;
+
+/**
+ * Counters of a cache since it was created
+ *
+ * @param hits      lookups that found a value
+ * @param misses    lookups that found none, or an expired one
+ * @param evictions entries removed to stay under the size limit
+ * @param entries   entries held now
+ * @param size      bytes held now
+ */
+public record CodaCacheStats(long hits, long misses, long evictions, int entries, long size)
+{
+}
@@ -0,0 +1,98 @@
+package com.example.coda.service;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Tells ISO-8859-1 CODA files from UTF-8 ones without reading them whole
+ * <p>
+ * CODA files are ISO-8859-1, but files saved by other tools are often UTF-8, which turns every
+ * accented name into two characters and breaks the 128-character lines. The first
+ * {@value #SNIFF_SIZE} bytes are looked at: a UTF-8 byte order mark, or non-ASCII bytes that all
+ * form valid UTF-8 sequences, mean UTF-8; anything else is read as ISO-8859-1, which decodes
+ * ASCII the same way.
+ */
+public final class CodaCharsetDetector
+{
+   static final int SNIFF_SIZE = 64 * 1024;
+
+   private CodaCharsetDetector()
+   {
+   }
+
+   /**
+    * Open a reader over {@code in} in its detected charset, skipping a UTF-8 byte order mark
+    *
+    * @param declared charset given with the content, e.g. in its {@code Content-Type}; used as-is when not {@code null}
+    */
+   public static Reader open(InputStream in, Charset declared) throws IOException
+   {
+      BufferedInputStream buffered = new BufferedInputStream(in, SNIFF_SIZE);
+      buffered.mark(SNIFF_SIZE);
+      byte[] prefix = buffered.readNBytes(SNIFF_SIZE);
+      buffered.reset();
+
+      if (hasUtf8Bom(prefix, prefix.length))
+      {
+         buffered.skipNBytes(3);
+         return new InputStreamReader(buffered, StandardCharsets.UTF_8);
+      }
+      Charset charset = declared != null ? declared : detect(prefix, prefix.length);
+      return new InputStreamReader(buffered, charset);
+   }
+
+   /**
+    * Charset of a text starting with {@code length} bytes of {@code prefix}
+    */
+   static Charset detect(byte[] prefix, int length)
+   {
+      if (hasUtf8Bom(prefix, length))
+      {
+         return StandardCharsets.UTF_8;
+      }
+      int firstNonAscii = 0;
+      while (firstNonAscii < length && prefix[firstNonAscii] >= 0)
+      {
+         firstNonAscii++;
+      }
+      if (firstNonAscii == length)
+      {
+         return StandardCharsets.ISO_8859_1;
+      }
+
+      CharsetDecoder utf8 = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+      ByteBuffer bytes = ByteBuffer.wrap(prefix, firstNonAscii, length - firstNonAscii);
+      CharBuffer chars = CharBuffer.allocate(1024);
+      while (true)
+      {
+         // Not the end of input: a sequence cut at the end of the prefix is not an error
+         CoderResult result = utf8.decode(bytes, chars, false);
+         if (result.isError())
+         {
+            return StandardCharsets.ISO_8859_1;
+         }
+         if (!result.isOverflow())
+         {
+            return StandardCharsets.UTF_8;
+         }
+         chars.clear();
+      }
+   }
+
+   private static boolean hasUtf8Bom(byte[] prefix, int length)
+   {
+      return length >= 3 && (prefix[0] & 0xFF) == 0xEF && (prefix[1] & 0xFF) == 0xBB && (prefix[2] & 0xFF) == 0xBF;
+   }
+}
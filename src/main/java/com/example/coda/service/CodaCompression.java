@@ -0,0 +1,95 @@
+package com.example.coda.service;
+
+import org.springframework.web.server.PayloadTooLargeException;
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads CODA files that may have been gzipped by the client
+ * <p>
+ * A gzip stream starts with the bytes {@code 1f 8b}, which no CODA line does, so compressed
+ * uploads are recognized by content whatever their name or declared type, and inflated while
+ * they are read, up to a limit like bodies sent with {@code Content-Encoding: gzip}.
+ */
+public final class CodaCompression
+{
+   static final int BUFFER_SIZE = 64 * 1024;
+
+   private CodaCompression()
+   {
+   }
+
+   /**
+    * {@code in} inflated if it is gzipped, otherwise its bytes as they are
+    *
+    * @param maxInflatedBytes inflating past it throws {@link PayloadTooLargeException}
+    */
+   public static InputStream decode(InputStream in, long maxInflatedBytes) throws IOException
+   {
+      BufferedInputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+      buffered.mark(2);
+      int first = buffered.read();
+      int second = buffered.read();
+      buffered.reset();
+      if (first == 0x1f && second == 0x8b)
+      {
+         return new LimitedInputStream(new GZIPInputStream(buffered, BUFFER_SIZE), maxInflatedBytes);
+      }
+      return buffered;
+   }
+
+   private static final class LimitedInputStream extends FilterInputStream
+   {
+      private final long maxBytes;
+      private long count;
+
+      private LimitedInputStream(InputStream in, long maxBytes)
+      {
+         super(in);
+         this.maxBytes = maxBytes;
+      }
+
+      @Override
+      public int read() throws IOException
+      {
+         int b = in.read();
+         if (b >= 0)
+         {
+            count(1);
+         }
+         return b;
+      }
+
+      @Override
+      public int read(byte[] bytes, int offset, int length) throws IOException
+      {
+         int read = in.read(bytes, offset, length);
+         if (read > 0)
+         {
+            count(read);
+         }
+         return read;
+      }
+
+      @Override
+      public long skip(long n) throws IOException
+      {
+         long skipped = in.skip(n);
+         count(skipped);
+         return skipped;
+      }
+
+      private void count(long read)
+      {
+         count += read;
+         if (count > maxBytes)
+         {
+            throw new PayloadTooLargeException(
+                  new IOException("Inflated upload is larger than " + maxBytes + " bytes"));
+         }
+      }
+   }
+}
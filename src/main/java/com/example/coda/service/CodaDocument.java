@@ -0,0 +1,84 @@
+package com.example.coda.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+/**
+ * Generated CODA file held as ISO-8859-1 bytes in pooled heap buffers
+ * <p>
+ * Lines are encoded straight to bytes when the document is written by {@link CodaWriter}, so no
+ * String of the whole file is built and the bytes are not encoded again on the way out. The whole
+ * file is in memory: use it where a statement has to be complete before it is written, e.g. the
+ * statements a batch generates ahead of its output. A single statement is streamed with
+ * {@link CodaWriter#write(com.example.coda.model.CodaStatement, OutputStream)} instead.
+ * <p>
+ * The document can be written several times; {@link #close()} gives the buffers back to the pool
+ * and must be the last call.
+ */
+public final class CodaDocument implements Closeable
+{
+   private final List<ByteBuffer> buffers;
+   private final long size;
+
+   CodaDocument(List<ByteBuffer> buffers)
+   {
+      this.buffers = buffers;
+      long total = 0;
+      for (ByteBuffer buffer : buffers)
+      {
+         total += buffer.remaining();
+      }
+      this.size = total;
+   }
+
+   /**
+    * Size in bytes, line feeds included
+    */
+   public long size()
+   {
+      return size;
+   }
+
+   /**
+    * Write all bytes to a channel, e.g. a {@code FileChannel}; the channel is not closed
+    */
+   public void writeTo(WritableByteChannel out) throws IOException
+   {
+      for (ByteBuffer buffer : buffers)
+      {
+         ByteBuffer bytes = buffer.duplicate();
+         while (bytes.hasRemaining())
+         {
+            out.write(bytes);
+         }
+      }
+   }
+
+   /**
+    * Write all bytes to a stream, e.g. the servlet output stream; the stream is neither flushed nor closed
+    */
+   public void writeTo(OutputStream out) throws IOException
+   {
+      for (ByteBuffer buffer : buffers)
+      {
+         out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+      }
+   }
+
+   /**
+    * Give the buffers back to the pool
+    */
+   @Override
+   public void close()
+   {
+      for (ByteBuffer buffer : buffers)
+      {
+         CodaBufferPool.HEAP.release(buffer);
+      }
+      buffers.clear();
+   }
+}
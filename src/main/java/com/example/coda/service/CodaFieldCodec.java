@@ -0,0 +1,56 @@
+package com.example.coda.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Decoding and encoding rules of one kind of CODA field
+ *
+ * @param <V> Java type of the field in the model
+ */
+final class CodaFieldCodec<V>
+{
+   /** Text kept as-is, including padding */
+   static final CodaFieldCodec<String> TEXT = new CodaFieldCodec<>(CodaFieldDecoder::text, CodaFieldEncoder::text);
+   /** Text without surrounding whitespace */
+   static final CodaFieldCodec<String> TRIMMED = new CodaFieldCodec<>(CodaFieldDecoder::trimmedText, CodaFieldEncoder::text);
+   /** Account number, Belgian IBANs completed on read */
+   static final CodaFieldCodec<String> ACCOUNT = new CodaFieldCodec<>(CodaFieldDecoder::account, CodaFieldEncoder::text);
+   /** Zero-padded amount with 3 decimals */
+   static final CodaFieldCodec<BigDecimal> AMOUNT = new CodaFieldCodec<>(CodaFieldDecoder::amount, CodaFieldEncoder::amount);
+   /** DDMMYY date, "000000" when absent */
+   static final CodaFieldCodec<LocalDate> DATE = new CodaFieldCodec<>(CodaFieldDecoder::date, CodaFieldEncoder::date);
+   /** Zero-padded whole number */
+   static final CodaFieldCodec<Integer> NUMBER = new CodaFieldCodec<>(CodaFieldDecoder::number, CodaFieldEncoder::number);
+
+   private final Decoder<V> decoder;
+   private final Encoder<V> encoder;
+
+   private CodaFieldCodec(Decoder<V> decoder, Encoder<V> encoder)
+   {
+      this.decoder = decoder;
+      this.encoder = encoder;
+   }
+
+   V decode(CharSequence line, int start, int end)
+   {
+      return decoder.decode(line, start, end);
+   }
+
+   void encode(V value, int length, CodaLineEncoder line)
+   {
+      encoder.encode(value, length, line);
+   }
+
+   @FunctionalInterface
+   interface Decoder<V>
+   {
+      V decode(CharSequence line, int start, int end);
+   }
+
+   @FunctionalInterface
+   interface Encoder<V>
+   {
+      void encode(V value, int length, CodaLineEncoder line);
+   }
+}
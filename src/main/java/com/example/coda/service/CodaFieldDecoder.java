@@ -0,0 +1,272 @@
+package com.example.coda.service;
+
+import com.example.coda.util.IbanUtil;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Decodes CODA fields straight from the characters of a line
+ * <p>
+ * Text fields are copied out of the line exactly once, after trimming by bounds.
+ * <p>
+ * Amounts are accumulated digit by digit into a long count of thousandths and dates into a packed
+ * {@code yyyyMMdd} int, without substrings, regular expressions, formatters or exceptions on the
+ * normal path. {@link BigDecimal} and {@link LocalDate} values are only created by the methods that
+ * return them, so callers that work on the primitives never allocate.
+ * <p>
+ * Fields are trimmed like {@code String.trim()} and may extend beyond a short line, as in the
+ * text-based parser.
+ */
+final class CodaFieldDecoder
+{
+   /**
+    * Value returned by {@link #packedDate} when the field holds no date
+    */
+   static final int NO_DATE = 0;
+
+   // DDMMYY covers 2000-2099; one slot per (year, month, day) triple
+   private static final LocalDate[] DATE_CACHE = new LocalDate[100 * 12 * 31];
+
+   private CodaFieldDecoder()
+   {
+   }
+
+   /**
+    * Text field as-is; on a short line the remainder of the line is returned trimmed
+    */
+   static String text(CharSequence line, int start, int end)
+   {
+      if (line.length() < end)
+      {
+         return line.length() > start ? trimmed(line, start, line.length()) : "";
+      }
+      return line.subSequence(start, end).toString();
+   }
+
+   /**
+    * Text field without leading and trailing whitespace
+    */
+   static String trimmedText(CharSequence line, int start, int end)
+   {
+      return line.length() > start ? trimmed(line, start, Math.min(end, line.length())) : "";
+   }
+
+   /**
+    * Account number field, with a Belgian IBAN completed and formatted by {@link IbanUtil}
+    */
+   static String account(CharSequence line, int start, int end)
+   {
+      return IbanUtil.extractAndCompleteIban(trimmedText(line, start, end));
+   }
+
+   static boolean isBlank(CharSequence line)
+   {
+      for (int i = 0; i < line.length(); i++)
+      {
+         if (line.charAt(i) > ' ')
+         {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Decode an amount field (last 3 digits are decimals) as a count of thousandths
+    *
+    * @throws NumberFormatException when the field holds anything but an optional sign and digits
+    */
+   static long thousandths(CharSequence line, int start, int end)
+   {
+      return parseLong(line, start, end);
+   }
+
+   /**
+    * Decode an amount field into the same value as {@code new BigDecimal(field).divide(1000)}
+    */
+   static BigDecimal amount(CharSequence line, int start, int end)
+   {
+      return amount(thousandths(line, start, end));
+   }
+
+   /**
+    * Exact quotient {@code thousandths / 1000} with the smallest non-negative scale, as BigDecimal.divide gives
+    */
+   static BigDecimal amount(long thousandths)
+   {
+      long unscaled = thousandths;
+      int scale = 3;
+      while (scale > 0 && unscaled % 10 == 0)
+      {
+         unscaled /= 10;
+         scale--;
+      }
+      return BigDecimal.valueOf(unscaled, scale);
+   }
+
+   /**
+    * Decode a numeric field; an empty field is 0
+    */
+   static int number(CharSequence line, int start, int end)
+   {
+      long value = parseLong(line, start, end);
+      if (value != (int) value)
+      {
+         throw new NumberFormatException("CODA number out of range at position " + (start + 1));
+      }
+      return (int) value;
+   }
+
+   /**
+    * Decode a DDMMYY date field into {@code yyyyMMdd}
+    *
+    * @return the packed date, or {@link #NO_DATE} when the field is empty, all zeros or not a valid date
+    */
+   static int packedDate(CharSequence line, int start, int end)
+   {
+      end = Math.min(end, line.length());
+      while (start < end && line.charAt(start) <= ' ')
+      {
+         start++;
+      }
+      while (end > start && line.charAt(end - 1) <= ' ')
+      {
+         end--;
+      }
+      if (end - start != 6)
+      {
+         return NO_DATE;
+      }
+
+      int day = twoDigits(line, start);
+      int month = twoDigits(line, start + 2);
+      int year = twoDigits(line, start + 4);
+      if (day < 1 || day > 31 || month < 1 || month > 12 || year < 0)
+      {
+         return NO_DATE;
+      }
+      // Same as the ddMMyy formatter's smart resolution: an overflowing day is clamped to the month's last day
+      day = Math.min(day, lengthOfMonth(2000 + year, month));
+      return (2000 + year) * 10000 + month * 100 + day;
+   }
+
+   /**
+    * Decode a DDMMYY date field, or {@code null} when it holds no date
+    */
+   static LocalDate date(CharSequence line, int start, int end)
+   {
+      return date(packedDate(line, start, end));
+   }
+
+   /**
+    * Materialise a packed date; instances are shared, so repeated dates are not allocated again
+    */
+   static LocalDate date(int packedDate)
+   {
+      if (packedDate == NO_DATE)
+      {
+         return null;
+      }
+      int year = packedDate / 10000;
+      int month = packedDate / 100 % 100;
+      int day = packedDate % 100;
+      if (year < 2000 || year > 2099)
+      {
+         return LocalDate.of(year, month, day);
+      }
+
+      int slot = ((year - 2000) * 12 + month - 1) * 31 + day - 1;
+      LocalDate date = DATE_CACHE[slot];
+      if (date == null)
+      {
+         // Benign race: LocalDate is immutable, at worst two equal instances are created
+         date = LocalDate.of(year, month, day);
+         DATE_CACHE[slot] = date;
+      }
+      return date;
+   }
+
+   /**
+    * Same result as {@code substring(start, end).trim()} without the intermediate copy
+    */
+   private static String trimmed(CharSequence line, int start, int end)
+   {
+      while (start < end && line.charAt(start) <= ' ')
+      {
+         start++;
+      }
+      while (end > start && line.charAt(end - 1) <= ' ')
+      {
+         end--;
+      }
+      return line.subSequence(start, end).toString();
+   }
+
+   private static long parseLong(CharSequence line, int start, int end)
+   {
+      end = Math.min(end, line.length());
+      while (start < end && line.charAt(start) <= ' ')
+      {
+         start++;
+      }
+      while (end > start && line.charAt(end - 1) <= ' ')
+      {
+         end--;
+      }
+      if (start >= end)
+      {
+         return 0;
+      }
+
+      boolean negative = false;
+      char first = line.charAt(start);
+      if (first == '-' || first == '+')
+      {
+         negative = first == '-';
+         start++;
+      }
+      if (start >= end || end - start > 18)
+      {
+         throw new NumberFormatException("Invalid CODA number at position " + (start + 1));
+      }
+
+      long value = 0;
+      for (int i = start; i < end; i++)
+      {
+         int digit = line.charAt(i) - '0';
+         if (digit < 0 || digit > 9)
+         {
+            throw new NumberFormatException("Invalid CODA number at position " + (i + 1));
+         }
+         value = value * 10 + digit;
+      }
+      return negative ? -value : value;
+   }
+
+   private static int twoDigits(CharSequence line, int index)
+   {
+      int tens = line.charAt(index) - '0';
+      int units = line.charAt(index + 1) - '0';
+      if (tens < 0 || tens > 9 || units < 0 || units > 9)
+      {
+         return -1;
+      }
+      return tens * 10 + units;
+   }
+
+   private static int lengthOfMonth(int year, int month)
+   {
+      switch (month)
+      {
+         case 2:
+            return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+         case 4:
+         case 6:
+         case 9:
+         case 11:
+            return 30;
+         default:
+            return 31;
+      }
+   }
+}
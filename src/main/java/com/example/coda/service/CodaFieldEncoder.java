@@ -0,0 +1,45 @@
+package com.example.coda.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Formats CODA fields to their fixed width
+ * <p>
+ * Text is padded with spaces on the right (or truncated), numbers and amounts are padded with
+ * zeros on the left and dates are written as DDMMYY ("000000" when absent). Model values are
+ * reduced to primitives here and copied into a {@link CodaLineEncoder}.
+ */
+final class CodaFieldEncoder
+{
+   private CodaFieldEncoder()
+   {
+   }
+
+   static void text(String value, int length, CodaLineEncoder line)
+   {
+      line.text(value, length);
+   }
+
+   static void number(Integer value, int length, CodaLineEncoder line)
+   {
+      line.number(value == null ? 0 : value, length);
+   }
+
+   static void amount(BigDecimal value, int length, CodaLineEncoder line)
+   {
+      line.amount(Money.thousandths(value), length);
+   }
+
+   static void date(LocalDate value, int length, CodaLineEncoder line)
+   {
+      if (value == null)
+      {
+         line.zeros(6);
+      }
+      else
+      {
+         line.date(value.getDayOfMonth(), value.getMonthValue(), value.getYear());
+      }
+   }
+}
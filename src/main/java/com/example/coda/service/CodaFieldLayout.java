@@ -0,0 +1,84 @@
+package com.example.coda.service;
+
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Position, width and model accessors of one field of a CODA record
+ *
+ * @param <R> record type
+ * @param <B> builder type of the record
+ * @param <V> Java type of the field
+ */
+public final class CodaFieldLayout<R, B, V>
+{
+   private final String name;
+   private final int start;
+   private final int length;
+   private final CodaFieldCodec<V> codec;
+   private final Function<R, V> getter;
+   private final BiConsumer<B, V> setter;
+
+   CodaFieldLayout(String name, int start, int length, CodaFieldCodec<V> codec, Function<R, V> getter,
+         BiConsumer<B, V> setter)
+   {
+      this.name = name;
+      this.start = start;
+      this.length = length;
+      this.codec = codec;
+      this.getter = getter;
+      this.setter = setter;
+   }
+
+   /**
+    * Model property name
+    */
+   public String getName()
+   {
+      return name;
+   }
+
+   /**
+    * Zero-based offset of the first character in the line (CODA position - 1)
+    */
+   public int getStart()
+   {
+      return start;
+   }
+
+   public int getLength()
+   {
+      return length;
+   }
+
+   /**
+    * Zero-based offset just after the last character
+    */
+   public int getEnd()
+   {
+      return start + length;
+   }
+
+   CodaFieldCodec<V> getCodec()
+   {
+      return codec;
+   }
+
+   /**
+    * Decode this field alone from a line
+    */
+   V read(CharSequence line)
+   {
+      return codec.decode(line, start, start + length);
+   }
+
+   void decode(CharSequence line, B builder)
+   {
+      setter.accept(builder, codec.decode(line, start, start + length));
+   }
+
+   void encode(R record, CodaLineEncoder line)
+   {
+      codec.encode(getter.apply(record), length, line);
+   }
+}
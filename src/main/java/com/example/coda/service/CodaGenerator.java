@@ -13,14 +13,48 @@ import com.example.coda.model.CodaStatement;
 import com.example.coda.model.CodaTrailerRecord;
 import com.example.coda.model.TransactionType;
 import org.springframework.stereotype.Service;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+/**
+ * Generates a CODA statement from bank transactions
+ * <p>
+ * Transactions are read twice and never collected: a first pass computes the count and totals
+ * needed by the global record, which comes before the movements, and a second pass writes the
+ * record 2.1/2.2/2.3 lines of each transaction as it is read, keeping running totals for the new
+ * balance and trailer. The source must therefore give the same transactions on each pass, e.g. a
+ * {@link List} or a query that can be run again; memory does not depend on the number of transactions.
+ * <p>
+ * Totals and balances are computed in thousandths with {@link Money}; {@link BigDecimal} is only
+ * read from the transactions and written to the records.
+ * <p>
+ * The continuous sequence number has 4 digits, so more than {@value #MAX_TRANSACTIONS_PER_STATEMENT}
+ * transactions are split into consecutive statements of one file: each has its own global record,
+ * new balance and trailer, opens with the closing balance of the previous one and takes the next
+ * statement number. When the source is a random-access {@link List}, the statements are built in
+ * parallel on the common {@link ForkJoinPool} and written in order.
+ */
 @Service
 public class CodaGenerator
 {
+   /**
+    * Most transactions in one statement: the continuous sequence number has 4 digits
+    */
+   static final int MAX_TRANSACTIONS_PER_STATEMENT = 9999;
+
+   private static final int FIRST_STATEMENT_NUMBER = 123;
+
    private final CodaWriter writer;
 
    public CodaGenerator(CodaWriter writer)
@@ -31,23 +65,277 @@ public class CodaGenerator
    public String generate(String bankName, String accountNumber, String currency, LocalDate statementDate,
          BigDecimal openingBalance, List<CodaBankTransaction> inputTxs)
    {
-      List<CodaBankTransaction> txs = (inputTxs == null) ? List.of() : inputTxs;
+      StringBuilder sb = new StringBuilder();
+      try
+      {
+         generate(new Account(bankName, accountNumber, currency, statementDate, openingBalance), source(inputTxs),
+               randomAccess(inputTxs), CodaLineBuffer.inMemory(sb));
+      }
+      catch (IOException e)
+      {
+         // Not thrown when writing to memory
+         throw new UncheckedIOException(e);
+      }
+      return sb.toString();
+   }
+
+   /**
+    * Same statement as {@link #generate}, encoded as ISO-8859-1 bytes for a response or a file
+    */
+   public CodaDocument generateDocument(String bankName, String accountNumber, String currency,
+         LocalDate statementDate, BigDecimal openingBalance, List<CodaBankTransaction> inputTxs)
+   {
+      Account account = new Account(bankName, accountNumber, currency, statementDate, openingBalance);
+      try
+      {
+         return CodaLineBuffer.document(lines -> generate(account, source(inputTxs), randomAccess(inputTxs), lines));
+      }
+      catch (IOException e)
+      {
+         // Not thrown when writing to memory
+         throw new UncheckedIOException(e);
+      }
+   }
+
+   /**
+    * Stream the statement to a character output, reading {@code transactions} twice
+    */
+   public void generate(String bankName, String accountNumber, String currency, LocalDate statementDate,
+         BigDecimal openingBalance, Iterable<CodaBankTransaction> transactions, Appendable out) throws IOException
+   {
+      try (CodaLineBuffer lines = CodaLineBuffer.to(out))
+      {
+         generate(new Account(bankName, accountNumber, currency, statementDate, openingBalance),
+               source(transactions), randomAccess(transactions), lines);
+         lines.flush();
+      }
+   }
+
+   /**
+    * Stream the statement to a byte output, ISO-8859-1 encoded, reading {@code transactions} twice
+    */
+   public void generate(String bankName, String accountNumber, String currency, LocalDate statementDate,
+         BigDecimal openingBalance, Iterable<CodaBankTransaction> transactions, OutputStream out) throws IOException
+   {
+      try (CodaLineBuffer lines = CodaLineBuffer.to(out))
+      {
+         generate(new Account(bankName, accountNumber, currency, statementDate, openingBalance),
+               source(transactions), randomAccess(transactions), lines);
+         lines.flush();
+      }
+   }
+
+   /**
+    * Stream the statement to a byte output, ISO-8859-1 encoded
+    *
+    * @param transactions opens a new stream of the same transactions on each call; it is called
+    *                     twice and each stream is closed after use
+    */
+   public void generate(String bankName, String accountNumber, String currency, LocalDate statementDate,
+         BigDecimal openingBalance, Supplier<? extends Stream<CodaBankTransaction>> transactions, OutputStream out)
+         throws IOException
+   {
+      try (CodaLineBuffer lines = CodaLineBuffer.to(out))
+      {
+         generate(new Account(bankName, accountNumber, currency, statementDate, openingBalance), transactions, null,
+               lines);
+         lines.flush();
+      }
+   }
+
+   /**
+    * First pass alone: cut the transactions into statements and total them, checking that every
+    * balance and total fits its CODA amount field, so that a statement that cannot be written fails
+    * before any of it is. The statement is then written by {@link #generate(Plan, Supplier, OutputStream)}.
+    *
+    * @throws IllegalArgumentException when an amount needs more than 15 digits
+    * @throws ArithmeticException when the totals overflow
+    */
+   public Plan plan(String bankName, String accountNumber, String currency, LocalDate statementDate,
+         BigDecimal openingBalance, Supplier<? extends Stream<CodaBankTransaction>> transactions)
+   {
+      return plan(new Account(bankName, accountNumber, currency, statementDate, openingBalance), transactions);
+   }
+
+   /**
+    * Second pass of a {@link #plan}, to a byte output, ISO-8859-1 encoded
+    *
+    * @param transactions the transactions the plan was made from, opened once more
+    */
+   public void generate(Plan plan, Supplier<? extends Stream<CodaBankTransaction>> transactions, OutputStream out)
+         throws IOException
+   {
+      try (CodaLineBuffer lines = CodaLineBuffer.to(out))
+      {
+         write(plan, transactions, null, lines);
+         lines.flush();
+      }
+   }
+
+   /**
+    * Second pass of a {@link #plan}, to a byte output, ISO-8859-1 encoded; statements of a
+    * random-access {@link List} are built in parallel
+    */
+   public void generate(Plan plan, Iterable<CodaBankTransaction> transactions, OutputStream out) throws IOException
+   {
+      try (CodaLineBuffer lines = CodaLineBuffer.to(out))
+      {
+         write(plan, source(transactions), randomAccess(transactions), lines);
+         lines.flush();
+      }
+   }
+
+   private void generate(Account account, Supplier<? extends Stream<CodaBankTransaction>> transactions,
+         List<CodaBankTransaction> randomAccess, CodaLineBuffer lines) throws IOException
+   {
+      write(plan(account, transactions), transactions, randomAccess, lines);
+   }
+
+   private void write(Plan plan, Supplier<? extends Stream<CodaBankTransaction>> transactions,
+         List<CodaBankTransaction> randomAccess, CodaLineBuffer lines) throws IOException
+   {
+      Account account = plan.account;
+      List<Split> splits = plan.splits;
+
+      if (randomAccess != null && splits.size() > 1)
+      {
+         // Each statement starts from a known list position and old balance, so they are built independently
+         lines.appendInOrder(splits.size(), index -> () -> {
+            Split split = splits.get(index);
+            StringBuilder statement = new StringBuilder();
+            writeSplit(account, split, randomAccess.subList(split.start(), randomAccess.size()).iterator(),
+                  CodaLineBuffer.inMemory(statement));
+            return statement;
+         }, ForkJoinPool.commonPool(), ForkJoinPool.commonPool().getParallelism() + 1);
+         return;
+      }
+
+      // Second pass: one record 2.1/2.2/2.3 group per transaction, written as it is read
+      try (Stream<CodaBankTransaction> txs = transactions.get())
+      {
+         Iterator<CodaBankTransaction> iterator = txs.iterator();
+         for (Split split : splits)
+         {
+            writeSplit(account, split, iterator, lines);
+         }
+         while (iterator.hasNext())
+         {
+            if (iterator.next() != null)
+            {
+               throw new IllegalStateException("Transactions changed between the two passes over the source");
+            }
+         }
+      }
+   }
+
+   /**
+    * First pass: count and total the transactions, cutting a new statement every
+    * {@link #MAX_TRANSACTIONS_PER_STATEMENT}, then check the amounts each statement will write
+    */
+   private static Plan plan(Account account, Supplier<? extends Stream<CodaBankTransaction>> transactions)
+   {
+      List<Totals> totals = new ArrayList<>();
+      List<Integer> starts = new ArrayList<>();
+      Totals current = new Totals();
+      int start = 0;
+      int position = 0;
+      try (Stream<CodaBankTransaction> txs = transactions.get())
+      {
+         Iterator<CodaBankTransaction> iterator = txs.iterator();
+         while (iterator.hasNext())
+         {
+            CodaBankTransaction tx = iterator.next();
+            if (tx != null)
+            {
+               if (current.count == MAX_TRANSACTIONS_PER_STATEMENT)
+               {
+                  totals.add(current);
+                  starts.add(start);
+                  current = new Totals();
+                  start = position;
+               }
+               current.add(tx);
+            }
+            position++;
+         }
+      }
+      totals.add(current);
+      starts.add(start);
+
+      // Chain the balances: each statement opens with the closing balance of the previous one
+      List<Split> splits = new ArrayList<>(totals.size());
+      Money opening = Money.of(account.openingBalance());
+      for (int i = 0; i < totals.size(); i++)
+      {
+         String statementNumber = String.format("%03d", (FIRST_STATEMENT_NUMBER + i) % 1000);
+         Split split = new Split(statementNumber, starts.get(i), opening, totals.get(i));
+         splits.add(split);
+         opening = split.closing();
+      }
+      for (Split split : splits)
+      {
+         split.opening().abs().requireCodaWidth("Opening balance");
+         split.totals().credits().plus(split.totals().debits()).requireCodaWidth("Global amount");
+         split.closing().abs().requireCodaWidth("New balance");
+         split.totals().debits().requireCodaWidth("Total debit");
+         split.totals().credits().requireCodaWidth("Total credit");
+      }
+      return new Plan(account, splits);
+   }
 
-      // Build CodaStatement
-      CodaStatement statement = buildCodaStatement(bankName, accountNumber, currency, statementDate, openingBalance, txs);
+   /**
+    * Write one complete statement, reading its transactions from {@code txs}
+    */
+   private void writeSplit(Account account, Split split, Iterator<CodaBankTransaction> txs, CodaLineBuffer lines)
+         throws IOException
+   {
+      writer.writeOpening(CodaStatement.builder()
+            .header(header(account))
+            .oldBalance(oldBalance(account, split))
+            .global(global(account, split))
+            .build(), lines);
+
+      Totals running = new Totals();
+      while (running.count < split.totals().count && txs.hasNext())
+      {
+         CodaBankTransaction tx = txs.next();
+         if (tx == null) continue;
+
+         running.add(tx);
+         writer.writeTransactionRecords(transaction(tx, running.count, split.statementNumber()), lines);
+      }
+      if (!running.equals(split.totals()))
+      {
+         throw new IllegalStateException("Transactions changed between the two passes over the source");
+      }
 
-      // Use simple write method for standard CODA generation
-      return writer.write(statement);
+      writer.writeClosing(CodaStatement.builder()
+            .newBalance(newBalance(account, split))
+            .trailer(trailer(split.totals()))
+            .build(), lines);
    }
 
-   private CodaStatement buildCodaStatement(String bankName, String accountNumber, String currency,
-         LocalDate statementDate, BigDecimal openingBalance, List<CodaBankTransaction> txs)
+   private static Supplier<Stream<CodaBankTransaction>> source(Iterable<CodaBankTransaction> transactions)
    {
-      // Header record
-      CodaHeaderRecord header = CodaHeaderRecord.builder()
+      Iterable<CodaBankTransaction> txs = (transactions == null) ? List.of() : transactions;
+      return () -> StreamSupport.stream(txs.spliterator(), false);
+   }
+
+   /**
+    * The source itself when it can be read from any position by several threads at once
+    */
+   private static List<CodaBankTransaction> randomAccess(Iterable<CodaBankTransaction> transactions)
+   {
+      return transactions instanceof List<CodaBankTransaction> list && list instanceof RandomAccess ? list : null;
+   }
+
+   private CodaHeaderRecord header(Account account)
+   {
+      String bankName = account.bankName();
+      return CodaHeaderRecord.builder()
             .recordIdentification("0")
             .zeros("0000")
-            .creationDate(statementDate)
+            .creationDate(account.statementDate())
             .bankIdentificationNumber("300")
             .applicationCode("05")
             .duplicateCode(" ")
@@ -63,157 +351,226 @@ public class CodaGenerator
             .filler3("       ")
             .versionCode("2")
             .build();
+   }
 
-      // Old balance record
-      CodaOldBalanceRecord oldBalance = CodaOldBalanceRecord.builder()
+   private CodaOldBalanceRecord oldBalance(Account account, Split split)
+   {
+      String bankName = account.bankName();
+      return CodaOldBalanceRecord.builder()
             .recordIdentification("1")
             .accountStructure("0")
-            .statementNumber("123")
-            .accountNumber(String.format("%-37s", accountNumber.replace(" ", "") + " " + currency))
-            .oldBalanceSign("0")
-            .oldBalance(openingBalance)
-            .balanceDate(statementDate)
+            .statementNumber(split.statementNumber())
+            .accountNumber(String.format("%-37s", account.accountNumber().replace(" ", "") + " " + account.currency()))
+            .oldBalanceSign(split.opening().signum() >= 0 ? "0" : "1")
+            .oldBalance(split.opening().abs().toBigDecimal())
+            .balanceDate(account.statementDate())
             .accountHolderName(String.format("%-26s", bankName.length() > 26 ? bankName.substring(0, 26) : bankName))
             .accountDescription(String.format("%-35s", "Current account"))
-            .statementNumberDetail("123")
+            .statementNumberDetail(split.statementNumber())
             .build();
+   }
 
-      // Global Record
-      CodaGlobalRecord global = CodaGlobalRecord.builder()
+   private CodaGlobalRecord global(Account account, Split split)
+   {
+      Totals totals = split.totals();
+      return CodaGlobalRecord.builder()
             .recordIdentification("2")
             .articleCode("1")
             .continuousSequenceNumber("0001")
             .detailNumber("0000")
             .referenceNumber(String.format("%-21s", ""))
             .movementSign("0")
-            .amount(txs.stream().map(CodaBankTransaction::amount).reduce(BigDecimal.ZERO, BigDecimal::add))
-            .valueDate(statementDate)
+            .amount(totals.credits().plus(totals.debits()).toBigDecimal())
+            .valueDate(account.statementDate())
             .transactionCode("20150000")
             .communicationType("0")
-            .communicationZone(String.format("%-53s", "GROUPING OF " + txs.size() + " VCS"))
-            .entryDate(statementDate)
-            .statementNumber("123")
+            .communicationZone(String.format("%-53s", "GROUPING OF " + totals.count + " VCS"))
+            .entryDate(account.statementDate())
+            .statementNumber(split.statementNumber())
             .globalisationCode("1")
             .nextCode("0")
             .filler(" ")
             .linkCode("0")
             .build();
+   }
 
-      // Individual Transaction records
-      List<CodaIndividualTransactionRecord> individualTransactions = new ArrayList<>();
-      BigDecimal totalCredits = BigDecimal.ZERO;
-      BigDecimal totalDebits = BigDecimal.ZERO;
+   private CodaIndividualTransactionRecord transaction(CodaBankTransaction tx, int seq, String statementNumber)
+   {
+      boolean credit = tx.type() == TransactionType.CREDIT;
 
-      int seq = 1;
-      for (CodaBankTransaction tx : txs)
-      {
-         if (tx == null) continue;
+      // Create Record 21 - Individual Transaction Main Data
+      CodaRecord21 record21 = CodaRecord21.builder()
+            .recordIdentification("2")
+            .articleCode("1")
+            .continuousSequenceNumber(String.format("%04d", seq))
+            .detailNumber("0000")
+            .referenceNumber(String.format("%-21s", tx.reference() != null ? tx.reference() : ""))
+            .movementSign(credit ? "0" : "1")
+            .amount(tx.amount())
+            .valueDate(tx.bookingDate())
+            .transactionCode(credit ? "01050000" : "01050001")
+            .communicationType("0")
+            .communicationZone(String.format("%-53s", ""))
+            .entryDate(tx.bookingDate())
+            .statementNumber(statementNumber)
+            .globalisationCode("0")
+            .nextCode("1")
+            .filler(" ")
+            .linkCode("0")
+            .build();
 
-         boolean credit = tx.type() == TransactionType.CREDIT;
-         if (credit)
-         {
-            totalCredits = totalCredits.add(tx.amount());
-         }
-         else
-         {
-            totalDebits = totalDebits.add(tx.amount());
-         }
+      // Create Record 22 - Communication
+      CodaRecord22 record22 = CodaRecord22.builder()
+            .recordIdentification("2")
+            .articleCode("2")
+            .continuousSequenceNumber(String.format("%04d", seq))
+            .detailNumber("0000")
+            .clientReference(String.format("%-53s", ""))
+            .counterpartyName(String.format("%-27s", tx.counterpartyName() != null ? tx.counterpartyName().substring(0, Math.min(27, tx.counterpartyName().length())) : ""))
+            .counterpartyBic(String.format("%-11s", "GKCCBEBB"))
+            .filler1(String.format("%-24s", ""))
+            .transactionCategory("1")
+            .filler2(" ")
+            .nextCode("1")
+            .build();
+
+      // Create Record 23 - Counterparty Account
+      CodaRecord23 record23 = CodaRecord23.builder()
+            .recordIdentification("2")
+            .articleCode("3")
+            .continuousSequenceNumber(String.format("%04d", seq))
+            .detailNumber("0000")
+            .counterpartyAccount(String.format("%-37s", tx.counterpartyAccount() != null ? tx.counterpartyAccount() : ""))
+            .counterpartyAccountName(String.format("%-35s", tx.counterpartyName() != null ? tx.counterpartyName().substring(0, Math.min(35, tx.counterpartyName().length())) : ""))
+            .filler1(String.format("%-43s", ""))
+            .purposeCategory("0")
+            .filler2(" ")
+            .nextCode("0")
+            .build();
+
+      return CodaIndividualTransactionRecord.builder()
+            .record21(record21)
+            .record22(record22)
+            .record23(record23)
+            .build();
+   }
 
-         // Create Record 21 - Individual Transaction Main Data
-         CodaRecord21 record21 = CodaRecord21.builder()
-               .recordIdentification("2")
-               .articleCode("1")
-               .continuousSequenceNumber(String.format("%04d", seq))
-               .detailNumber("0000")
-               .referenceNumber(String.format("%-21s", tx.reference() != null ? tx.reference() : ""))
-               .movementSign(credit ? "0" : "1")
-               .amount(tx.amount())
-               .valueDate(tx.bookingDate())
-               .transactionCode(credit ? "01050000" : "01050001")
-               .communicationType("0")
-               .communicationZone(String.format("%-53s", ""))
-               .entryDate(tx.bookingDate())
-               .statementNumber("123")
-               .globalisationCode("0")
-               .nextCode("1")
-               .filler(" ")
-               .linkCode("0")
-               .build();
-
-         // Create Record 22 - Communication
-         CodaRecord22 record22 = CodaRecord22.builder()
-               .recordIdentification("2")
-               .articleCode("2")
-               .continuousSequenceNumber(String.format("%04d", seq))
-               .detailNumber("0000")
-               .clientReference(String.format("%-53s", ""))
-               .counterpartyName(String.format("%-27s", tx.counterpartyName() != null ? tx.counterpartyName().substring(0, Math.min(27, tx.counterpartyName().length())) : ""))
-               .counterpartyBic(String.format("%-11s", "GKCCBEBB"))
-               .filler1(String.format("%-24s", ""))
-               .transactionCategory("1")
-               .filler2(" ")
-               .nextCode("1")
-               .build();
-
-         // Create Record 23 - Counterparty Account
-         CodaRecord23 record23 = CodaRecord23.builder()
-               .recordIdentification("2")
-               .articleCode("3")
-               .continuousSequenceNumber(String.format("%04d", seq))
-               .detailNumber("0000")
-               .counterpartyAccount(String.format("%-37s", tx.counterpartyAccount() != null ? tx.counterpartyAccount() : ""))
-               .counterpartyAccountName(String.format("%-35s", tx.counterpartyName() != null ? tx.counterpartyName().substring(0, Math.min(35, tx.counterpartyName().length())) : ""))
-               .filler1(String.format("%-43s", ""))
-               .purposeCategory("0")
-               .filler2(" ")
-               .nextCode("0")
-               .build();
-
-         CodaIndividualTransactionRecord transactionRecord = CodaIndividualTransactionRecord.builder()
-               .record21(record21)
-               .record22(record22)
-               .record23(record23)
-               .build();
-
-         individualTransactions.add(transactionRecord);
-         seq++;
-      }
-
-      // New balance record
-      BigDecimal closingBalance = openingBalance.add(totalCredits).subtract(totalDebits);
-      String balanceSign = closingBalance.compareTo(BigDecimal.ZERO) >= 0 ? "0" : "1";
+   private CodaNewBalanceRecord newBalance(Account account, Split split)
+   {
+      Money closingBalance = split.closing();
+      String balanceSign = closingBalance.signum() >= 0 ? "0" : "1";
       // Filler is 64 chars (pos 65-128), with last char being "0"
       String fillerWith0 = String.format("%-63s", "") + "0";
-      CodaNewBalanceRecord newBalance = CodaNewBalanceRecord.builder()
+      return CodaNewBalanceRecord.builder()
             .recordIdentification("8")
             .accountStructure("0")
-            .statementNumber("123")
-            .accountNumber(String.format("%-37s", accountNumber.replace(" ", "") + " " + currency))
+            .statementNumber(split.statementNumber())
+            .accountNumber(String.format("%-37s", account.accountNumber().replace(" ", "") + " " + account.currency()))
             .newBalanceSign(balanceSign)
-            .newBalance(closingBalance.abs())
-            .balanceDate(statementDate)
+            .newBalance(closingBalance.abs().toBigDecimal())
+            .balanceDate(account.statementDate())
             .filler(fillerWith0)
             .build();
+   }
 
-      // Trailer record
-      int totalRecordCount = 4 + individualTransactions.size() * 3;  // header, old balance, global, transaction records (21,22,23,31,32 per tx), new balance, trailer
-      CodaTrailerRecord trailer = CodaTrailerRecord.builder()
+   private CodaTrailerRecord trailer(Totals totals)
+   {
+      int totalRecordCount = 4 + totals.count * 3;  // header, old balance, global, transaction records (21,22,23,31,32 per tx), new balance, trailer
+      return CodaTrailerRecord.builder()
             .recordIdentification("9")
             .filler1(String.format("%-15s", ""))
             .numberOfRecords(totalRecordCount)
-            .totalDebit(totalDebits)
-            .totalCredit(totalCredits)
+            .totalDebit(totals.debits().toBigDecimal())
+            .totalCredit(totals.credits().toBigDecimal())
             .filler2(String.format("%-75s", ""))
             .trailerMarker("1")
             .build();
+   }
 
-      return CodaStatement.builder()
-            .header(header)
-            .oldBalance(oldBalance)
-            .global(global)
-            .individualTransactions(individualTransactions)
-            .newBalance(newBalance)
-            .trailer(trailer)
-            .build();
+   /**
+    * Result of the first pass over the transactions of a statement, see {@link #plan}
+    */
+   public static final class Plan
+   {
+      private final Account account;
+      private final List<Split> splits;
+
+      private Plan(Account account, List<Split> splits)
+      {
+         this.account = account;
+         this.splits = splits;
+      }
+   }
+
+   /**
+    * Account and date of the generated statement
+    */
+   private record Account(String bankName, String accountNumber, String currency, LocalDate statementDate,
+                          BigDecimal openingBalance)
+   {
+   }
+
+   /**
+    * One statement of the generated file: transactions from list position {@code start}, up to
+    * {@link #MAX_TRANSACTIONS_PER_STATEMENT} of them
+    */
+   private record Split(String statementNumber, int start, Money opening, Totals totals)
+   {
+      Money closing()
+      {
+         return opening.plus(totals.credits()).minus(totals.debits());
+      }
+   }
+
+   /**
+    * Running count and totals of the transactions read so far; null entries are skipped
+    * <p>
+    * Totals are kept as long thousandths, so adding a transaction allocates nothing.
+    */
+   private static final class Totals
+   {
+      private int count;
+      private long credits;
+      private long debits;
+
+      void add(CodaBankTransaction tx)
+      {
+         if (tx == null)
+         {
+            return;
+         }
+         count++;
+         if (tx.type() == TransactionType.CREDIT)
+         {
+            credits = Math.addExact(credits, Money.thousandths(tx.amount()));
+         }
+         else
+         {
+            debits = Math.addExact(debits, Money.thousandths(tx.amount()));
+         }
+      }
+
+      Money credits()
+      {
+         return new Money(credits);
+      }
+
+      Money debits()
+      {
+         return new Money(debits);
+      }
+
+      @Override
+      public boolean equals(Object other)
+      {
+         return other instanceof Totals totals && count == totals.count && credits == totals.credits
+               && debits == totals.debits;
+      }
+
+      @Override
+      public int hashCode()
+      {
+         return count;
+      }
    }
 }
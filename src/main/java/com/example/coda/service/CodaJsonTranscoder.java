@@ -0,0 +1,192 @@
+package com.example.coda.service;
+
+import com.example.coda.model.CodaIndividualTransactionRecord;
+import com.example.coda.model.CodaRecord;
+import com.example.coda.model.CodaStatement;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.stereotype.Service;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Writes CODA records as JSON while they are read, without building a {@link CodaStatement}
+ * <p>
+ * Records are grouped into individual transactions as by {@link CodaParser#parse(java.io.Reader)},
+ * and each transaction is serialized to the {@link JsonGenerator} as soon as its last record has
+ * been read, then dropped; only the current transaction and the header and balance records are
+ * held. {@link #writeJson} gives the JSON of the {@code CodaStatement} that {@code parse} would
+ * return; {@link #writeNdjson} writes one transaction per line.
+ * <p>
+ * The statement fields are written in model order. A header, old balance or global record that
+ * only appears after the first transaction is written after the transaction array instead, and
+ * when a file holds several statements the first of these records is kept where {@code parse}
+ * keeps the last.
+ */
+@Service
+public class CodaJsonTranscoder
+{
+   private final ObjectMapper mapper;
+   private final ObjectWriter values;
+
+   public CodaJsonTranscoder(ObjectMapper mapper)
+   {
+      this.mapper = mapper;
+      // Let the generator's buffer decide when bytes go out, not every transaction
+      this.values = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+   }
+
+   /**
+    * Write the records of {@code records} as one statement JSON object; {@code out} is flushed, not closed
+    */
+   public void writeJson(CodaRecordSource records, OutputStream out) throws IOException
+   {
+      try (JsonGenerator json = generator(out))
+      {
+         StatementWriter statement = new StatementWriter(json);
+         read(records, statement.assembler);
+         statement.finish();
+      }
+   }
+
+   /**
+    * Write the individual transactions of {@code records} as NDJSON, one object per line;
+    * {@code out} is flushed, not closed
+    */
+   public void writeNdjson(CodaRecordSource records, OutputStream out) throws IOException
+   {
+      try (JsonGenerator json = generator(out))
+      {
+         json.setRootValueSeparator(null);
+         read(records, new CodaStatementAssembler(transaction -> {
+            try
+            {
+               values.writeValue(json, transaction);
+               json.writeRaw('\n');
+            }
+            catch (IOException e)
+            {
+               throw new UncheckedIOException(e);
+            }
+         }));
+      }
+   }
+
+   private JsonGenerator generator(OutputStream out) throws IOException
+   {
+      JsonGenerator json = mapper.createGenerator(out, JsonEncoding.UTF8);
+      json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      // A failure must not be hidden by closing the open object and array
+      json.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+      return json;
+   }
+
+   private static void read(CodaRecordSource records, CodaStatementAssembler assembler) throws IOException
+   {
+      try
+      {
+         CodaRecord record;
+         while ((record = records.next()) != null)
+         {
+            assembler.accept(record);
+         }
+         assembler.finish();
+      }
+      catch (UncheckedIOException e)
+      {
+         throw e.getCause();
+      }
+   }
+
+   /**
+    * Streams the fields of one {@link CodaStatement}, opening the transaction array at the first transaction
+    */
+   private final class StatementWriter
+   {
+      private final JsonGenerator json;
+      private final CodaStatementAssembler assembler = new CodaStatementAssembler(this::transaction);
+      private boolean transactionsStarted;
+      private boolean headerWritten;
+      private boolean oldBalanceWritten;
+      private boolean globalWritten;
+
+      private StatementWriter(JsonGenerator json) throws IOException
+      {
+         this.json = json;
+         json.writeStartObject();
+      }
+
+      private void transaction(CodaIndividualTransactionRecord transaction)
+      {
+         try
+         {
+            if (!transactionsStarted)
+            {
+               startTransactions(false);
+            }
+            values.writeValue(json, transaction);
+         }
+         catch (IOException e)
+         {
+            throw new UncheckedIOException(e);
+         }
+      }
+
+      private void startTransactions(boolean last) throws IOException
+      {
+         // Records read so far keep their place before the array; missing ones may still come
+         if (last || assembler.header() != null)
+         {
+            field("header", assembler.header());
+            headerWritten = true;
+         }
+         if (last || (headerWritten && assembler.oldBalance() != null))
+         {
+            field("oldBalance", assembler.oldBalance());
+            oldBalanceWritten = true;
+         }
+         if (last || (oldBalanceWritten && assembler.global() != null))
+         {
+            field("global", assembler.global());
+            globalWritten = true;
+         }
+         json.writeFieldName("individualTransactions");
+         json.writeStartArray();
+         transactionsStarted = true;
+      }
+
+      private void finish() throws IOException
+      {
+         if (!transactionsStarted)
+         {
+            startTransactions(true);
+         }
+         json.writeEndArray();
+         if (!headerWritten)
+         {
+            field("header", assembler.header());
+         }
+         if (!oldBalanceWritten)
+         {
+            field("oldBalance", assembler.oldBalance());
+         }
+         if (!globalWritten)
+         {
+            field("global", assembler.global());
+         }
+         field("newBalance", assembler.newBalance());
+         field("trailer", assembler.trailer());
+         json.writeEndObject();
+      }
+
+      private void field(String name, Object value) throws IOException
+      {
+         json.writeFieldName(name);
+         values.writeValue(json, value);
+      }
+   }
+}
@@ -0,0 +1,263 @@
+package com.example.coda.service;
+
+import static com.example.coda.service.CodaFieldCodec.ACCOUNT;
+import static com.example.coda.service.CodaFieldCodec.AMOUNT;
+import static com.example.coda.service.CodaFieldCodec.DATE;
+import static com.example.coda.service.CodaFieldCodec.NUMBER;
+import static com.example.coda.service.CodaFieldCodec.TEXT;
+import static com.example.coda.service.CodaFieldCodec.TRIMMED;
+import com.example.coda.model.CodaGlobalRecord;
+import com.example.coda.model.CodaHeaderRecord;
+import com.example.coda.model.CodaNewBalanceRecord;
+import com.example.coda.model.CodaOldBalanceRecord;
+import com.example.coda.model.CodaRecord21;
+import com.example.coda.model.CodaRecord22;
+import com.example.coda.model.CodaRecord23;
+import com.example.coda.model.CodaRecord31;
+import com.example.coda.model.CodaRecord32;
+import com.example.coda.model.CodaTrailerRecord;
+
+/**
+ * Field layout of every CODA record type for one version of the format
+ * <p>
+ * Single source of truth for field positions: {@link CodaRecordReader} parses and {@link CodaWriter}
+ * writes from the same tables. The layouts are built and validated once, when this class is loaded.
+ */
+public final class CodaLayout
+{
+   /**
+    * CODA version 2 (version code "2" at pos 128 of the header)
+    */
+   public static final CodaLayout V2 = new CodaLayout("2",
+         CodaRecordLayout.of("0", CodaHeaderRecord::builder, CodaHeaderRecord.CodaHeaderRecordBuilder::build)
+               .field("recordIdentification", 1, 1, TEXT, CodaHeaderRecord::getRecordIdentification, (b, v) -> b.recordIdentification(v))
+               .field("zeros", 2, 5, TEXT, CodaHeaderRecord::getZeros, (b, v) -> b.zeros(v))
+               .field("creationDate", 6, 11, DATE, CodaHeaderRecord::getCreationDate, (b, v) -> b.creationDate(v))
+               .field("bankIdentificationNumber", 12, 14, TEXT, CodaHeaderRecord::getBankIdentificationNumber, (b, v) -> b.bankIdentificationNumber(v))
+               .field("applicationCode", 15, 16, TEXT, CodaHeaderRecord::getApplicationCode, (b, v) -> b.applicationCode(v))
+               .field("duplicateCode", 17, 17, TEXT, CodaHeaderRecord::getDuplicateCode, (b, v) -> b.duplicateCode(v))
+               .field("filler1", 18, 24, TEXT, CodaHeaderRecord::getFiller1, (b, v) -> b.filler1(v))
+               .field("fileReference", 25, 34, TEXT, CodaHeaderRecord::getFileReference, (b, v) -> b.fileReference(v))
+               .field("nameAddressee", 35, 60, TEXT, CodaHeaderRecord::getNameAddressee, (b, v) -> b.nameAddressee(v))
+               .field("bic", 61, 71, TEXT, CodaHeaderRecord::getBic, (b, v) -> b.bic(v))
+               .field("vatNumber", 72, 82, TRIMMED, CodaHeaderRecord::getVatNumber, (b, v) -> b.vatNumber(v))
+               .field("filler2", 83, 83, TEXT, CodaHeaderRecord::getFiller2, (b, v) -> b.filler2(v))
+               .field("codeSeparateApplication", 84, 88, TEXT, CodaHeaderRecord::getCodeSeparateApplication, (b, v) -> b.codeSeparateApplication(v))
+               .field("transactionReference", 89, 104, TEXT, CodaHeaderRecord::getTransactionReference, (b, v) -> b.transactionReference(v))
+               .field("relatedReference", 105, 120, TEXT, CodaHeaderRecord::getRelatedReference, (b, v) -> b.relatedReference(v))
+               .field("filler3", 121, 127, TEXT, CodaHeaderRecord::getFiller3, (b, v) -> b.filler3(v))
+               .field("versionCode", 128, 128, TEXT, CodaHeaderRecord::getVersionCode, (b, v) -> b.versionCode(v))
+               .build(),
+         CodaRecordLayout.of("1", CodaOldBalanceRecord::builder, CodaOldBalanceRecord.CodaOldBalanceRecordBuilder::build)
+               .field("recordIdentification", 1, 1, TEXT, CodaOldBalanceRecord::getRecordIdentification, (b, v) -> b.recordIdentification(v))
+               .field("accountStructure", 2, 2, TEXT, CodaOldBalanceRecord::getAccountStructure, (b, v) -> b.accountStructure(v))
+               .field("statementNumber", 3, 5, TEXT, CodaOldBalanceRecord::getStatementNumber, (b, v) -> b.statementNumber(v))
+               .field("accountNumber", 6, 42, ACCOUNT, CodaOldBalanceRecord::getAccountNumber, (b, v) -> b.accountNumber(v))
+               .field("oldBalanceSign", 43, 43, TEXT, CodaOldBalanceRecord::getOldBalanceSign, (b, v) -> b.oldBalanceSign(v))
+               .field("oldBalance", 44, 58, AMOUNT, CodaOldBalanceRecord::getOldBalance, (b, v) -> b.oldBalance(v))
+               .field("balanceDate", 59, 64, DATE, CodaOldBalanceRecord::getBalanceDate, (b, v) -> b.balanceDate(v))
+               .field("accountHolderName", 65, 90, TEXT, CodaOldBalanceRecord::getAccountHolderName, (b, v) -> b.accountHolderName(v))
+               .field("accountDescription", 91, 125, TEXT, CodaOldBalanceRecord::getAccountDescription, (b, v) -> b.accountDescription(v))
+               .field("statementNumberDetail", 126, 128, TEXT, CodaOldBalanceRecord::getStatementNumberDetail, (b, v) -> b.statementNumberDetail(v))
+               .build(),
+         CodaRecordLayout.of("2.1", CodaGlobalRecord::builder, CodaGlobalRecord.CodaGlobalRecordBuilder::build)
+               .field("recordIdentification", 1, 1, TEXT, CodaGlobalRecord::getRecordIdentification, (b, v) -> b.recordIdentification(v))
+               .field("articleCode", 2, 2, TEXT, CodaGlobalRecord::getArticleCode, (b, v) -> b.articleCode(v))
+               .field("continuousSequenceNumber", 3, 6, TEXT, CodaGlobalRecord::getContinuousSequenceNumber, (b, v) -> b.continuousSequenceNumber(v))
+               .field("detailNumber", 7, 10, TEXT, CodaGlobalRecord::getDetailNumber, (b, v) -> b.detailNumber(v))
+               .field("referenceNumber", 11, 31, TRIMMED, CodaGlobalRecord::getReferenceNumber, (b, v) -> b.referenceNumber(v))
+               .field("movementSign", 32, 32, TEXT, CodaGlobalRecord::getMovementSign, (b, v) -> b.movementSign(v))
+               .field("amount", 33, 47, AMOUNT, CodaGlobalRecord::getAmount, (b, v) -> b.amount(v))
+               .field("valueDate", 48, 53, DATE, CodaGlobalRecord::getValueDate, (b, v) -> b.valueDate(v))
+               .field("transactionCode", 54, 61, TEXT, CodaGlobalRecord::getTransactionCode, (b, v) -> b.transactionCode(v))
+               .field("communicationType", 62, 62, TEXT, CodaGlobalRecord::getCommunicationType, (b, v) -> b.communicationType(v))
+               .field("communicationZone", 63, 115, TRIMMED, CodaGlobalRecord::getCommunicationZone, (b, v) -> b.communicationZone(v))
+               .field("entryDate", 116, 121, DATE, CodaGlobalRecord::getEntryDate, (b, v) -> b.entryDate(v))
+               .field("statementNumber", 122, 124, TEXT, CodaGlobalRecord::getStatementNumber, (b, v) -> b.statementNumber(v))
+               .field("globalisationCode", 125, 125, TEXT, CodaGlobalRecord::getGlobalisationCode, (b, v) -> b.globalisationCode(v))
+               .field("nextCode", 126, 126, TEXT, CodaGlobalRecord::getNextCode, (b, v) -> b.nextCode(v))
+               .field("filler", 127, 127, TEXT, CodaGlobalRecord::getFiller, (b, v) -> b.filler(v))
+               .field("linkCode", 128, 128, TEXT, CodaGlobalRecord::getLinkCode, (b, v) -> b.linkCode(v))
+               .build(),
+         CodaRecordLayout.of("2.1", CodaRecord21::builder, CodaRecord21.CodaRecord21Builder::build)
+               .field("recordIdentification", 1, 1, TEXT, CodaRecord21::getRecordIdentification, (b, v) -> b.recordIdentification(v))
+               .field("articleCode", 2, 2, TEXT, CodaRecord21::getArticleCode, (b, v) -> b.articleCode(v))
+               .field("continuousSequenceNumber", 3, 6, TEXT, CodaRecord21::getContinuousSequenceNumber, (b, v) -> b.continuousSequenceNumber(v))
+               .field("detailNumber", 7, 10, TEXT, CodaRecord21::getDetailNumber, (b, v) -> b.detailNumber(v))
+               .field("referenceNumber", 11, 31, TRIMMED, CodaRecord21::getReferenceNumber, (b, v) -> b.referenceNumber(v))
+               .field("movementSign", 32, 32, TEXT, CodaRecord21::getMovementSign, (b, v) -> b.movementSign(v))
+               .field("amount", 33, 47, AMOUNT, CodaRecord21::getAmount, (b, v) -> b.amount(v))
+               .field("valueDate", 48, 53, DATE, CodaRecord21::getValueDate, (b, v) -> b.valueDate(v))
+               .field("transactionCode", 54, 61, TEXT, CodaRecord21::getTransactionCode, (b, v) -> b.transactionCode(v))
+               .field("communicationType", 62, 62, TEXT, CodaRecord21::getCommunicationType, (b, v) -> b.communicationType(v))
+               .field("communicationZone", 63, 115, TRIMMED, CodaRecord21::getCommunicationZone, (b, v) -> b.communicationZone(v))
+               .field("entryDate", 116, 121, DATE, CodaRecord21::getEntryDate, (b, v) -> b.entryDate(v))
+               .field("statementNumber", 122, 124, TEXT, CodaRecord21::getStatementNumber, (b, v) -> b.statementNumber(v))
+               .field("globalisationCode", 125, 125, TEXT, CodaRecord21::getGlobalisationCode, (b, v) -> b.globalisationCode(v))
+               .field("nextCode", 126, 126, TEXT, CodaRecord21::getNextCode, (b, v) -> b.nextCode(v))
+               .field("filler", 127, 127, TEXT, CodaRecord21::getFiller, (b, v) -> b.filler(v))
+               .field("linkCode", 128, 128, TEXT, CodaRecord21::getLinkCode, (b, v) -> b.linkCode(v))
+               .build(),
+         CodaRecordLayout.of("2.2", CodaRecord22::builder, CodaRecord22.CodaRecord22Builder::build)
+               .field("recordIdentification", 1, 1, TEXT, CodaRecord22::getRecordIdentification, (b, v) -> b.recordIdentification(v))
+               .field("articleCode", 2, 2, TEXT, CodaRecord22::getArticleCode, (b, v) -> b.articleCode(v))
+               .field("continuousSequenceNumber", 3, 6, TEXT, CodaRecord22::getContinuousSequenceNumber, (b, v) -> b.continuousSequenceNumber(v))
+               .field("detailNumber", 7, 10, TEXT, CodaRecord22::getDetailNumber, (b, v) -> b.detailNumber(v))
+               .field("clientReference", 11, 63, TRIMMED, CodaRecord22::getClientReference, (b, v) -> b.clientReference(v))
+               .field("counterpartyName", 64, 90, TRIMMED, CodaRecord22::getCounterpartyName, (b, v) -> b.counterpartyName(v))
+               .field("counterpartyBic", 91, 101, TRIMMED, CodaRecord22::getCounterpartyBic, (b, v) -> b.counterpartyBic(v))
+               .field("filler1", 102, 125, TEXT, CodaRecord22::getFiller1, (b, v) -> b.filler1(v))
+               .field("transactionCategory", 126, 126, TEXT, CodaRecord22::getTransactionCategory, (b, v) -> b.transactionCategory(v))
+               .field("filler2", 127, 127, TEXT, CodaRecord22::getFiller2, (b, v) -> b.filler2(v))
+               .field("nextCode", 128, 128, TEXT, CodaRecord22::getNextCode, (b, v) -> b.nextCode(v))
+               .build(),
+         CodaRecordLayout.of("2.3", CodaRecord23::builder, CodaRecord23.CodaRecord23Builder::build)
+               .field("recordIdentification", 1, 1, TEXT, CodaRecord23::getRecordIdentification, (b, v) -> b.recordIdentification(v))
+               .field("articleCode", 2, 2, TEXT, CodaRecord23::getArticleCode, (b, v) -> b.articleCode(v))
+               .field("continuousSequenceNumber", 3, 6, TEXT, CodaRecord23::getContinuousSequenceNumber, (b, v) -> b.continuousSequenceNumber(v))
+               .field("detailNumber", 7, 10, TEXT, CodaRecord23::getDetailNumber, (b, v) -> b.detailNumber(v))
+               .field("counterpartyAccount", 11, 47, ACCOUNT, CodaRecord23::getCounterpartyAccount, (b, v) -> b.counterpartyAccount(v))
+               .field("counterpartyAccountName", 48, 82, TRIMMED, CodaRecord23::getCounterpartyAccountName, (b, v) -> b.counterpartyAccountName(v))
+               .field("filler1", 83, 125, TEXT, CodaRecord23::getFiller1, (b, v) -> b.filler1(v))
+               .field("purposeCategory", 126, 126, TEXT, CodaRecord23::getPurposeCategory, (b, v) -> b.purposeCategory(v))
+               .field("filler2", 127, 127, TEXT, CodaRecord23::getFiller2, (b, v) -> b.filler2(v))
+               .field("nextCode", 128, 128, TEXT, CodaRecord23::getNextCode, (b, v) -> b.nextCode(v))
+               .build(),
+         CodaRecordLayout.of("3.1", CodaRecord31::builder, CodaRecord31.CodaRecord31Builder::build)
+               .field("recordIdentification", 1, 1, TEXT, CodaRecord31::getRecordIdentification, (b, v) -> b.recordIdentification(v))
+               .field("articleCode", 2, 2, TEXT, CodaRecord31::getArticleCode, (b, v) -> b.articleCode(v))
+               .field("continuousSequenceNumber", 3, 6, TEXT, CodaRecord31::getContinuousSequenceNumber, (b, v) -> b.continuousSequenceNumber(v))
+               .field("detailNumber", 7, 10, TEXT, CodaRecord31::getDetailNumber, (b, v) -> b.detailNumber(v))
+               .field("referenceNumber", 11, 31, TRIMMED, CodaRecord31::getReferenceNumber, (b, v) -> b.referenceNumber(v))
+               .field("transactionCode", 32, 39, TEXT, CodaRecord31::getTransactionCode, (b, v) -> b.transactionCode(v))
+               .field("structuredCommunication", 40, 112, TRIMMED, CodaRecord31::getStructuredCommunication, (b, v) -> b.structuredCommunication(v))
+               .field("filler1", 113, 125, TEXT, CodaRecord31::getFiller1, (b, v) -> b.filler1(v))
+               .field("nextCode1", 126, 126, TEXT, CodaRecord31::getNextCode1, (b, v) -> b.nextCode1(v))
+               .field("filler2", 127, 127, TEXT, CodaRecord31::getFiller2, (b, v) -> b.filler2(v))
+               .field("nextCode2", 128, 128, TEXT, CodaRecord31::getNextCode2, (b, v) -> b.nextCode2(v))
+               .build(),
+         CodaRecordLayout.of("3.2", CodaRecord32::builder, CodaRecord32.CodaRecord32Builder::build)
+               .field("recordIdentification", 1, 1, TEXT, CodaRecord32::getRecordIdentification, (b, v) -> b.recordIdentification(v))
+               .field("articleCode", 2, 2, TEXT, CodaRecord32::getArticleCode, (b, v) -> b.articleCode(v))
+               .field("continuousSequenceNumber", 3, 6, TEXT, CodaRecord32::getContinuousSequenceNumber, (b, v) -> b.continuousSequenceNumber(v))
+               .field("detailNumber", 7, 10, TEXT, CodaRecord32::getDetailNumber, (b, v) -> b.detailNumber(v))
+               .field("counterpartyAddress", 11, 45, TRIMMED, CodaRecord32::getCounterpartyAddress, (b, v) -> b.counterpartyAddress(v))
+               .field("counterpartyPostalCode", 46, 57, TRIMMED, CodaRecord32::getCounterpartyPostalCode, (b, v) -> b.counterpartyPostalCode(v))
+               .field("counterpartyCity", 58, 92, TRIMMED, CodaRecord32::getCounterpartyCity, (b, v) -> b.counterpartyCity(v))
+               .field("filler1", 93, 125, TEXT, CodaRecord32::getFiller1, (b, v) -> b.filler1(v))
+               .field("nextCode1", 126, 126, TEXT, CodaRecord32::getNextCode1, (b, v) -> b.nextCode1(v))
+               .field("filler2", 127, 127, TEXT, CodaRecord32::getFiller2, (b, v) -> b.filler2(v))
+               .field("nextCode2", 128, 128, TEXT, CodaRecord32::getNextCode2, (b, v) -> b.nextCode2(v))
+               .build(),
+         CodaRecordLayout.of("8", CodaNewBalanceRecord::builder, CodaNewBalanceRecord.CodaNewBalanceRecordBuilder::build)
+               .field("recordIdentification", 1, 1, TEXT, CodaNewBalanceRecord::getRecordIdentification, (b, v) -> b.recordIdentification(v))
+               .field("accountStructure", 2, 2, TEXT, CodaNewBalanceRecord::getAccountStructure, (b, v) -> b.accountStructure(v))
+               .field("statementNumber", 3, 5, TEXT, CodaNewBalanceRecord::getStatementNumber, (b, v) -> b.statementNumber(v))
+               .field("accountNumber", 6, 42, ACCOUNT, CodaNewBalanceRecord::getAccountNumber, (b, v) -> b.accountNumber(v))
+               .field("newBalanceSign", 43, 43, TEXT, CodaNewBalanceRecord::getNewBalanceSign, (b, v) -> b.newBalanceSign(v))
+               .field("newBalance", 44, 58, AMOUNT, CodaNewBalanceRecord::getNewBalance, (b, v) -> b.newBalance(v))
+               .field("balanceDate", 59, 64, DATE, CodaNewBalanceRecord::getBalanceDate, (b, v) -> b.balanceDate(v))
+               .field("filler", 65, 128, TEXT, CodaNewBalanceRecord::getFiller, (b, v) -> b.filler(v))
+               .build(),
+         CodaRecordLayout.of("9", CodaTrailerRecord::builder, CodaTrailerRecord.CodaTrailerRecordBuilder::build)
+               .field("recordIdentification", 1, 1, TEXT, CodaTrailerRecord::getRecordIdentification, (b, v) -> b.recordIdentification(v))
+               .field("filler1", 2, 16, TEXT, CodaTrailerRecord::getFiller1, (b, v) -> b.filler1(v))
+               .field("numberOfRecords", 17, 22, NUMBER, CodaTrailerRecord::getNumberOfRecords, (b, v) -> b.numberOfRecords(v))
+               .field("totalDebit", 23, 37, AMOUNT, CodaTrailerRecord::getTotalDebit, (b, v) -> b.totalDebit(v))
+               .field("totalCredit", 38, 52, AMOUNT, CodaTrailerRecord::getTotalCredit, (b, v) -> b.totalCredit(v))
+               .field("filler2", 53, 127, TEXT, CodaTrailerRecord::getFiller2, (b, v) -> b.filler2(v))
+               .field("trailerMarker", 128, 128, TEXT, CodaTrailerRecord::getTrailerMarker, (b, v) -> b.trailerMarker(v))
+               .build());
+
+   private final String versionCode;
+   private final CodaRecordLayout<CodaHeaderRecord, CodaHeaderRecord.CodaHeaderRecordBuilder> header;
+   private final CodaRecordLayout<CodaOldBalanceRecord, CodaOldBalanceRecord.CodaOldBalanceRecordBuilder> oldBalance;
+   private final CodaRecordLayout<CodaGlobalRecord, CodaGlobalRecord.CodaGlobalRecordBuilder> global;
+   private final CodaRecordLayout<CodaRecord21, CodaRecord21.CodaRecord21Builder> record21;
+   private final CodaRecordLayout<CodaRecord22, CodaRecord22.CodaRecord22Builder> record22;
+   private final CodaRecordLayout<CodaRecord23, CodaRecord23.CodaRecord23Builder> record23;
+   private final CodaRecordLayout<CodaRecord31, CodaRecord31.CodaRecord31Builder> record31;
+   private final CodaRecordLayout<CodaRecord32, CodaRecord32.CodaRecord32Builder> record32;
+   private final CodaRecordLayout<CodaNewBalanceRecord, CodaNewBalanceRecord.CodaNewBalanceRecordBuilder> newBalance;
+   private final CodaRecordLayout<CodaTrailerRecord, CodaTrailerRecord.CodaTrailerRecordBuilder> trailer;
+
+   private CodaLayout(String versionCode,
+         CodaRecordLayout<CodaHeaderRecord, CodaHeaderRecord.CodaHeaderRecordBuilder> header,
+         CodaRecordLayout<CodaOldBalanceRecord, CodaOldBalanceRecord.CodaOldBalanceRecordBuilder> oldBalance,
+         CodaRecordLayout<CodaGlobalRecord, CodaGlobalRecord.CodaGlobalRecordBuilder> global,
+         CodaRecordLayout<CodaRecord21, CodaRecord21.CodaRecord21Builder> record21,
+         CodaRecordLayout<CodaRecord22, CodaRecord22.CodaRecord22Builder> record22,
+         CodaRecordLayout<CodaRecord23, CodaRecord23.CodaRecord23Builder> record23,
+         CodaRecordLayout<CodaRecord31, CodaRecord31.CodaRecord31Builder> record31,
+         CodaRecordLayout<CodaRecord32, CodaRecord32.CodaRecord32Builder> record32,
+         CodaRecordLayout<CodaNewBalanceRecord, CodaNewBalanceRecord.CodaNewBalanceRecordBuilder> newBalance,
+         CodaRecordLayout<CodaTrailerRecord, CodaTrailerRecord.CodaTrailerRecordBuilder> trailer)
+   {
+      this.versionCode = versionCode;
+      this.header = header;
+      this.oldBalance = oldBalance;
+      this.global = global;
+      this.record21 = record21;
+      this.record22 = record22;
+      this.record23 = record23;
+      this.record31 = record31;
+      this.record32 = record32;
+      this.newBalance = newBalance;
+      this.trailer = trailer;
+   }
+
+   public String getVersionCode()
+   {
+      return versionCode;
+   }
+
+   public CodaRecordLayout<CodaHeaderRecord, CodaHeaderRecord.CodaHeaderRecordBuilder> header()
+   {
+      return header;
+   }
+
+   public CodaRecordLayout<CodaOldBalanceRecord, CodaOldBalanceRecord.CodaOldBalanceRecordBuilder> oldBalance()
+   {
+      return oldBalance;
+   }
+
+   public CodaRecordLayout<CodaGlobalRecord, CodaGlobalRecord.CodaGlobalRecordBuilder> global()
+   {
+      return global;
+   }
+
+   public CodaRecordLayout<CodaRecord21, CodaRecord21.CodaRecord21Builder> record21()
+   {
+      return record21;
+   }
+
+   public CodaRecordLayout<CodaRecord22, CodaRecord22.CodaRecord22Builder> record22()
+   {
+      return record22;
+   }
+
+   public CodaRecordLayout<CodaRecord23, CodaRecord23.CodaRecord23Builder> record23()
+   {
+      return record23;
+   }
+
+   public CodaRecordLayout<CodaRecord31, CodaRecord31.CodaRecord31Builder> record31()
+   {
+      return record31;
+   }
+
+   public CodaRecordLayout<CodaRecord32, CodaRecord32.CodaRecord32Builder> record32()
+   {
+      return record32;
+   }
+
+   public CodaRecordLayout<CodaNewBalanceRecord, CodaNewBalanceRecord.CodaNewBalanceRecordBuilder> newBalance()
+   {
+      return newBalance;
+   }
+
+   public CodaRecordLayout<CodaTrailerRecord, CodaTrailerRecord.CodaTrailerRecordBuilder> trailer()
+   {
+      return trailer;
+   }
+}
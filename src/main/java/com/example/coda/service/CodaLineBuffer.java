@@ -0,0 +1,339 @@
+package com.example.coda.service;
+
+import com.example.coda.model.CodaRecord;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntFunction;
+
+/**
+ * Bounded buffer of formatted CODA lines in front of an output
+ * <p>
+ * Lines are encoded in one reused {@link CodaLineEncoder} and copied into a {@link StringBuilder}
+ * for character outputs, or straight into a pooled {@link ByteBuffer} as ISO-8859-1 for byte
+ * outputs ({@code '?'} for characters outside that charset, as {@code String.getBytes} does).
+ * When the buffer holds about {@link #CAPACITY} chars or bytes it is written to the target and
+ * reused, so a statement of any size is written with the same small buffers.
+ */
+abstract class CodaLineBuffer implements Closeable
+{
+   static final int CAPACITY = 16 * 1024;
+
+   private static final int LINE_WITH_FEED = CodaRecordLayout.LINE_LENGTH + 1;
+
+   final CodaLineEncoder line = new CodaLineEncoder();
+
+   /**
+    * Collect all lines in {@code out}, which grows as needed
+    */
+   static CodaLineBuffer inMemory(StringBuilder out)
+   {
+      return new CharLines(out, null);
+   }
+
+   static CodaLineBuffer to(Appendable out)
+   {
+      if (out instanceof StringBuilder builder)
+      {
+         return inMemory(builder);
+      }
+      if (out instanceof Writer writer)
+      {
+         char[] chars = new char[CAPACITY];
+         return new CharLines(new StringBuilder(CAPACITY), buffer -> {
+            buffer.getChars(0, buffer.length(), chars, 0);
+            writer.write(chars, 0, buffer.length());
+         });
+      }
+      return new CharLines(new StringBuilder(CAPACITY), out::append);
+   }
+
+   static CodaLineBuffer to(OutputStream out)
+   {
+      return new ByteLines(CodaBufferPool.HEAP, buffer -> {
+         out.write(buffer.array(), buffer.arrayOffset(), buffer.position());
+         return buffer.clear();
+      });
+   }
+
+   static CodaLineBuffer to(WritableByteChannel out)
+   {
+      return new ByteLines(CodaBufferPool.DIRECT, buffer -> {
+         buffer.flip();
+         while (buffer.hasRemaining())
+         {
+            out.write(buffer);
+         }
+         return buffer.clear();
+      });
+   }
+
+   /**
+    * Keep the encoded lines in pooled heap buffers, handed to {@code document} as they fill up
+    */
+   static CodaLineBuffer to(List<ByteBuffer> document)
+   {
+      return new ByteLines(CodaBufferPool.HEAP, buffer -> {
+         document.add(buffer.flip());
+         return null;
+      });
+   }
+
+   /**
+    * Append one record line and its line feed
+    */
+   abstract <R extends CodaRecord> void line(CodaRecordLayout<R, ?> layout, R record) throws IOException;
+
+   /**
+    * Append lines that were already formatted, e.g. by {@link #inMemory}, line feeds included
+    */
+   abstract void append(CharSequence lines) throws IOException;
+
+   /**
+    * Write out the buffered lines; the target itself is neither flushed nor closed
+    */
+   abstract void flush() throws IOException;
+
+   /**
+    * Render blocks of lines on the workers of {@code pool} and append them in block order
+    * <p>
+    * Block {@code i} is rendered in memory by the task {@code renderer.apply(i)}; tasks must not share
+    * state. At most {@code window} blocks are rendered ahead of the output, which bounds the memory
+    * whatever the number of blocks.
+    */
+   void appendInOrder(int blocks, IntFunction<Callable<StringBuilder>> renderer, ForkJoinPool pool, int window)
+         throws IOException
+   {
+      Deque<ForkJoinTask<StringBuilder>> rendering = new ArrayDeque<>();
+      try
+      {
+         int submitted = 0;
+         for (int block = 0; block < blocks; block++)
+         {
+            while (submitted < blocks && submitted < block + window)
+            {
+               rendering.add(pool.submit(renderer.apply(submitted)));
+               submitted++;
+            }
+            append(join(rendering.poll()));
+         }
+      }
+      finally
+      {
+         rendering.forEach(task -> task.cancel(false));
+      }
+   }
+
+   /**
+    * Give pooled buffers back; buffered lines that were not flushed are dropped
+    */
+   @Override
+   public void close()
+   {
+   }
+
+   /**
+    * Encode a whole statement into a {@link CodaDocument}
+    */
+   static CodaDocument document(LineWriter lines) throws IOException
+   {
+      List<ByteBuffer> buffers = new ArrayList<>();
+      try (CodaLineBuffer buffer = to(buffers))
+      {
+         lines.write(buffer);
+         buffer.flush();
+      }
+      catch (IOException | RuntimeException e)
+      {
+         new CodaDocument(buffers).close();
+         throw e;
+      }
+      return new CodaDocument(buffers);
+   }
+
+   private static <T> T join(ForkJoinTask<T> task) throws IOException
+   {
+      try
+      {
+         return task.get();
+      }
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+         throw new InterruptedIOException("Interrupted while writing CODA lines");
+      }
+      catch (ExecutionException e)
+      {
+         Throwable cause = e.getCause();
+         if (cause instanceof IOException io)
+         {
+            throw io;
+         }
+         if (cause instanceof RuntimeException runtime)
+         {
+            throw runtime;
+         }
+         if (cause instanceof Error error)
+         {
+            throw error;
+         }
+         throw new IOException("Failed to write CODA lines", cause);
+      }
+   }
+
+   @FunctionalInterface
+   interface LineWriter
+   {
+      void write(CodaLineBuffer lines) throws IOException;
+   }
+
+   private static final class CharLines extends CodaLineBuffer
+   {
+      private final StringBuilder buffer;
+      private final CharTarget target;
+
+      private CharLines(StringBuilder buffer, CharTarget target)
+      {
+         this.buffer = buffer;
+         this.target = target;
+      }
+
+      @Override
+      <R extends CodaRecord> void line(CodaRecordLayout<R, ?> layout, R record) throws IOException
+      {
+         layout.encode(record, line);
+         line.appendTo(buffer);
+         buffer.append('\n');
+         if (target != null && buffer.length() > CAPACITY - LINE_WITH_FEED)
+         {
+            flush();
+         }
+      }
+
+      @Override
+      void append(CharSequence lines) throws IOException
+      {
+         if (target == null)
+         {
+            buffer.append(lines);
+            return;
+         }
+         int start = 0;
+         while (start < lines.length())
+         {
+            int end = Math.min(lines.length(), start + CAPACITY - buffer.length());
+            buffer.append(lines, start, end);
+            start = end;
+            if (buffer.length() == CAPACITY)
+            {
+               flush();
+            }
+         }
+      }
+
+      @Override
+      void flush() throws IOException
+      {
+         if (target != null && buffer.length() > 0)
+         {
+            target.write(buffer);
+            buffer.setLength(0);
+         }
+      }
+   }
+
+   private static final class ByteLines extends CodaLineBuffer
+   {
+      private final CodaBufferPool pool;
+      private final ByteTarget target;
+      private ByteBuffer buffer;
+
+      private ByteLines(CodaBufferPool pool, ByteTarget target)
+      {
+         this.pool = pool;
+         this.target = target;
+      }
+
+      @Override
+      <R extends CodaRecord> void line(CodaRecordLayout<R, ?> layout, R record) throws IOException
+      {
+         if (buffer == null)
+         {
+            buffer = pool.acquire();
+         }
+         layout.encode(record, line);
+         line.appendTo(buffer);
+         buffer.put((byte) '\n');
+         if (buffer.remaining() < LINE_WITH_FEED)
+         {
+            flush();
+         }
+      }
+
+      @Override
+      void append(CharSequence lines) throws IOException
+      {
+         for (int i = 0; i < lines.length(); i++)
+         {
+            if (buffer == null)
+            {
+               buffer = pool.acquire();
+            }
+            char c = lines.charAt(i);
+            buffer.put((byte) (c <= 0xFF ? c : '?'));
+            if (!buffer.hasRemaining())
+            {
+               flush();
+            }
+         }
+      }
+
+      @Override
+      void flush() throws IOException
+      {
+         if (buffer != null && buffer.position() > 0)
+         {
+            buffer = target.drain(buffer);
+         }
+      }
+
+      @Override
+      public void close()
+      {
+         if (buffer != null)
+         {
+            pool.release(buffer);
+            buffer = null;
+         }
+      }
+   }
+
+   @FunctionalInterface
+   private interface CharTarget
+   {
+      void write(StringBuilder buffer) throws IOException;
+   }
+
+   @FunctionalInterface
+   private interface ByteTarget
+   {
+      /**
+       * Take the filled buffer (in write mode)
+       *
+       * @return the buffer to continue with, cleared, or {@code null} when the target kept it
+       */
+      ByteBuffer drain(ByteBuffer buffer) throws IOException;
+   }
+}
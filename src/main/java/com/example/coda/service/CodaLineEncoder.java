@@ -0,0 +1,198 @@
+package com.example.coda.service;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Reusable 128-character line that CODA fields are copied into, one after the other
+ * <p>
+ * The line starts as a copy of a blank template, so text fields only copy their characters and
+ * the space padding is already in place. Numbers, amounts and dates are written from primitives
+ * with two-digit lookup tables, without {@code String.format}, {@code String.valueOf} or a
+ * date formatter: encoding a line allocates nothing.
+ * <p>
+ * Fields keep the widths and overflow rules of the text-based writer: text and numbers are cut
+ * to the field width, an amount too wide for its field pushes the rest of the line to the right,
+ * and whatever passes position 128 is dropped. Not thread-safe, one instance per writer.
+ */
+final class CodaLineEncoder
+{
+   private static final int LINE_LENGTH = CodaRecordLayout.LINE_LENGTH;
+   private static final char[] BLANK_LINE = new char[LINE_LENGTH];
+   private static final char[] DIGIT_TENS = new char[100];
+   private static final char[] DIGIT_ONES = new char[100];
+   // Long.MIN_VALUE has 19 digits and a sign
+   private static final int MAX_DIGITS = 20;
+
+   static
+   {
+      Arrays.fill(BLANK_LINE, ' ');
+      for (int i = 0; i < 100; i++)
+      {
+         DIGIT_TENS[i] = (char) ('0' + i / 10);
+         DIGIT_ONES[i] = (char) ('0' + i % 10);
+      }
+   }
+
+   private final char[] line = new char[LINE_LENGTH];
+   private final byte[] bytes = new byte[LINE_LENGTH];
+   private final char[] digits = new char[MAX_DIGITS];
+   private int position;
+
+   /**
+    * Start a new line: all spaces, next field at position 1
+    */
+   void reset()
+   {
+      System.arraycopy(BLANK_LINE, 0, line, 0, LINE_LENGTH);
+      position = 0;
+   }
+
+   /**
+    * Text field, left-aligned and padded with spaces; {@code null} is written as spaces
+    */
+   void text(String value, int length)
+   {
+      if (value != null)
+      {
+         int count = Math.min(Math.min(value.length(), length), LINE_LENGTH - position);
+         if (count > 0)
+         {
+            value.getChars(0, count, line, position);
+         }
+      }
+      position += length;
+   }
+
+   /**
+    * Whole number, zero-padded on the left; a value too wide keeps its leading characters
+    */
+   void number(long value, int length)
+   {
+      int count = toDigits(value);
+      if (count > length)
+      {
+         copyDigits(MAX_DIGITS - count, length);
+      }
+      else
+      {
+         zeros(length - count);
+         copyDigits(MAX_DIGITS - count, count);
+      }
+   }
+
+   /**
+    * Amount in thousandths, zero-padded on the left; a value too wide is written in full
+    */
+   void amount(long thousandths, int length)
+   {
+      int count = toDigits(thousandths);
+      zeros(length - count);
+      copyDigits(MAX_DIGITS - count, count);
+   }
+
+   /**
+    * DDMMYY date, the year reduced to its last two digits
+    */
+   void date(int day, int month, int year)
+   {
+      twoDigits(day);
+      twoDigits(month);
+      twoDigits(Math.abs(year) % 100);
+   }
+
+   /**
+    * {@code count} zeros, e.g. an absent date
+    */
+   void zeros(int count)
+   {
+      for (int i = 0; i < count; i++)
+      {
+         put('0');
+      }
+   }
+
+   /**
+    * Append the 128 characters of the line to {@code out}
+    */
+   void appendTo(StringBuilder out)
+   {
+      out.append(line, 0, LINE_LENGTH);
+   }
+
+   /**
+    * Put the 128 characters of the line into {@code out} as ISO-8859-1, {@code '?'} for other characters
+    */
+   void appendTo(ByteBuffer out)
+   {
+      for (int i = 0; i < LINE_LENGTH; i++)
+      {
+         char c = line[i];
+         bytes[i] = (byte) (c <= 0xFF ? c : '?');
+      }
+      out.put(bytes, 0, LINE_LENGTH);
+   }
+
+   @Override
+   public String toString()
+   {
+      return new String(line, 0, LINE_LENGTH);
+   }
+
+   private void twoDigits(int value)
+   {
+      put(DIGIT_TENS[value]);
+      put(DIGIT_ONES[value]);
+   }
+
+   private void put(char c)
+   {
+      if (position < LINE_LENGTH)
+      {
+         line[position] = c;
+      }
+      position++;
+   }
+
+   private void copyDigits(int from, int count)
+   {
+      int inLine = Math.min(count, LINE_LENGTH - position);
+      if (inLine > 0)
+      {
+         System.arraycopy(digits, from, line, position, inLine);
+      }
+      position += count;
+   }
+
+   /**
+    * Write the decimal form of {@code value} at the end of {@link #digits}, as {@code Long.toString} would
+    *
+    * @return number of characters written, sign included
+    */
+   private int toDigits(long value)
+   {
+      int index = MAX_DIGITS;
+      boolean negative = value < 0;
+      // Work on the negative value so that Long.MIN_VALUE needs no special case
+      long remaining = negative ? value : -value;
+      while (remaining <= -100)
+      {
+         long quotient = remaining / 100;
+         int pair = (int) (quotient * 100 - remaining);
+         remaining = quotient;
+         digits[--index] = DIGIT_ONES[pair];
+         digits[--index] = DIGIT_TENS[pair];
+      }
+      int pair = (int) -remaining;
+      digits[--index] = DIGIT_ONES[pair];
+      if (pair >= 10)
+      {
+         digits[--index] = DIGIT_TENS[pair];
+      }
+      if (negative)
+      {
+         digits[--index] = '-';
+      }
+      return MAX_DIGITS - index;
+   }
+}
@@ -0,0 +1,13 @@
+package com.example.coda.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes content to a byte stream, e.g. a statement or its JSON when it is not cached
+ */
+@FunctionalInterface
+public interface CodaOutputWriter
+{
+   void writeTo(OutputStream out) throws IOException;
+}
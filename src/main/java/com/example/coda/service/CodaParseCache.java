@@ -0,0 +1,104 @@
+package com.example.coda.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+
+/**
+ * Parser output kept in memory by the SHA-256 of the CODA file it was produced from
+ * <p>
+ * What is kept is the serialized result, the JSON or NDJSON written by {@link CodaJsonTranscoder}
+ * or the CODA rewritten by {@link CodaWriter}, so a known file is answered without parsing it and
+ * without holding a {@link com.example.coda.model.CodaStatement} per entry. The key also holds
+ * how the file is decoded and the output format.
+ * <p>
+ * Only files up to {@code coda.cache.parse.max-input-size} are looked up: they are read in
+ * memory to be hashed before anything is written. The cache is bounded by
+ * {@code coda.cache.parse.max-size} in total and {@code coda.cache.parse.max-entry-size} per
+ * result, least recently used first, and entries expire after {@code coda.cache.parse.ttl}.
+ */
+@Service
+public class CodaParseCache
+{
+   /**
+    * Serialized form of a parsed file
+    */
+   public enum Format
+   {
+      JSON, NDJSON, CODA
+   }
+
+   /**
+    * @param decoding how the file's bytes are turned into text, e.g. the name of its charset
+    */
+   public record Key(String digest, String decoding, Format format)
+   {
+   }
+
+   private final ByteCache<Key> cache;
+   private final int maxInputBytes;
+
+   public CodaParseCache(@Value("${coda.cache.parse.max-size:64MB}") DataSize maxSize,
+         @Value("${coda.cache.parse.max-entry-size:8MB}") DataSize maxEntrySize,
+         @Value("${coda.cache.parse.max-input-size:1MB}") DataSize maxInputSize,
+         @Value("${coda.cache.parse.ttl:1h}") Duration ttl)
+   {
+      this.cache = new ByteCache<>(maxSize.toBytes(), maxEntrySize.toBytes(), ttl);
+      this.maxInputBytes = Math.toIntExact(maxInputSize.toBytes());
+   }
+
+   /**
+    * Largest file that is hashed and looked up, in bytes
+    */
+   public int maxInputBytes()
+   {
+      return maxInputBytes;
+   }
+
+   public Key key(byte[] content, String decoding, Format format)
+   {
+      try
+      {
+         return new Key(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content)), decoding,
+               format);
+      }
+      catch (NoSuchAlgorithmException e)
+      {
+         // Every Java platform provides SHA-256
+         throw new IllegalStateException(e);
+      }
+   }
+
+   /**
+    * The cached result, or {@code null}; the array is shared and must not be modified
+    */
+   public byte[] get(Key key)
+   {
+      return cache.get(key);
+   }
+
+   /**
+    * Write the result to {@code out} with {@code parse}, keeping a copy under {@code key} if it
+    * completes and is not larger than the entry limit
+    */
+   public void write(Key key, OutputStream out, CodaOutputWriter parse) throws IOException
+   {
+      cache.write(key, out, parse);
+   }
+
+   public void clear()
+   {
+      cache.clear();
+   }
+
+   public CodaCacheStats stats()
+   {
+      return cache.stats();
+   }
+}
@@ -0,0 +1,194 @@
+package com.example.coda.service;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One submitted batch of CODA files, parsed in the background by {@link CodaParseJobService}
+ * <p>
+ * Counters are updated by the worker while it reads and can be read at any time through
+ * {@link #status()}. The JSON of each parsed file is kept on disk until the job expires.
+ */
+public final class CodaParseJob
+{
+   public enum State
+   {
+      QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED;
+
+      public boolean isFinished()
+      {
+         return this != QUEUED && this != RUNNING;
+      }
+   }
+
+   /**
+    * Snapshot of a job for clients
+    *
+    * @param recordsProcessed CODA records read so far, over all files
+    * @param bytesProcessed   bytes of the uploaded files read so far
+    */
+   public record Status(String id, State state, List<String> files, int filesProcessed, long recordsProcessed,
+                        long bytesProcessed, long totalBytes, Instant submittedAt, Instant startedAt,
+                        Instant finishedAt, Instant expiresAt, String error)
+   {
+   }
+
+   private final String id;
+   private final Path directory;
+   private final List<String> fileNames;
+   private final long totalBytes;
+   private final Duration retention;
+   private final Instant submittedAt = Instant.now();
+   private final CompletableFuture<Status> completion = new CompletableFuture<>();
+   final AtomicLong recordsProcessed = new AtomicLong();
+   final AtomicLong bytesProcessed = new AtomicLong();
+
+   private State state = State.QUEUED;
+   private int filesProcessed;
+   private Instant startedAt;
+   private Instant finishedAt;
+   private Instant expiresAt;
+   private String error;
+   private Future<?> task;
+
+   CodaParseJob(String id, Path directory, List<String> fileNames, long totalBytes, Duration retention)
+   {
+      this.id = id;
+      this.directory = directory;
+      this.fileNames = List.copyOf(fileNames);
+      this.totalBytes = totalBytes;
+      this.retention = retention;
+   }
+
+   public String id()
+   {
+      return id;
+   }
+
+   public synchronized Status status()
+   {
+      return new Status(id, state, fileNames, filesProcessed, recordsProcessed.get(), bytesProcessed.get(),
+            totalBytes, submittedAt, startedAt, finishedAt, expiresAt, error);
+   }
+
+   /**
+    * Completes with the final status when the job is finished, whatever the outcome
+    */
+   public CompletableFuture<Status> completion()
+   {
+      return completion.copy();
+   }
+
+   /**
+    * Parsed JSON of file {@code index}, or {@code null} while the job is not completed
+    */
+   public synchronized Path result(int index)
+   {
+      if (state != State.COMPLETED)
+      {
+         return null;
+      }
+      return resultFile(index);
+   }
+
+   int fileCount()
+   {
+      return fileNames.size();
+   }
+
+   Path directory()
+   {
+      return directory;
+   }
+
+   Path inputFile(int index)
+   {
+      return directory.resolve("input-" + index);
+   }
+
+   Path resultFile(int index)
+   {
+      return directory.resolve("result-" + index + ".json");
+   }
+
+   synchronized void submitted(Future<?> task)
+   {
+      this.task = task;
+   }
+
+   /**
+    * Move to {@link State#RUNNING}, unless the job was cancelled while queued
+    */
+   synchronized boolean start()
+   {
+      if (state != State.QUEUED)
+      {
+         return false;
+      }
+      state = State.RUNNING;
+      startedAt = Instant.now();
+      return true;
+   }
+
+   synchronized boolean isCancelled()
+   {
+      return state == State.CANCELLED;
+   }
+
+   synchronized void fileProcessed()
+   {
+      filesProcessed++;
+   }
+
+   /**
+    * Stop the job; a queued job never starts, a running one stops at its next record
+    *
+    * @return false if the job had already finished
+    */
+   boolean cancel()
+   {
+      Future<?> running;
+      synchronized (this)
+      {
+         if (state.isFinished())
+         {
+            return false;
+         }
+         running = task;
+      }
+      finish(State.CANCELLED, null);
+      if (running != null)
+      {
+         running.cancel(true);
+      }
+      return true;
+   }
+
+   void finish(State finalState, String failure)
+   {
+      Status status;
+      synchronized (this)
+      {
+         if (state.isFinished())
+         {
+            return;
+         }
+         state = finalState;
+         error = failure;
+         finishedAt = Instant.now();
+         expiresAt = finishedAt.plus(retention);
+         status = status();
+      }
+      completion.complete(status);
+   }
+
+   synchronized boolean isExpired(Instant now)
+   {
+      return expiresAt != null && !now.isBefore(expiresAt);
+   }
+}
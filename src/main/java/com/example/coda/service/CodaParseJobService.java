@@ -0,0 +1,328 @@
+package com.example.coda.service;
+
+import com.example.coda.model.CodaRecord;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.PayloadTooLargeException;
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Parses uploaded CODA files in the background, outside of the request threads
+ * <p>
+ * Uploads are copied to a directory of their own and parsed by a fixed pool of
+ * {@code coda.jobs.workers} threads. At most {@code coda.jobs.queue-capacity} jobs wait for a
+ * worker; further submissions are rejected with {@link RejectedExecutionException} instead of
+ * piling up. Each file is transcoded by {@link CodaJsonTranscoder} to a JSON file next to it, so
+ * results do not stay in the heap. Finished jobs, their status and their results are dropped
+ * {@code coda.jobs.retention} after they finish.
+ * <p>
+ * With {@code spring.threads.virtual.enabled} the workers are virtual threads, like the request
+ * threads; the pool size still bounds how many jobs run at once.
+ */
+@Service
+public class CodaParseJobService
+{
+   /**
+    * One uploaded file of a job
+    *
+    * @param content copies the upload to the given file
+    */
+   public record Upload(String name, long size, Transfer content)
+   {
+   }
+
+   @FunctionalInterface
+   public interface Transfer
+   {
+      void to(Path target) throws IOException;
+   }
+
+   private final CodaJsonTranscoder transcoder;
+   private final Duration retention;
+   private final long maxInflatedBytes;
+   private final ThreadPoolExecutor executor;
+   private final ScheduledExecutorService cleaner;
+   private final Map<String, CodaParseJob> jobs = new ConcurrentHashMap<>();
+
+   public CodaParseJobService(CodaJsonTranscoder transcoder,
+         @Value("${coda.jobs.workers:2}") int workers,
+         @Value("${coda.jobs.queue-capacity:16}") int queueCapacity,
+         @Value("${coda.jobs.retention:1h}") Duration retention,
+         @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+         @Value("${coda.requests.max-inflated-size:1GB}") DataSize maxInflatedSize)
+   {
+      this.transcoder = transcoder;
+      this.retention = retention;
+      this.maxInflatedBytes = maxInflatedSize.toBytes();
+      this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), threads("coda-parse-job-", virtualThreads), new ThreadPoolExecutor.AbortPolicy());
+      this.cleaner = Executors.newSingleThreadScheduledExecutor(threads("coda-parse-job-cleaner-", false));
+      long period = Math.clamp(retention.toSeconds(), 1, 60);
+      cleaner.scheduleWithFixedDelay(this::removeExpired, period, period, TimeUnit.SECONDS);
+   }
+
+   /**
+    * Copy the uploads and queue them for parsing
+    *
+    * @throws RejectedExecutionException if the queue is full
+    */
+   public CodaParseJob submit(List<Upload> uploads) throws IOException
+   {
+      if (uploads.isEmpty())
+      {
+         throw new IllegalArgumentException("At least one file is required.");
+      }
+      Path directory = Files.createTempDirectory("coda-job-");
+      try
+      {
+         List<String> names = new ArrayList<>();
+         long totalBytes = 0;
+         for (Upload upload : uploads)
+         {
+            names.add(upload.name());
+            totalBytes += upload.size();
+         }
+         CodaParseJob job = new CodaParseJob(UUID.randomUUID().toString(), directory, names, totalBytes, retention);
+         for (int i = 0; i < uploads.size(); i++)
+         {
+            uploads.get(i).content().to(job.inputFile(i));
+         }
+
+         jobs.put(job.id(), job);
+         try
+         {
+            job.submitted(executor.submit(() -> run(job)));
+         }
+         catch (RejectedExecutionException e)
+         {
+            jobs.remove(job.id());
+            throw e;
+         }
+         return job;
+      }
+      catch (IOException | RuntimeException e)
+      {
+         delete(directory);
+         throw e;
+      }
+   }
+
+   /**
+    * The job with this id, or {@code null} if it is unknown or has expired
+    */
+   public CodaParseJob get(String id)
+   {
+      CodaParseJob job = jobs.get(id);
+      if (job != null && job.isExpired(Instant.now()))
+      {
+         remove(job);
+         return null;
+      }
+      return job;
+   }
+
+   /**
+    * Cancel a job; it keeps its {@link CodaParseJob.State#CANCELLED} status until it expires
+    *
+    * @return the job, or {@code null} if it is unknown or has expired
+    */
+   public CodaParseJob cancel(String id)
+   {
+      CodaParseJob job = get(id);
+      if (job != null && job.cancel())
+      {
+         // Free the queue slot of a job that had not started
+         executor.purge();
+      }
+      return job;
+   }
+
+   @PreDestroy
+   public void shutdown()
+   {
+      cleaner.shutdownNow();
+      executor.shutdownNow();
+      jobs.values().forEach(this::remove);
+   }
+
+   private void run(CodaParseJob job)
+   {
+      if (!job.start())
+      {
+         return;
+      }
+      try
+      {
+         for (int i = 0; i < job.fileCount(); i++)
+         {
+            parse(job, i);
+            job.fileProcessed();
+            Files.deleteIfExists(job.inputFile(i));
+         }
+         job.finish(CodaParseJob.State.COMPLETED, null);
+      }
+      catch (PayloadTooLargeException e)
+      {
+         job.finish(CodaParseJob.State.FAILED, e.getCause().getMessage());
+      }
+      catch (IOException | RuntimeException e)
+      {
+         // No-op when the failure comes from a cancellation, the job is already finished
+         job.finish(CodaParseJob.State.FAILED, e.getMessage());
+      }
+   }
+
+   private void parse(CodaParseJob job, int index) throws IOException
+   {
+      try (InputStream in = new CountingInputStream(Files.newInputStream(job.inputFile(index)), job.bytesProcessed);
+           CodaRecordReader reader = new CodaRecordReader(CodaCharsetDetector.open(CodaCompression.decode(in, maxInflatedBytes), null));
+           OutputStream out = new BufferedOutputStream(Files.newOutputStream(job.resultFile(index))))
+      {
+         transcoder.writeJson(new JobRecordSource(reader, job), out);
+      }
+   }
+
+   private void removeExpired()
+   {
+      Instant now = Instant.now();
+      jobs.values().stream().filter(job -> job.isExpired(now)).forEach(this::remove);
+   }
+
+   private void remove(CodaParseJob job)
+   {
+      if (jobs.remove(job.id(), job))
+      {
+         job.cancel();
+         delete(job.directory());
+      }
+   }
+
+   private static void delete(Path directory)
+   {
+      try (Stream<Path> files = Files.walk(directory))
+      {
+         for (Path file : files.sorted(Comparator.reverseOrder()).toList())
+         {
+            Files.deleteIfExists(file);
+         }
+      }
+      catch (IOException | UncheckedIOException e)
+      {
+         // Left to the temp directory cleanup of the system
+      }
+   }
+
+   private static ThreadFactory threads(String prefix, boolean virtual)
+   {
+      if (virtual)
+      {
+         return Thread.ofVirtual().name(prefix, 1).factory();
+      }
+      AtomicInteger count = new AtomicInteger();
+      return task -> {
+         Thread thread = new Thread(task, prefix + count.incrementAndGet());
+         thread.setDaemon(true);
+         return thread;
+      };
+   }
+
+   /**
+    * Counts the records read for the job and stops at the first record after a cancellation
+    */
+   private record JobRecordSource(CodaRecordSource source, CodaParseJob job) implements CodaRecordSource
+   {
+      @Override
+      public CodaRecord next() throws IOException
+      {
+         if (job.isCancelled())
+         {
+            throw new CancellationException("Job " + job.id() + " was cancelled");
+         }
+         CodaRecord record = source.next();
+         if (record != null)
+         {
+            job.recordsProcessed.incrementAndGet();
+         }
+         return record;
+      }
+
+      @Override
+      public CharSequence nextLine() throws IOException
+      {
+         return source.nextLine();
+      }
+
+      @Override
+      public long getLineNumber()
+      {
+         return source.getLineNumber();
+      }
+
+      @Override
+      public void close() throws IOException
+      {
+         source.close();
+      }
+   }
+
+   private static final class CountingInputStream extends FilterInputStream
+   {
+      private final AtomicLong count;
+
+      private CountingInputStream(InputStream in, AtomicLong count)
+      {
+         super(in);
+         this.count = count;
+      }
+
+      @Override
+      public int read() throws IOException
+      {
+         int b = super.read();
+         if (b >= 0)
+         {
+            count.incrementAndGet();
+         }
+         return b;
+      }
+
+      @Override
+      public int read(byte[] bytes, int offset, int length) throws IOException
+      {
+         int n = super.read(bytes, offset, length);
+         if (n > 0)
+         {
+            count.addAndGet(n);
+         }
+         return n;
+      }
+   }
+}
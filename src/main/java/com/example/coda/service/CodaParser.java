@@ -1,27 +1,27 @@
 package com.example.coda.service;
 
-import com.example.coda.model.CodaGlobalRecord;
-import com.example.coda.model.CodaHeaderRecord;
-import com.example.coda.model.CodaIndividualTransactionRecord;
-import com.example.coda.model.CodaNewBalanceRecord;
-import com.example.coda.model.CodaOldBalanceRecord;
-import com.example.coda.model.CodaRecord21;
-import com.example.coda.model.CodaRecord22;
-import com.example.coda.model.CodaRecord23;
-import com.example.coda.model.CodaRecord31;
-import com.example.coda.model.CodaRecord32;
+import com.example.coda.model.CodaRecord;
 import com.example.coda.model.CodaStatement;
-import com.example.coda.model.CodaTrailerRecord;
-import com.example.coda.util.IbanUtil;
 import org.springframework.stereotype.Service;
-import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.InterruptedIOException;
 import java.io.StringReader;
-import java.math.BigDecimal;
-import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Parser for Belgian CODA bank statement format
@@ -30,372 +30,280 @@ import java.util.List;
 @Service
 public class CodaParser
 {
-   private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("ddMMyy");
-   private static final DateTimeFormatter DATE_FORMAT_FULL = DateTimeFormatter.ofPattern("yyMMdd");
+   static final long MIN_PARALLEL_CHUNK_SIZE = 1024 * 1024;
 
    /**
     * Parse a complete CODA statement from text
+    * <p>
+    * All records are merged into a single statement; use {@link #statements(Reader)} for files
+    * holding several statements.
     */
    public CodaStatement parse(String codaContent) throws IOException
    {
-      CodaStatement.CodaStatementBuilder builder = CodaStatement.builder();
-      List<CodaIndividualTransactionRecord> transactionRecords = new ArrayList<>();
-      CodaIndividualTransactionRecord.CodaIndividualTransactionRecordBuilder currentTransaction = null;
+      return parse(new StringReader(codaContent));
+   }
 
-      try (BufferedReader reader = new BufferedReader(new StringReader(codaContent)))
+   /**
+    * Parse a complete CODA statement from an ISO-8859-1 encoded byte stream
+    */
+   public CodaStatement parse(InputStream codaContent) throws IOException
+   {
+      try (CodaRecordReader reader = new CodaRecordReader(codaContent))
       {
-         String line;
-         while ((line = reader.readLine()) != null)
-         {
-            if (line.trim().isEmpty())
-            {
-               continue;
-            }
-
-            String recordType = line.substring(0, 1);
-
-            switch (recordType)
-            {
-               case "0": // Header Record
-                  builder.header(parseHeaderRecord(line));
-                  break;
-
-               case "1": // Old Balance Record
-                  builder.oldBalance(parseOldBalanceRecord(line));
-                  break;
-
-               case "2": // Transaction Records
-                  String subType = line.substring(1, 2);
-                  if ("1".equals(subType)) // Transaction Main Data (Record 2.1)
-                  {
-                     // Check if this is a global record (globalisation code = "1" at position 125)
-                     String globalisationCode = line.length() >= 125 ? line.substring(124, 125) : "0";
-
-                     if ("1".equals(globalisationCode))
-                     {
-                        // This is the global record (line 3) - parse as CodaGlobalRecord
-                        builder.global(parseGlobalRecord(line));
-                     }
-                     else
-                     {
-                        // This is an individual transaction
-                        // Save previous transaction if exists
-                        if (currentTransaction != null)
-                        {
-                           transactionRecords.add(currentTransaction.build());
-                        }
-                        // Start new transaction
-                        currentTransaction = CodaIndividualTransactionRecord.builder()
-                              .record21(parseRecord21(line));
-                     }
-                  }
-                  else if ("2".equals(subType) && currentTransaction != null) // Communication
-                  {
-                     currentTransaction.record22(parseRecord22(line));
-                  }
-                  else if ("3".equals(subType) && currentTransaction != null) // Counterparty Account
-                  {
-                     currentTransaction.record23(parseRecord23(line));
-                  }
-                  break;
-
-               case "3": // Transaction Detail Records
-                  if (currentTransaction != null)
-                  {
-                     String subType3 = line.substring(1, 2);
-                     if ("1".equals(subType3)) // Structured Communication
-                     {
-                        currentTransaction.record31(parseRecord31(line));
-                     }
-                     else if ("2".equals(subType3)) // Counterparty Address
-                     {
-                        currentTransaction.record32(parseRecord32(line));
-                     }
-                  }
-                  break;
-
-               case "8": // New Balance Record
-                  // Save last transaction before new balance
-                  if (currentTransaction != null)
-                  {
-                     transactionRecords.add(currentTransaction.build());
-                     currentTransaction = null;
-                  }
-                  builder.newBalance(parseNewBalanceRecord(line));
-                  break;
-
-               case "9": // Trailer Record
-                  builder.trailer(parseTrailerRecord(line));
-                  break;
-            }
-         }
+         return parse(reader);
       }
-
-      builder.individualTransactions(transactionRecords);
-      return builder.build();
    }
 
    /**
-    * Parse Record Type 0 - Header (Identification Record)
+    * Parse a complete CODA statement from a character stream
     */
-   private CodaHeaderRecord parseHeaderRecord(String line)
+   public CodaStatement parse(Reader codaContent) throws IOException
    {
-      return CodaHeaderRecord.builder()
-            .recordIdentification(extract(line, 0, 1))           // Pos 1
-            .zeros(extract(line, 1, 5))                          // Pos 2-5
-            .creationDate(parseDate6(line, 5, 11))               // Pos 6-11
-            .bankIdentificationNumber(extract(line, 11, 14))     // Pos 12-14
-            .applicationCode(extract(line, 14, 16))              // Pos 15-16
-            .duplicateCode(extract(line, 16, 17))                // Pos 17
-            .filler1(extract(line, 17, 24))                      // Pos 18-24
-            .fileReference(extract(line, 24, 34))                // Pos 25-34 (preserve whitespace)
-            .nameAddressee(extract(line, 34, 60))                // Pos 35-60 (preserve whitespace)
-            .bic(extract(line, 60, 71))                          // Pos 61-71 (preserve whitespace)
-            .vatNumber(extract(line, 71, 82).trim())             // Pos 72-82
-            .filler2(extract(line, 82, 83))                      // Pos 83
-            .codeSeparateApplication(extract(line, 83, 88))      // Pos 84-88
-            .transactionReference(extract(line, 88, 104))        // Pos 89-104
-            .relatedReference(extract(line, 104, 120))           // Pos 105-120
-            .filler3(extract(line, 120, 127))                    // Pos 121-127
-            .versionCode(extract(line, 127, 128))                // Pos 128
-            .build();
+      try (CodaRecordReader reader = new CodaRecordReader(codaContent))
+      {
+         return parse(reader);
+      }
    }
 
    /**
-    * Parse Record Type 1 - Old Balance
+    * Parse a complete CODA statement from an ISO-8859-1 file on local disk
+    * <p>
+    * The file is memory-mapped and decoded straight from its bytes, see {@link MappedCodaRecordReader}.
     */
-   private CodaOldBalanceRecord parseOldBalanceRecord(String line)
+   public CodaStatement parse(Path codaFile) throws IOException
    {
-      String accountNumber = extract(line, 5, 42).trim();
-      String completedAccount = IbanUtil.extractAndCompleteIban(accountNumber);
-
-      return CodaOldBalanceRecord.builder()
-            .recordIdentification(extract(line, 0, 1))           // Pos 1
-            .accountStructure(extract(line, 1, 2))               // Pos 2
-            .statementNumber(extract(line, 2, 5))                // Pos 3-5
-            .accountNumber(completedAccount)                                // Pos 6-42
-            .oldBalanceSign(extract(line, 42, 43))               // Pos 43
-            .oldBalance(parseAmount(line, 43, 58))               // Pos 44-58
-            .balanceDate(parseDate6(line, 58, 64))               // Pos 59-64
-            .accountHolderName(extract(line, 64, 90))            // Pos 65-90 (preserve whitespace)
-            .accountDescription(extract(line, 90, 125))          // Pos 91-125 (preserve whitespace)
-            .statementNumberDetail(extract(line, 125, 128))      // Pos 126-128
-            .build();
+      try (MappedCodaRecordReader reader = new MappedCodaRecordReader(codaFile))
+      {
+         return parse(reader);
+      }
    }
 
    /**
-    * Parse Record Type 2.1 - Transaction Main Data
+    * Lazily parse a multi-statement CODA file, one statement per 0…9 block
+    * <p>
+    * The returned stream must be closed to release the underlying reader.
     */
-   private CodaRecord21 parseRecord21(String line)
+   public Stream<CodaStatement> statements(Reader codaContent)
    {
-      return CodaRecord21.builder()
-            .recordIdentification(extract(line, 0, 1))           // Pos 1
-            .articleCode(extract(line, 1, 2))                    // Pos 2
-            .continuousSequenceNumber(extract(line, 2, 6))       // Pos 3-6
-            .detailNumber(extract(line, 6, 10))                  // Pos 7-10
-            .referenceNumber(extract(line, 10, 31).trim())       // Pos 11-31
-            .movementSign(extract(line, 31, 32))                 // Pos 32
-            .amount(parseAmount(line, 32, 47))                   // Pos 33-47
-            .valueDate(parseDate6(line, 47, 53))                 // Pos 48-53
-            .transactionCode(extract(line, 53, 61))              // Pos 54-61
-            .communicationType(extract(line, 61, 62))            // Pos 62
-            .communicationZone(extract(line, 62, 115).trim())    // Pos 63-115
-            .entryDate(parseDate6(line, 115, 121))               // Pos 116-121
-            .statementNumber(extract(line, 121, 124))            // Pos 122-124
-            .globalisationCode(extract(line, 124, 125))          // Pos 125
-            .nextCode(extract(line, 125, 126))                   // Pos 126
-            .filler(extract(line, 126, 127))                     // Pos 127
-            .linkCode(extract(line, 127, 128))                   // Pos 128
-            .build();
+      return statements(new CodaRecordReader(codaContent));
    }
 
    /**
-    * Parse Record Type 2.1 - Global Record (Line 3 - Mandatory)
-    * This is the global amount of all VCS transactions
+    * Lazily parse a multi-statement ISO-8859-1 encoded CODA file
     */
-   private CodaGlobalRecord parseGlobalRecord(String line)
+   public Stream<CodaStatement> statements(InputStream codaContent)
    {
-      return CodaGlobalRecord.builder()
-            .recordIdentification(extract(line, 0, 1))           // Pos 1
-            .articleCode(extract(line, 1, 2))                    // Pos 2
-            .continuousSequenceNumber(extract(line, 2, 6))       // Pos 3-6
-            .detailNumber(extract(line, 6, 10))                  // Pos 7-10
-            .referenceNumber(extract(line, 10, 31).trim())       // Pos 11-31
-            .movementSign(extract(line, 31, 32))                 // Pos 32
-            .amount(parseAmount(line, 32, 47))                   // Pos 33-47
-            .valueDate(parseDate6(line, 47, 53))                 // Pos 48-53
-            .transactionCode(extract(line, 53, 61))              // Pos 54-61
-            .communicationType(extract(line, 61, 62))            // Pos 62
-            .communicationZone(extract(line, 62, 115).trim())    // Pos 63-115
-            .entryDate(parseDate6(line, 115, 121))               // Pos 116-121
-            .statementNumber(extract(line, 121, 124))            // Pos 122-124
-            .globalisationCode(extract(line, 124, 125))          // Pos 125
-            .nextCode(extract(line, 125, 126))                   // Pos 126
-            .filler(extract(line, 126, 127))                     // Pos 127
-            .linkCode(extract(line, 127, 128))                   // Pos 128
-            .build();
+      return statements(new CodaRecordReader(codaContent));
    }
 
    /**
-    * Parse Record Type 2.2 - Communication
+    * Lazily parse a multi-statement ISO-8859-1 file on local disk through a memory mapping
     */
-   private CodaRecord22 parseRecord22(String line)
+   public Stream<CodaStatement> statements(Path codaFile) throws IOException
    {
-      return CodaRecord22.builder()
-            .recordIdentification(extract(line, 0, 1))           // Pos 1
-            .articleCode(extract(line, 1, 2))                    // Pos 2
-            .continuousSequenceNumber(extract(line, 2, 6))       // Pos 3-6
-            .detailNumber(extract(line, 6, 10))                  // Pos 7-10
-            .clientReference(extract(line, 10, 63).trim())       // Pos 11-63
-            .counterpartyName(extract(line, 63, 90).trim())      // Pos 64-90
-            .counterpartyBic(extract(line, 90, 101).trim())      // Pos 91-101
-            .filler1(extract(line, 101, 125))                    // Pos 102-125
-            .transactionCategory(extract(line, 125, 126))        // Pos 126
-            .filler2(extract(line, 126, 127))                    // Pos 127
-            .nextCode(extract(line, 127, 128))                   // Pos 128
-            .build();
+      return statements(new MappedCodaRecordReader(codaFile));
    }
 
    /**
-    * Parse Record Type 2.3 - Counterparty Account
+    * Iterate over the records of a CODA text through flyweight views instead of model objects
+    * <p>
+    * The cursor must be closed to release the underlying reader.
     */
-   private CodaRecord23 parseRecord23(String line)
+   public CodaRecordCursor cursor(Reader codaContent)
    {
-      String account = extract(line, 10, 47).trim();
-      String completedAccount = IbanUtil.extractAndCompleteIban(account);
+      return new CodaRecordCursor(new CodaRecordReader(codaContent));
+   }
 
-      return CodaRecord23.builder()
-            .recordIdentification(extract(line, 0, 1))             // Pos 1
-            .articleCode(extract(line, 1, 2))                      // Pos 2
-            .continuousSequenceNumber(extract(line, 2, 6))         // Pos 3-6
-            .detailNumber(extract(line, 6, 10))                    // Pos 7-10
-            .counterpartyAccount(completedAccount)                            // Pos 11-47
-            .counterpartyAccountName(extract(line, 47, 82).trim()) // Pos 48-82
-            .filler1(extract(line, 82, 125))                       // Pos 83-125
-            .purposeCategory(extract(line, 125, 126))              // Pos 126
-            .filler2(extract(line, 126, 127))                      // Pos 127
-            .nextCode(extract(line, 127, 128))                     // Pos 128
-            .build();
+   /**
+    * Iterate over the records of an ISO-8859-1 encoded byte stream through flyweight views
+    */
+   public CodaRecordCursor cursor(InputStream codaContent)
+   {
+      return new CodaRecordCursor(new CodaRecordReader(codaContent));
    }
 
    /**
-    * Parse Record Type 3.1 - Structured Communication
+    * Iterate over the records of an ISO-8859-1 file on local disk through flyweight views
+    * <p>
+    * Lines are read from a memory mapping, so fields that are never read are never copied out of the file.
     */
-   private CodaRecord31 parseRecord31(String line)
+   public CodaRecordCursor cursor(Path codaFile) throws IOException
    {
-      return CodaRecord31.builder()
-            .recordIdentification(extract(line, 0, 1))              // Pos 1
-            .articleCode(extract(line, 1, 2))                       // Pos 2
-            .continuousSequenceNumber(extract(line, 2, 6))          // Pos 3-6
-            .detailNumber(extract(line, 6, 10))                     // Pos 7-10
-            .referenceNumber(extract(line, 10, 31).trim())          // Pos 11-31
-            .transactionCode(extract(line, 31, 39))                 // Pos 32-39
-            .structuredCommunication(extract(line, 39, 112).trim()) // Pos 40-112
-            .filler1(extract(line, 112, 125))                       // Pos 113-125
-            .nextCode1(extract(line, 125, 126))                     // Pos 126
-            .filler2(extract(line, 126, 127))                       // Pos 127
-            .nextCode2(extract(line, 127, 128))                     // Pos 128
-            .build();
+      return new CodaRecordCursor(new MappedCodaRecordReader(codaFile));
    }
 
    /**
-    * Parse Record Type 3.2 - Counterparty Address
+    * Parse the individual transactions of a CODA text into columnar arrays
+    * <p>
+    * Rows are the transactions of {@link #parse(Reader)}, in the same order, across all statements of
+    * the input. No model object is created, see {@link CodaTransactionBatch}.
     */
-   private CodaRecord32 parseRecord32(String line)
+   public CodaTransactionBatch parseBatch(Reader codaContent) throws IOException
    {
-      return CodaRecord32.builder()
-            .recordIdentification(extract(line, 0, 1))           // Pos 1
-            .articleCode(extract(line, 1, 2))                    // Pos 2
-            .continuousSequenceNumber(extract(line, 2, 6))       // Pos 3-6
-            .detailNumber(extract(line, 6, 10))                  // Pos 7-10
-            .counterpartyAddress(extract(line, 10, 45).trim())   // Pos 11-45 (35 chars)
-            .counterpartyPostalCode(extract(line, 45, 57).trim())// Pos 46-57 (12 chars)
-            .counterpartyCity(extract(line, 57, 92).trim())      // Pos 58-92 (35 chars)
-            .filler1(extract(line, 92, 124))                     // Pos 93-124 (32 chars)
-            .nextCode1(extract(line, 124, 125))                  // Pos 125
-            .filler2(extract(line, 125, 126))                    // Pos 126
-            .nextCode2(extract(line, 126, 127))                  // Pos 127
-            .build();
+      return parseBatch(new CodaRecordReader(codaContent));
    }
 
    /**
-    * Parse Record Type 8 - New Balance
+    * Parse the individual transactions of an ISO-8859-1 encoded byte stream into columnar arrays
     */
-   private CodaNewBalanceRecord parseNewBalanceRecord(String line)
+   public CodaTransactionBatch parseBatch(InputStream codaContent) throws IOException
    {
-      String accountNumber = extract(line, 5, 42).trim();
-      String completedAccount = IbanUtil.extractAndCompleteIban(accountNumber);
+      return parseBatch(new CodaRecordReader(codaContent));
+   }
 
-      return CodaNewBalanceRecord.builder()
-            .recordIdentification(extract(line, 0, 1))           // Pos 1
-            .accountStructure(extract(line, 1, 2))               // Pos 2
-            .statementNumber(extract(line, 2, 5))                // Pos 3-5
-            .accountNumber(completedAccount)                                // Pos 6-42
-            .newBalanceSign(extract(line, 42, 43))               // Pos 43
-            .newBalance(parseAmount(line, 43, 58))               // Pos 44-58
-            .balanceDate(parseDate6(line, 58, 64))               // Pos 59-64
-            .filler(extract(line, 64, 128))                      // Pos 65-128
-            .build();
+   /**
+    * Parse the individual transactions of an ISO-8859-1 file on local disk into columnar arrays
+    */
+   public CodaTransactionBatch parseBatch(Path codaFile) throws IOException
+   {
+      return parseBatch(new MappedCodaRecordReader(codaFile));
    }
 
    /**
-    * Parse Record Type 9 - Trailer
+    * Parse a multi-statement ISO-8859-1 file on local disk in parallel on the common {@link ForkJoinPool}
     */
-   private CodaTrailerRecord parseTrailerRecord(String line)
+   public List<CodaStatement> parseParallel(Path codaFile) throws IOException
    {
-      return CodaTrailerRecord.builder()
-            .recordIdentification(extract(line, 0, 1))           // Pos 1
-            .filler1(extract(line, 1, 16))                       // Pos 2-16
-            .numberOfRecords(parseInt(line, 16, 22))             // Pos 17-22
-            .totalDebit(parseAmount(line, 22, 37))               // Pos 23-37
-            .totalCredit(parseAmount(line, 37, 52))              // Pos 38-52
-            .filler2(extract(line, 52, 127))                     // Pos 53-127
-            .trailerMarker(extract(line, 127, 128))              // Pos 128
-            .build();
+      return parseParallel(codaFile, ForkJoinPool.commonPool());
    }
 
-   // Helper methods
+   /**
+    * Parse a multi-statement ISO-8859-1 file on local disk in parallel
+    * <p>
+    * A first pass over the mapped file finds the lines starting with a record 0. Consecutive
+    * statements are grouped into chunks of at least {@link #MIN_PARALLEL_CHUNK_SIZE} bytes, each chunk
+    * is parsed on a worker of {@code pool}, and the statements are returned in file order. The result
+    * is the same as collecting {@link #statements(Path)}.
+    */
+   public List<CodaStatement> parseParallel(Path codaFile, ForkJoinPool pool) throws IOException
+   {
+      return parseParallel(codaFile, pool, MIN_PARALLEL_CHUNK_SIZE);
+   }
 
-   private String extract(String line, int start, int end)
+   List<CodaStatement> parseParallel(Path codaFile, ForkJoinPool pool, long minChunkSize) throws IOException
    {
-      if (line.length() < end)
+      try (FileChannel channel = FileChannel.open(codaFile, StandardOpenOption.READ))
       {
-         return line.length() > start ? line.substring(start).trim() : "";
+         long size = channel.size();
+         long[] headers = MappedCodaRecordReader.findHeaderOffsets(channel, MappedCodaRecordReader.DEFAULT_WINDOW_SIZE);
+         long chunkSize = Math.max(minChunkSize, size / (pool.getParallelism() * 4L));
+
+         List<ForkJoinTask<List<CodaStatement>>> tasks = new ArrayList<>();
+         try
+         {
+            long chunkStart = 0;
+            for (long header : headers)
+            {
+               if (header - chunkStart >= chunkSize)
+               {
+                  tasks.add(pool.submit(parseChunk(channel, chunkStart, header)));
+                  chunkStart = header;
+               }
+            }
+            if (chunkStart < size)
+            {
+               tasks.add(pool.submit(parseChunk(channel, chunkStart, size)));
+            }
+
+            List<CodaStatement> statements = new ArrayList<>();
+            for (ForkJoinTask<List<CodaStatement>> task : tasks)
+            {
+               statements.addAll(join(task));
+            }
+            return statements;
+         }
+         finally
+         {
+            tasks.forEach(task -> task.cancel(false));
+         }
       }
-      return line.substring(start, end);
    }
 
-   private int parseInt(String line, int start, int end)
+   private Callable<List<CodaStatement>> parseChunk(FileChannel channel, long start, long end)
    {
-      String value = extract(line, start, end).trim();
-      return value.isEmpty() ? 0 : Integer.parseInt(value);
+      return () -> {
+         List<CodaStatement> statements = new ArrayList<>();
+         try (CodaStatementIterator iterator = new CodaStatementIterator(
+               new MappedCodaRecordReader(channel, start, end, MappedCodaRecordReader.DEFAULT_WINDOW_SIZE)))
+         {
+            iterator.forEachRemaining(statements::add);
+         }
+         return statements;
+      };
    }
 
-   private BigDecimal parseAmount(String line, int start, int end)
+   private <T> T join(ForkJoinTask<T> task) throws IOException
    {
-      String value = extract(line, start, end).trim();
-      if (value.isEmpty())
+      try
       {
-         return BigDecimal.ZERO;
+         return task.get();
+      }
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+         throw new InterruptedIOException("Interrupted while parsing CODA statements");
+      }
+      catch (ExecutionException e)
+      {
+         Throwable cause = e.getCause();
+         if (cause instanceof IOException io)
+         {
+            throw io;
+         }
+         if (cause instanceof UncheckedIOException io)
+         {
+            throw io.getCause();
+         }
+         if (cause instanceof RuntimeException runtime)
+         {
+            throw runtime;
+         }
+         throw new IOException("Failed to parse CODA statement", cause);
       }
-      // Amount is in cents (last 3 digits are decimals)
-      return new BigDecimal(value).divide(new BigDecimal("1000"));
    }
 
-   private LocalDate parseDate6(String line, int start, int end)
+   private Stream<CodaStatement> statements(CodaRecordSource reader)
    {
-      String dateStr = extract(line, start, end).trim();
-      if (dateStr.isEmpty() || "000000".equals(dateStr) || "0000".equals(dateStr) || dateStr.matches("0+"))
-      {
-         return null;
-      }
-      try
+      CodaStatementIterator iterator = new CodaStatementIterator(reader);
+      return StreamSupport.stream(
+                  Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+            .onClose(() -> {
+               try
+               {
+                  iterator.close();
+               }
+               catch (IOException e)
+               {
+                  throw new UncheckedIOException(e);
+               }
+            });
+   }
+
+   private CodaTransactionBatch parseBatch(CodaRecordSource reader) throws IOException
+   {
+      try (reader)
       {
-         return LocalDate.parse(dateStr, DATE_FORMAT);
+         CodaTransactionBatchBuilder builder = new CodaTransactionBatchBuilder();
+         CharSequence line;
+         while ((line = reader.nextLine()) != null)
+         {
+            builder.accept(line);
+         }
+         return builder.build();
       }
-      catch (Exception e)
+   }
+
+   /**
+    * Build a single statement from all records of a {@link CodaRecordSource}
+    */
+   private CodaStatement parse(CodaRecordSource reader) throws IOException
+   {
+      CodaStatementAssembler assembler = new CodaStatementAssembler();
+      CodaRecord record;
+      while ((record = reader.next()) != null)
       {
-         return null;
+         assembler.accept(record);
       }
+      return assembler.build();
    }
 }
@@ -0,0 +1,179 @@
+package com.example.coda.service;
+
+import com.example.coda.model.CodaRecord;
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Forward-only cursor over the lines of a CODA file, read through flyweight views
+ * <p>
+ * Lighter alternative to {@link CodaRecordSource#next()} for read-mostly work such as summing the
+ * amounts of an account: the cursor only classifies each line by its record type, and the views
+ * returned by {@link #record21()} and {@link #balance()} decode a field when its getter is called.
+ * The views are created once per cursor and point to the current line, so iterating a file does
+ * not create a model object per line.
+ * <p>
+ * Blank lines and unknown record types are skipped. {@link #toRecord()} gives the eager model of
+ * the current line when needed.
+ *
+ * <pre>
+ * try (CodaRecordCursor cursor = parser.cursor(path))
+ * {
+ *    while (cursor.next())
+ *    {
+ *       if (cursor.isRecord21() &amp;&amp; !cursor.record21().isGlobal())
+ *       {
+ *          total += cursor.record21().getAmountThousandths();
+ *       }
+ *    }
+ * }
+ * </pre>
+ */
+public class CodaRecordCursor implements Closeable
+{
+   private final CodaRecordSource source;
+   private final Record21View record21 = new Record21View();
+   private final BalanceView balance = new BalanceView();
+
+   private CharSequence line;
+   private String recordType;
+
+   public CodaRecordCursor(CodaRecordSource source)
+   {
+      this.source = source;
+   }
+
+   /**
+    * Move to the next record
+    *
+    * @return false at end of input
+    */
+   public boolean next() throws IOException
+   {
+      while ((line = source.nextLine()) != null)
+      {
+         recordType = recordType(line);
+         if (recordType != null)
+         {
+            record21.bind(line);
+            balance.bind(line);
+            return true;
+         }
+      }
+      recordType = null;
+      return false;
+   }
+
+   /**
+    * Record type of the current line as written in the CODA specification: "0", "1", "2.1", "2.2",
+    * "2.3", "3.1", "3.2", "8" or "9"
+    */
+   public String getRecordType()
+   {
+      checkPositioned();
+      return recordType;
+   }
+
+   public boolean isRecord21()
+   {
+      return "2.1".equals(recordType);
+   }
+
+   public boolean isBalance()
+   {
+      return "1".equals(recordType) || "8".equals(recordType);
+   }
+
+   /**
+    * View of the current line, which must be a record 2.1 (detail or global)
+    *
+    * @throws IllegalStateException for any other record type
+    */
+   public Record21View record21()
+   {
+      if (!isRecord21())
+      {
+         throw new IllegalStateException("Current line is not a record 2.1 but " + recordType);
+      }
+      return record21;
+   }
+
+   /**
+    * View of the current line, which must be an old balance (1) or new balance (8) record
+    *
+    * @throws IllegalStateException for any other record type
+    */
+   public BalanceView balance()
+   {
+      if (!isBalance())
+      {
+         throw new IllegalStateException("Current line is not a balance record but " + recordType);
+      }
+      return balance;
+   }
+
+   /**
+    * Raw current line; only valid until the next call to {@link #next()}
+    */
+   public CharSequence getLine()
+   {
+      checkPositioned();
+      return line;
+   }
+
+   /**
+    * Decode the current line into its typed model record, as {@link CodaRecordSource#next()} would
+    */
+   public CodaRecord toRecord()
+   {
+      checkPositioned();
+      return CodaRecordReader.decode(line);
+   }
+
+   /**
+    * Number of physical lines consumed so far (including skipped ones)
+    */
+   public long getLineNumber()
+   {
+      return source.getLineNumber();
+   }
+
+   @Override
+   public void close() throws IOException
+   {
+      source.close();
+   }
+
+   private void checkPositioned()
+   {
+      if (recordType == null)
+      {
+         throw new IllegalStateException("Cursor is not on a record, call next() first");
+      }
+   }
+
+   /**
+    * Same classification as {@link CodaRecordReader#decode(CharSequence)}, without decoding any field
+    */
+   private static String recordType(CharSequence line)
+   {
+      char subType = line.length() > 1 ? line.charAt(1) : ' ';
+      switch (line.charAt(0))
+      {
+         case '0':
+            return "0";
+         case '1':
+            return "1";
+         case '2':
+            return subType == '1' ? "2.1" : subType == '2' ? "2.2" : subType == '3' ? "2.3" : null;
+         case '3':
+            return subType == '1' ? "3.1" : subType == '2' ? "3.2" : null;
+         case '8':
+            return "8";
+         case '9':
+            return "9";
+         default:
+            return null;
+      }
+   }
+}
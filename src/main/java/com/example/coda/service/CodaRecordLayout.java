@@ -0,0 +1,159 @@
+package com.example.coda.service;
+
+import com.example.coda.model.CodaRecord;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Field table of one CODA record type, used both to parse and to write lines
+ * <p>
+ * A layout is built once, checked to cover the 128 positions of a line without gap or overlap,
+ * and keeps its fields in an array. Reading and writing a line is a loop over that array calling
+ * the getter and builder method references of each field: no reflection on the hot path.
+ *
+ * @param <R> record type
+ * @param <B> builder type of the record
+ */
+public final class CodaRecordLayout<R extends CodaRecord, B>
+{
+   public static final int LINE_LENGTH = 128;
+
+   private final String recordType;
+   private final Supplier<B> builderFactory;
+   private final Function<B, R> build;
+   private final CodaFieldLayout<R, B, ?>[] fields;
+
+   private CodaRecordLayout(String recordType, Supplier<B> builderFactory, Function<B, R> build,
+         CodaFieldLayout<R, B, ?>[] fields)
+   {
+      this.recordType = recordType;
+      this.builderFactory = builderFactory;
+      this.build = build;
+      this.fields = fields;
+   }
+
+   /**
+    * Start the field table of a record type
+    *
+    * @param recordType     record type as written in the CODA specification, e.g. "2.1"
+    * @param builderFactory creates an empty model builder
+    * @param build          builds the model from the builder
+    */
+   static <R extends CodaRecord, B> Builder<R, B> of(String recordType, Supplier<B> builderFactory,
+         Function<B, R> build)
+   {
+      return new Builder<>(recordType, builderFactory, build);
+   }
+
+   public String getRecordType()
+   {
+      return recordType;
+   }
+
+   public List<CodaFieldLayout<R, B, ?>> getFields()
+   {
+      return List.of(fields);
+   }
+
+   /**
+    * Look up a field by model property name, checking that it is decoded with {@code codec}
+    *
+    * @throws IllegalArgumentException when the record has no such field
+    */
+   @SuppressWarnings("unchecked")
+   <V> CodaFieldLayout<R, B, V> getField(String name, CodaFieldCodec<V> codec)
+   {
+      for (CodaFieldLayout<R, B, ?> field : fields)
+      {
+         if (field.getName().equals(name) && field.getCodec() == codec)
+         {
+            return (CodaFieldLayout<R, B, V>) field;
+         }
+      }
+      throw new IllegalArgumentException("Record " + recordType + " has no field " + name + " of that type");
+   }
+
+   /**
+    * Parse a line into the model record
+    */
+   public R parse(CharSequence line)
+   {
+      B builder = builderFactory.get();
+      for (CodaFieldLayout<R, B, ?> field : fields)
+      {
+         field.decode(line, builder);
+      }
+      return build.apply(builder);
+   }
+
+   /**
+    * Format a record into its 128-character line (without line terminator)
+    */
+   public String format(R record)
+   {
+      CodaLineEncoder line = new CodaLineEncoder();
+      encode(record, line);
+      return line.toString();
+   }
+
+   /**
+    * Encode a record into a reused line buffer, overwriting its previous content
+    */
+   void encode(R record, CodaLineEncoder line)
+   {
+      line.reset();
+      for (CodaFieldLayout<R, B, ?> field : fields)
+      {
+         field.encode(record, line);
+      }
+   }
+
+   static final class Builder<R extends CodaRecord, B>
+   {
+      private final String recordType;
+      private final Supplier<B> builderFactory;
+      private final Function<B, R> build;
+      private final List<CodaFieldLayout<R, B, ?>> fields = new ArrayList<>();
+      private int nextPosition = 1;
+
+      private Builder(String recordType, Supplier<B> builderFactory, Function<B, R> build)
+      {
+         this.recordType = recordType;
+         this.builderFactory = builderFactory;
+         this.build = build;
+      }
+
+      /**
+       * Add the next field
+       *
+       * @param from first position, 1-based as in the CODA specification
+       * @param to   last position, inclusive
+       */
+      <V> Builder<R, B> field(String name, int from, int to, CodaFieldCodec<V> codec, Function<R, V> getter,
+            BiConsumer<B, V> setter)
+      {
+         if (from != nextPosition || to < from)
+         {
+            throw new IllegalStateException("Record " + recordType + " field " + name + " at pos " + from + "-" + to
+                  + " does not follow pos " + (nextPosition - 1));
+         }
+         fields.add(new CodaFieldLayout<>(name, from - 1, to - from + 1, codec, getter, setter));
+         nextPosition = to + 1;
+         return this;
+      }
+
+      @SuppressWarnings("unchecked")
+      CodaRecordLayout<R, B> build()
+      {
+         if (nextPosition != LINE_LENGTH + 1)
+         {
+            throw new IllegalStateException(
+                  "Record " + recordType + " covers pos 1-" + (nextPosition - 1) + " instead of 1-" + LINE_LENGTH);
+         }
+         return new CodaRecordLayout<>(recordType, builderFactory, build, fields.toArray(new CodaFieldLayout[0]));
+      }
+   }
+}
@@ -0,0 +1,225 @@
+package com.example.coda.service;
+
+import com.example.coda.model.CodaGlobalRecord;
+import com.example.coda.model.CodaRecord;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Pull-style reader for Belgian CODA files
+ * <p>
+ * Reads one line at a time from the underlying {@link Reader} and returns it as a typed
+ * {@link CodaRecord} (0, 1, 2.1, 2.2, 2.3, 3.1, 3.2, 8, 9). Nothing beyond the current line is
+ * retained, so memory stays flat regardless of the size of the input. Lines are assembled in a
+ * reused {@link CharArrayLine}; lines end with LF, CR or CRLF. A line longer than
+ * {@value #MAX_LINE_LENGTH} characters, where CODA lines have 128, is rejected rather than grown.
+ * <p>
+ * A record 2.1 with globalisation code "1" (pos 125) is returned as a {@link CodaGlobalRecord}.
+ * Blank lines and unknown record types are skipped. Field positions come from {@link CodaLayout}.
+ */
+public class CodaRecordReader implements CodaRecordSource
+{
+   private static final CodaLayout LAYOUT = CodaLayout.V2;
+   static final int MAX_LINE_LENGTH = 4096;
+
+   private final Reader reader;
+   private final char[] buffer = new char[8192];
+   private final CharArrayLine line = new CharArrayLine();
+   private int position;
+   private int limit;
+   private boolean skipLineFeed;
+   private long lineNumber;
+
+   public CodaRecordReader(Reader source)
+   {
+      this.reader = source;
+   }
+
+   /**
+    * Read CODA from a byte stream; CODA files are ISO-8859-1 encoded
+    */
+   public CodaRecordReader(InputStream source)
+   {
+      this(source, StandardCharsets.ISO_8859_1);
+   }
+
+   public CodaRecordReader(InputStream source, Charset charset)
+   {
+      this(new InputStreamReader(source, charset));
+   }
+
+   /**
+    * Read the next record
+    *
+    * @return the next typed record, or {@code null} at end of input
+    */
+   @Override
+   public CodaRecord next() throws IOException
+   {
+      while (readLine())
+      {
+         lineNumber++;
+         CodaRecord record = decode(line);
+         if (record != null)
+         {
+            return record;
+         }
+      }
+      return null;
+   }
+
+   @Override
+   public CharSequence nextLine() throws IOException
+   {
+      while (readLine())
+      {
+         lineNumber++;
+         if (!CodaFieldDecoder.isBlank(line))
+         {
+            return line;
+         }
+      }
+      return null;
+   }
+
+   /**
+    * Number of physical lines consumed so far (including skipped ones)
+    */
+   @Override
+   public long getLineNumber()
+   {
+      return lineNumber;
+   }
+
+   @Override
+   public void close() throws IOException
+   {
+      reader.close();
+   }
+
+   /**
+    * Load the next physical line into {@link #line}, with the same line breaks as {@code BufferedReader.readLine()}
+    *
+    * @return false at end of input
+    */
+   private boolean readLine() throws IOException
+   {
+      line.clear();
+      boolean started = false;
+      while (true)
+      {
+         if (position == limit)
+         {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit < 0)
+            {
+               limit = 0;
+               return started;
+            }
+            continue;
+         }
+         if (skipLineFeed)
+         {
+            skipLineFeed = false;
+            if (buffer[position] == '\n')
+            {
+               position++;
+               continue;
+            }
+         }
+
+         started = true;
+         int start = position;
+         while (position < limit)
+         {
+            char c = buffer[position];
+            if (c == '\n' || c == '\r')
+            {
+               append(start, position - start);
+               position++;
+               skipLineFeed = c == '\r';
+               return true;
+            }
+            position++;
+         }
+         append(start, position - start);
+      }
+   }
+
+   private void append(int start, int count) throws IOException
+   {
+      if (line.length() + count > MAX_LINE_LENGTH)
+      {
+         throw new IOException("CODA line " + (lineNumber + 1) + " is longer than " + MAX_LINE_LENGTH + " characters");
+      }
+      line.append(buffer, start, count);
+   }
+
+   /**
+    * Decode a single CODA line into its typed record
+    * <p>
+    * Works on any {@link CharSequence}; fields are copied out of the line only once, so a
+    * byte-backed line never has to be turned into a String first.
+    *
+    * @return the record, or {@code null} for blank lines and unknown record types
+    */
+   static CodaRecord decode(CharSequence line)
+   {
+      if (CodaFieldDecoder.isBlank(line))
+      {
+         return null;
+      }
+
+      char subType = line.length() > 1 ? line.charAt(1) : ' ';
+      switch (line.charAt(0))
+      {
+         case '0': // Header Record
+            return LAYOUT.header().parse(line);
+
+         case '1': // Old Balance Record
+            return LAYOUT.oldBalance().parse(line);
+
+         case '2': // Transaction Records
+            if (subType == '1') // Transaction Main Data (Record 2.1)
+            {
+               // Globalisation code = "1" at position 125 marks the global record (line 3)
+               char globalisationCode = line.length() >= 125 ? line.charAt(124) : '0';
+               return globalisationCode == '1' ? LAYOUT.global().parse(line) : LAYOUT.record21().parse(line);
+            }
+            if (subType == '2') // Communication
+            {
+               return LAYOUT.record22().parse(line);
+            }
+            if (subType == '3') // Counterparty Account
+            {
+               return LAYOUT.record23().parse(line);
+            }
+            return null;
+
+         case '3': // Transaction Detail Records
+            if (subType == '1') // Structured Communication
+            {
+               return LAYOUT.record31().parse(line);
+            }
+            if (subType == '2') // Counterparty Address
+            {
+               return LAYOUT.record32().parse(line);
+            }
+            return null;
+
+         case '8': // New Balance Record
+            return LAYOUT.newBalance().parse(line);
+
+         case '9': // Trailer Record
+            return LAYOUT.trailer().parse(line);
+
+         default:
+            return null;
+      }
+   }
+}
@@ -0,0 +1,33 @@
+package com.example.coda.service;
+
+import com.example.coda.model.CodaRecord;
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Pull-style source of typed CODA records, one line at a time
+ */
+public interface CodaRecordSource extends Closeable
+{
+   /**
+    * Read the next record
+    *
+    * @return the next typed record, or {@code null} at end of input
+    */
+   CodaRecord next() throws IOException;
+
+   /**
+    * Read the next non-blank line without decoding it
+    * <p>
+    * The returned sequence may be a buffer reused by the source: it is only valid until the next
+    * call to {@link #nextLine()} or {@link #next()}.
+    *
+    * @return the raw line without terminator, or {@code null} at end of input
+    */
+   CharSequence nextLine() throws IOException;
+
+   /**
+    * Number of physical lines consumed so far (including skipped ones)
+    */
+   long getLineNumber();
+}
@@ -0,0 +1,167 @@
+package com.example.coda.service;
+
+import com.example.coda.model.CodaGlobalRecord;
+import com.example.coda.model.CodaHeaderRecord;
+import com.example.coda.model.CodaIndividualTransactionRecord;
+import com.example.coda.model.CodaNewBalanceRecord;
+import com.example.coda.model.CodaOldBalanceRecord;
+import com.example.coda.model.CodaRecord;
+import com.example.coda.model.CodaRecord21;
+import com.example.coda.model.CodaRecord22;
+import com.example.coda.model.CodaRecord23;
+import com.example.coda.model.CodaRecord31;
+import com.example.coda.model.CodaRecord32;
+import com.example.coda.model.CodaStatement;
+import com.example.coda.model.CodaTrailerRecord;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Collects typed CODA records into a {@link CodaStatement}
+ * <p>
+ * Records 2.2, 2.3, 3.1 and 3.2 are attached to the last individual record 2.1; they are
+ * ignored when no individual transaction has been started yet.
+ * <p>
+ * Completed individual transactions are collected for {@link #build()}, or handed one by one to
+ * a consumer when the statement is not built, see {@link CodaJsonTranscoder}.
+ */
+class CodaStatementAssembler
+{
+   private final List<CodaIndividualTransactionRecord> transactionRecords;
+   private final Consumer<CodaIndividualTransactionRecord> transactions;
+   private CodaIndividualTransactionRecord.CodaIndividualTransactionRecordBuilder currentTransaction;
+   private CodaHeaderRecord header;
+   private CodaOldBalanceRecord oldBalance;
+   private CodaGlobalRecord global;
+   private CodaNewBalanceRecord newBalance;
+   private CodaTrailerRecord trailer;
+   private boolean empty = true;
+
+   CodaStatementAssembler()
+   {
+      this.transactionRecords = new ArrayList<>();
+      this.transactions = transactionRecords::add;
+   }
+
+   /**
+    * Hand each individual transaction to {@code transactions} once its last record has been read
+    */
+   CodaStatementAssembler(Consumer<CodaIndividualTransactionRecord> transactions)
+   {
+      this.transactionRecords = null;
+      this.transactions = transactions;
+   }
+
+   void accept(CodaRecord record)
+   {
+      empty = false;
+      if (record instanceof CodaHeaderRecord header) // Record 0
+      {
+         this.header = header;
+      }
+      else if (record instanceof CodaOldBalanceRecord oldBalance) // Record 1
+      {
+         this.oldBalance = oldBalance;
+      }
+      else if (record instanceof CodaGlobalRecord global) // Record 2.1 with globalisation code "1"
+      {
+         this.global = global;
+      }
+      else if (record instanceof CodaRecord21 record21) // Individual transaction
+      {
+         // Save previous transaction if exists and start a new one
+         flushTransaction();
+         currentTransaction = CodaIndividualTransactionRecord.builder().record21(record21);
+      }
+      else if (currentTransaction != null && record instanceof CodaRecord22 record22) // Communication
+      {
+         currentTransaction.record22(record22);
+      }
+      else if (currentTransaction != null && record instanceof CodaRecord23 record23) // Counterparty Account
+      {
+         currentTransaction.record23(record23);
+      }
+      else if (currentTransaction != null && record instanceof CodaRecord31 record31) // Structured Communication
+      {
+         currentTransaction.record31(record31);
+      }
+      else if (currentTransaction != null && record instanceof CodaRecord32 record32) // Counterparty Address
+      {
+         currentTransaction.record32(record32);
+      }
+      else if (record instanceof CodaNewBalanceRecord newBalance) // Record 8
+      {
+         // Save last transaction before new balance
+         flushTransaction();
+         this.newBalance = newBalance;
+      }
+      else if (record instanceof CodaTrailerRecord trailer) // Record 9
+      {
+         this.trailer = trailer;
+      }
+   }
+
+   /**
+    * True until the first record has been accepted
+    */
+   boolean isEmpty()
+   {
+      return empty;
+   }
+
+   /**
+    * Hand over the last individual transaction
+    */
+   void finish()
+   {
+      flushTransaction();
+   }
+
+   CodaStatement build()
+   {
+      flushTransaction();
+      return CodaStatement.builder()
+            .header(header)
+            .oldBalance(oldBalance)
+            .global(global)
+            .individualTransactions(transactionRecords)
+            .newBalance(newBalance)
+            .trailer(trailer)
+            .build();
+   }
+
+   CodaHeaderRecord header()
+   {
+      return header;
+   }
+
+   CodaOldBalanceRecord oldBalance()
+   {
+      return oldBalance;
+   }
+
+   CodaGlobalRecord global()
+   {
+      return global;
+   }
+
+   CodaNewBalanceRecord newBalance()
+   {
+      return newBalance;
+   }
+
+   CodaTrailerRecord trailer()
+   {
+      return trailer;
+   }
+
+   private void flushTransaction()
+   {
+      if (currentTransaction != null)
+      {
+         transactions.accept(currentTransaction.build());
+         currentTransaction = null;
+      }
+   }
+}
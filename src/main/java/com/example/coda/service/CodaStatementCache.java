@@ -0,0 +1,189 @@
+package com.example.coda.service;
+
+import com.example.coda.model.CodaBankTransaction;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Generated statements kept in memory by a hash of everything they are generated from
+ * <p>
+ * {@link CodaGenerator} output only depends on its arguments, so the SHA-256 of the account
+ * fields, statement date, opening balance and transactions identifies the bytes it writes: the
+ * {@link Key} is used both to look the statement up and as its strong {@code ETag}. Amounts are
+ * hashed by value, {@code 125.0} and {@code 125.00} give the same key. Callers pass the resolved
+ * statement date, never a missing one, so a key does not outlive the day it was made for.
+ * <p>
+ * The cache is bounded by {@code coda.cache.statements.max-size} in total and
+ * {@code coda.cache.statements.max-entry-size} per statement, least recently used first, and
+ * entries expire after {@code coda.cache.statements.ttl}.
+ */
+@Service
+public class CodaStatementCache
+{
+   // Changes whenever the layout written by the generator or the hashing does, so old keys stop matching
+   private static final String KEY_VERSION = "coda-statement-v2";
+
+   /**
+    * Hash of a statement's inputs
+    */
+   public record Key(String hash)
+   {
+      /**
+       * Quoted strong entity tag for the statement
+       */
+      public String etag()
+      {
+         return '"' + hash + '"';
+      }
+
+      /**
+       * Entity tag of the gzipped statement, a different representation of the same one
+       */
+      public String gzipEtag()
+      {
+         return "\"" + hash + "-gzip\"";
+      }
+   }
+
+   private final ByteCache<Key> cache;
+
+   public CodaStatementCache(@Value("${coda.cache.statements.max-size:64MB}") DataSize maxSize,
+         @Value("${coda.cache.statements.max-entry-size:4MB}") DataSize maxEntrySize,
+         @Value("${coda.cache.statements.ttl:10m}") Duration ttl)
+   {
+      this.cache = new ByteCache<>(maxSize.toBytes(), maxEntrySize.toBytes(), ttl);
+   }
+
+   /**
+    * Transactions of a statement hashed as they come, e.g. while a request body is read, for
+    * {@link #key(String, String, String, LocalDate, BigDecimal, TransactionDigest)}
+    */
+   public static final class TransactionDigest
+   {
+      private final Hasher hasher = new Hasher();
+
+      public void add(CodaBankTransaction tx)
+      {
+         hasher.add(tx.bookingDate()).add(tx.type() == null ? null : tx.type().name()).add(tx.amount())
+               .add(tx.counterpartyName()).add(tx.counterpartyAccount()).add(tx.description()).add(tx.reference());
+      }
+   }
+
+   /**
+    * Key of the statement {@link CodaGenerator} writes for these arguments; {@code transactions}
+    * is read once and not closed
+    */
+   public Key key(String bankName, String accountNumber, String currency, LocalDate statementDate,
+         BigDecimal openingBalance, Stream<CodaBankTransaction> transactions)
+   {
+      TransactionDigest digest = new TransactionDigest();
+      Iterator<CodaBankTransaction> it = transactions.iterator();
+      while (it.hasNext())
+      {
+         digest.add(it.next());
+      }
+      return key(bankName, accountNumber, currency, statementDate, openingBalance, digest);
+   }
+
+   /**
+    * Key of the statement for transactions already hashed; {@code transactions} is used up
+    */
+   public Key key(String bankName, String accountNumber, String currency, LocalDate statementDate,
+         BigDecimal openingBalance, TransactionDigest transactions)
+   {
+      Hasher hasher = new Hasher();
+      hasher.add(KEY_VERSION).add(bankName).add(accountNumber).add(currency).add(statementDate).add(openingBalance)
+            .add(transactions.hasher.hex());
+      return new Key(hasher.hex());
+   }
+
+   /**
+    * The cached statement, or {@code null}; the array is shared and must not be modified
+    */
+   public byte[] get(Key key)
+   {
+      return cache.get(key);
+   }
+
+   /**
+    * Write the statement to {@code out} with {@code generation}, keeping a copy under {@code key}
+    * if it completes and is not larger than the entry limit
+    */
+   public void write(Key key, OutputStream out, CodaOutputWriter generation) throws IOException
+   {
+      cache.write(key, out, generation);
+   }
+
+   public void clear()
+   {
+      cache.clear();
+   }
+
+   public CodaCacheStats stats()
+   {
+      return cache.stats();
+   }
+
+   /**
+    * Length-prefixed fields, so that no two different field lists hash the same bytes
+    */
+   private static final class Hasher
+   {
+      private final MessageDigest digest;
+      private final ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+
+      private Hasher()
+      {
+         try
+         {
+            digest = MessageDigest.getInstance("SHA-256");
+         }
+         catch (NoSuchAlgorithmException e)
+         {
+            // Every Java platform provides SHA-256
+            throw new IllegalStateException(e);
+         }
+      }
+
+      private Hasher add(String value)
+      {
+         if (value == null)
+         {
+            digest.update(length.clear().putInt(-1).array());
+            return this;
+         }
+         byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+         digest.update(length.clear().putInt(bytes.length).array());
+         digest.update(bytes);
+         return this;
+      }
+
+      private Hasher add(LocalDate value)
+      {
+         return add(value == null ? null : value.toString());
+      }
+
+      private Hasher add(BigDecimal value)
+      {
+         return add(value == null ? null : value.stripTrailingZeros().toPlainString());
+      }
+
+      private String hex()
+      {
+         return HexFormat.of().formatHex(digest.digest());
+      }
+   }
+}
@@ -0,0 +1,91 @@
+package com.example.coda.service;
+
+import com.example.coda.model.CodaHeaderRecord;
+import com.example.coda.model.CodaRecord;
+import com.example.coda.model.CodaStatement;
+import com.example.coda.model.CodaTrailerRecord;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazily splits a multi-statement CODA file into one {@link CodaStatement} per 0…9 block
+ * <p>
+ * A statement ends at its record 9, or at the next record 0 when the trailer is missing. Only the
+ * statement being assembled is held; once returned by {@link #next()} it is no longer referenced.
+ */
+public class CodaStatementIterator implements Iterator<CodaStatement>, Closeable
+{
+   private final CodaRecordSource reader;
+   private CodaRecord pendingHeader;
+   private CodaStatement nextStatement;
+   private boolean exhausted;
+
+   public CodaStatementIterator(CodaRecordSource reader)
+   {
+      this.reader = reader;
+   }
+
+   @Override
+   public boolean hasNext()
+   {
+      if (nextStatement == null && !exhausted)
+      {
+         try
+         {
+            nextStatement = readStatement();
+         }
+         catch (IOException e)
+         {
+            throw new UncheckedIOException("Failed to read CODA statement at line " + reader.getLineNumber(), e);
+         }
+      }
+      return nextStatement != null;
+   }
+
+   @Override
+   public CodaStatement next()
+   {
+      if (!hasNext())
+      {
+         throw new NoSuchElementException();
+      }
+      CodaStatement statement = nextStatement;
+      nextStatement = null;
+      return statement;
+   }
+
+   @Override
+   public void close() throws IOException
+   {
+      reader.close();
+   }
+
+   private CodaStatement readStatement() throws IOException
+   {
+      CodaStatementAssembler assembler = new CodaStatementAssembler();
+      CodaRecord record = pendingHeader != null ? pendingHeader : reader.next();
+      pendingHeader = null;
+
+      while (record != null)
+      {
+         if (record instanceof CodaHeaderRecord && !assembler.isEmpty())
+         {
+            // Trailer missing: the new header starts the next statement
+            pendingHeader = record;
+            return assembler.build();
+         }
+         assembler.accept(record);
+         if (record instanceof CodaTrailerRecord)
+         {
+            return assembler.build();
+         }
+         record = reader.next();
+      }
+
+      exhausted = true;
+      return assembler.isEmpty() ? null : assembler.build();
+   }
+}
@@ -0,0 +1,495 @@
+package com.example.coda.service;
+
+import com.example.coda.util.IbanUtil;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Columnar (struct-of-arrays) view of the individual transactions of a CODA file
+ * <p>
+ * Row {@code i} holds the same transaction as {@code statement.getIndividualTransactions().get(i)}
+ * after {@link CodaParser#parse}, but each field lives in its own array:
+ * <ul>
+ *    <li>amounts as {@code long} thousandths, with a separate debit flag</li>
+ *    <li>value and entry dates as {@code int} epoch days, {@link #NO_DATE} when absent</li>
+ *    <li>transaction codes and counterparty BICs dictionary-encoded as {@code int} ids</li>
+ *    <li>free text in shared {@code char[]} columns indexed by offset and length</li>
+ * </ul>
+ * Scanning a column touches one contiguous array, and a million transactions take a few tens of MB
+ * instead of the five objects and dozens of Strings per transaction of the model. Strings,
+ * {@link BigDecimal} and {@link LocalDate} values are only created by the getters that return them.
+ * <p>
+ * Built by {@link CodaParser#parseBatch}; instances are immutable once built.
+ */
+public final class CodaTransactionBatch
+{
+   /**
+    * Epoch day stored for a missing date
+    */
+   public static final int NO_DATE = Integer.MIN_VALUE;
+
+   /**
+    * Dictionary id stored for a missing value
+    */
+   public static final int NO_VALUE = -1;
+
+   private final int size;
+   private final int[] sequenceNumbers;
+   private final long[] amounts;
+   private final boolean[] debits;
+   private final int[] valueDates;
+   private final int[] entryDates;
+   private final DictionaryColumn transactionCodes;
+   private final DictionaryColumn counterpartyBics;
+   private final TextColumn referenceNumbers;
+   private final TextColumn communications;
+   private final TextColumn counterpartyNames;
+   private final TextColumn counterpartyAccounts;
+   private final TextColumn counterpartyAccountNames;
+
+   CodaTransactionBatch(int size, int[] sequenceNumbers, long[] amounts, boolean[] debits, int[] valueDates,
+         int[] entryDates, DictionaryColumn transactionCodes, DictionaryColumn counterpartyBics,
+         TextColumn referenceNumbers, TextColumn communications, TextColumn counterpartyNames,
+         TextColumn counterpartyAccounts, TextColumn counterpartyAccountNames)
+   {
+      this.size = size;
+      this.sequenceNumbers = sequenceNumbers;
+      this.amounts = amounts;
+      this.debits = debits;
+      this.valueDates = valueDates;
+      this.entryDates = entryDates;
+      this.transactionCodes = transactionCodes;
+      this.counterpartyBics = counterpartyBics;
+      this.referenceNumbers = referenceNumbers;
+      this.communications = communications;
+      this.counterpartyNames = counterpartyNames;
+      this.counterpartyAccounts = counterpartyAccounts;
+      this.counterpartyAccountNames = counterpartyAccountNames;
+   }
+
+   /**
+    * Number of transactions
+    */
+   public int size()
+   {
+      return size;
+   }
+
+   /**
+    * Continuous sequence number (record 2.1 pos 3-6)
+    */
+   public int getSequenceNumber(int row)
+   {
+      return sequenceNumbers[checkRow(row)];
+   }
+
+   /**
+    * Amount in thousandths, without sign (record 2.1 pos 33-47)
+    */
+   public long getAmountThousandths(int row)
+   {
+      return amounts[checkRow(row)];
+   }
+
+   /**
+    * Amount in thousandths, negative for a debit
+    */
+   public long getSignedAmountThousandths(int row)
+   {
+      checkRow(row);
+      return debits[row] ? -amounts[row] : amounts[row];
+   }
+
+   /**
+    * Amount without sign, as in the model
+    */
+   public BigDecimal getAmount(int row)
+   {
+      return CodaFieldDecoder.amount(getAmountThousandths(row));
+   }
+
+   /**
+    * Movement sign (record 2.1 pos 32) is "1"
+    */
+   public boolean isDebit(int row)
+   {
+      return debits[checkRow(row)];
+   }
+
+   /**
+    * Value date as epoch day, or {@link #NO_DATE}
+    */
+   public int getValueDateEpochDay(int row)
+   {
+      return valueDates[checkRow(row)];
+   }
+
+   public LocalDate getValueDate(int row)
+   {
+      return toDate(getValueDateEpochDay(row));
+   }
+
+   /**
+    * Entry date as epoch day, or {@link #NO_DATE}
+    */
+   public int getEntryDateEpochDay(int row)
+   {
+      return entryDates[checkRow(row)];
+   }
+
+   public LocalDate getEntryDate(int row)
+   {
+      return toDate(getEntryDateEpochDay(row));
+   }
+
+   /**
+    * Dictionary id of the transaction code, an index into {@link #getTransactionCodes()}
+    */
+   public int getTransactionCodeId(int row)
+   {
+      return transactionCodes.ids[checkRow(row)];
+   }
+
+   public String getTransactionCode(int row)
+   {
+      return transactionCodes.value(getTransactionCodeId(row));
+   }
+
+   /**
+    * Distinct transaction codes, in order of first appearance
+    */
+   public List<String> getTransactionCodes()
+   {
+      return transactionCodes.values();
+   }
+
+   /**
+    * Dictionary id of the counterparty BIC (record 2.2), or {@link #NO_VALUE} without record 2.2
+    */
+   public int getCounterpartyBicId(int row)
+   {
+      return counterpartyBics.ids[checkRow(row)];
+   }
+
+   public String getCounterpartyBic(int row)
+   {
+      return counterpartyBics.value(getCounterpartyBicId(row));
+   }
+
+   /**
+    * Distinct counterparty BICs, in order of first appearance
+    */
+   public List<String> getCounterpartyBics()
+   {
+      return counterpartyBics.values();
+   }
+
+   /**
+    * Record 2.1 pos 11-31, trimmed
+    */
+   public String getReferenceNumber(int row)
+   {
+      return referenceNumbers.get(checkRow(row));
+   }
+
+   /**
+    * Record 2.1 pos 63-115, trimmed
+    */
+   public String getCommunication(int row)
+   {
+      return communications.get(checkRow(row));
+   }
+
+   /**
+    * Record 2.2 pos 64-90, trimmed; {@code null} without record 2.2
+    */
+   public String getCounterpartyName(int row)
+   {
+      return counterpartyNames.get(checkRow(row));
+   }
+
+   /**
+    * Record 2.3 pos 11-47, Belgian IBANs completed as in the model; {@code null} without record 2.3
+    */
+   public String getCounterpartyAccount(int row)
+   {
+      String account = counterpartyAccounts.get(checkRow(row));
+      return account == null ? null : IbanUtil.extractAndCompleteIban(account);
+   }
+
+   /**
+    * Record 2.3 pos 48-82, trimmed; {@code null} without record 2.3
+    */
+   public String getCounterpartyAccountName(int row)
+   {
+      return counterpartyAccountNames.get(checkRow(row));
+   }
+
+   /**
+    * Dictionary id of a transaction code, to filter rows on an int compare
+    *
+    * @return the id, or {@link #NO_VALUE} when no transaction has this code
+    */
+   public int transactionCodeId(String transactionCode)
+   {
+      return transactionCodes.indexOf(transactionCode);
+   }
+
+   private int checkRow(int row)
+   {
+      if (row < 0 || row >= size)
+      {
+         throw new IndexOutOfBoundsException("Row " + row + " out of " + size);
+      }
+      return row;
+   }
+
+   private static LocalDate toDate(int epochDay)
+   {
+      return epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+   }
+
+   /**
+    * Text column: every value is a slice of one shared char array
+    */
+   static final class TextColumn
+   {
+      private char[] chars = new char[1024];
+      private int length;
+      private int[] starts;
+      private int[] lengths;
+
+      TextColumn(int capacity)
+      {
+         starts = new int[capacity];
+         lengths = new int[capacity];
+         Arrays.fill(lengths, -1);
+      }
+
+      /**
+       * Store the trimmed characters {@code [start, end)} of a line as the value of {@code row}
+       */
+      void set(int row, CharSequence line, int start, int end)
+      {
+         end = Math.min(end, line.length());
+         while (start < end && line.charAt(start) <= ' ')
+         {
+            start++;
+         }
+         while (end > start && line.charAt(end - 1) <= ' ')
+         {
+            end--;
+         }
+         int count = Math.max(0, end - start);
+         ensureRows(row + 1);
+         if (chars.length < length + count)
+         {
+            chars = Arrays.copyOf(chars, Math.max(length + count, chars.length * 2));
+         }
+         for (int i = 0; i < count; i++)
+         {
+            chars[length + i] = line.charAt(start + i);
+         }
+         starts[row] = length;
+         lengths[row] = count;
+         length += count;
+      }
+
+      /**
+       * Value of a row, or {@code null} when it was never set
+       */
+      String get(int row)
+      {
+         if (row >= lengths.length || lengths[row] < 0)
+         {
+            return null;
+         }
+         return new String(chars, starts[row], lengths[row]);
+      }
+
+      void ensureRows(int rows)
+      {
+         if (starts.length < rows)
+         {
+            int capacity = Math.max(rows, starts.length * 2);
+            int previous = lengths.length;
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            Arrays.fill(lengths, previous, capacity, -1);
+         }
+      }
+
+      /**
+       * Drop the spare capacity once all rows are known
+       */
+      TextColumn trim(int rows)
+      {
+         ensureRows(rows);
+         chars = Arrays.copyOf(chars, length);
+         starts = Arrays.copyOf(starts, rows);
+         lengths = Arrays.copyOf(lengths, rows);
+         return this;
+      }
+   }
+
+   /**
+    * Dictionary-encoded column: one int id per row and each distinct value stored once
+    * <p>
+    * Lookups hash the characters of the field in the line, so a value already in the dictionary
+    * is found without creating a String.
+    */
+   static final class DictionaryColumn
+   {
+      private final boolean trimmed;
+      private int[] ids;
+      private String[] values = new String[16];
+      private int count;
+      private int[] table = newTable(32);
+
+      /**
+       * @param trimmed whether values are trimmed; untrimmed values are kept as-is, like a text field of the model
+       */
+      DictionaryColumn(int capacity, boolean trimmed)
+      {
+         this.trimmed = trimmed;
+         ids = new int[capacity];
+         Arrays.fill(ids, NO_VALUE);
+      }
+
+      /**
+       * Store the characters {@code [start, end)} of a line as the value of {@code row}
+       */
+      void set(int row, CharSequence line, int start, int end)
+      {
+         boolean trim = trimmed || line.length() < end;
+         end = Math.min(end, line.length());
+         while (trim && start < end && line.charAt(start) <= ' ')
+         {
+            start++;
+         }
+         while (trim && end > start && line.charAt(end - 1) <= ' ')
+         {
+            end--;
+         }
+         ensureRows(row + 1);
+         ids[row] = idOf(line, Math.min(start, end), end);
+      }
+
+      String value(int id)
+      {
+         return id == NO_VALUE ? null : values[id];
+      }
+
+      List<String> values()
+      {
+         return List.of(Arrays.copyOf(values, count));
+      }
+
+      int indexOf(String value)
+      {
+         int mask = table.length - 1;
+         for (int slot = hash(value, 0, value.length()) & mask; table[slot] != NO_VALUE; slot = (slot + 1) & mask)
+         {
+            if (values[table[slot]].equals(value))
+            {
+               return table[slot];
+            }
+         }
+         return NO_VALUE;
+      }
+
+      void ensureRows(int rows)
+      {
+         if (ids.length < rows)
+         {
+            int capacity = Math.max(rows, ids.length * 2);
+            int previous = ids.length;
+            ids = Arrays.copyOf(ids, capacity);
+            Arrays.fill(ids, previous, capacity, NO_VALUE);
+         }
+      }
+
+      DictionaryColumn trim(int rows)
+      {
+         ensureRows(rows);
+         ids = Arrays.copyOf(ids, rows);
+         return this;
+      }
+
+      private int idOf(CharSequence line, int start, int end)
+      {
+         int mask = table.length - 1;
+         int slot = hash(line, start, end) & mask;
+         for (; table[slot] != NO_VALUE; slot = (slot + 1) & mask)
+         {
+            if (matches(values[table[slot]], line, start, end))
+            {
+               return table[slot];
+            }
+         }
+
+         if (count == values.length)
+         {
+            values = Arrays.copyOf(values, count * 2);
+         }
+         values[count] = line.subSequence(start, end).toString();
+         table[slot] = count;
+         count++;
+         if (count * 2 > table.length)
+         {
+            rehash();
+         }
+         return count - 1;
+      }
+
+      private void rehash()
+      {
+         table = newTable(table.length * 2);
+         int mask = table.length - 1;
+         for (int id = 0; id < count; id++)
+         {
+            int slot = hash(values[id], 0, values[id].length()) & mask;
+            while (table[slot] != NO_VALUE)
+            {
+               slot = (slot + 1) & mask;
+            }
+            table[slot] = id;
+         }
+      }
+
+      private static int[] newTable(int size)
+      {
+         int[] table = new int[size];
+         Arrays.fill(table, NO_VALUE);
+         return table;
+      }
+
+      private static int hash(CharSequence chars, int start, int end)
+      {
+         int hash = 0;
+         for (int i = start; i < end; i++)
+         {
+            hash = 31 * hash + chars.charAt(i);
+         }
+         return hash ^ (hash >>> 16);
+      }
+
+      private static boolean matches(String value, CharSequence line, int start, int end)
+      {
+         if (value.length() != end - start)
+         {
+            return false;
+         }
+         for (int i = 0; i < value.length(); i++)
+         {
+            if (value.charAt(i) != line.charAt(start + i))
+            {
+               return false;
+            }
+         }
+         return true;
+      }
+   }
+}
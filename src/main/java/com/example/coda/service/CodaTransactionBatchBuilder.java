@@ -0,0 +1,172 @@
+package com.example.coda.service;
+
+import com.example.coda.model.CodaRecord21;
+import com.example.coda.model.CodaRecord22;
+import com.example.coda.model.CodaRecord23;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Fills a {@link CodaTransactionBatch} straight from raw CODA lines
+ * <p>
+ * Follows the rules of {@link CodaStatementAssembler}: each individual record 2.1 starts a row,
+ * records 2.2 and 2.3 complete the current row, and a record 8 closes it. Fields are decoded from
+ * the line into the column arrays at the positions of {@link CodaLayout}; no model object is built.
+ */
+class CodaTransactionBatchBuilder
+{
+   private static final CodaRecordLayout<CodaRecord21, ?> RECORD_21 = CodaLayout.V2.record21();
+   private static final CodaRecordLayout<CodaRecord22, ?> RECORD_22 = CodaLayout.V2.record22();
+   private static final CodaRecordLayout<CodaRecord23, ?> RECORD_23 = CodaLayout.V2.record23();
+
+   private static final CodaFieldLayout<?, ?, String> SEQUENCE_NUMBER = RECORD_21.getField(
+         "continuousSequenceNumber", CodaFieldCodec.TEXT);
+   private static final CodaFieldLayout<?, ?, String> REFERENCE_NUMBER = RECORD_21.getField("referenceNumber",
+         CodaFieldCodec.TRIMMED);
+   private static final CodaFieldLayout<?, ?, String> MOVEMENT_SIGN = RECORD_21.getField("movementSign",
+         CodaFieldCodec.TEXT);
+   private static final CodaFieldLayout<?, ?, BigDecimal> AMOUNT = RECORD_21.getField("amount", CodaFieldCodec.AMOUNT);
+   private static final CodaFieldLayout<?, ?, LocalDate> VALUE_DATE = RECORD_21.getField("valueDate",
+         CodaFieldCodec.DATE);
+   private static final CodaFieldLayout<?, ?, String> TRANSACTION_CODE = RECORD_21.getField("transactionCode",
+         CodaFieldCodec.TEXT);
+   private static final CodaFieldLayout<?, ?, String> COMMUNICATION_ZONE = RECORD_21.getField("communicationZone",
+         CodaFieldCodec.TRIMMED);
+   private static final CodaFieldLayout<?, ?, LocalDate> ENTRY_DATE = RECORD_21.getField("entryDate",
+         CodaFieldCodec.DATE);
+   private static final CodaFieldLayout<?, ?, String> GLOBALISATION_CODE = RECORD_21.getField("globalisationCode",
+         CodaFieldCodec.TEXT);
+   private static final CodaFieldLayout<?, ?, String> COUNTERPARTY_NAME = RECORD_22.getField("counterpartyName",
+         CodaFieldCodec.TRIMMED);
+   private static final CodaFieldLayout<?, ?, String> COUNTERPARTY_BIC = RECORD_22.getField("counterpartyBic",
+         CodaFieldCodec.TRIMMED);
+   private static final CodaFieldLayout<?, ?, String> COUNTERPARTY_ACCOUNT = RECORD_23.getField(
+         "counterpartyAccount", CodaFieldCodec.ACCOUNT);
+   private static final CodaFieldLayout<?, ?, String> COUNTERPARTY_ACCOUNT_NAME = RECORD_23.getField(
+         "counterpartyAccountName", CodaFieldCodec.TRIMMED);
+
+   private int size;
+   private int[] sequenceNumbers;
+   private long[] amounts;
+   private boolean[] debits;
+   private int[] valueDates;
+   private int[] entryDates;
+   private final CodaTransactionBatch.DictionaryColumn transactionCodes;
+   private final CodaTransactionBatch.DictionaryColumn counterpartyBics;
+   private final CodaTransactionBatch.TextColumn referenceNumbers;
+   private final CodaTransactionBatch.TextColumn communications;
+   private final CodaTransactionBatch.TextColumn counterpartyNames;
+   private final CodaTransactionBatch.TextColumn counterpartyAccounts;
+   private final CodaTransactionBatch.TextColumn counterpartyAccountNames;
+   private boolean rowOpen;
+
+   CodaTransactionBatchBuilder()
+   {
+      this(1024);
+   }
+
+   CodaTransactionBatchBuilder(int capacity)
+   {
+      sequenceNumbers = new int[capacity];
+      amounts = new long[capacity];
+      debits = new boolean[capacity];
+      valueDates = new int[capacity];
+      entryDates = new int[capacity];
+      transactionCodes = new CodaTransactionBatch.DictionaryColumn(capacity, false);
+      counterpartyBics = new CodaTransactionBatch.DictionaryColumn(capacity, true);
+      referenceNumbers = new CodaTransactionBatch.TextColumn(capacity);
+      communications = new CodaTransactionBatch.TextColumn(capacity);
+      counterpartyNames = new CodaTransactionBatch.TextColumn(capacity);
+      counterpartyAccounts = new CodaTransactionBatch.TextColumn(capacity);
+      counterpartyAccountNames = new CodaTransactionBatch.TextColumn(capacity);
+   }
+
+   /**
+    * Take one non-blank CODA line; lines other than 2.1, 2.2, 2.3 and 8 are ignored
+    */
+   void accept(CharSequence line)
+   {
+      char subType = line.length() > 1 ? line.charAt(1) : ' ';
+      switch (line.charAt(0))
+      {
+         case '2':
+            if (subType == '1' && charAt(line, GLOBALISATION_CODE.getStart()) != '1')
+            {
+               addRow(line);
+            }
+            else if (subType == '2' && rowOpen)
+            {
+               counterpartyNames.set(size - 1, line, COUNTERPARTY_NAME.getStart(), COUNTERPARTY_NAME.getEnd());
+               counterpartyBics.set(size - 1, line, COUNTERPARTY_BIC.getStart(), COUNTERPARTY_BIC.getEnd());
+            }
+            else if (subType == '3' && rowOpen)
+            {
+               counterpartyAccounts.set(size - 1, line, COUNTERPARTY_ACCOUNT.getStart(), COUNTERPARTY_ACCOUNT.getEnd());
+               counterpartyAccountNames.set(size - 1, line, COUNTERPARTY_ACCOUNT_NAME.getStart(),
+                     COUNTERPARTY_ACCOUNT_NAME.getEnd());
+            }
+            break;
+
+         case '8':
+            rowOpen = false;
+            break;
+
+         default:
+            break;
+      }
+   }
+
+   CodaTransactionBatch build()
+   {
+      return new CodaTransactionBatch(size,
+            Arrays.copyOf(sequenceNumbers, size),
+            Arrays.copyOf(amounts, size),
+            Arrays.copyOf(debits, size),
+            Arrays.copyOf(valueDates, size),
+            Arrays.copyOf(entryDates, size),
+            transactionCodes.trim(size),
+            counterpartyBics.trim(size),
+            referenceNumbers.trim(size),
+            communications.trim(size),
+            counterpartyNames.trim(size),
+            counterpartyAccounts.trim(size),
+            counterpartyAccountNames.trim(size));
+   }
+
+   private void addRow(CharSequence line)
+   {
+      if (size == amounts.length)
+      {
+         int capacity = size * 2;
+         sequenceNumbers = Arrays.copyOf(sequenceNumbers, capacity);
+         amounts = Arrays.copyOf(amounts, capacity);
+         debits = Arrays.copyOf(debits, capacity);
+         valueDates = Arrays.copyOf(valueDates, capacity);
+         entryDates = Arrays.copyOf(entryDates, capacity);
+      }
+
+      int row = size++;
+      rowOpen = true;
+      sequenceNumbers[row] = CodaFieldDecoder.number(line, SEQUENCE_NUMBER.getStart(), SEQUENCE_NUMBER.getEnd());
+      amounts[row] = CodaFieldDecoder.thousandths(line, AMOUNT.getStart(), AMOUNT.getEnd());
+      debits[row] = charAt(line, MOVEMENT_SIGN.getStart()) == '1';
+      valueDates[row] = epochDay(line, VALUE_DATE);
+      entryDates[row] = epochDay(line, ENTRY_DATE);
+      transactionCodes.set(row, line, TRANSACTION_CODE.getStart(), TRANSACTION_CODE.getEnd());
+      referenceNumbers.set(row, line, REFERENCE_NUMBER.getStart(), REFERENCE_NUMBER.getEnd());
+      communications.set(row, line, COMMUNICATION_ZONE.getStart(), COMMUNICATION_ZONE.getEnd());
+   }
+
+   private static int epochDay(CharSequence line, CodaFieldLayout<?, ?, LocalDate> field)
+   {
+      // Dates are shared instances, so this does not allocate for 2000-2099
+      LocalDate date = CodaFieldDecoder.date(line, field.getStart(), field.getEnd());
+      return date == null ? CodaTransactionBatch.NO_DATE : (int) date.toEpochDay();
+   }
+
+   private static char charAt(CharSequence line, int index)
+   {
+      return index < line.length() ? line.charAt(index) : ' ';
+   }
+}
@@ -1,33 +1,33 @@
 package com.example.coda.service;
 
-import com.example.coda.model.CodaGlobalRecord;
-import com.example.coda.model.CodaHeaderRecord;
 import com.example.coda.model.CodaIndividualTransactionRecord;
-import com.example.coda.model.CodaNewBalanceRecord;
-import com.example.coda.model.CodaOldBalanceRecord;
-import com.example.coda.model.CodaRecord21;
-import com.example.coda.model.CodaRecord22;
-import com.example.coda.model.CodaRecord23;
-import com.example.coda.model.CodaRecord31;
-import com.example.coda.model.CodaRecord32;
 import com.example.coda.model.CodaStatement;
-import com.example.coda.model.CodaTrailerRecord;
 import org.springframework.stereotype.Service;
-import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Writer for Belgian CODA bank statement format
- * Converts Java data structures to CODA text format
+ * Converts Java data structures to CODA text format, field positions come from {@link CodaLayout}
+ * <p>
+ * Lines are formatted one at a time into a bounded buffer and streamed to an {@link Appendable},
+ * an {@link OutputStream} or a {@link WritableByteChannel} (ISO-8859-1), so the size of a statement
+ * does not change the memory needed to write it. The String methods collect the same lines in memory,
+ * {@link #writeDocument} keeps them as encoded bytes. Outputs are neither flushed nor closed.
  */
 @Service
 public class CodaWriter
 {
-   private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("ddMMyy");
-   private static final int LINE_LENGTH = 128;
+   private static final CodaLayout LAYOUT = CodaLayout.V2;
+
+   /**
+    * Transactions rendered by one task of {@link #writeParallel}
+    */
+   static final int PARALLEL_CHUNK_SIZE = 4096;
 
    /**
     * Generate CODA format from statement
@@ -35,317 +35,283 @@ public class CodaWriter
    public String write(CodaStatement statement)
    {
       StringBuilder sb = new StringBuilder();
-
-      // Record 0 - Header
-      if (statement.getHeader() != null)
+      try
       {
-         sb.append(writeHeaderRecord(statement.getHeader())).append("\n");
+         writeStatement(statement, CodaLineBuffer.inMemory(sb));
       }
-
-      // Record 1 - Old Balance
-      if (statement.getOldBalance() != null)
+      catch (IOException e)
       {
-         sb.append(writeOldBalanceRecord(statement.getOldBalance())).append("\n");
+         // Not thrown when writing to memory
+         throw new UncheckedIOException(e);
       }
+      return sb.toString();
+   }
 
-      // Global Record 2.1
-      if (statement.getGlobal() != null)
+   /**
+    * Stream the CODA lines of a statement to a character output
+    */
+   public void write(CodaStatement statement, Appendable out) throws IOException
+   {
+      try (CodaLineBuffer lines = CodaLineBuffer.to(out))
       {
-         sb.append(writeGlobal(statement.getGlobal()));
+         writeStatement(statement, lines);
+         lines.flush();
       }
+   }
 
-      // Records 2x and 3x - Transactions
-      if (statement.getIndividualTransactions() != null)
+   /**
+    * Stream the CODA lines of a statement to a byte output, ISO-8859-1 encoded
+    */
+   public void write(CodaStatement statement, OutputStream out) throws IOException
+   {
+      try (CodaLineBuffer lines = CodaLineBuffer.to(out))
       {
-         for (CodaIndividualTransactionRecord transactionRecord : statement.getIndividualTransactions())
-         {
-            sb.append(writeTransactionRecords(transactionRecord));
-         }
+         writeStatement(statement, lines);
+         lines.flush();
       }
+   }
 
-      // Record 8 - New Balance
-      if (statement.getNewBalance() != null)
+   /**
+    * Stream the CODA lines of a statement to a channel, ISO-8859-1 encoded
+    */
+   public void write(CodaStatement statement, WritableByteChannel out) throws IOException
+   {
+      try (CodaLineBuffer lines = CodaLineBuffer.to(out))
       {
-         sb.append(writeNewBalanceRecord(statement.getNewBalance())).append("\n");
+         writeStatement(statement, lines);
+         lines.flush();
       }
+   }
 
-      // Record 9 - Trailer
-      if (statement.getTrailer() != null)
+   /**
+    * Same output as {@link #write(CodaStatement)}, transactions rendered in parallel on the common {@link ForkJoinPool}
+    */
+   public String writeParallel(CodaStatement statement)
+   {
+      StringBuilder sb = new StringBuilder();
+      try
       {
-         sb.append(writeTrailerRecord(statement.getTrailer())).append("\n");
+         writeParallel(statement, CodaLineBuffer.inMemory(sb), ForkJoinPool.commonPool(), PARALLEL_CHUNK_SIZE);
+      }
+      catch (IOException e)
+      {
+         // Only thrown when interrupted
+         throw new UncheckedIOException(e);
       }
-
       return sb.toString();
    }
 
    /**
-    * Write Record Type 0 - Header
+    * Stream the CODA lines of a statement to a character output, transactions rendered in parallel
     */
-   private String writeHeaderRecord(CodaHeaderRecord header)
+   public void writeParallel(CodaStatement statement, Appendable out) throws IOException
    {
-      StringBuilder line = new StringBuilder();
-      line.append(formatString(header.getRecordIdentification(), 1));      // Pos 1
-      line.append(formatString(header.getZeros(), 4));                     // Pos 2-5
-      line.append(formatDate(header.getCreationDate()));                   // Pos 6-11
-      line.append(formatString(header.getBankIdentificationNumber(), 3));  // Pos 12-14
-      line.append(formatString(header.getApplicationCode(), 2));           // Pos 15-16
-      line.append(formatString(header.getDuplicateCode(), 1));             // Pos 17
-      line.append(formatString(header.getFiller1(), 7));                   // Pos 18-24
-      line.append(formatString(header.getFileReference(), 10));            // Pos 25-34
-      line.append(formatString(header.getNameAddressee(), 26));            // Pos 35-60
-      line.append(formatString(header.getBic(), 11));                      // Pos 61-71
-      line.append(formatString(header.getVatNumber(), 11));                // Pos 72-82
-      line.append(formatString(header.getFiller2(), 1));                   // Pos 83
-      line.append(formatString(header.getCodeSeparateApplication(), 5));   // Pos 84-88
-      line.append(formatString(header.getTransactionReference(), 16));     // Pos 89-104
-      line.append(formatString(header.getRelatedReference(), 16));         // Pos 105-120
-      line.append(formatString(header.getFiller3(), 7));                   // Pos 121-127
-      line.append(formatString(header.getVersionCode(), 1));               // Pos 128
-      return padRight(line.toString(), LINE_LENGTH);
+      try (CodaLineBuffer lines = CodaLineBuffer.to(out))
+      {
+         writeParallel(statement, lines, ForkJoinPool.commonPool(), PARALLEL_CHUNK_SIZE);
+      }
    }
 
    /**
-    * Write Record Type 1 - Old Balance
+    * Stream the CODA lines of a statement to a byte output, ISO-8859-1 encoded, transactions rendered in parallel
     */
-   private String writeOldBalanceRecord(CodaOldBalanceRecord balance)
+   public void writeParallel(CodaStatement statement, OutputStream out) throws IOException
    {
-      StringBuilder line = new StringBuilder();
-      line.append(formatString(balance.getRecordIdentification(), 1));     // Pos 1
-      line.append(formatString(balance.getAccountStructure(), 1));         // Pos 2
-      line.append(formatString(balance.getStatementNumber(), 3));          // Pos 3-5
-      line.append(formatString(balance.getAccountNumber(), 37));           // Pos 6-42
-      line.append(formatString(balance.getOldBalanceSign(), 1));           // Pos 43
-      line.append(formatAmount(balance.getOldBalance(), 15));              // Pos 44-58
-      line.append(formatDate(balance.getBalanceDate()));                   // Pos 59-64
-      line.append(formatString(balance.getAccountHolderName(), 26));       // Pos 65-90
-      line.append(formatString(balance.getAccountDescription(), 35));      // Pos 91-125
-      line.append(formatString(balance.getStatementNumberDetail(), 3));    // Pos 126-128
-      return padRight(line.toString(), LINE_LENGTH);
+      try (CodaLineBuffer lines = CodaLineBuffer.to(out))
+      {
+         writeParallel(statement, lines, ForkJoinPool.commonPool(), PARALLEL_CHUNK_SIZE);
+      }
    }
 
    /**
-    * Write Global Record 2.1
+    * Stream the CODA lines of a statement to a channel, ISO-8859-1 encoded, transactions rendered in parallel
     */
-   private String writeGlobal(CodaGlobalRecord global)
+   public void writeParallel(CodaStatement statement, WritableByteChannel out) throws IOException
    {
-      StringBuilder line = new StringBuilder();
-      line.append(formatString(global.getRecordIdentification(), 1));      // Pos 1
-      line.append(formatString(global.getArticleCode(), 1));               // Pos 2
-      line.append(formatString(global.getContinuousSequenceNumber(), 4));  // Pos 3-6
-      line.append(formatString(global.getDetailNumber(), 4));              // Pos 7-10
-      line.append(formatString(global.getReferenceNumber(), 21));          // Pos 11-31
-      line.append(formatString(global.getMovementSign(), 1));              // Pos 32
-      line.append(formatAmount(global.getAmount(), 15));                   // Pos 33-47
-      line.append(formatDate(global.getValueDate()));                             // Pos 48-53
-      line.append(formatString(global.getTransactionCode(), 8));           // Pos 54-61
-      line.append(formatString(global.getCommunicationType(), 1));         // Pos 62
-      line.append(formatString(global.getCommunicationZone(), 53));        // Pos 63-115
-      line.append(formatDate(global.getEntryDate()));                             // Pos 116-121
-      line.append(formatString(global.getStatementNumber(), 3));           // Pos 122-124
-      line.append(formatString(global.getGlobalisationCode(), 1));         // Pos 125: "1"
-      line.append(formatString(global.getNextCode(), 1));                  // Pos 126
-      line.append(formatString(global.getFiller(), 1));                    // Pos 127
-      line.append(formatString(global.getLinkCode(), 1));                  // Pos 128
-      return padRight(line.toString(), LINE_LENGTH) + "\n";
+      try (CodaLineBuffer lines = CodaLineBuffer.to(out))
+      {
+         writeParallel(statement, lines, ForkJoinPool.commonPool(), PARALLEL_CHUNK_SIZE);
+      }
    }
 
    /**
-    * Write Transaction Records (21, 22, 23, 31, 32)
+    * Write a statement with its transactions rendered in chunks on the workers of {@code pool}
+    * <p>
+    * Each chunk of {@code chunkSize} transactions is formatted into its own buffer, with no shared
+    * state. Chunks are appended in statement order, after the header, old balance and global lines
+    * and before the new balance and trailer, so the output is byte for byte the one of
+    * {@link #write(CodaStatement)}. At most two chunks per worker are rendered ahead of the output,
+    * which bounds the memory whatever the number of transactions.
     */
-   private String writeTransactionRecords(CodaIndividualTransactionRecord transaction)
+   void writeParallel(CodaStatement statement, CodaLineBuffer lines, ForkJoinPool pool, int chunkSize)
+         throws IOException
    {
-      StringBuilder sb = new StringBuilder();
-
-      // Record 21 - Main transaction data
-      if (transaction.getRecord21() != null)
+      List<CodaIndividualTransactionRecord> transactions = statement.getIndividualTransactions();
+      if (transactions == null || transactions.size() <= chunkSize)
       {
-         sb.append(writeRecord21(transaction.getRecord21())).append("\n");
+         writeStatement(statement, lines);
+         lines.flush();
+         return;
       }
 
-      // Record 22 - Counterparty information (if present)
-      if (transaction.getRecord22() != null)
-      {
-         sb.append(writeRecord22(transaction.getRecord22())).append("\n");
-      }
+      writeOpening(statement, lines);
 
-      // Record 23 - Counterparty account (if present)
-      if (transaction.getRecord23() != null)
-      {
-         sb.append(writeRecord23(transaction.getRecord23())).append("\n");
-      }
+      int chunks = (transactions.size() + chunkSize - 1) / chunkSize;
+      lines.appendInOrder(chunks, chunk -> {
+         int from = chunk * chunkSize;
+         List<CodaIndividualTransactionRecord> part =
+               transactions.subList(from, Math.min(transactions.size(), from + chunkSize));
+         return () -> renderTransactions(part);
+      }, pool, Math.max(2, pool.getParallelism() * 2));
 
-      // Record 31 - Structured communication (if present)
-      if (transaction.getRecord31() != null)
+      writeClosing(statement, lines);
+      lines.flush();
+   }
+
+   /**
+    * Encode a statement as ISO-8859-1 bytes in pooled buffers, ready to be sent to a stream or channel
+    * <p>
+    * The caller closes the document once it is written, to give the buffers back to the pool.
+    */
+   public CodaDocument writeDocument(CodaStatement statement)
+   {
+      try
       {
-         sb.append(writeRecord31(transaction.getRecord31())).append("\n");
+         return CodaLineBuffer.document(lines -> writeStatement(statement, lines));
       }
-
-      // Record 32 - Counterparty address (if present)
-      if (transaction.getRecord32() != null)
+      catch (IOException e)
       {
-         sb.append(writeRecord32(transaction.getRecord32())).append("\n");
+         // Not thrown when writing to memory
+         throw new UncheckedIOException(e);
       }
-
-      return sb.toString();
    }
 
    /**
-    * Write Record Type 2.1 - Transaction Main Data
+    * Write ART Grouping: Globalized amount + individual VCS payments
+    * Matches reference file structure: Header, OldBalance, Global21, Detail21+22+23+31+32 (per VCS), NewBalance, Trailer
+    * First transaction of record type 2 is the global record, remaining transactions of record type 2 are detail VCS records
     */
-   private String writeRecord21(CodaRecord21 record)
+   public String writeArtGrouping(CodaStatement statement)
    {
-      StringBuilder line = new StringBuilder();
-      line.append(formatString(record.getRecordIdentification(), 1));      // Pos 1
-      line.append(formatString(record.getArticleCode(), 1));               // Pos 2
-      line.append(formatString(record.getContinuousSequenceNumber(), 4));  // Pos 3-6
-      line.append(formatString(record.getDetailNumber(), 4));              // Pos 7-10
-      line.append(formatString(record.getReferenceNumber(), 21));          // Pos 11-31
-      line.append(formatString(record.getMovementSign(), 1));              // Pos 32
-      line.append(formatAmount(record.getAmount(), 15));                   // Pos 33-47
-      line.append(formatDate(record.getValueDate()));                      // Pos 48-53
-      line.append(formatString(record.getTransactionCode(), 8));           // Pos 54-61
-      line.append(formatString(record.getCommunicationType(), 1));         // Pos 62
-      line.append(formatString(record.getCommunicationZone(), 53));        // Pos 63-115
-      line.append(formatDate(record.getEntryDate()));                      // Pos 116-121
-      line.append(formatString(record.getStatementNumber(), 3));           // Pos 122-124
-      line.append(formatString(record.getGlobalisationCode(), 1));         // Pos 125
-      line.append(formatString(record.getNextCode(), 1));                  // Pos 126
-      line.append(formatString(record.getFiller(), 1));                    // Pos 127
-      line.append(formatString(record.getLinkCode(), 1));                  // Pos 128
-      return padRight(line.toString(), LINE_LENGTH);
+      StringBuilder sb = new StringBuilder();
+      try
+      {
+         writeArtGrouping(statement, CodaLineBuffer.inMemory(sb));
+      }
+      catch (IOException e)
+      {
+         // Not thrown when writing to memory
+         throw new UncheckedIOException(e);
+      }
+      return sb.toString();
    }
 
    /**
-    * Write Record Type 2.2 - Counterparty Information
+    * Stream the ART grouping of a statement to a character output
     */
-   private String writeRecord22(CodaRecord22 record)
+   public void writeArtGrouping(CodaStatement statement, Appendable out) throws IOException
    {
-      StringBuilder line = new StringBuilder();
-      line.append(formatString(record.getRecordIdentification(), 1));      // Pos 1
-      line.append(formatString(record.getArticleCode(), 1));               // Pos 2
-      line.append(formatString(record.getContinuousSequenceNumber(), 4));  // Pos 3-6
-      line.append(formatString(record.getDetailNumber(), 4));              // Pos 7-10
-      line.append(formatString(record.getClientReference(), 53));          // Pos 11-63
-      line.append(formatString(record.getCounterpartyName(), 27));         // Pos 64-90
-      line.append(formatString(record.getCounterpartyBic(), 11));          // Pos 91-101
-      line.append(formatString(record.getFiller1(), 24));                  // Pos 102-125
-      line.append(formatString(record.getTransactionCategory(), 1));       // Pos 126
-      line.append(formatString(record.getFiller2(), 1));                   // Pos 127
-      line.append(formatString(record.getNextCode(), 1));                  // Pos 128
-      return padRight(line.toString(), LINE_LENGTH);
+      try (CodaLineBuffer lines = CodaLineBuffer.to(out))
+      {
+         writeArtGrouping(statement, lines);
+         lines.flush();
+      }
    }
 
    /**
-    * Write Record Type 2.3 - Counterparty Account
+    * Stream the ART grouping of a statement to a byte output, ISO-8859-1 encoded
     */
-   private String writeRecord23(CodaRecord23 record)
+   public void writeArtGrouping(CodaStatement statement, OutputStream out) throws IOException
    {
-      StringBuilder line = new StringBuilder();
-      line.append(formatString(record.getRecordIdentification(), 1));      // Pos 1
-      line.append(formatString(record.getArticleCode(), 1));               // Pos 2
-      line.append(formatString(record.getContinuousSequenceNumber(), 4));  // Pos 3-6
-      line.append(formatString(record.getDetailNumber(), 4));              // Pos 7-10
-      line.append(formatString(record.getCounterpartyAccount(), 37));      // Pos 11-47
-      line.append(formatString(record.getCounterpartyAccountName(), 35));  // Pos 48-82
-      line.append(formatString(record.getFiller1(), 43));                  // Pos 83-125
-      line.append(formatString(record.getPurposeCategory(), 1));           // Pos 126
-      line.append(formatString(record.getFiller2(), 1));                   // Pos 127
-      line.append(formatString(record.getNextCode(), 1));                  // Pos 128
-      return padRight(line.toString(), LINE_LENGTH);
+      try (CodaLineBuffer lines = CodaLineBuffer.to(out))
+      {
+         writeArtGrouping(statement, lines);
+         lines.flush();
+      }
    }
 
    /**
-    * Write Record Type 3.1 - Structured Communication
+    * Stream the ART grouping of a statement to a channel, ISO-8859-1 encoded
     */
-   private String writeRecord31(CodaRecord31 record)
+   public void writeArtGrouping(CodaStatement statement, WritableByteChannel out) throws IOException
    {
-      StringBuilder line = new StringBuilder();
-      line.append(formatString(record.getRecordIdentification(), 1));      // Pos 1
-      line.append(formatString(record.getArticleCode(), 1));               // Pos 2
-      line.append(formatString(record.getContinuousSequenceNumber(), 4));  // Pos 3-6
-      line.append(formatString(record.getDetailNumber(), 4));              // Pos 7-10
-      line.append(formatString(record.getReferenceNumber(), 21));          // Pos 11-31
-      line.append(formatString(record.getTransactionCode(), 8));           // Pos 32-39
-      line.append(formatString(record.getStructuredCommunication(), 73));  // Pos 40-112
-      line.append(formatString(record.getFiller1(), 13));                  // Pos 113-125
-      line.append(formatString(record.getNextCode1(), 1));                 // Pos 126
-      line.append(formatString(record.getFiller2(), 1));                   // Pos 127
-      line.append(formatString(record.getNextCode2(), 1));                 // Pos 128
-      return padRight(line.toString(), LINE_LENGTH);
+      try (CodaLineBuffer lines = CodaLineBuffer.to(out))
+      {
+         writeArtGrouping(statement, lines);
+         lines.flush();
+      }
    }
 
-   /**
-    * Write Record Type 3.2 - Counterparty Address
-    */
-   private String writeRecord32(CodaRecord32 record)
+   private void writeStatement(CodaStatement statement, CodaLineBuffer lines) throws IOException
    {
-      StringBuilder line = new StringBuilder();
-      line.append(formatString(record.getRecordIdentification(), 1));      // Pos 1
-      line.append(formatString(record.getArticleCode(), 1));               // Pos 2
-      line.append(formatString(record.getContinuousSequenceNumber(), 4));  // Pos 3-6
-      line.append(formatString(record.getDetailNumber(), 4));              // Pos 7-10
-      line.append(formatString(record.getCounterpartyAddress(), 36));      // Pos 11-46 (36 chars)
-      line.append(formatString(record.getCounterpartyPostalCode(), 12));   // Pos 47-58 (12 chars)
-      line.append(formatString(record.getCounterpartyCity(), 35));         // Pos 59-93 (35 chars)
-      line.append(formatString(record.getFiller1(), 32));                  // Pos 94-125 (32 chars)
-      line.append(formatString(record.getNextCode1(), 1));                 // Pos 126
-      line.append(formatString(record.getFiller2(), 1));                   // Pos 127
-      line.append(formatString(record.getNextCode2(), 1));                 // Pos 128
-      return padRight(line.toString(), LINE_LENGTH);
+      writeOpening(statement, lines);
+
+      // Records 2x and 3x - Transactions
+      if (statement.getIndividualTransactions() != null)
+      {
+         for (CodaIndividualTransactionRecord transactionRecord : statement.getIndividualTransactions())
+         {
+            writeTransactionRecords(transactionRecord, lines);
+         }
+      }
+
+      writeClosing(statement, lines);
    }
 
    /**
-    * Write Record Type 8 - New Balance
+    * Header, old balance and global lines, written before the transactions
     */
-   private String writeNewBalanceRecord(CodaNewBalanceRecord balance)
+   void writeOpening(CodaStatement statement, CodaLineBuffer lines) throws IOException
    {
-      StringBuilder line = new StringBuilder();
-      line.append(formatString(balance.getRecordIdentification(), 1));     // Pos 1
-      line.append(formatString(balance.getAccountStructure(), 1));         // Pos 2
-      line.append(formatString(balance.getStatementNumber(), 3));          // Pos 3-5
-      line.append(formatString(balance.getAccountNumber(), 37));           // Pos 6-42
-      line.append(formatString(balance.getNewBalanceSign(), 1));           // Pos 43
-      line.append(formatAmount(balance.getNewBalance(), 15));              // Pos 44-58
-      line.append(formatDate(balance.getBalanceDate()));                   // Pos 59-64
-      line.append(formatString(balance.getFiller(), 64));                  // Pos 65-128
-      return padRight(line.toString(), LINE_LENGTH);
+      // Record 0 - Header
+      if (statement.getHeader() != null)
+      {
+         lines.line(LAYOUT.header(), statement.getHeader());
+      }
+
+      // Record 1 - Old Balance
+      if (statement.getOldBalance() != null)
+      {
+         lines.line(LAYOUT.oldBalance(), statement.getOldBalance());
+      }
+
+      // Global Record 2.1
+      if (statement.getGlobal() != null)
+      {
+         lines.line(LAYOUT.global(), statement.getGlobal());
+      }
    }
 
    /**
-    * Write Record Type 9 - Trailer
+    * New balance and trailer lines, written after the transactions
     */
-   private String writeTrailerRecord(CodaTrailerRecord trailer)
+   void writeClosing(CodaStatement statement, CodaLineBuffer lines) throws IOException
    {
-      StringBuilder line = new StringBuilder();
-      line.append(formatString(trailer.getRecordIdentification(), 1));     // Pos 1
-      line.append(formatString(trailer.getFiller1(), 15));                 // Pos 2-16
-      line.append(formatNumber(trailer.getNumberOfRecords(), 6));          // Pos 17-22
-      line.append(formatAmount(trailer.getTotalDebit(), 15));              // Pos 23-37
-      line.append(formatAmount(trailer.getTotalCredit(), 15));             // Pos 38-52
-      line.append(formatString(trailer.getFiller2(), 75));                 // Pos 53-127
-      line.append(formatString(trailer.getTrailerMarker(), 1));            // Pos 128
-      return padRight(line.toString(), LINE_LENGTH);
+      // Record 8 - New Balance
+      if (statement.getNewBalance() != null)
+      {
+         lines.line(LAYOUT.newBalance(), statement.getNewBalance());
+      }
+
+      // Record 9 - Trailer
+      if (statement.getTrailer() != null)
+      {
+         lines.line(LAYOUT.trailer(), statement.getTrailer());
+      }
    }
 
-   /**
-    * Write ART Grouping: Globalized amount + individual VCS payments
-    * Matches reference file structure: Header, OldBalance, Global21, Detail21+22+23+31+32 (per VCS), NewBalance, Trailer
-    * First transaction of record type 2 is the global record, remaining transactions of record type 2 are detail VCS records
-    */
-   public String writeArtGrouping(CodaStatement statement)
+   private void writeArtGrouping(CodaStatement statement, CodaLineBuffer lines) throws IOException
    {
-      StringBuilder sb = new StringBuilder();
-
       // Header
       if (statement.getHeader() != null)
       {
-         sb.append(writeHeaderRecord(statement.getHeader())).append("\n");
+         lines.line(LAYOUT.header(), statement.getHeader());
       }
 
       // Old Balance
       if (statement.getOldBalance() != null)
       {
-         sb.append(writeOldBalanceRecord(statement.getOldBalance())).append("\n");
+         lines.line(LAYOUT.oldBalance(), statement.getOldBalance());
       }
 
       // Process transactionRecords: first is global, rest are detail VCS records
@@ -356,102 +322,75 @@ public class CodaWriter
          CodaIndividualTransactionRecord global = transactionRecords.get(0);
          if (global.getRecord21() != null)
          {
-            sb.append(writeRecord21(global.getRecord21())).append("\n");
+            lines.line(LAYOUT.record21(), global.getRecord21());
          }
 
          // Individual VCS payments - output all transactionRecords (including first) as detail records
          // Each has: 21, 22, 23, 31, 32
-         for (int i = 0; i < transactionRecords.size(); i++)
+         for (CodaIndividualTransactionRecord tx : transactionRecords)
          {
-            CodaIndividualTransactionRecord tx = transactionRecords.get(i);
-            // Just write all records for each transaction
-            sb.append(writeTransactionRecords(tx));
+            writeTransactionRecords(tx, lines);
          }
       }
 
       // New Balance
       if (statement.getNewBalance() != null)
       {
-         sb.append(writeNewBalanceRecord(statement.getNewBalance())).append("\n");
+         lines.line(LAYOUT.newBalance(), statement.getNewBalance());
       }
 
       // Trailer
       if (statement.getTrailer() != null)
       {
-         sb.append(writeTrailerRecord(statement.getTrailer())).append("\n");
+         lines.line(LAYOUT.trailer(), statement.getTrailer());
       }
-
-      return sb.toString();
    }
 
-   // Utility methods
-
-   private String formatString(String value, int length)
+   private StringBuilder renderTransactions(List<CodaIndividualTransactionRecord> transactions) throws IOException
    {
-      if (value == null)
+      StringBuilder chunk = new StringBuilder(transactions.size() * 3 * (CodaRecordLayout.LINE_LENGTH + 1));
+      CodaLineBuffer lines = CodaLineBuffer.inMemory(chunk);
+      for (CodaIndividualTransactionRecord transaction : transactions)
       {
-         value = "";
+         writeTransactionRecords(transaction, lines);
       }
-      if (value.length() > length)
-      {
-         return value.substring(0, length);
-      }
-      return padRight(value, length);
+      return chunk;
    }
 
-   private String formatNumber(int value, int length)
+   /**
+    * Write Transaction Records (21, 22, 23, 31, 32)
+    */
+   void writeTransactionRecords(CodaIndividualTransactionRecord transaction, CodaLineBuffer lines)
+         throws IOException
    {
-      String str = String.valueOf(value);
-      if (str.length() > length)
+      // Record 21 - Main transaction data
+      if (transaction.getRecord21() != null)
       {
-         return str.substring(0, length);
+         lines.line(LAYOUT.record21(), transaction.getRecord21());
       }
-      return padLeft(str, length, '0');
-   }
 
-   private String formatAmount(BigDecimal amount, int length)
-   {
-      if (amount == null)
+      // Record 22 - Counterparty information (if present)
+      if (transaction.getRecord22() != null)
       {
-         amount = BigDecimal.ZERO;
+         lines.line(LAYOUT.record22(), transaction.getRecord22());
       }
-      // Convert to cents (multiply by 1000 for 3 decimal places)
-      long cents = amount.multiply(new BigDecimal("1000")).setScale(0, RoundingMode.HALF_UP).longValue();
-      String str = String.valueOf(cents);
-      return padLeft(str, length, '0');
-   }
 
-   private String formatDate(LocalDate date)
-   {
-      if (date == null)
+      // Record 23 - Counterparty account (if present)
+      if (transaction.getRecord23() != null)
       {
-         return "000000";
+         lines.line(LAYOUT.record23(), transaction.getRecord23());
       }
-      return date.format(DATE_FORMAT);
-   }
 
-   private String padRight(String str, int length)
-   {
-      if (str.length() >= length)
+      // Record 31 - Structured communication (if present)
+      if (transaction.getRecord31() != null)
       {
-         return str.substring(0, length);
+         lines.line(LAYOUT.record31(), transaction.getRecord31());
       }
-      return String.format("%-" + length + "s", str);
-   }
 
-   private String padLeft(String str, int length, char padChar)
-   {
-      if (str.length() >= length)
-      {
-         return str;
-      }
-      StringBuilder sb = new StringBuilder();
-      for (int i = 0; i < length - str.length(); i++)
+      // Record 32 - Counterparty address (if present)
+      if (transaction.getRecord32() != null)
       {
-         sb.append(padChar);
+         lines.line(LAYOUT.record32(), transaction.getRecord32());
       }
-      sb.append(str);
-      return sb.toString();
    }
 }
-
@@ -0,0 +1,61 @@
+package com.example.coda.service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reusable ISO-8859-1 line backed by a byte array
+ * <p>
+ * Every byte maps to exactly one char, so {@link #charAt(int)} is a plain array read and
+ * {@link #subSequence(int, int)} creates the field String straight from the bytes.
+ */
+final class Latin1Line implements CharSequence
+{
+   private byte[] bytes = new byte[256];
+   private int length;
+
+   /**
+    * Copy {@code length} bytes starting at {@code index} of {@code source} into this line
+    */
+   void set(ByteBuffer source, int index, int length)
+   {
+      if (bytes.length < length)
+      {
+         bytes = new byte[Math.max(length, bytes.length * 2)];
+      }
+      source.get(index, bytes, 0, length);
+      this.length = length;
+   }
+
+   @Override
+   public int length()
+   {
+      return length;
+   }
+
+   @Override
+   public char charAt(int index)
+   {
+      if (index >= length)
+      {
+         throw new IndexOutOfBoundsException(index);
+      }
+      return (char) (bytes[index] & 0xFF);
+   }
+
+   @Override
+   public String subSequence(int start, int end)
+   {
+      if (start < 0 || end > length || start > end)
+      {
+         throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+      }
+      return new String(bytes, start, end - start, StandardCharsets.ISO_8859_1);
+   }
+
+   @Override
+   public String toString()
+   {
+      return new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
+   }
+}
@@ -0,0 +1,206 @@
+package com.example.coda.service;
+
+import com.example.coda.model.CodaRecord;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * {@link CodaRecordSource} over a memory-mapped ISO-8859-1 CODA file
+ * <p>
+ * The file is mapped with {@link FileChannel#map} in windows of at most {@link #DEFAULT_WINDOW_SIZE}
+ * bytes, so multi-GB archives can be read without loading them on the heap. Each line is copied
+ * once into a reused {@link Latin1Line} and decoded field by field from its bytes; no String is
+ * created for the line itself.
+ */
+public class MappedCodaRecordReader implements CodaRecordSource
+{
+   static final int DEFAULT_WINDOW_SIZE = 256 * 1024 * 1024;
+
+   private final FileChannel channel;
+   private final boolean ownsChannel;
+   private final long end;
+   private final int windowSize;
+   private final Latin1Line line = new Latin1Line();
+
+   private MappedByteBuffer window;
+   private long windowStart;
+   private long lineNumber;
+
+   public MappedCodaRecordReader(Path file) throws IOException
+   {
+      this(file, DEFAULT_WINDOW_SIZE);
+   }
+
+   MappedCodaRecordReader(Path file, int windowSize) throws IOException
+   {
+      this(FileChannel.open(file, StandardOpenOption.READ), true, 0, -1, windowSize);
+   }
+
+   /**
+    * Read the byte range [start, end) of a channel shared with other readers; the channel is left open on close
+    */
+   MappedCodaRecordReader(FileChannel channel, long start, long end, int windowSize) throws IOException
+   {
+      this(channel, false, start, end, windowSize);
+   }
+
+   private MappedCodaRecordReader(FileChannel channel, boolean ownsChannel, long start, long end, int windowSize)
+         throws IOException
+   {
+      this.channel = channel;
+      this.ownsChannel = ownsChannel;
+      this.end = end < 0 ? channel.size() : end;
+      this.windowSize = windowSize;
+      map(start);
+   }
+
+   @Override
+   public CodaRecord next() throws IOException
+   {
+      while (readLine())
+      {
+         lineNumber++;
+         CodaRecord record = CodaRecordReader.decode(line);
+         if (record != null)
+         {
+            return record;
+         }
+      }
+      return null;
+   }
+
+   @Override
+   public CharSequence nextLine() throws IOException
+   {
+      while (readLine())
+      {
+         lineNumber++;
+         if (!CodaFieldDecoder.isBlank(line))
+         {
+            return line;
+         }
+      }
+      return null;
+   }
+
+   @Override
+   public long getLineNumber()
+   {
+      return lineNumber;
+   }
+
+   @Override
+   public void close() throws IOException
+   {
+      window = null;
+      if (ownsChannel)
+      {
+         channel.close();
+      }
+   }
+
+   /**
+    * Find the offset of every line starting with a record 0 (header), in file order; lines end as
+    * in {@link #readLine()}
+    */
+   static long[] findHeaderOffsets(FileChannel channel, int windowSize) throws IOException
+   {
+      long size = channel.size();
+      long[] offsets = new long[16];
+      int count = 0;
+      byte previous = '\n';
+      for (long position = 0; position < size; position += windowSize)
+      {
+         MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position,
+               Math.min(windowSize, size - position));
+         int limit = buffer.limit();
+         for (int i = 0; i < limit; i++)
+         {
+            byte current = buffer.get(i);
+            if (current == '0' && (previous == '\n' || previous == '\r'))
+            {
+               if (count == offsets.length)
+               {
+                  offsets = Arrays.copyOf(offsets, count * 2);
+               }
+               offsets[count++] = position + i;
+            }
+            previous = current;
+         }
+      }
+      return Arrays.copyOf(offsets, count);
+   }
+
+   /**
+    * Load the next physical line into {@link #line}; like {@code BufferedReader.readLine()} and
+    * {@link CodaRecordReader}, a line ends at {@code \n}, {@code \r} or {@code \r\n}
+    *
+    * @return false at the end of the range
+    */
+   private boolean readLine() throws IOException
+   {
+      int start = window.position();
+      if (windowStart + start >= end)
+      {
+         return false;
+      }
+
+      int lineBreak = indexOfLineBreak(start);
+      if (!lineBreakInWindow(lineBreak) && windowStart + window.limit() < end)
+      {
+         // Line, or its \r\n, crosses the end of the window: remap starting at the beginning of this line
+         map(windowStart + start);
+         start = 0;
+         lineBreak = indexOfLineBreak(0);
+         if (!lineBreakInWindow(lineBreak) && windowStart + window.limit() < end)
+         {
+            throw new IOException("CODA line " + (lineNumber + 1) + " is longer than " + windowSize + " bytes");
+         }
+      }
+
+      int limit = window.limit();
+      int contentEnd = lineBreak < 0 ? limit : lineBreak;
+      int next = lineBreak < 0 ? limit : lineBreak + 1;
+      if (lineBreak >= 0 && window.get(lineBreak) == '\r' && next < limit && window.get(next) == '\n')
+      {
+         next++;
+      }
+      line.set(window, start, contentEnd - start);
+      window.position(next);
+      return true;
+   }
+
+   private int indexOfLineBreak(int from)
+   {
+      int limit = window.limit();
+      for (int i = from; i < limit; i++)
+      {
+         byte b = window.get(i);
+         if (b == '\n' || b == '\r')
+         {
+            return i;
+         }
+      }
+      return -1;
+   }
+
+   /**
+    * Whether the line ending at {@code lineBreak} is complete in the window: a {@code \r} in its
+    * last byte may be followed by a {@code \n} in the next one
+    */
+   private boolean lineBreakInWindow(int lineBreak)
+   {
+      return lineBreak >= 0 && (lineBreak < window.limit() - 1 || window.get(lineBreak) == '\n');
+   }
+
+   private void map(long position) throws IOException
+   {
+      long size = Math.min(windowSize, end - position);
+      window = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+      windowStart = position;
+   }
+}
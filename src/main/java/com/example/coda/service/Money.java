@@ -0,0 +1,108 @@
+package com.example.coda.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Amount in thousandths of the currency unit, the resolution of CODA amount fields
+ * <p>
+ * Arithmetic is done on a {@code long} with overflow checks, throwing {@link ArithmeticException}
+ * instead of wrapping around. {@link BigDecimal} is only used to convert from and to the model
+ * at the API boundary.
+ *
+ * @param thousandths signed amount in thousandths, e.g. 244120 for 244.12
+ */
+public record Money(long thousandths) implements Comparable<Money>
+{
+   public static final Money ZERO = new Money(0);
+
+   /**
+    * Largest amount written in the 15 digits of a CODA amount field
+    */
+   public static final long MAX_CODA_THOUSANDTHS = 999_999_999_999_999L;
+
+   /**
+    * Convert a model amount, rounded half up to 3 decimals; {@code null} is zero
+    *
+    * @throws ArithmeticException when the amount does not fit a long count of thousandths
+    */
+   public static Money of(BigDecimal amount)
+   {
+      return new Money(thousandths(amount));
+   }
+
+   /**
+    * Same as {@code of(amount).thousandths()} without creating the Money
+    *
+    * @throws ArithmeticException when the amount does not fit a long count of thousandths
+    */
+   public static long thousandths(BigDecimal amount)
+   {
+      if (amount == null)
+      {
+         return 0;
+      }
+      if (amount.scale() == 0)
+      {
+         // Whole amounts (scale 0) are read without going through BigInteger
+         return Math.multiplyExact(amount.longValueExact(), 1000L);
+      }
+      return amount.movePointRight(3).setScale(0, RoundingMode.HALF_UP).longValueExact();
+   }
+
+   public Money plus(Money other)
+   {
+      return new Money(Math.addExact(thousandths, other.thousandths));
+   }
+
+   public Money minus(Money other)
+   {
+      return new Money(Math.subtractExact(thousandths, other.thousandths));
+   }
+
+   public Money abs()
+   {
+      return thousandths < 0 ? new Money(Math.negateExact(thousandths)) : this;
+   }
+
+   public int signum()
+   {
+      return Long.signum(thousandths);
+   }
+
+   /**
+    * Check that the amount can be written in a CODA amount field, sign excluded
+    *
+    * @param field name of the field in error messages, e.g. {@code "Opening balance"}
+    * @throws IllegalArgumentException when it needs more than 15 digits
+    */
+   public Money requireCodaWidth(String field)
+   {
+      if (Math.abs(thousandths) > MAX_CODA_THOUSANDTHS)
+      {
+         throw new IllegalArgumentException(field + " " + toBigDecimal().toPlainString()
+               + " does not fit the 15 digits of a CODA amount field");
+      }
+      return this;
+   }
+
+   /**
+    * Model amount with the smallest non-negative scale, e.g. 244.12 for 244120
+    */
+   public BigDecimal toBigDecimal()
+   {
+      return CodaFieldDecoder.amount(thousandths);
+   }
+
+   @Override
+   public int compareTo(Money other)
+   {
+      return Long.compare(thousandths, other.thousandths);
+   }
+
+   @Override
+   public String toString()
+   {
+      return toBigDecimal().toPlainString();
+   }
+}
@@ -0,0 +1,171 @@
+package com.example.coda.service;
+
+import com.example.coda.model.CodaRecord21;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Flyweight view of a record 2.1 (transaction main data or global record) line
+ * <p>
+ * The view only holds a reference to the current line of its {@link CodaRecordCursor}; each getter
+ * decodes its field from the line when called, at the position given by {@link CodaLayout}. The
+ * primitive getters ({@link #getAmountThousandths()}, {@link #isDebit()}) never allocate.
+ * <p>
+ * The same instance is reused for every line of the file: copy values out before moving the cursor.
+ */
+public final class Record21View
+{
+   private static final CodaRecordLayout<CodaRecord21, ?> LAYOUT = CodaLayout.V2.record21();
+   private static final CodaFieldLayout<CodaRecord21, ?, String> SEQUENCE_NUMBER = LAYOUT.getField(
+         "continuousSequenceNumber", CodaFieldCodec.TEXT);
+   private static final CodaFieldLayout<CodaRecord21, ?, String> DETAIL_NUMBER = LAYOUT.getField("detailNumber",
+         CodaFieldCodec.TEXT);
+   private static final CodaFieldLayout<CodaRecord21, ?, String> REFERENCE_NUMBER = LAYOUT.getField(
+         "referenceNumber", CodaFieldCodec.TRIMMED);
+   private static final CodaFieldLayout<CodaRecord21, ?, String> MOVEMENT_SIGN = LAYOUT.getField("movementSign",
+         CodaFieldCodec.TEXT);
+   private static final CodaFieldLayout<CodaRecord21, ?, BigDecimal> AMOUNT = LAYOUT.getField("amount",
+         CodaFieldCodec.AMOUNT);
+   private static final CodaFieldLayout<CodaRecord21, ?, LocalDate> VALUE_DATE = LAYOUT.getField("valueDate",
+         CodaFieldCodec.DATE);
+   private static final CodaFieldLayout<CodaRecord21, ?, String> TRANSACTION_CODE = LAYOUT.getField(
+         "transactionCode", CodaFieldCodec.TEXT);
+   private static final CodaFieldLayout<CodaRecord21, ?, String> COMMUNICATION_TYPE = LAYOUT.getField(
+         "communicationType", CodaFieldCodec.TEXT);
+   private static final CodaFieldLayout<CodaRecord21, ?, String> COMMUNICATION_ZONE = LAYOUT.getField(
+         "communicationZone", CodaFieldCodec.TRIMMED);
+   private static final CodaFieldLayout<CodaRecord21, ?, LocalDate> ENTRY_DATE = LAYOUT.getField("entryDate",
+         CodaFieldCodec.DATE);
+   private static final CodaFieldLayout<CodaRecord21, ?, String> STATEMENT_NUMBER = LAYOUT.getField(
+         "statementNumber", CodaFieldCodec.TEXT);
+   private static final CodaFieldLayout<CodaRecord21, ?, String> GLOBALISATION_CODE = LAYOUT.getField(
+         "globalisationCode", CodaFieldCodec.TEXT);
+
+   private CharSequence line;
+
+   Record21View()
+   {
+   }
+
+   void bind(CharSequence line)
+   {
+      this.line = line;
+   }
+
+   /**
+    * Pos 3-6
+    */
+   public String getContinuousSequenceNumber()
+   {
+      return SEQUENCE_NUMBER.read(line);
+   }
+
+   /**
+    * Pos 7-10
+    */
+   public String getDetailNumber()
+   {
+      return DETAIL_NUMBER.read(line);
+   }
+
+   /**
+    * Pos 11-31, trimmed
+    */
+   public String getReferenceNumber()
+   {
+      return REFERENCE_NUMBER.read(line);
+   }
+
+   /**
+    * Movement sign at pos 32 is "1"
+    */
+   public boolean isDebit()
+   {
+      return charAt(MOVEMENT_SIGN.getStart()) == '1';
+   }
+
+   /**
+    * Pos 33-47 as a count of thousandths, without sign
+    */
+   public long getAmountThousandths()
+   {
+      return CodaFieldDecoder.thousandths(line, AMOUNT.getStart(), AMOUNT.getEnd());
+   }
+
+   /**
+    * Pos 33-47, without sign
+    */
+   public BigDecimal getAmount()
+   {
+      return CodaFieldDecoder.amount(getAmountThousandths());
+   }
+
+   /**
+    * Pos 48-53
+    */
+   public LocalDate getValueDate()
+   {
+      return VALUE_DATE.read(line);
+   }
+
+   /**
+    * Pos 54-61
+    */
+   public String getTransactionCode()
+   {
+      return TRANSACTION_CODE.read(line);
+   }
+
+   /**
+    * Communication type at pos 62 is "1"
+    */
+   public boolean isStructuredCommunication()
+   {
+      return charAt(COMMUNICATION_TYPE.getStart()) == '1';
+   }
+
+   /**
+    * Pos 63-115, trimmed
+    */
+   public String getCommunicationZone()
+   {
+      return COMMUNICATION_ZONE.read(line);
+   }
+
+   /**
+    * Pos 116-121
+    */
+   public LocalDate getEntryDate()
+   {
+      return ENTRY_DATE.read(line);
+   }
+
+   /**
+    * Pos 122-124
+    */
+   public String getStatementNumber()
+   {
+      return STATEMENT_NUMBER.read(line);
+   }
+
+   /**
+    * Globalisation code at pos 125 is "1": the global amount of the statement rather than a single transaction
+    */
+   public boolean isGlobal()
+   {
+      return charAt(GLOBALISATION_CODE.getStart()) == '1';
+   }
+
+   /**
+    * Decode the whole line into the eager model, as a {@link CodaRecord21} even for a global line
+    */
+   public CodaRecord21 toRecord()
+   {
+      return LAYOUT.parse(line);
+   }
+
+   private char charAt(int index)
+   {
+      return index < line.length() ? line.charAt(index) : ' ';
+   }
+}
@@ -1,46 +1,84 @@
 package com.example.coda.controller;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import com.example.coda.model.CodaBankTransaction;
 import com.example.coda.model.CodaRequest;
 import com.example.coda.model.CodaRequest.Transaction;
 import com.example.coda.model.TransactionType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.validation.ConstraintViolationException;
+import jakarta.validation.Validator;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipInputStream;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.web.server.PayloadTooLargeException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @SpringBootTest
+@AutoConfigureMockMvc
 class CodaControllerTest
 {
    @Autowired
    private CodaController controller;
 
+   @Autowired
+   private MockMvc mockMvc;
+
+   @Autowired
+   private ObjectMapper objectMapper;
+
    @Test
-   void downloadEndpointProducesAttachmentWithBody()
+   void downloadEndpointProducesAttachmentWithBody() throws IOException
    {
-      ResponseEntity<String> response = controller.downloadCoda("BELFIUS", "BE68 5390 0754 7034", "EUR", "2025-09-04",
+      ResponseEntity<StreamingResponseBody> response = controller.downloadCoda("BELFIUS", "BE68 5390 0754 7034", "EUR", "2025-09-04",
             "1200.00", "booking_statement",
-            List.of("CREDIT:2025-09-03:125.00:BE12 3456 7890 1234:CLIENT X:Payment received:INV-2025-0456"));
+            List.of("CREDIT:2025-09-03:125.00:BE12 3456 7890 1234:CLIENT X:Payment received:INV-2025-0456"), null, null);
 
       HttpHeaders headers = response.getHeaders();
       ContentDisposition disposition = headers.getContentDisposition();
+      String body = body(response);
 
       assertEquals("attachment", disposition.getType());
       assertEquals("booking_statement.coda", disposition.getFilename());
-      assertTrue(response.getBody().contains("CLIENT X"));
+      assertEquals(StandardCharsets.ISO_8859_1, headers.getContentType().getCharset());
+      assertTrue(body.contains("CLIENT X"));
       // Check for CODA format: sign "0" for credit + amount "000000000125000" (125.00 in thousandths)
-      assertTrue(response.getBody().contains("0000000000125000"), "Should contain amount in CODA format");
+      assertTrue(body.contains("0000000000125000"), "Should contain amount in CODA format");
    }
 
    @Test
-   void jsonDownloadUsesRequestBodyTransactions()
+   void jsonDownloadUsesRequestBodyTransactions() throws IOException
    {
       CodaRequest request = CodaRequest.builder().bankName("BELFIUS").account("BE68 5390 0754 7034").currency(
             "EUR").date(LocalDate.of(2025, 9, 3)).opening(new BigDecimal("1200.00")).transactions(List.of(
@@ -48,14 +86,15 @@ class CodaControllerTest
                   new BigDecimal("125.00")).counterpartyName("CLIENT X").counterpartyAccount(
                   "BE12 3456 7890 1234").description("Payment received").reference("INV-2025-0456").build())).build();
 
-      ResponseEntity<String> response = controller.postCodaDownload(request, "statement");
+      ResponseEntity<StreamingResponseBody> response = controller.postCodaDownload(json(request), MediaType.APPLICATION_JSON_VALUE, "statement", null, null);
 
       ContentDisposition disposition = response.getHeaders().getContentDisposition();
+      String body = body(response);
       assertEquals("attachment", disposition.getType());
       assertEquals("statement.coda", disposition.getFilename());
-      assertTrue(response.getBody() != null && response.getBody().contains("CLIENT X"));
+      assertTrue(body != null && body.contains("CLIENT X"));
       // Check for CODA format: amount "000000000125000" (125.00 in thousandths)
-      assertTrue(response.getBody() != null && response.getBody().contains("0000000000125000"),
+      assertTrue(body != null && body.contains("0000000000125000"),
             "Should contain amount in CODA format");
    }
 
@@ -63,8 +102,340 @@ class CodaControllerTest
    void invalidQueryTransactionReturnsBadRequest()
    {
       IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
-            () -> controller.getCoda("BELFIUS", "BE68 5390 0754 7034", "EUR", null, "1200.00", List.of("INVALID")));
+            () -> controller.getCoda("BELFIUS", "BE68 5390 0754 7034", "EUR", null, "1200.00", List.of("INVALID"), null, null));
 
       assertTrue(ex.getMessage().contains("must contain at least 5 fields"));
    }
+
+   @Test
+   void largeStatementIsStreamedInBoundedChunks() throws IOException
+   {
+      List<Transaction> transactions = new ArrayList<>();
+      for (int i = 0; i < 2_000; i++)
+      {
+         transactions.add(Transaction.builder().bookingDate(LocalDate.of(2025, 9, 3)).type(TransactionType.CREDIT)
+               .amount(new BigDecimal("125.00")).counterpartyName("CLIENT " + i)
+               .counterpartyAccount("BE12 3456 7890 1234").build());
+      }
+      CodaRequest request = CodaRequest.builder().bankName("BELFIUS").account("BE68 5390 0754 7034").currency("EUR")
+            .date(LocalDate.of(2025, 9, 3)).opening(new BigDecimal("1200.00")).transactions(transactions).build();
+
+      ResponseEntity<StreamingResponseBody> response = controller.postCoda(json(request), MediaType.APPLICATION_JSON_VALUE, null, null);
+
+      assertEquals(-1, response.getHeaders().getContentLength());
+      List<Integer> writes = new ArrayList<>();
+      ByteArrayOutputStream body = new ByteArrayOutputStream()
+      {
+         @Override
+         public void write(byte[] bytes, int offset, int length)
+         {
+            writes.add(length);
+            super.write(bytes, offset, length);
+         }
+      };
+      response.getBody().writeTo(body);
+
+      // Header, old balance, global record, 3 lines per transaction, new balance and trailer, sent as they fill one 16K buffer
+      assertEquals(6_005 * 129, body.size());
+      assertTrue(writes.size() > 40, "written in " + writes.size() + " chunks");
+      assertTrue(writes.stream().allMatch(length -> length <= 16 * 1024));
+   }
+
+   @Test
+   void ndjsonRequestGivesTheSameStatementAsJson() throws IOException
+   {
+      CodaRequest single = request("BE68 5390 0754 7034", "CLIENT X");
+      Transaction transaction = single.transactions().get(0);
+      CodaRequest request = CodaRequest.builder().bankName(single.bankName()).account(single.account())
+            .currency(single.currency()).date(single.date()).opening(single.opening())
+            .transactions(List.of(transaction, transaction)).build();
+      ObjectNode header = objectMapper.valueToTree(request);
+      header.remove("transactions");
+      String ndjson = objectMapper.writeValueAsString(header) + "\n"
+            + objectMapper.writeValueAsString(transaction) + "\n"
+            + objectMapper.writeValueAsString(transaction) + "\n";
+
+      String expected = body(controller.postCoda(json(request), MediaType.APPLICATION_JSON_VALUE, null, null));
+      String body = body(controller.postCoda(new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)),
+            MediaType.APPLICATION_NDJSON_VALUE, null, null));
+
+      assertEquals(expected, body);
+      assertEquals(2, body.lines().filter(line -> line.contains("CLIENT X")).count());
+   }
+
+   @Test
+   void streamedTransactionsAreValidated()
+   {
+      String json = """
+            {"bankName":"BELFIUS","account":"BE68 5390 0754 7034","currency":"EUR","date":"2025-09-03",
+             "opening":1200.00,"transactions":[
+              {"bookingDate":"2025-09-03","type":"CREDIT","amount":125.00,"counterpartyName":"CLIENT X",
+               "counterpartyAccount":"BE12 3456 7890 1234"},
+              {"bookingDate":"2025-09-03","type":"CREDIT","amount":-5.00,"counterpartyName":"CLIENT Y",
+               "counterpartyAccount":"BE12 3456 7890 1234"}]}
+            """;
+
+      ConstraintViolationException ex = assertThrows(ConstraintViolationException.class,
+            () -> controller.postCoda(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)),
+                  MediaType.APPLICATION_JSON_VALUE, null, null));
+
+      assertTrue(ex.getMessage().startsWith("Transaction #2"));
+   }
+
+   @Test
+   void missingTransactionsAreRejected()
+   {
+      String json = """
+            {"bankName":"BELFIUS","account":"BE68 5390 0754 7034","currency":"EUR","date":"2025-09-03",
+             "opening":1200.00}
+            """;
+
+      assertThrows(ConstraintViolationException.class,
+            () -> controller.postCoda(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)),
+                  MediaType.APPLICATION_JSON_VALUE, null, null));
+   }
+
+   @Test
+   void requestLargerThanTheLimitIsRejectedWhileItIsRead(@Autowired Validator validator) throws IOException
+   {
+      CodaRequest request = request("BE68 5390 0754 7034", "CLIENT X");
+      long size = objectMapper.writeValueAsBytes(request).length;
+
+      assertThrows(PayloadTooLargeException.class,
+            () -> CodaRequestStream.read(json(request), false, size - 1, objectMapper, validator));
+      try (CodaRequestStream stream = CodaRequestStream.read(json(request), false, size, objectMapper, validator);
+           Stream<CodaBankTransaction> txs = stream.transactions())
+      {
+         assertEquals("CLIENT X", txs.findFirst().orElseThrow().counterpartyName());
+      }
+   }
+
+   @Test
+   void repeatedRequestIsServedFromTheCacheWithTheSameEtag() throws IOException
+   {
+      CodaRequest request = request("BE43 0689 9999 9501", "CLIENT CACHED");
+
+      ResponseEntity<StreamingResponseBody> first = controller.postCoda(json(request), MediaType.APPLICATION_JSON_VALUE, null, null);
+      String generated = body(first);
+      ResponseEntity<StreamingResponseBody> second = controller.postCoda(json(request), MediaType.APPLICATION_JSON_VALUE, null, null);
+
+      assertTrue(first.getHeaders().getETag().matches("\"[0-9a-f]{64}\""));
+      assertEquals(first.getHeaders().getETag(), second.getHeaders().getETag());
+      assertEquals(-1, first.getHeaders().getContentLength());
+      assertEquals(generated.length(), second.getHeaders().getContentLength());
+      assertEquals(generated, body(second));
+   }
+
+   @Test
+   void matchingIfNoneMatchAnswersNotModified() throws IOException
+   {
+      List<String> tx = List.of("DEBIT:2025-09-05:19.99:BE12 3456 7890 1234:SHOP");
+      String etag = controller.getCoda("BELFIUS", "BE68 5390 0754 7034", "EUR", "2025-09-05", "1200.00", tx, null, null)
+            .getHeaders().getETag();
+
+      ResponseEntity<StreamingResponseBody> response = controller.getCoda("BELFIUS", "BE68 5390 0754 7034", "EUR",
+            "2025-09-05", "1200.00", tx, "\"other\", W/" + etag, null);
+
+      assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+      assertEquals(etag, response.getHeaders().getETag());
+      assertNull(response.getBody());
+   }
+
+   @Test
+   void anyIfNoneMatchAnswersNotModifiedOnGet() throws Exception
+   {
+      MockHttpServletResponse response = perform(get("/api/coda/generate").param("date", "2025-09-05")
+            .header(HttpHeaders.IF_NONE_MATCH, "*"));
+
+      assertEquals(HttpStatus.NOT_MODIFIED.value(), response.getStatus());
+      assertEquals(0, response.getContentAsByteArray().length);
+   }
+
+   @Test
+   void matchingIfNoneMatchFailsThePreconditionOnPost() throws Exception
+   {
+      byte[] request = objectMapper.writeValueAsBytes(request("BE43 0689 9999 9502", "CLIENT CONDITIONAL"));
+      String etag = perform(post("/api/coda/json").contentType(MediaType.APPLICATION_JSON).content(request))
+            .getHeader(HttpHeaders.ETAG);
+
+      MockHttpServletResponse response = perform(post("/api/coda/json").contentType(MediaType.APPLICATION_JSON)
+            .content(request).header(HttpHeaders.IF_NONE_MATCH, etag));
+
+      assertEquals(HttpStatus.PRECONDITION_FAILED.value(), response.getStatus());
+      assertEquals(etag, response.getHeader(HttpHeaders.ETAG));
+      assertEquals(0, response.getContentAsByteArray().length);
+   }
+
+   @Test
+   void anyIfNoneMatchFailsThePreconditionOnPost() throws Exception
+   {
+      MockHttpServletResponse response = perform(post("/api/coda/json/download")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsBytes(request("BE43 0689 9999 9503", "CLIENT ANY")))
+            .header(HttpHeaders.IF_NONE_MATCH, "*"));
+
+      assertEquals(HttpStatus.PRECONDITION_FAILED.value(), response.getStatus());
+      assertEquals(0, response.getContentAsByteArray().length);
+   }
+
+   @Test
+   void openingBalanceTooWideForCodaIsABadRequestWithoutStatementHeaders() throws Exception
+   {
+      MockHttpServletResponse response = perform(get("/api/coda/generate")
+            .param("date", "2025-09-05").param("opening", "1000000000000")
+            .header(HttpHeaders.ACCEPT_ENCODING, "gzip"));
+
+      assertEquals(HttpStatus.BAD_REQUEST.value(), response.getStatus());
+      assertTrue(response.getContentAsString().contains("Opening balance 1000000000000 does not fit"));
+      assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+      assertNull(response.getHeader(HttpHeaders.ETAG));
+   }
+
+   @Test
+   void totalTooWideForCodaIsABadRequestWithoutStatementHeaders() throws Exception
+   {
+      // Each amount fits a CODA amount field, their sum does not
+      Transaction large = Transaction.builder().bookingDate(LocalDate.of(2025, 9, 3)).type(TransactionType.CREDIT)
+            .amount(new BigDecimal("600000000000.00")).counterpartyName("CLIENT X")
+            .counterpartyAccount("BE12 3456 7890 1234").build();
+      CodaRequest request = CodaRequest.builder().bankName("BELFIUS").account("BE68 5390 0754 7034").currency("EUR")
+            .date(LocalDate.of(2025, 9, 3)).opening(BigDecimal.ZERO).transactions(List.of(large, large)).build();
+
+      MockHttpServletResponse response = perform(post("/api/coda/json")
+            .contentType(MediaType.APPLICATION_JSON).content(objectMapper.writeValueAsBytes(request))
+            .header(HttpHeaders.ACCEPT_ENCODING, "gzip"));
+
+      assertEquals(HttpStatus.BAD_REQUEST.value(), response.getStatus());
+      assertTrue(response.getContentAsString().contains("Global amount 1200000000000 does not fit"));
+      assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+      assertNull(response.getHeader(HttpHeaders.ETAG));
+   }
+
+   @Test
+   void statementWithoutDateIsCachedForTheResolvedDate()
+   {
+      LocalDate today = LocalDate.now();
+
+      String undated = controller.getCoda("BELFIUS", "BE68 5390 0754 7034", "EUR", null, "1200.00", null, null, null)
+            .getHeaders().getETag();
+      String dated = controller.getCoda("BELFIUS", "BE68 5390 0754 7034", "EUR", today.toString(), "1200.00", null,
+            null, null).getHeaders().getETag();
+      String yesterday = controller.getCoda("BELFIUS", "BE68 5390 0754 7034", "EUR", today.minusDays(1).toString(),
+            "1200.00", null, null, null).getHeaders().getETag();
+
+      assertEquals(dated, undated);
+      assertNotEquals(yesterday, undated);
+   }
+
+   @Test
+   void statementIsGzippedForClientsThatAcceptIt() throws IOException
+   {
+      List<String> tx = List.of("CREDIT:2025-09-06:310.00:BE12 3456 7890 1234:CLIENT GZIP");
+      ResponseEntity<StreamingResponseBody> plain = controller.getCoda("BELFIUS", "BE68 5390 0754 7034", "EUR",
+            "2025-09-06", "1200.00", tx, null, null);
+      String expected = body(plain);
+
+      ResponseEntity<StreamingResponseBody> gzipped = controller.getCoda("BELFIUS", "BE68 5390 0754 7034", "EUR",
+            "2025-09-06", "1200.00", tx, null, "deflate, gzip;q=0.8");
+
+      HttpHeaders headers = gzipped.getHeaders();
+      assertEquals("gzip", headers.getFirst(HttpHeaders.CONTENT_ENCODING));
+      assertEquals(List.of(HttpHeaders.ACCEPT_ENCODING), headers.getVary());
+      assertEquals(-1, headers.getContentLength());
+      assertNotEquals(plain.getHeaders().getETag(), headers.getETag());
+      assertEquals(expected, gunzip(gzipped));
+
+      ResponseEntity<StreamingResponseBody> notModified = controller.getCoda("BELFIUS", "BE68 5390 0754 7034", "EUR",
+            "2025-09-06", "1200.00", tx, headers.getETag(), "gzip");
+      assertEquals(HttpStatus.NOT_MODIFIED, notModified.getStatusCode());
+   }
+
+   @Test
+   void gzipIsOnlyUsedWhenAccepted()
+   {
+      assertTrue(GzipEncoding.accepted("gzip, deflate, br"));
+      assertTrue(GzipEncoding.accepted("br;q=1.0, *;q=0.5"));
+      assertFalse(GzipEncoding.accepted(null));
+      assertFalse(GzipEncoding.accepted("identity"));
+      assertFalse(GzipEncoding.accepted("gzip;q=0, *"));
+   }
+
+   @Test
+   void batchStreamsOneZipEntryPerRequest() throws IOException
+   {
+      List<CodaRequest> requests = List.of(request("BE68 5390 0754 7034", "CLIENT X"),
+            request("BE71 0961 2345 6769", "CLIENT Y"));
+
+      ResponseEntity<StreamingResponseBody> response = controller.postCodaBatch(requests, "zip", "eod", null);
+
+      assertEquals(CodaController.ZIP, response.getHeaders().getContentType());
+      assertEquals("eod.zip", response.getHeaders().getContentDisposition().getFilename());
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      response.getBody().writeTo(out);
+      try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray())))
+      {
+         assertEquals("00001-BE68539007547034-20250903.coda", zip.getNextEntry().getName());
+         assertTrue(new String(zip.readAllBytes(), StandardCharsets.ISO_8859_1).contains("CLIENT X"));
+         assertEquals("00002-BE71096123456769-20250903.coda", zip.getNextEntry().getName());
+         assertTrue(new String(zip.readAllBytes(), StandardCharsets.ISO_8859_1).contains("CLIENT Y"));
+         assertNull(zip.getNextEntry());
+      }
+   }
+
+   @Test
+   void batchWithUnknownFormatReturnsBadRequest()
+   {
+      IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+            () -> controller.postCodaBatch(List.of(request("BE68 5390 0754 7034", "CLIENT X")), "tar", null, null));
+
+      assertTrue(ex.getMessage().contains("Use zip or coda"));
+   }
+
+   private static CodaRequest request(String account, String counterparty)
+   {
+      return CodaRequest.builder().bankName("BELFIUS").account(account).currency("EUR").date(
+            LocalDate.of(2025, 9, 3)).opening(new BigDecimal("1200.00")).transactions(List.of(
+            Transaction.builder().bookingDate(LocalDate.of(2025, 9, 3)).type(TransactionType.CREDIT).amount(
+                  new BigDecimal("125.00")).counterpartyName(counterparty).counterpartyAccount(
+                  "BE12 3456 7890 1234").build())).build();
+   }
+
+   /**
+    * Response of {@code request} through the whole MVC stack, after the async dispatch of a streamed body
+    */
+   private MockHttpServletResponse perform(MockHttpServletRequestBuilder request) throws Exception
+   {
+      MvcResult result = mockMvc.perform(request).andReturn();
+      if (result.getRequest().isAsyncStarted())
+      {
+         result = mockMvc.perform(asyncDispatch(result)).andReturn();
+      }
+      return result.getResponse();
+   }
+
+   private InputStream json(CodaRequest request) throws IOException
+   {
+      return new ByteArrayInputStream(objectMapper.writeValueAsBytes(request));
+   }
+
+   private static String gunzip(ResponseEntity<StreamingResponseBody> response) throws IOException
+   {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      response.getBody().writeTo(out);
+      try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())))
+      {
+         return new String(in.readAllBytes(), StandardCharsets.ISO_8859_1);
+      }
+   }
+
+   private static String body(ResponseEntity<StreamingResponseBody> response) throws IOException
+   {
+      if (response.getBody() == null)
+      {
+         return null;
+      }
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      response.getBody().writeTo(out);
+      return out.toString(StandardCharsets.ISO_8859_1);
+   }
 }
@@ -0,0 +1,209 @@
+package com.example.coda.controller;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import com.example.coda.config.GzipRequestFilter;
+import com.example.coda.service.CodaJsonTranscoder;
+import com.example.coda.service.CodaParseCache;
+import com.example.coda.service.CodaParser;
+import com.example.coda.service.CodaWriter;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.PayloadTooLargeException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class CodaParserControllerTest
+{
+   @Autowired
+   private CodaParserController controller;
+
+   @Autowired
+   private MockMvc mockMvc;
+
+   @Autowired
+   private CodaParseCache parseCache;
+
+   @Test
+   void resubmittedFileIsAnsweredFromTheParseCache() throws IOException
+   {
+      byte[] coda = Files.readAllBytes(Paths.get("src/test/java/resources/coda_test.txt"));
+      parseCache.clear();
+      long hits = parseCache.stats().hits();
+
+      ResponseEntity<StreamingResponseBody> first = controller.parseCoda(new ByteArrayInputStream(coda),
+            MediaType.TEXT_PLAIN_VALUE, MediaType.APPLICATION_JSON_VALUE);
+      String parsed = body(first);
+      ResponseEntity<StreamingResponseBody> second = controller.parseCoda(new ByteArrayInputStream(coda),
+            MediaType.TEXT_PLAIN_VALUE, MediaType.APPLICATION_JSON_VALUE);
+
+      assertEquals(hits + 1, parseCache.stats().hits());
+      assertEquals(parsed.getBytes(StandardCharsets.UTF_8).length, first.getHeaders().getContentLength());
+      assertEquals(parsed.getBytes(StandardCharsets.UTF_8).length, second.getHeaders().getContentLength());
+      assertEquals(parsed, body(second));
+   }
+
+   @Test
+   void smallFileWithABadLineIsABadRequest() throws Exception
+   {
+      MockHttpServletResponse response = mockMvc.perform(post("/api/coda/parser/parse")
+            .contentType(MediaType.TEXT_PLAIN).accept(MediaType.APPLICATION_JSON).content(withBadAmount()))
+            .andReturn().getResponse();
+
+      assertEquals(HttpStatus.BAD_REQUEST.value(), response.getStatus());
+      assertTrue(response.getContentAsString().contains("Invalid CODA number at position 44"));
+   }
+
+   @Test
+   void largeFileWithABadLineEndsTheStreamedJsonOpen(@Autowired CodaParser parser, @Autowired CodaWriter writer,
+         @Autowired CodaJsonTranscoder transcoder) throws IOException
+   {
+      // Files above the parse cache input limit are streamed as they are parsed
+      CodaParseCache smallInputs = new CodaParseCache(DataSize.ofMegabytes(1), DataSize.ofMegabytes(1),
+            DataSize.ofBytes(100), Duration.ofHours(1));
+      CodaParserController streaming = new CodaParserController(parser, writer, transcoder, smallInputs,
+            DataSize.ofGigabytes(1));
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+      ResponseEntity<StreamingResponseBody> response = streaming.parseCoda(new ByteArrayInputStream(withBadAmount()),
+            MediaType.TEXT_PLAIN_VALUE, MediaType.APPLICATION_JSON_VALUE);
+
+      assertEquals(HttpStatus.OK, response.getStatusCode());
+      assertThrows(NumberFormatException.class, () -> response.getBody().writeTo(out));
+      String json = out.toString(StandardCharsets.UTF_8);
+      assertTrue(json.startsWith("{"));
+      assertFalse(json.endsWith("}"));
+   }
+
+   @Test
+   void resubmittedConversionIsAnsweredFromTheParseCache() throws IOException
+   {
+      byte[] coda = Files.readAllBytes(Paths.get("src/test/java/resources/coda_test.txt"));
+      parseCache.clear();
+      long hits = parseCache.stats().hits();
+
+      String converted = body(controller.convertCoda(new ByteArrayInputStream(coda), MediaType.TEXT_PLAIN_VALUE));
+      String again = body(controller.convertCoda(new ByteArrayInputStream(coda), MediaType.TEXT_PLAIN_VALUE));
+
+      assertEquals(hits + 1, parseCache.stats().hits());
+      assertEquals(converted, again);
+   }
+
+   @Test
+   void gzippedUploadIsParsedLikeThePlainFile() throws IOException
+   {
+      byte[] coda = Files.readAllBytes(Paths.get("src/test/java/resources/coda_test.txt"));
+      String plain = body(controller.parseCodaFile(new MockMultipartFile("file", "coda_test.txt",
+            MediaType.TEXT_PLAIN_VALUE, coda), MediaType.APPLICATION_JSON_VALUE));
+
+      String gzipped = body(controller.parseCodaFile(new MockMultipartFile("file", "coda_test.txt.gz",
+            "application/gzip", gzip(coda)), MediaType.APPLICATION_JSON_VALUE));
+
+      assertEquals(plain, gzipped);
+   }
+
+   @Test
+   void gzippedUploadInflatedPastTheLimitIsRejected(@Autowired CodaParser parser, @Autowired CodaWriter writer,
+         @Autowired CodaJsonTranscoder transcoder) throws IOException
+   {
+      byte[] coda = Files.readAllBytes(Paths.get("src/test/java/resources/coda_test.txt"));
+      CodaParserController limited = new CodaParserController(parser, writer, transcoder, parseCache,
+            DataSize.ofBytes(coda.length - 1));
+      MockMultipartFile upload = new MockMultipartFile("file", "coda_test.txt.gz", "application/gzip", gzip(coda));
+
+      assertThrows(PayloadTooLargeException.class,
+            () -> body(limited.parseCodaFile(upload, MediaType.APPLICATION_JSON_VALUE)));
+   }
+
+   @Test
+   void gzipEncodedBodyIsInflatedBeforeTheController() throws ServletException, IOException
+   {
+      byte[] coda = Files.readAllBytes(Paths.get("src/test/java/resources/coda_test.txt"));
+      MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/coda/parser/parse");
+      request.setContentType(MediaType.TEXT_PLAIN_VALUE);
+      request.addHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+      request.setContent(gzip(coda));
+      ByteArrayOutputStream received = new ByteArrayOutputStream();
+
+      new GzipRequestFilter(DataSize.ofMegabytes(1)).doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+         assertNull(((HttpServletRequest) req).getHeader(HttpHeaders.CONTENT_ENCODING));
+         assertEquals(-1, req.getContentLengthLong());
+         req.getInputStream().transferTo(received);
+      });
+
+      assertArrayEquals(coda, received.toByteArray());
+   }
+
+   @Test
+   void gzipEncodedBodyInflatedPastTheLimitIsRejected() throws IOException
+   {
+      byte[] zeros = new byte[64 * 1024];
+      MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/coda/parser/parse");
+      request.setContentType(MediaType.TEXT_PLAIN_VALUE);
+      request.addHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+      request.setContent(gzip(zeros));
+
+      assertThrows(PayloadTooLargeException.class, () -> new GzipRequestFilter(DataSize.ofBytes(zeros.length - 1))
+            .doFilter(request, new MockHttpServletResponse(),
+                  (req, res) -> req.getInputStream().transferTo(OutputStream.nullOutputStream())));
+   }
+
+   /**
+    * The test file with a letter in the amount of its first transaction, positions 33-47 of a record 2.1
+    */
+   private static byte[] withBadAmount() throws IOException
+   {
+      List<String> lines = new ArrayList<>(Files.readAllLines(Paths.get("src/test/java/resources/coda_test.txt"),
+            StandardCharsets.ISO_8859_1));
+      String line = lines.get(3);
+      lines.set(3, line.substring(0, 32) + "00000000000X248" + line.substring(47));
+      return (String.join("\n", lines) + "\n").getBytes(StandardCharsets.ISO_8859_1);
+   }
+
+   private static String body(ResponseEntity<StreamingResponseBody> response) throws IOException
+   {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      response.getBody().writeTo(out);
+      return out.toString(StandardCharsets.UTF_8);
+   }
+
+   private static byte[] gzip(byte[] content) throws IOException
+   {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      try (GZIPOutputStream gzip = new GZIPOutputStream(out))
+      {
+         gzip.write(content);
+      }
+      return out.toByteArray();
+   }
+}
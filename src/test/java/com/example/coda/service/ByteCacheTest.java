@@ -0,0 +1,85 @@
+package com.example.coda.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test size, entry size and age bounds of the byte cache
+ */
+class ByteCacheTest
+{
+   private final AtomicLong now = new AtomicLong();
+
+   @Test
+   void leastRecentlyUsedEntriesAreEvictedPastTheSizeLimit()
+   {
+      ByteCache<String> cache = new ByteCache<>(30, 30, Duration.ofMinutes(1), now::get);
+      cache.put("a", new byte[10]);
+      cache.put("b", new byte[10]);
+      cache.put("c", new byte[10]);
+      cache.get("a");
+
+      cache.put("d", new byte[10]);
+
+      assertNull(cache.get("b"));
+      assertEquals(3, cache.entryCount());
+      assertEquals(30, cache.size());
+      assertEquals(1, cache.evictions());
+   }
+
+   @Test
+   void valuesLargerThanAnEntryAreNotCached()
+   {
+      ByteCache<String> cache = new ByteCache<>(100, 10, Duration.ofMinutes(1), now::get);
+
+      assertFalse(cache.put("big", new byte[11]));
+      assertTrue(cache.put("small", new byte[10]));
+      assertNull(cache.get("big"));
+      assertEquals(10, cache.size());
+   }
+
+   @Test
+   void entriesExpireAfterTheirTtl()
+   {
+      ByteCache<String> cache = new ByteCache<>(100, 100, Duration.ofSeconds(10), now::get);
+      byte[] value = { 1, 2, 3 };
+      cache.put("a", value);
+
+      now.addAndGet(Duration.ofSeconds(9).toNanos());
+      assertArrayEquals(value, cache.get("a"));
+      now.addAndGet(Duration.ofSeconds(1).toNanos());
+      assertNull(cache.get("a"));
+      assertEquals(0, cache.size());
+   }
+
+   @Test
+   void replacingAnEntryCountsItsSizeOnce()
+   {
+      ByteCache<String> cache = new ByteCache<>(100, 100, Duration.ofMinutes(1), now::get);
+      cache.put("a", new byte[10]);
+      cache.put("a", new byte[20]);
+
+      assertEquals(20, cache.size());
+      assertEquals(1, cache.entryCount());
+   }
+
+   @Test
+   void hitsAndMissesAreCounted()
+   {
+      ByteCache<String> cache = new ByteCache<>(100, 100, Duration.ofMinutes(1), now::get);
+      cache.put("a", new byte[1]);
+
+      cache.get("a");
+      cache.get("a");
+      cache.get("b");
+
+      assertEquals(2, cache.hits());
+      assertEquals(1, cache.misses());
+   }
+}
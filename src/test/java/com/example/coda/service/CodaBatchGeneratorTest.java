@@ -0,0 +1,153 @@
+package com.example.coda.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import com.example.coda.model.CodaBankTransaction;
+import com.example.coda.model.TransactionType;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test concurrent generation of many statements streamed as a zip or one CODA file
+ */
+class CodaBatchGeneratorTest
+{
+   private static final LocalDate DATE = LocalDate.of(2025, 9, 4);
+
+   private final CodaGenerator generator = new CodaGenerator(new CodaWriter());
+
+   @Test
+   void zipHasOneEntryPerStatementInRequestOrder() throws IOException
+   {
+      List<CodaBatchGenerator.Statement> statements = statements(40);
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+      new CodaBatchGenerator(generator, 4).write(statements, CodaBatchGenerator.Format.ZIP, out);
+
+      try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray())))
+      {
+         for (int i = 0; i < statements.size(); i++)
+         {
+            ZipEntry entry = zip.getNextEntry();
+            assertEquals(CodaBatchGenerator.entryName(i, statements.get(i)), entry.getName());
+            assertEquals(expected(statements.get(i)), new String(zip.readAllBytes(), StandardCharsets.ISO_8859_1));
+         }
+         assertNull(zip.getNextEntry());
+      }
+      assertEquals("00001-BE12345600000000-20250904.coda", CodaBatchGenerator.entryName(0, statements.get(0)));
+   }
+
+   @Test
+   void codaFormatConcatenatesTheStatements() throws IOException
+   {
+      List<CodaBatchGenerator.Statement> statements = statements(25);
+      StringBuilder expected = new StringBuilder();
+      for (CodaBatchGenerator.Statement statement : statements)
+      {
+         expected.append(expected(statement));
+      }
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+      new CodaBatchGenerator(generator, 3).write(statements, CodaBatchGenerator.Format.CODA, out);
+
+      assertEquals(expected.toString(), out.toString(StandardCharsets.ISO_8859_1));
+      assertEquals(25, new CodaParser().statements(new StringReader(expected.toString())).count());
+   }
+
+   @Test
+   void noMoreThanTheWindowIsGeneratedAtOnce() throws IOException
+   {
+      AtomicInteger running = new AtomicInteger();
+      AtomicInteger peak = new AtomicInteger();
+      CodaGenerator counting = new CodaGenerator(new CodaWriter())
+      {
+         @Override
+         public CodaDocument generateDocument(String bankName, String accountNumber, String currency,
+               LocalDate statementDate, BigDecimal openingBalance, List<CodaBankTransaction> inputTxs)
+         {
+            peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try
+            {
+               Thread.sleep(2);
+               return super.generateDocument(bankName, accountNumber, currency, statementDate, openingBalance,
+                     inputTxs);
+            }
+            catch (InterruptedException e)
+            {
+               throw new IllegalStateException(e);
+            }
+            finally
+            {
+               running.decrementAndGet();
+            }
+         }
+      };
+
+      new CodaBatchGenerator(counting, 5).write(statements(60), CodaBatchGenerator.Format.CODA,
+            new ByteArrayOutputStream());
+
+      assertTrue(peak.get() <= 5, "peak was " + peak.get());
+      assertTrue(peak.get() > 1, "statements should be generated concurrently");
+   }
+
+   @Test
+   void failingStatementStopsTheBatch()
+   {
+      List<CodaBatchGenerator.Statement> statements = new ArrayList<>(statements(10));
+      // Opening balance wider than the 15 digits of a CODA amount
+      CodaBatchGenerator.Statement valid = statements.get(6);
+      statements.set(6, new CodaBatchGenerator.Statement(valid.bankName(), valid.accountNumber(), valid.currency(),
+            valid.statementDate(), new BigDecimal("1E15"), valid.transactions()));
+
+      assertThrows(IllegalArgumentException.class, () -> new CodaBatchGenerator(generator, 4)
+            .write(statements, CodaBatchGenerator.Format.ZIP, new ByteArrayOutputStream()));
+   }
+
+   @Test
+   void windowMustHoldAtLeastOneStatement()
+   {
+      assertThrows(IllegalArgumentException.class, () -> new CodaBatchGenerator(generator, 0));
+   }
+
+   private String expected(CodaBatchGenerator.Statement statement)
+   {
+      return generator.generate(statement.bankName(), statement.accountNumber(), statement.currency(),
+            statement.statementDate(), statement.openingBalance(), statement.transactions());
+   }
+
+   private static List<CodaBatchGenerator.Statement> statements(int count)
+   {
+      List<CodaBatchGenerator.Statement> statements = new ArrayList<>();
+      for (int i = 0; i < count; i++)
+      {
+         List<CodaBankTransaction> txs = new ArrayList<>();
+         for (int t = 0; t < 1 + i % 7; t++)
+         {
+            txs.add(CodaBankTransaction.builder()
+                  .bookingDate(DATE)
+                  .type(t % 2 == 0 ? TransactionType.CREDIT : TransactionType.DEBIT)
+                  .amount(BigDecimal.valueOf(1000 + i * 31L + t, 2))
+                  .counterpartyName("CLIENT " + t)
+                  .counterpartyAccount("BE98 7654 3210 " + t)
+                  .reference("INV-" + i + "-" + t)
+                  .build());
+         }
+         statements.add(new CodaBatchGenerator.Statement("BELFIUS", String.format("BE12 3456 %08d", i), "EUR", DATE,
+               BigDecimal.valueOf(100_000 + i, 2), txs));
+      }
+      return statements;
+   }
+}
@@ -0,0 +1,75 @@
+package com.example.coda.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test detection of the charset of uploaded CODA files
+ */
+class CodaCharsetDetectorTest
+{
+   private static final String LINE = "2300010001BE84390060159859                     Compte à vue Société";
+
+   @Test
+   void latin1AndAsciiAreReadAsIso88591()
+   {
+      assertEquals(StandardCharsets.ISO_8859_1, detect(LINE.getBytes(StandardCharsets.ISO_8859_1)));
+      assertEquals(StandardCharsets.ISO_8859_1, detect("0000003032530005".getBytes(StandardCharsets.US_ASCII)));
+      assertEquals(StandardCharsets.ISO_8859_1, detect(new byte[0]));
+   }
+
+   @Test
+   void validUtf8IsReadAsUtf8()
+   {
+      assertEquals(StandardCharsets.UTF_8, detect(LINE.getBytes(StandardCharsets.UTF_8)));
+      byte[] bom = { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF, '0', '0' };
+      assertEquals(StandardCharsets.UTF_8, detect(bom));
+   }
+
+   @Test
+   void sequenceCutAtTheEndOfThePrefixIsStillUtf8()
+   {
+      byte[] utf8 = "é".repeat(10).getBytes(StandardCharsets.UTF_8);
+      assertEquals(StandardCharsets.UTF_8, CodaCharsetDetector.detect(utf8, utf8.length - 1));
+   }
+
+   @Test
+   void utf8FileIsDecodedToTheSameLinesAsTheLatin1File() throws IOException
+   {
+      String codaContent = Files.readString(Paths.get("src/test/java/resources/coda_test.txt"),
+            StandardCharsets.ISO_8859_1) + LINE + " ".repeat(128 - LINE.length()) + "\n";
+      byte[] bom = { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF };
+      byte[] utf8 = codaContent.getBytes(StandardCharsets.UTF_8);
+      byte[] utf8WithBom = Arrays.copyOf(bom, bom.length + utf8.length);
+      System.arraycopy(utf8, 0, utf8WithBom, bom.length, utf8.length);
+
+      assertEquals(codaContent, read(codaContent.getBytes(StandardCharsets.ISO_8859_1), null));
+      assertEquals(codaContent, read(utf8, null));
+      assertEquals(codaContent, read(utf8WithBom, null));
+      assertEquals(codaContent, read(utf8, StandardCharsets.UTF_8));
+   }
+
+   private static Charset detect(byte[] bytes)
+   {
+      return CodaCharsetDetector.detect(bytes, bytes.length);
+   }
+
+   private static String read(byte[] bytes, Charset declared) throws IOException
+   {
+      try (Reader reader = CodaCharsetDetector.open(new ByteArrayInputStream(bytes), declared))
+      {
+         StringWriter text = new StringWriter();
+         reader.transferTo(text);
+         return text.toString();
+      }
+   }
+}
@@ -0,0 +1,73 @@
+package com.example.coda.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.server.PayloadTooLargeException;
+
+/**
+ * Test gzipped and plain CODA uploads read through the same stream, and the inflated size limit
+ */
+class CodaCompressionTest
+{
+   @Test
+   void gzippedContentIsInflated() throws IOException
+   {
+      byte[] coda = Files.readAllBytes(Paths.get("src/test/java/resources/coda_test.txt"));
+      ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+      try (GZIPOutputStream out = new GZIPOutputStream(gzipped))
+      {
+         out.write(coda);
+      }
+
+      try (InputStream in = CodaCompression.decode(new ByteArrayInputStream(gzipped.toByteArray()), coda.length))
+      {
+         assertArrayEquals(coda, in.readAllBytes());
+      }
+   }
+
+   @Test
+   void gzippedContentInflatedPastTheLimitIsRejected() throws IOException
+   {
+      byte[] coda = Files.readAllBytes(Paths.get("src/test/java/resources/coda_test.txt"));
+      ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+      try (GZIPOutputStream out = new GZIPOutputStream(gzipped))
+      {
+         out.write(coda);
+      }
+
+      try (InputStream in = CodaCompression.decode(new ByteArrayInputStream(gzipped.toByteArray()), coda.length - 1))
+      {
+         assertThrows(PayloadTooLargeException.class, in::readAllBytes);
+      }
+   }
+
+   @Test
+   void plainContentIsReadAsItIs() throws IOException
+   {
+      byte[] coda = Files.readAllBytes(Paths.get("src/test/java/resources/coda_test.txt"));
+
+      try (InputStream in = CodaCompression.decode(new ByteArrayInputStream(coda), 1))
+      {
+         assertArrayEquals(coda, in.readAllBytes());
+      }
+   }
+
+   @Test
+   void shortContentIsReadAsItIs() throws IOException
+   {
+      byte[] oneByte = { 0x1f };
+
+      try (InputStream in = CodaCompression.decode(new ByteArrayInputStream(oneByte), 0))
+      {
+         assertArrayEquals(oneByte, in.readAllBytes());
+      }
+   }
+}
@@ -0,0 +1,66 @@
+package com.example.coda.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test digit-level decoding of CODA amounts, numbers and dates
+ */
+class CodaFieldDecoderTest
+{
+   @Test
+   void amountsKeepTheScaleOfTheTextParser()
+   {
+      assertEquals(new BigDecimal("244.12"), CodaFieldDecoder.amount("000000000244120", 0, 15));
+      assertEquals(new BigDecimal("125"), CodaFieldDecoder.amount("000000000125000", 0, 15));
+      assertEquals(new BigDecimal("0.005"), CodaFieldDecoder.amount("000000000000005", 0, 15));
+      assertEquals(BigDecimal.ZERO, CodaFieldDecoder.amount("000000000000000", 0, 15));
+      assertEquals(BigDecimal.ZERO, CodaFieldDecoder.amount("               ", 0, 15));
+      assertEquals(244120L, CodaFieldDecoder.thousandths("0000000000244120", 1, 16));
+   }
+
+   @Test
+   void invalidAmountIsRejected()
+   {
+      assertThrows(NumberFormatException.class, () -> CodaFieldDecoder.thousandths("0000000A0244120", 0, 15));
+   }
+
+   @Test
+   void numbersAreTrimmedAndShortLinesTolerated()
+   {
+      assertEquals(33, CodaFieldDecoder.number("9               000033", 16, 22));
+      assertEquals(0, CodaFieldDecoder.number("9    ", 16, 22));
+   }
+
+   @Test
+   void datesAreDecodedAndShared()
+   {
+      assertEquals(20250303, CodaFieldDecoder.packedDate("030325", 0, 6));
+      assertEquals(LocalDate.of(2025, 3, 3), CodaFieldDecoder.date("030325", 0, 6));
+      assertSame(CodaFieldDecoder.date("030325", 0, 6), CodaFieldDecoder.date("x030325", 1, 7));
+   }
+
+   @Test
+   void missingOrInvalidDatesAreNull()
+   {
+      assertNull(CodaFieldDecoder.date("000000", 0, 6));
+      assertNull(CodaFieldDecoder.date("      ", 0, 6));
+      assertNull(CodaFieldDecoder.date("320125", 0, 6));
+      assertNull(CodaFieldDecoder.date("011325", 0, 6));
+      assertNull(CodaFieldDecoder.date(" 30325", 0, 6));
+      assertEquals(CodaFieldDecoder.NO_DATE, CodaFieldDecoder.packedDate("0A0325", 0, 6));
+   }
+
+   @Test
+   void overflowingDayIsClampedLikeTheDateFormatter()
+   {
+      assertEquals(LocalDate.of(2025, 4, 30), CodaFieldDecoder.date("310425", 0, 6));
+      assertEquals(LocalDate.of(2023, 2, 28), CodaFieldDecoder.date("300223", 0, 6));
+      assertEquals(LocalDate.of(2024, 2, 29), CodaFieldDecoder.date("290224", 0, 6));
+   }
+}
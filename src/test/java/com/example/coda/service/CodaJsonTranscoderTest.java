@@ -0,0 +1,68 @@
+package com.example.coda.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import com.example.coda.model.CodaStatement;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test JSON written while CODA records are read against the JSON of the parsed statement
+ */
+class CodaJsonTranscoderTest
+{
+   private final ObjectMapper mapper = new ObjectMapper().findAndRegisterModules()
+         .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+   private final CodaJsonTranscoder transcoder = new CodaJsonTranscoder(mapper);
+   private final CodaParser parser = new CodaParser();
+
+   @Test
+   void jsonIsTheJsonOfTheParsedStatement() throws IOException
+   {
+      String codaContent = Files.readString(Paths.get("src/test/java/resources/coda_test.txt"));
+      CodaStatement statement = parser.parse(codaContent);
+
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      transcoder.writeJson(new CodaRecordReader(new StringReader(codaContent)), out);
+
+      assertEquals(mapper.writeValueAsString(statement), out.toString(StandardCharsets.UTF_8));
+   }
+
+   @Test
+   void ndjsonHasOneTransactionPerLine() throws IOException
+   {
+      String codaContent = Files.readString(Paths.get("src/test/java/resources/coda_test.txt"));
+      CodaStatement statement = parser.parse(codaContent);
+
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      transcoder.writeNdjson(new CodaRecordReader(new StringReader(codaContent)), out);
+
+      List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+      assertEquals(statement.getIndividualTransactions().size(), lines.size());
+      for (int i = 0; i < lines.size(); i++)
+      {
+         assertEquals(mapper.valueToTree(statement.getIndividualTransactions().get(i)), mapper.readTree(lines.get(i)));
+      }
+      assertTrue(out.toString(StandardCharsets.UTF_8).endsWith("}\n"));
+   }
+
+   @Test
+   void emptyInputGivesAnEmptyStatement() throws IOException
+   {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      transcoder.writeJson(new CodaRecordReader(new StringReader("")), out);
+
+      JsonNode json = mapper.readTree(out.toByteArray());
+      assertEquals(mapper.valueToTree(parser.parse("")), json);
+      assertEquals(0, json.get("individualTransactions").size());
+   }
+}
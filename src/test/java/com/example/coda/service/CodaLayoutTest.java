@@ -0,0 +1,77 @@
+package com.example.coda.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import com.example.coda.model.CodaRecord32;
+import com.example.coda.model.CodaTrailerRecord;
+import java.math.BigDecimal;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the CODA field layouts shared by the parser and the writer
+ */
+class CodaLayoutTest
+{
+   private static final CodaLayout LAYOUT = CodaLayout.V2;
+
+   @Test
+   void everyLayoutCoversTheWholeLine()
+   {
+      List<CodaRecordLayout<?, ?>> layouts = List.of(LAYOUT.header(), LAYOUT.oldBalance(), LAYOUT.global(),
+            LAYOUT.record21(), LAYOUT.record22(), LAYOUT.record23(), LAYOUT.record31(), LAYOUT.record32(),
+            LAYOUT.newBalance(), LAYOUT.trailer());
+
+      for (CodaRecordLayout<?, ?> layout : layouts)
+      {
+         int position = 0;
+         for (CodaFieldLayout<?, ?, ?> field : layout.getFields())
+         {
+            assertEquals(position, field.getStart(), "Record " + layout.getRecordType() + " field " + field.getName());
+            position = field.getEnd();
+         }
+         assertEquals(CodaRecordLayout.LINE_LENGTH, position, "Record " + layout.getRecordType());
+      }
+   }
+
+   @Test
+   void gapInLayoutIsRejected()
+   {
+      CodaRecordLayout.Builder<CodaTrailerRecord, CodaTrailerRecord.CodaTrailerRecordBuilder> builder = CodaRecordLayout
+            .of("9", CodaTrailerRecord::builder, CodaTrailerRecord.CodaTrailerRecordBuilder::build)
+            .field("recordIdentification", 1, 1, CodaFieldCodec.TEXT, CodaTrailerRecord::getRecordIdentification,
+                  (b, v) -> b.recordIdentification(v));
+
+      assertThrows(IllegalStateException.class, () -> builder.field("filler1", 3, 16, CodaFieldCodec.TEXT,
+            CodaTrailerRecord::getFiller1, (b, v) -> b.filler1(v)));
+      assertThrows(IllegalStateException.class, builder::build);
+   }
+
+   @Test
+   void record32RoundTripsAtSpecPositions()
+   {
+      String line = "3200010002BEKE TUINSTRAT 7                   9950        WALESCHELT                                                          0 0";
+
+      CodaRecord32 record = LAYOUT.record32().parse(line);
+
+      assertEquals("BEKE TUINSTRAT 7", record.getCounterpartyAddress());
+      assertEquals("9950", record.getCounterpartyPostalCode());
+      assertEquals("WALESCHELT", record.getCounterpartyCity());
+      assertEquals("0", record.getNextCode1());
+      assertEquals(" ", record.getFiller2());
+      assertEquals("0", record.getNextCode2());
+      assertEquals(line, LAYOUT.record32().format(record));
+   }
+
+   @Test
+   void trailerRoundTrips()
+   {
+      String line = "9               000033000000000000000000000001025000" + " ".repeat(75) + "1";
+
+      CodaTrailerRecord trailer = LAYOUT.trailer().parse(line);
+
+      assertEquals(33, trailer.getNumberOfRecords());
+      assertEquals(new BigDecimal("1025"), trailer.getTotalCredit());
+      assertEquals(line, LAYOUT.trailer().format(trailer));
+   }
+}
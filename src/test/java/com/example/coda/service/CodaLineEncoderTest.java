@@ -0,0 +1,63 @@
+package com.example.coda.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the fixed-width field encoding of the reusable line buffer
+ */
+class CodaLineEncoderTest
+{
+   private final CodaLineEncoder line = new CodaLineEncoder();
+
+   @Test
+   void fieldsArePaddedToTheirWidth()
+   {
+      line.reset();
+      CodaFieldEncoder.text("AB", 4, line);
+      CodaFieldEncoder.number(42, 5, line);
+      CodaFieldEncoder.amount(new BigDecimal("244.12"), 15, line);
+      CodaFieldEncoder.date(LocalDate.of(2025, 3, 3), 6, line);
+      CodaFieldEncoder.date(null, 6, line);
+      CodaFieldEncoder.text(null, 3, line);
+      CodaFieldEncoder.text("END", 3, line);
+
+      assertEquals(pad("AB  00042000000000244120030325000000   END"), line.toString());
+   }
+
+   @Test
+   void tooWideValuesFollowTheTextWriterRules()
+   {
+      line.reset();
+      CodaFieldEncoder.text("ABCDEF", 3, line);
+      CodaFieldEncoder.number(123456, 4, line);
+      CodaFieldEncoder.number(-5, 4, line);
+      CodaFieldEncoder.amount(new BigDecimal("-0.0005"), 4, line);
+      CodaFieldEncoder.amount(BigDecimal.valueOf(Long.MAX_VALUE / 1000), 4, line);
+      CodaFieldEncoder.text("X", 1, line);
+
+      // The amount wider than its field pushes the last field to the right
+      assertEquals(pad("ABC123400-500-19223372036854775000X"), line.toString());
+   }
+
+   @Test
+   void lineIsCutAt128AndResetToSpaces()
+   {
+      line.reset();
+      CodaFieldEncoder.text("X".repeat(120), 120, line);
+      line.amount(Long.MIN_VALUE, 8);
+
+      assertEquals("X".repeat(120) + "-9223372", line.toString());
+
+      line.reset();
+      CodaFieldEncoder.text("Y", 1, line);
+      assertEquals(pad("Y"), line.toString());
+   }
+
+   private static String pad(String value)
+   {
+      return value + " ".repeat(CodaRecordLayout.LINE_LENGTH - value.length());
+   }
+}
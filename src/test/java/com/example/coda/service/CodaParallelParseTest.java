@@ -0,0 +1,76 @@
+package com.example.coda.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import com.example.coda.model.CodaStatement;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test fork/join parsing of multi-statement CODA files
+ */
+class CodaParallelParseTest
+{
+   private final CodaParser parser = new CodaParser();
+
+   @TempDir
+   Path tempDir;
+
+   @Test
+   void parallelParseKeepsFileOrder() throws IOException
+   {
+      String single = new String(Files.readAllBytes(Paths.get("src/test/java/resources/coda_test.txt")),
+            StandardCharsets.UTF_8);
+      StringBuilder content = new StringBuilder();
+      for (int i = 0; i < 40; i++)
+      {
+         // Vary the statement number (pos 3-5 of record 1) so that order mistakes are detected
+         content.append(single.replaceFirst("\n1002", "\n10" + String.format("%02d", i)));
+      }
+      Path codaFile = Files.write(tempDir.resolve("multi.coda"),
+            content.toString().getBytes(StandardCharsets.ISO_8859_1));
+
+      List<CodaStatement> expected;
+      try (Stream<CodaStatement> stream = parser.statements(codaFile))
+      {
+         expected = stream.collect(Collectors.toList());
+      }
+
+      ForkJoinPool pool = new ForkJoinPool(4);
+      try
+      {
+         // Small chunks so that the 40 statements are spread over several workers
+         List<CodaStatement> actual = parser.parseParallel(codaFile, pool, 4096);
+
+         assertEquals(40, actual.size());
+         assertEquals(expected, actual);
+         assertEquals("004", actual.get(0).getOldBalance().getStatementNumber());
+         assertEquals("394", actual.get(39).getOldBalance().getStatementNumber());
+      }
+      finally
+      {
+         pool.shutdown();
+      }
+   }
+
+   @Test
+   void fileWithoutHeaderIsParsedAsOneStatement() throws IOException
+   {
+      Path codaFile = Files.write(tempDir.resolve("no-header.coda"),
+            ("8024310000017062 EUR0BE   0030000        0000000170266230030325                                                                0\n")
+                  .getBytes(StandardCharsets.ISO_8859_1));
+
+      List<CodaStatement> statements = parser.parseParallel(codaFile);
+
+      assertEquals(1, statements.size());
+      assertEquals("8", statements.get(0).getNewBalance().getRecordIdentification());
+   }
+}
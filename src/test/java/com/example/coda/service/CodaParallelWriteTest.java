@@ -0,0 +1,96 @@
+package com.example.coda.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import com.example.coda.model.CodaIndividualTransactionRecord;
+import com.example.coda.model.CodaRecord21;
+import com.example.coda.model.CodaStatement;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test that rendering transactions in parallel chunks gives the sequential output
+ */
+class CodaParallelWriteTest
+{
+   private final CodaParser parser = new CodaParser();
+   private final CodaWriter writer = new CodaWriter();
+
+   @Test
+   void parallelOutputIsIdenticalToSequentialOutput() throws IOException
+   {
+      CodaStatement statement = largeStatement(3000);
+      String expected = writer.write(statement);
+
+      ForkJoinPool pool = new ForkJoinPool(4);
+      try
+      {
+         // Small uneven chunks so that many tasks complete out of order
+         StringBuilder inMemory = new StringBuilder();
+         writer.writeParallel(statement, CodaLineBuffer.inMemory(inMemory), pool, 7);
+         assertEquals(expected, inMemory.toString());
+
+         StringWriter chars = new StringWriter();
+         try (CodaLineBuffer lines = CodaLineBuffer.to(chars))
+         {
+            writer.writeParallel(statement, lines, pool, 13);
+         }
+         assertEquals(expected, chars.toString());
+
+         ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+         try (CodaLineBuffer lines = CodaLineBuffer.to(bytes))
+         {
+            writer.writeParallel(statement, lines, pool, 101);
+         }
+         assertEquals(expected, bytes.toString(StandardCharsets.ISO_8859_1));
+
+         ByteArrayOutputStream channelBytes = new ByteArrayOutputStream();
+         try (CodaLineBuffer lines = CodaLineBuffer.to(Channels.newChannel(channelBytes)))
+         {
+            writer.writeParallel(statement, lines, pool, 1000);
+         }
+         assertEquals(expected, channelBytes.toString(StandardCharsets.ISO_8859_1));
+      }
+      finally
+      {
+         pool.shutdown();
+      }
+   }
+
+   @Test
+   void smallStatementIsWrittenSequentially() throws IOException
+   {
+      CodaStatement statement = parser.parse(Files.readString(Paths.get("src/test/java/resources/coda_test.txt")));
+
+      assertEquals(writer.write(statement), writer.writeParallel(statement));
+
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      writer.writeParallel(statement, bytes);
+      assertEquals(writer.write(statement), bytes.toString(StandardCharsets.ISO_8859_1));
+   }
+
+   private CodaStatement largeStatement(int size) throws IOException
+   {
+      CodaStatement statement = parser.parse(Files.readString(Paths.get("src/test/java/resources/coda_test.txt")));
+      List<CodaIndividualTransactionRecord> sample = statement.getIndividualTransactions();
+      List<CodaIndividualTransactionRecord> transactions = new ArrayList<>();
+      for (int i = 0; i < size; i++)
+      {
+         CodaIndividualTransactionRecord transaction = sample.get(i % sample.size());
+         // Distinct sequence numbers so that a chunk written out of place is detected
+         CodaRecord21 record21 = CodaLayout.V2.record21().parse(CodaLayout.V2.record21().format(transaction.getRecord21()));
+         record21.setContinuousSequenceNumber(String.format("%04d", i % 10000));
+         transactions.add(transaction.toBuilder().record21(record21).build());
+      }
+      statement.setIndividualTransactions(transactions);
+      return statement;
+   }
+}
@@ -0,0 +1,67 @@
+package com.example.coda.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import com.example.coda.model.CodaStatement;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Test parse results kept by file digest, decoding and format
+ */
+class CodaParseCacheTest
+{
+   private final CodaParseCache cache = new CodaParseCache(DataSize.ofMegabytes(1), DataSize.ofKilobytes(64),
+         DataSize.ofKilobytes(16), Duration.ofMinutes(10));
+
+   @Test
+   void keyDependsOnContentDecodingAndFormat()
+   {
+      byte[] content = "0000004092522005        00000000                                                        2".getBytes(
+            StandardCharsets.ISO_8859_1);
+      CodaParseCache.Key key = cache.key(content, "ISO-8859-1", CodaParseCache.Format.JSON);
+
+      assertEquals(key, cache.key(content.clone(), "ISO-8859-1", CodaParseCache.Format.JSON));
+      assertNotEquals(key, cache.key(content, "UTF-8", CodaParseCache.Format.JSON));
+      assertNotEquals(key, cache.key(content, "ISO-8859-1", CodaParseCache.Format.NDJSON));
+      content[0] = '1';
+      assertNotEquals(key, cache.key(content, "ISO-8859-1", CodaParseCache.Format.JSON));
+   }
+
+   @Test
+   void writtenResultIsServedOnTheNextLookup() throws IOException
+   {
+      CodaParseCache.Key key = cache.key(new byte[] { 1 }, "ISO-8859-1", CodaParseCache.Format.JSON);
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+      assertNull(cache.get(key));
+      cache.write(key, out, target -> target.write("{\"header\":null}".getBytes(StandardCharsets.UTF_8)));
+
+      assertArrayEquals(out.toByteArray(), cache.get(key));
+      CodaCacheStats stats = cache.stats();
+      assertEquals(1, stats.hits());
+      assertEquals(1, stats.misses());
+      assertEquals(1, stats.entries());
+   }
+
+   @Test
+   void rewrittenCodaIsKeptAsBytes() throws IOException
+   {
+      String coda = Files.readString(Paths.get("src/test/java/resources/coda_test.txt"));
+      CodaParseCache.Key key = cache.key(coda.getBytes(StandardCharsets.UTF_8), "text", CodaParseCache.Format.CODA);
+      CodaWriter writer = new CodaWriter();
+      CodaStatement statement = new CodaParser().parse(coda);
+
+      cache.write(key, new ByteArrayOutputStream(), out -> writer.write(statement, out));
+
+      assertEquals(writer.write(statement), new String(cache.get(key), StandardCharsets.ISO_8859_1));
+   }
+}
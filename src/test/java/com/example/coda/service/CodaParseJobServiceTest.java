@@ -0,0 +1,206 @@
+package com.example.coda.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Test CODA files parsed in the background: results, progress, queue limit, cancellation, thread mode and expiry
+ */
+class CodaParseJobServiceTest
+{
+   private final ObjectMapper mapper = new ObjectMapper().findAndRegisterModules()
+         .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+   private final CountDownLatch started = new CountDownLatch(1);
+   private final CountDownLatch release = new CountDownLatch(1);
+   private volatile Thread worker;
+   private CodaParseJobService service;
+
+   @AfterEach
+   void shutdown()
+   {
+      release.countDown();
+      service.shutdown();
+   }
+
+   @Test
+   void completedJobHasTheJsonOfEachFileAndItsProgress() throws Exception
+   {
+      service = new CodaParseJobService(new CodaJsonTranscoder(mapper), 2, 4, Duration.ofHours(1), false, DataSize.ofGigabytes(1));
+      byte[] coda = Files.readAllBytes(Paths.get("src/test/java/resources/coda_test.txt"));
+
+      CodaParseJob job = service.submit(List.of(upload("a.cod", coda), upload("b.cod", coda)));
+      CodaParseJob.Status status = job.completion().get(10, TimeUnit.SECONDS);
+
+      assertEquals(CodaParseJob.State.COMPLETED, status.state());
+      assertEquals(List.of("a.cod", "b.cod"), status.files());
+      assertEquals(2, status.filesProcessed());
+      assertEquals(2L * coda.length, status.bytesProcessed());
+      assertEquals(status.totalBytes(), status.bytesProcessed());
+      assertEquals(2 * records(coda), status.recordsProcessed());
+
+      String expected = mapper.writeValueAsString(new CodaParser().parse(new String(coda, StandardCharsets.ISO_8859_1)));
+      assertEquals(expected, Files.readString(job.result(0)));
+      assertEquals(expected, Files.readString(job.result(1)));
+      assertFalse(Files.exists(job.inputFile(0)));
+   }
+
+   @Test
+   void submissionsBeyondTheQueueAreRejected() throws Exception
+   {
+      service = new CodaParseJobService(new BlockingTranscoder(), 1, 1, Duration.ofHours(1), false, DataSize.ofGigabytes(1));
+
+      CodaParseJob running = service.submit(List.of(upload("a.cod", new byte[0])));
+      started.await(10, TimeUnit.SECONDS);
+      CodaParseJob queued = service.submit(List.of(upload("b.cod", new byte[0])));
+
+      assertThrows(RejectedExecutionException.class, () -> service.submit(List.of(upload("c.cod", new byte[0]))));
+      assertEquals(CodaParseJob.State.RUNNING, running.status().state());
+      assertEquals(CodaParseJob.State.QUEUED, queued.status().state());
+   }
+
+   @Test
+   void cancelledJobsStopAndFreeTheirQueueSlot() throws Exception
+   {
+      service = new CodaParseJobService(new BlockingTranscoder(), 1, 1, Duration.ofHours(1), false, DataSize.ofGigabytes(1));
+
+      CodaParseJob running = service.submit(List.of(upload("a.cod", new byte[0])));
+      started.await(10, TimeUnit.SECONDS);
+      CodaParseJob queued = service.submit(List.of(upload("b.cod", new byte[0])));
+
+      service.cancel(queued.id());
+      assertEquals(CodaParseJob.State.CANCELLED, queued.completion().get(10, TimeUnit.SECONDS).state());
+      service.cancel(running.id());
+      assertEquals(CodaParseJob.State.CANCELLED, running.completion().get(10, TimeUnit.SECONDS).state());
+      assertNull(running.result(0));
+
+      // The worker and the queue slot are free again
+      CodaParseJob next = service.submit(List.of(upload("c.cod", new byte[0])));
+      assertEquals(CodaParseJob.State.CANCELLED, service.get(running.id()).status().state());
+      release.countDown();
+      assertEquals(CodaParseJob.State.COMPLETED, next.completion().get(10, TimeUnit.SECONDS).state());
+   }
+
+   @Test
+   void workersAreVirtualThreadsInVirtualThreadMode() throws Exception
+   {
+      service = new CodaParseJobService(new BlockingTranscoder(), 1, 1, Duration.ofHours(1), true, DataSize.ofGigabytes(1));
+
+      CodaParseJob job = service.submit(List.of(upload("a.cod", new byte[0])));
+      started.await(10, TimeUnit.SECONDS);
+      release.countDown();
+
+      assertEquals(CodaParseJob.State.COMPLETED, job.completion().get(10, TimeUnit.SECONDS).state());
+      assertTrue(worker.isVirtual());
+   }
+
+   @Test
+   void finishedJobsExpireAfterTheRetention() throws Exception
+   {
+      service = new CodaParseJobService(new CodaJsonTranscoder(mapper), 1, 1, Duration.ZERO, false, DataSize.ofGigabytes(1));
+
+      CodaParseJob job = service.submit(List.of(upload("a.cod", new byte[0])));
+      job.completion().get(10, TimeUnit.SECONDS);
+
+      assertNull(service.get(job.id()));
+      assertFalse(Files.exists(job.directory()));
+   }
+
+   @Test
+   void gzippedUploadInflatedPastTheLimitFailsTheJob() throws Exception
+   {
+      byte[] coda = Files.readAllBytes(Paths.get("src/test/java/resources/coda_test.txt"));
+      service = new CodaParseJobService(new CodaJsonTranscoder(mapper), 1, 1, Duration.ofHours(1), false,
+            DataSize.ofBytes(coda.length - 1));
+
+      CodaParseJob job = service.submit(List.of(upload("a.cod.gz", gzip(coda))));
+      CodaParseJob.Status status = job.completion().get(10, TimeUnit.SECONDS);
+
+      assertEquals(CodaParseJob.State.FAILED, status.state());
+      assertEquals("Inflated upload is larger than " + (coda.length - 1) + " bytes", status.error());
+   }
+
+   @Test
+   void aJobNeedsFiles()
+   {
+      service = new CodaParseJobService(new CodaJsonTranscoder(mapper), 1, 1, Duration.ofHours(1), false, DataSize.ofGigabytes(1));
+
+      assertThrows(IllegalArgumentException.class, () -> service.submit(List.of()));
+   }
+
+   private static long records(byte[] coda) throws IOException
+   {
+      try (CodaRecordReader reader = new CodaRecordReader(new StringReader(new String(coda, StandardCharsets.ISO_8859_1))))
+      {
+         long count = 0;
+         while (reader.next() != null)
+         {
+            count++;
+         }
+         return count;
+      }
+   }
+
+   private static byte[] gzip(byte[] content) throws IOException
+   {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      try (GZIPOutputStream gzip = new GZIPOutputStream(out))
+      {
+         gzip.write(content);
+      }
+      return out.toByteArray();
+   }
+
+   private static CodaParseJobService.Upload upload(String name, byte[] content)
+   {
+      return new CodaParseJobService.Upload(name, content.length, (Path target) -> Files.write(target, content));
+   }
+
+   /**
+    * Holds every file until released, so jobs stay running
+    */
+   private final class BlockingTranscoder extends CodaJsonTranscoder
+   {
+      private BlockingTranscoder()
+      {
+         super(mapper);
+      }
+
+      @Override
+      public void writeJson(CodaRecordSource records, OutputStream out) throws IOException
+      {
+         worker = Thread.currentThread();
+         started.countDown();
+         try
+         {
+            release.await();
+         }
+         catch (InterruptedException e)
+         {
+            throw new InterruptedIOException("Interrupted");
+         }
+      }
+   }
+}
@@ -0,0 +1,144 @@
+package com.example.coda.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import com.example.coda.model.CodaGlobalRecord;
+import com.example.coda.model.CodaIndividualTransactionRecord;
+import com.example.coda.model.CodaRecord21;
+import com.example.coda.model.CodaStatement;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test iteration over CODA records through flyweight views
+ */
+class CodaRecordCursorTest
+{
+   private final CodaParser parser = new CodaParser();
+
+   @Test
+   void viewsGiveTheSameValuesAsTheModel() throws IOException
+   {
+      String codaContent = Files.readString(Paths.get("src/test/java/resources/coda_test.txt"));
+      CodaStatement statement = parser.parse(codaContent);
+
+      BigDecimal expectedTotal = statement.getIndividualTransactions().stream()
+            .map(CodaIndividualTransactionRecord::getAmount)
+            .reduce(BigDecimal.ZERO, BigDecimal::add);
+
+      long total = 0;
+      int details = 0;
+      try (CodaRecordCursor cursor = parser.cursor(new StringReader(codaContent)))
+      {
+         while (cursor.next())
+         {
+            if (cursor.isRecord21() && !cursor.record21().isGlobal())
+            {
+               Record21View view = cursor.record21();
+               CodaRecord21 expected = statement.getIndividualTransactions().get(details++).getRecord21();
+               assertEquals(expected, view.toRecord());
+               assertEquals(expected.getReferenceNumber(), view.getReferenceNumber());
+               assertEquals(expected.getValueDate(), view.getValueDate());
+               assertEquals(expected.getCommunicationZone(), view.getCommunicationZone());
+               total += view.getAmountThousandths();
+            }
+            else if (cursor.isRecord21())
+            {
+               CodaGlobalRecord global = assertInstanceOf(CodaGlobalRecord.class, cursor.toRecord());
+               assertEquals(global.getAmount(), cursor.record21().getAmount());
+            }
+         }
+      }
+
+      assertEquals(statement.getIndividualTransactions().size(), details);
+      assertEquals(0, expectedTotal.compareTo(BigDecimal.valueOf(total, 3)));
+   }
+
+   @Test
+   void viewsAreReusedAcrossLines() throws IOException
+   {
+      String codaContent = Files.readString(Paths.get("src/test/java/resources/coda_test.txt"));
+
+      try (CodaRecordCursor cursor = parser.cursor(new StringReader(codaContent)))
+      {
+         Record21View first = null;
+         BalanceView balance = null;
+         while (cursor.next())
+         {
+            if (cursor.isRecord21())
+            {
+               first = first == null ? cursor.record21() : first;
+               assertSame(first, cursor.record21());
+            }
+            if (cursor.isBalance())
+            {
+               balance = balance == null ? cursor.balance() : balance;
+               assertSame(balance, cursor.balance());
+            }
+         }
+      }
+   }
+
+   @Test
+   void balanceViewReadsOldAndNewBalance(@TempDir Path tempDir) throws IOException
+   {
+      Path file = tempDir.resolve("statement.cod");
+      Files.copy(Paths.get("src/test/java/resources/coda_test.txt"), file);
+      CodaStatement statement = parser.parse(Files.readString(file));
+
+      try (CodaRecordCursor cursor = parser.cursor(file))
+      {
+         assertTrue(cursor.next());
+         assertEquals("0", cursor.getRecordType());
+
+         assertTrue(cursor.next());
+         BalanceView oldBalance = cursor.balance();
+         assertFalse(oldBalance.isNewBalance());
+         assertFalse(oldBalance.isNegative());
+         assertEquals(statement.getOldBalance().getAccountNumber(), oldBalance.getAccountNumber());
+         assertEquals(statement.getOldBalance().getOldBalance(), oldBalance.getBalance());
+         assertEquals(LocalDate.of(2025, 2, 27), oldBalance.getBalanceDate());
+
+         while (cursor.next() && !"8".equals(cursor.getRecordType()))
+         {
+            // skip to the new balance
+         }
+         assertTrue(cursor.balance().isNewBalance());
+         assertEquals(statement.getNewBalance().getNewBalance(), cursor.balance().getBalance());
+      }
+   }
+
+   @Test
+   void viewOfAnotherRecordTypeIsRejected() throws IOException
+   {
+      String codaContent = "\n" +
+            "4 unknown record type\n" +
+            "9               000033000000000000000000000000244120" + " ".repeat(75) + "2\r\n";
+
+      try (CodaRecordCursor cursor = parser.cursor(
+            new ByteArrayInputStream(codaContent.getBytes(StandardCharsets.ISO_8859_1))))
+      {
+         assertThrows(IllegalStateException.class, cursor::getRecordType);
+         assertTrue(cursor.next());
+         assertEquals("9", cursor.getRecordType());
+         assertEquals(3, cursor.getLineNumber());
+         assertEquals(128, cursor.getLine().length());
+         assertThrows(IllegalStateException.class, cursor::record21);
+         assertThrows(IllegalStateException.class, cursor::balance);
+         assertFalse(cursor.next());
+      }
+   }
+}
@@ -0,0 +1,90 @@
+package com.example.coda.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import com.example.coda.model.CodaGlobalRecord;
+import com.example.coda.model.CodaHeaderRecord;
+import com.example.coda.model.CodaNewBalanceRecord;
+import com.example.coda.model.CodaOldBalanceRecord;
+import com.example.coda.model.CodaRecord;
+import com.example.coda.model.CodaRecord21;
+import com.example.coda.model.CodaRecord22;
+import com.example.coda.model.CodaRecord23;
+import com.example.coda.model.CodaRecord31;
+import com.example.coda.model.CodaRecord32;
+import com.example.coda.model.CodaTrailerRecord;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test record-at-a-time reading of CODA files
+ */
+class CodaRecordReaderTest
+{
+   @Test
+   void readsTypedRecordsInFileOrder() throws IOException
+   {
+      String codaContent = new String(Files.readAllBytes(Paths.get("src/test/java/resources/coda_test.txt")));
+
+      try (CodaRecordReader reader = new CodaRecordReader(new StringReader(codaContent)))
+      {
+         assertInstanceOf(CodaHeaderRecord.class, reader.next());
+         assertInstanceOf(CodaOldBalanceRecord.class, reader.next());
+         assertInstanceOf(CodaGlobalRecord.class, reader.next());
+         assertInstanceOf(CodaRecord21.class, reader.next());
+         assertInstanceOf(CodaRecord22.class, reader.next());
+         assertInstanceOf(CodaRecord23.class, reader.next());
+         assertInstanceOf(CodaRecord31.class, reader.next());
+         assertInstanceOf(CodaRecord32.class, reader.next());
+
+         CodaRecord record;
+         CodaRecord previous = null;
+         while ((record = reader.next()) != null)
+         {
+            previous = record;
+         }
+         assertInstanceOf(CodaTrailerRecord.class, previous, "Last record should be the trailer");
+         assertNull(reader.next(), "Reader should stay at end of input");
+      }
+   }
+
+   @Test
+   void skipsBlankLinesAndUnknownRecordTypes() throws IOException
+   {
+      String codaContent = "\n" +
+            "4 unknown record type\n" +
+            "8024310000017062 EUR0BE   0030000        0000000170266230030325                                                                0\n" +
+            "   \n";
+
+      try (CodaRecordReader reader = new CodaRecordReader(new StringReader(codaContent)))
+      {
+         CodaNewBalanceRecord newBalance = assertInstanceOf(CodaNewBalanceRecord.class, reader.next());
+         assertEquals("8", newBalance.getRecordIdentification());
+         assertEquals(3, reader.getLineNumber());
+         assertNull(reader.next());
+         assertEquals(4, reader.getLineNumber());
+      }
+   }
+
+   @Test
+   void lineWithoutEndIsRejectedPastTheLimit() throws IOException
+   {
+      String first = "4 unknown record type\n";
+      String endless = "2".repeat(CodaRecordReader.MAX_LINE_LENGTH * 4);
+
+      try (CodaRecordReader reader = new CodaRecordReader(new StringReader(first + endless)))
+      {
+         IOException e = assertThrows(IOException.class, () -> {
+            while (reader.next() != null)
+            {
+            }
+         });
+         assertEquals("CODA line 2 is longer than " + CodaRecordReader.MAX_LINE_LENGTH + " characters", e.getMessage());
+      }
+   }
+}
@@ -0,0 +1,99 @@
+package com.example.coda.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import com.example.coda.model.CodaBankTransaction;
+import com.example.coda.model.TransactionType;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Test statement keys and the copy kept while a statement is written
+ */
+class CodaStatementCacheTest
+{
+   private static final LocalDate DATE = LocalDate.of(2025, 9, 4);
+
+   private final CodaStatementCache cache = new CodaStatementCache(DataSize.ofKilobytes(64), DataSize.ofKilobytes(4),
+         Duration.ofMinutes(10));
+   private final CodaGenerator generator = new CodaGenerator(new CodaWriter());
+
+   @Test
+   void equalAmountsGiveTheSameKey()
+   {
+      CodaStatementCache.Key key = key("1200.00", List.of(transaction("125.00", "CLIENT X")));
+
+      assertEquals(key, key("1200", List.of(transaction("125.0", "CLIENT X"))));
+      assertEquals(key.etag(), key("1200.000", List.of(transaction("125", "CLIENT X"))).etag());
+   }
+
+   @Test
+   void anyChangedInputChangesTheKey()
+   {
+      CodaStatementCache.Key key = key("1200.00", List.of(transaction("125.00", "CLIENT X")));
+
+      assertNotEquals(key, key("1200.01", List.of(transaction("125.00", "CLIENT X"))));
+      assertNotEquals(key, key("1200.00", List.of(transaction("125.00", "CLIENT Y"))));
+      assertNotEquals(key, key("1200.00", List.of()));
+      assertNotEquals(key, cache.key("BELFIUS", "BE68 5390 0754 7034", "EUR", DATE.plusDays(1),
+            new BigDecimal("1200.00"), List.of(transaction("125.00", "CLIENT X")).stream()));
+   }
+
+   @Test
+   void transactionsHashedOneByOneGiveTheSameKey()
+   {
+      List<CodaBankTransaction> txs = List.of(transaction("125.00", "CLIENT X"), transaction("7.5", "CLIENT Y"));
+      CodaStatementCache.TransactionDigest digest = new CodaStatementCache.TransactionDigest();
+      txs.forEach(digest::add);
+
+      assertEquals(key("1200.00", txs), cache.key("BELFIUS", "BE68 5390 0754 7034", "EUR", DATE,
+            new BigDecimal("1200.00"), digest));
+   }
+
+   @Test
+   void writtenStatementIsKeptUnderItsKey() throws IOException
+   {
+      List<CodaBankTransaction> txs = List.of(transaction("125.00", "CLIENT X"));
+      CodaStatementCache.Key key = key("1200.00", txs);
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+      cache.write(key, out, target -> generator.generate("BELFIUS", "BE68 5390 0754 7034", "EUR", DATE,
+            new BigDecimal("1200.00"), txs, target));
+
+      assertArrayEquals(out.toByteArray(), cache.get(key));
+      assertEquals(generator.generate("BELFIUS", "BE68 5390 0754 7034", "EUR", DATE, new BigDecimal("1200.00"), txs),
+            new String(cache.get(key), StandardCharsets.ISO_8859_1));
+   }
+
+   @Test
+   void statementsLargerThanAnEntryAreStreamedButNotKept() throws IOException
+   {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      CodaStatementCache.Key key = key("0", List.of());
+
+      cache.write(key, out, target -> target.write(new byte[5000]));
+
+      assertEquals(5000, out.size());
+      assertNull(cache.get(key));
+   }
+
+   private CodaStatementCache.Key key(String opening, List<CodaBankTransaction> txs)
+   {
+      return cache.key("BELFIUS", "BE68 5390 0754 7034", "EUR", DATE, new BigDecimal(opening), txs.stream());
+   }
+
+   private static CodaBankTransaction transaction(String amount, String counterparty)
+   {
+      return new CodaBankTransaction(DATE, TransactionType.CREDIT, new BigDecimal(amount), counterparty,
+            "BE12 3456 7890 1234", "Payment received", "INV-1");
+   }
+}
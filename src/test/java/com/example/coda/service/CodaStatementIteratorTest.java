@@ -0,0 +1,85 @@
+package com.example.coda.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import com.example.coda.model.CodaStatement;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test lazy splitting of multi-statement CODA files
+ */
+class CodaStatementIteratorTest
+{
+   private static final String HEADER =
+         "0000003032530005        04308988  AZA BELGIUM SA            GKCCBEBB   00404483367 00000                                       2\n";
+   private static final String OLD_BALANCE =
+         "10024310000017062 EUR0BE   0030000        0000000170022110270225AZA BELGIUM SA            Compte à vue                       024\n";
+   private static final String NEW_BALANCE =
+         "8024310000017062 EUR0BE   0030000        0000000170266230030325                                                                0\n";
+
+   private final CodaParser parser = new CodaParser();
+
+   @Test
+   void splitsBackToBackStatements() throws IOException
+   {
+      String single = new String(Files.readAllBytes(Paths.get("src/test/java/resources/coda_test.txt")));
+      CodaStatement expected = parser.parse(single);
+
+      List<CodaStatement> statements;
+      try (Stream<CodaStatement> stream = parser.statements(new StringReader(single + single + single)))
+      {
+         statements = stream.collect(Collectors.toList());
+      }
+
+      assertEquals(3, statements.size(), "Each 0…9 block should become its own statement");
+      for (CodaStatement statement : statements)
+      {
+         assertNotNull(statement.getHeader());
+         assertNotNull(statement.getTrailer());
+         assertEquals(expected.getIndividualTransactions().size(), statement.getIndividualTransactions().size());
+         assertEquals(expected.getNewBalance(), statement.getNewBalance());
+      }
+   }
+
+   @Test
+   void headerStartsNewStatementWhenTrailerIsMissing()
+   {
+      String codaContent = HEADER + OLD_BALANCE + NEW_BALANCE + HEADER + OLD_BALANCE;
+
+      CodaStatementIterator iterator = new CodaStatementIterator(
+            new CodaRecordReader(new StringReader(codaContent)));
+
+      assertTrue(iterator.hasNext());
+      CodaStatement first = iterator.next();
+      assertNotNull(first.getNewBalance());
+
+      assertTrue(iterator.hasNext());
+      CodaStatement second = iterator.next();
+      assertNotNull(second.getHeader());
+      assertNotNull(second.getOldBalance());
+      assertEquals(null, second.getNewBalance(), "Second statement has no record 8");
+
+      assertFalse(iterator.hasNext());
+      assertThrows(NoSuchElementException.class, iterator::next);
+   }
+
+   @Test
+   void emptyInputHasNoStatements()
+   {
+      try (Stream<CodaStatement> stream = parser.statements(new StringReader("\n\n")))
+      {
+         assertEquals(0, stream.count());
+      }
+   }
+}
@@ -0,0 +1,128 @@
+package com.example.coda.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import com.example.coda.model.CodaBankTransaction;
+import com.example.coda.model.CodaIndividualTransactionRecord;
+import com.example.coda.model.CodaStatement;
+import com.example.coda.model.TransactionType;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test splitting of days with more transactions than the 4-digit sequence number allows
+ */
+class CodaStatementRolloverTest
+{
+   private static final LocalDate DATE = LocalDate.of(2025, 9, 4);
+
+   private final CodaParser parser = new CodaParser();
+   private final CodaGenerator generator = new CodaGenerator(new CodaWriter());
+
+   @Test
+   void statementsAreChainedPastSequenceNumber9999()
+   {
+      List<CodaBankTransaction> txs = transactions(2 * CodaGenerator.MAX_TRANSACTIONS_PER_STATEMENT + 5);
+
+      List<CodaStatement> statements = parse(
+            generator.generate("BELFIUS", "BE68 5390 0754 7034", "EUR", DATE, new BigDecimal("-10.00"), txs));
+
+      assertEquals(3, statements.size());
+      BigDecimal expectedOpening = new BigDecimal("-10.00");
+      int seen = 0;
+      for (int i = 0; i < statements.size(); i++)
+      {
+         CodaStatement statement = statements.get(i);
+         String number = String.valueOf(123 + i);
+         List<CodaIndividualTransactionRecord> movements = statement.getIndividualTransactions();
+         assertEquals(i < 2 ? CodaGenerator.MAX_TRANSACTIONS_PER_STATEMENT : 5, movements.size());
+         assertEquals(number, statement.getOldBalance().getStatementNumber());
+         assertEquals(number, statement.getNewBalance().getStatementNumber());
+         assertEquals("0001", movements.get(0).getRecord21().getContinuousSequenceNumber());
+         assertEquals(String.format("%04d", movements.size()),
+               movements.get(movements.size() - 1).getRecord21().getContinuousSequenceNumber());
+
+         BigDecimal credits = BigDecimal.ZERO;
+         BigDecimal debits = BigDecimal.ZERO;
+         for (CodaIndividualTransactionRecord movement : movements)
+         {
+            CodaBankTransaction tx = txs.get(seen++);
+            assertEquals(0, tx.amount().compareTo(movement.getAmount()));
+            if (tx.type() == TransactionType.CREDIT)
+            {
+               credits = credits.add(tx.amount());
+            }
+            else
+            {
+               debits = debits.add(tx.amount());
+            }
+         }
+         assertEquals(0, credits.compareTo(statement.getTrailer().getTotalCredit()));
+         assertEquals(0, debits.compareTo(statement.getTrailer().getTotalDebit()));
+
+         // Old balance of each statement is the new balance of the previous one
+         assertEquals(0, expectedOpening.compareTo(signed(statement.getOldBalance().getOldBalanceSign(),
+               statement.getOldBalance().getOldBalance())));
+         expectedOpening = expectedOpening.add(credits).subtract(debits);
+         assertEquals(0, expectedOpening.compareTo(signed(statement.getNewBalance().getNewBalanceSign(),
+               statement.getNewBalance().getNewBalance())));
+      }
+      assertEquals(txs.size(), seen);
+   }
+
+   @Test
+   void parallelAndStreamedSplitsAreIdentical() throws IOException
+   {
+      List<CodaBankTransaction> txs = transactions(3 * CodaGenerator.MAX_TRANSACTIONS_PER_STATEMENT + 1);
+      // Null entries are skipped and must not shift the statement boundaries
+      txs.add(CodaGenerator.MAX_TRANSACTIONS_PER_STATEMENT, null);
+      txs.add(0, null);
+
+      String parallel = generator.generate("BELFIUS", "BE68 5390 0754 7034", "EUR", DATE, BigDecimal.TEN, txs);
+
+      StringWriter streamed = new StringWriter();
+      generator.generate("BELFIUS", "BE68 5390 0754 7034", "EUR", DATE, BigDecimal.TEN, new LinkedList<>(txs),
+            streamed);
+
+      assertEquals(streamed.toString(), parallel);
+      assertEquals(4, parse(parallel).size());
+   }
+
+   private List<CodaStatement> parse(String coda)
+   {
+      try (Stream<CodaStatement> statements = parser.statements(new StringReader(coda)))
+      {
+         return statements.collect(Collectors.toList());
+      }
+   }
+
+   private static BigDecimal signed(String sign, BigDecimal amount)
+   {
+      return "1".equals(sign) ? amount.negate() : amount;
+   }
+
+   private static List<CodaBankTransaction> transactions(int count)
+   {
+      List<CodaBankTransaction> txs = new ArrayList<>();
+      for (int i = 0; i < count; i++)
+      {
+         txs.add(CodaBankTransaction.builder()
+               .bookingDate(DATE)
+               .type(i % 3 == 0 ? TransactionType.DEBIT : TransactionType.CREDIT)
+               .amount(BigDecimal.valueOf(100 + i % 1000, 2))
+               .counterpartyName("CLIENT " + i)
+               .counterpartyAccount("BE12 3456 7890 1234")
+               .reference("INV-" + i)
+               .build());
+      }
+      return txs;
+   }
+}
@@ -0,0 +1,98 @@
+package com.example.coda.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import com.example.coda.model.CodaBankTransaction;
+import com.example.coda.model.TransactionType;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test generation from transaction sources that are read as they are written
+ */
+class CodaStreamingGeneratorTest
+{
+   private static final LocalDate DATE = LocalDate.of(2025, 9, 4);
+
+   private final CodaGenerator generator = new CodaGenerator(new CodaWriter());
+
+   @Test
+   void iterableSourceGivesTheListOutput() throws IOException
+   {
+      List<CodaBankTransaction> txs = transactions(250);
+      String expected = generator.generate("BELFIUS", "BE68 5390 0754 7034", "EUR", DATE, new BigDecimal("1200.00"), txs);
+
+      AtomicInteger passes = new AtomicInteger();
+      Iterable<CodaBankTransaction> source = () -> {
+         passes.incrementAndGet();
+         return txs.iterator();
+      };
+      StringWriter out = new StringWriter();
+      generator.generate("BELFIUS", "BE68 5390 0754 7034", "EUR", DATE, new BigDecimal("1200.00"), source, out);
+
+      assertEquals(expected, out.toString());
+      assertEquals(2, passes.get());
+   }
+
+   @Test
+   void streamSourceIsReadTwiceAndClosed() throws IOException
+   {
+      String expected = generator.generate("BELFIUS", "BE68 5390 0754 7034", "EUR", DATE, BigDecimal.ZERO,
+            transactions(5_000));
+
+      AtomicInteger closed = new AtomicInteger();
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      // Transactions are created lazily, never held in a list
+      generator.generate("BELFIUS", "BE68 5390 0754 7034", "EUR", DATE, BigDecimal.ZERO,
+            () -> IntStream.range(0, 5_000).mapToObj(CodaStreamingGeneratorTest::transaction)
+                  .onClose(closed::incrementAndGet), out);
+
+      assertEquals(expected, out.toString(StandardCharsets.ISO_8859_1));
+      assertEquals(2, closed.get());
+   }
+
+   @Test
+   void sourceChangingBetweenPassesIsRejected()
+   {
+      AtomicInteger passes = new AtomicInteger();
+      Iterable<CodaBankTransaction> source = () -> {
+         Iterator<CodaBankTransaction> first = transactions(3).iterator();
+         return passes.getAndIncrement() == 0 ? first : transactions(4).iterator();
+      };
+
+      assertThrows(IllegalStateException.class, () -> generator.generate("BELFIUS", "BE68 5390 0754 7034", "EUR",
+            DATE, BigDecimal.ZERO, source, new StringWriter()));
+   }
+
+   private static List<CodaBankTransaction> transactions(int count)
+   {
+      List<CodaBankTransaction> txs = new ArrayList<>();
+      for (int i = 0; i < count; i++)
+      {
+         txs.add(transaction(i));
+      }
+      return txs;
+   }
+
+   private static CodaBankTransaction transaction(int i)
+   {
+      return CodaBankTransaction.builder()
+            .bookingDate(DATE.minusDays(i % 30))
+            .type(i % 4 == 0 ? TransactionType.DEBIT : TransactionType.CREDIT)
+            .amount(BigDecimal.valueOf(100 + i * 7L, 2))
+            .counterpartyName("CLIENT " + i)
+            .counterpartyAccount("BE12 3456 7890 " + i)
+            .reference("INV-" + i)
+            .build();
+   }
+}
@@ -0,0 +1,113 @@
+package com.example.coda.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import com.example.coda.model.CodaIndividualTransactionRecord;
+import com.example.coda.model.CodaStatement;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test the columnar transaction batch against the model built by the parser
+ */
+class CodaTransactionBatchTest
+{
+   private final CodaParser parser = new CodaParser();
+
+   @Test
+   void rowsMatchTheIndividualTransactionsOfTheModel() throws IOException
+   {
+      String codaContent = Files.readString(Paths.get("src/test/java/resources/coda_test.txt"));
+      List<CodaIndividualTransactionRecord> transactions = parser.parse(codaContent).getIndividualTransactions();
+
+      CodaTransactionBatch batch = parser.parseBatch(new StringReader(codaContent));
+
+      assertEquals(transactions.size(), batch.size());
+      for (int row = 0; row < batch.size(); row++)
+      {
+         CodaIndividualTransactionRecord expected = transactions.get(row);
+         assertEquals(expected.getSequenceNumber().intValue(), batch.getSequenceNumber(row));
+         assertEquals(expected.getAmount(), batch.getAmount(row));
+         assertEquals("1".equals(expected.getRecord21().getMovementSign()), batch.isDebit(row));
+         assertEquals(expected.getValueDate(), batch.getValueDate(row));
+         assertEquals(expected.getTransactionDate(), batch.getEntryDate(row));
+         assertEquals(expected.getTransactionCode(), batch.getTransactionCode(row));
+         assertEquals(expected.getTransactionReference(), batch.getReferenceNumber(row));
+         assertEquals(expected.getCommunicationStructured(), batch.getCommunication(row));
+         assertEquals(expected.getCounterpartyName(), batch.getCounterpartyName(row));
+         assertEquals(expected.getCounterpartyBic(), batch.getCounterpartyBic(row));
+         assertEquals(expected.getCounterpartyAccount(), batch.getCounterpartyAccount(row));
+         assertEquals(expected.getCounterpartyAccountName(), batch.getCounterpartyAccountName(row));
+      }
+   }
+
+   @Test
+   void repeatedCodesAreStoredOnce() throws IOException
+   {
+      String codaContent = Files.readString(Paths.get("src/test/java/resources/coda_test.txt"));
+
+      List<String> bics = parser.parse(codaContent).getIndividualTransactions().stream()
+            .map(CodaIndividualTransactionRecord::getCounterpartyBic)
+            .distinct()
+            .toList();
+
+      CodaTransactionBatch batch = parser.parseBatch(new StringReader(codaContent));
+
+      assertEquals(2, bics.size());
+      assertEquals(bics, batch.getCounterpartyBics());
+      assertEquals(batch.getCounterpartyBicId(0), batch.getCounterpartyBicId(1));
+      int transactionCode = batch.transactionCodeId(batch.getTransactionCode(0));
+      assertEquals(transactionCode, batch.getTransactionCodeId(0));
+      assertEquals(CodaTransactionBatch.NO_VALUE, batch.transactionCodeId("99999999"));
+   }
+
+   @Test
+   void allStatementsOfAFileAreCollected(@TempDir Path tempDir) throws IOException
+   {
+      String statement = Files.readString(Paths.get("src/test/java/resources/coda_test.txt"));
+      Path file = tempDir.resolve("statements.cod");
+      Files.writeString(file, statement + statement + statement);
+
+      int expected = parser.statements(file).mapToInt(s -> s.getIndividualTransactions().size()).sum();
+      CodaTransactionBatch batch = parser.parseBatch(file);
+
+      assertEquals(expected, batch.size());
+      long total = 0;
+      for (int row = 0; row < batch.size(); row++)
+      {
+         total += batch.getSignedAmountThousandths(row);
+      }
+      CodaStatement single = parser.parse(statement);
+      long perStatement = single.getIndividualTransactions().stream()
+            .mapToLong(t -> t.getAmount().movePointRight(3).longValueExact())
+            .sum();
+      assertEquals(3 * perStatement, total);
+   }
+
+   @Test
+   void missingDetailRecordsAreEmptyColumns() throws IOException
+   {
+      String codaContent =
+            "21000100003010383003291000028  000000000024412003032520150032502410 0\n" +
+            "8024310000017062 EUR0BE   0030000        0000000170266230030325\n" +
+            "2200010001                                                     NOTPROVIDED                        GKCCBEBB                   1 0\n";
+
+      CodaTransactionBatch batch = parser.parseBatch(new StringReader(codaContent));
+
+      assertEquals(1, batch.size());
+      assertEquals(244120, batch.getAmountThousandths(0));
+      assertNull(batch.getCounterpartyName(0));
+      assertNull(batch.getCounterpartyBic(0));
+      assertNull(batch.getCounterpartyAccount(0));
+      assertEquals(CodaTransactionBatch.NO_VALUE, batch.getCounterpartyBicId(0));
+      assertNull(batch.getEntryDate(0));
+      assertThrows(IndexOutOfBoundsException.class, () -> batch.getAmountThousandths(1));
+   }
+}
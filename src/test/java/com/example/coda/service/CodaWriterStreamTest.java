@@ -0,0 +1,120 @@
+package com.example.coda.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import com.example.coda.model.CodaIndividualTransactionRecord;
+import com.example.coda.model.CodaStatement;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test that streamed and byte-encoded CODA output is identical to the String output
+ */
+class CodaWriterStreamTest
+{
+   private final CodaParser parser = new CodaParser();
+   private final CodaWriter writer = new CodaWriter();
+
+   @Test
+   void streamedOutputMatchesStringOutput() throws IOException
+   {
+      CodaStatement statement = parser.parse(Files.readString(Paths.get("src/test/java/resources/coda_test.txt")));
+
+      assertSameOutput(statement);
+   }
+
+   @Test
+   void largeStatementIsWrittenInSeveralChunks() throws IOException
+   {
+      CodaStatement statement = parser.parse(Files.readString(Paths.get("src/test/java/resources/coda_test.txt")));
+      List<CodaIndividualTransactionRecord> transactions = new ArrayList<>();
+      for (int i = 0; i < 200; i++)
+      {
+         transactions.addAll(statement.getIndividualTransactions());
+      }
+      statement.setIndividualTransactions(transactions);
+
+      String coda = assertSameOutput(statement);
+
+      assertTrue(coda.length() > 4 * CodaLineBuffer.CAPACITY);
+      assertEquals(parser.parse(coda).getIndividualTransactions().size(), transactions.size());
+   }
+
+   @Test
+   void documentIsWrittenToAFileChannel(@TempDir Path tempDir) throws IOException
+   {
+      String codaContent = Files.readString(Paths.get("src/test/java/resources/coda_test.txt"));
+      CodaStatement statement = parser.parse(codaContent);
+      statement.getIndividualTransactions().get(0).getRecord22().setCounterpartyName("SOCIÉTÉ GÉNÉRALE");
+      Path file = tempDir.resolve("statement.cod");
+
+      try (CodaDocument document = writer.writeDocument(statement);
+           FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE))
+      {
+         document.writeTo(channel);
+      }
+
+      assertEquals(writer.write(statement), Files.readString(file, StandardCharsets.ISO_8859_1));
+      assertEquals(document(statement).length, Files.size(file));
+   }
+
+   private byte[] document(CodaStatement statement) throws IOException
+   {
+      try (CodaDocument document = writer.writeDocument(statement))
+      {
+         ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+         document.writeTo(bytes);
+         return bytes.toByteArray();
+      }
+   }
+
+   private String assertSameOutput(CodaStatement statement) throws IOException
+   {
+      String expected = writer.write(statement);
+
+      StringWriter chars = new StringWriter();
+      writer.write(statement, chars);
+      assertEquals(expected, chars.toString());
+
+      StringBuilder appendable = new StringBuilder();
+      writer.write(statement, appendable);
+      assertEquals(expected, appendable.toString());
+
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      writer.write(statement, bytes);
+      assertEquals(expected, bytes.toString(StandardCharsets.ISO_8859_1));
+
+      ByteArrayOutputStream channelBytes = new ByteArrayOutputStream();
+      try (WritableByteChannel channel = Channels.newChannel(channelBytes))
+      {
+         writer.write(statement, channel);
+      }
+      assertEquals(expected, channelBytes.toString(StandardCharsets.ISO_8859_1));
+
+      try (CodaDocument document = writer.writeDocument(statement))
+      {
+         ByteArrayOutputStream documentBytes = new ByteArrayOutputStream();
+         document.writeTo(documentBytes);
+         assertEquals(expected, documentBytes.toString(StandardCharsets.ISO_8859_1));
+         assertEquals(expected.length(), document.size());
+      }
+
+      StringWriter grouping = new StringWriter();
+      writer.writeArtGrouping(statement, grouping);
+      assertEquals(writer.writeArtGrouping(statement), grouping.toString());
+      return expected;
+   }
+}
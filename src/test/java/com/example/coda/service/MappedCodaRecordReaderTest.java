@@ -0,0 +1,112 @@
+package com.example.coda.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import com.example.coda.model.CodaRecord;
+import com.example.coda.model.CodaStatement;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test the memory-mapped, byte-level CODA reader against the character-based parser
+ */
+class MappedCodaRecordReaderTest
+{
+   private final CodaParser parser = new CodaParser();
+
+   @TempDir
+   Path tempDir;
+
+   @Test
+   void mappedParseMatchesTextParse() throws IOException
+   {
+      String codaContent = readTestFile();
+      Path codaFile = writeLatin1(codaContent);
+
+      CodaStatement expected = parser.parse(codaContent);
+      CodaStatement actual = parser.parse(codaFile);
+
+      assertEquals(expected, actual);
+      assertEquals("Compte à vue                       ", actual.getOldBalance().getAccountDescription());
+   }
+
+   @Test
+   void linesCrossingWindowBoundariesAreReadCompletely() throws IOException
+   {
+      String codaContent = readTestFile().replace("\n", "\r\n");
+      Path codaFile = writeLatin1(codaContent);
+
+      try (CodaRecordReader expected = new CodaRecordReader(new StringReader(codaContent));
+           MappedCodaRecordReader actual = new MappedCodaRecordReader(codaFile, 200))
+      {
+         CodaRecord record;
+         while ((record = expected.next()) != null)
+         {
+            assertEquals(record, actual.next());
+         }
+         assertNull(actual.next());
+         assertEquals(expected.getLineNumber(), actual.getLineNumber());
+      }
+   }
+
+   @Test
+   void carriageReturnOnlyLinesParseLikeTheText() throws IOException
+   {
+      String codaContent = readTestFile().replace("\r\n", "\n").replace('\n', '\r');
+      Path codaFile = writeLatin1(codaContent);
+
+      CodaStatement expected = parser.parse(codaContent);
+
+      assertEquals(expected, parser.parse(codaFile));
+      assertEquals(List.of(expected), parser.parseParallel(codaFile));
+      try (CodaRecordReader text = new CodaRecordReader(new StringReader(codaContent));
+           MappedCodaRecordReader mapped = new MappedCodaRecordReader(codaFile, 200))
+      {
+         CodaRecord record;
+         while ((record = text.next()) != null)
+         {
+            assertEquals(record, mapped.next());
+         }
+         assertNull(mapped.next());
+         assertEquals(text.getLineNumber(), mapped.getLineNumber());
+      }
+   }
+
+   @Test
+   void lineLongerThanWindowIsRejected() throws IOException
+   {
+      Path codaFile = writeLatin1(readTestFile());
+
+      try (MappedCodaRecordReader reader = new MappedCodaRecordReader(codaFile, 100))
+      {
+         assertThrows(IOException.class, reader::next);
+      }
+   }
+
+   @Test
+   void emptyFileHasNoRecords() throws IOException
+   {
+      try (MappedCodaRecordReader reader = new MappedCodaRecordReader(writeLatin1("")))
+      {
+         assertNull(reader.next());
+      }
+   }
+
+   private String readTestFile() throws IOException
+   {
+      return new String(Files.readAllBytes(Paths.get("src/test/java/resources/coda_test.txt")), StandardCharsets.UTF_8);
+   }
+
+   private Path writeLatin1(String content) throws IOException
+   {
+      return Files.write(tempDir.resolve("statement.coda"), content.getBytes(StandardCharsets.ISO_8859_1));
+   }
+}
@@ -0,0 +1,68 @@
+package com.example.coda.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import com.example.coda.model.CodaBankTransaction;
+import com.example.coda.model.TransactionType;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the thousandths-based amounts used for CODA totals
+ */
+class MoneyTest
+{
+   @Test
+   void convertsModelAmountsHalfUp()
+   {
+      assertEquals(244120, Money.of(new BigDecimal("244.12")).thousandths());
+      assertEquals(125000, Money.of(new BigDecimal("125")).thousandths());
+      assertEquals(-1, Money.of(new BigDecimal("-0.0005")).thousandths());
+      assertEquals(0, Money.of(null).thousandths());
+      assertEquals(new BigDecimal("244.12"), new Money(244120).toBigDecimal());
+      assertEquals(new BigDecimal("1"), new Money(1000).toBigDecimal());
+   }
+
+   @Test
+   void arithmeticIsCheckedForOverflow()
+   {
+      Money max = new Money(Long.MAX_VALUE);
+
+      assertEquals(new Money(3000), new Money(1000).plus(new Money(2000)));
+      assertEquals(new Money(-1000), new Money(1000).minus(new Money(2000)));
+      assertEquals(new Money(1000), new Money(-1000).abs());
+      assertThrows(ArithmeticException.class, () -> max.plus(new Money(1)));
+      assertThrows(ArithmeticException.class, () -> new Money(Long.MIN_VALUE).abs());
+      assertThrows(ArithmeticException.class, () -> Money.of(new BigDecimal("1E+20")));
+   }
+
+   @Test
+   void codaWidthIsFifteenDigits()
+   {
+      Money widest = new Money(Money.MAX_CODA_THOUSANDTHS);
+
+      assertEquals(widest, widest.requireCodaWidth("Amount"));
+      assertEquals(-Money.MAX_CODA_THOUSANDTHS,
+            new Money(-Money.MAX_CODA_THOUSANDTHS).requireCodaWidth("Amount").thousandths());
+      IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+            () -> widest.plus(new Money(1)).requireCodaWidth("Opening balance"));
+      assertTrue(ex.getMessage().startsWith("Opening balance 1000000000000"));
+   }
+
+   @Test
+   void generatorRejectsTotalsWiderThanTheAmountField()
+   {
+      CodaGenerator generator = new CodaGenerator(new CodaWriter());
+      CodaBankTransaction tx = CodaBankTransaction.builder().bookingDate(LocalDate.of(2025, 9, 3))
+            .type(TransactionType.CREDIT).amount(new BigDecimal("600000000000")).counterpartyName("CLIENT X")
+            .counterpartyAccount("BE12 3456 7890 1234").build();
+
+      IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+            () -> generator.generate("BELFIUS", "BE68 5390 0754 7034", "EUR", LocalDate.of(2025, 9, 4), BigDecimal.ZERO,
+                  List.of(tx, tx)));
+      assertTrue(ex.getMessage().startsWith("Global amount"));
+   }
+}